@@ -1,12 +1,20 @@
 package psidev.psi.pi.validator;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipInputStream;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.tukaani.xz.XZInputStream;
 
 /**
  * Class for unpacking a zipped file.
@@ -18,6 +26,13 @@ public class ArchiveUnpacker {
      */
     private static final Logger LOGGER = LogManager.getLogger(ArchiveUnpacker.class);
     private static final int BUF_SIZE = 4096;
+    private static final String STR_FILE_EXT_MZID = ".mzid";
+    private static final String STR_FILE_EXT_GZ   = ".gz";
+    private static final String STR_FILE_EXT_ZIP  = ".zip";
+    private static final String STR_FILE_EXT_7Z   = ".7z";
+    private static final String STR_FILE_EXT_XZ   = ".xz";
+    private static final String STR_FILE_EXT_BZ2  = ".bz2";
+    private static final String STR_FILE_EXT_ZST  = ".zst";
 
     /**
      * unGZip a file.
@@ -54,6 +69,7 @@ public class ArchiveUnpacker {
         try {
             FileOutputStream out;
             try (ZipInputStream zipIS = new ZipInputStream(new FileInputStream(zipFile))) {
+                zipIS.getNextEntry();
                 out = new FileOutputStream(unzippedFile);
                 int len;
                 while ((len = zipIS.read(buffer)) > 0) {
@@ -68,31 +84,177 @@ public class ArchiveUnpacker {
     }
     
     /**
-     * Decompress a .7z file
+     * Decompress a .7z file, the first .mzid entry or, if there is none, the first file of the archive.
      * @param seven_zFile   the .7z file
      * @param unzippedFile the unzipped file
      */
     public static void decompress7zFile(String seven_zFile, String unzippedFile) {
-        LOGGER.debug("Support for .7z files not yet implemented");
-        /*
+        byte[] buffer = new byte[BUF_SIZE];
+
         try {
-            FileOutputStream out = null;
+            SevenZArchiveEntry mzIdentMLEntry;
+            try (SevenZFile sevenZFile = new SevenZFile(new File(seven_zFile))) {
+                mzIdentMLEntry = ArchiveUnpacker.get7zMzIdentMLEntry(sevenZFile);
+            }
+            if (mzIdentMLEntry == null) {
+                LOGGER.error("No file in " + seven_zFile);
+                return;
+            }
+
+            try (SevenZFile sevenZFile = new SevenZFile(new File(seven_zFile));
+                 FileOutputStream out = new FileOutputStream(unzippedFile)) {
+                SevenZArchiveEntry entry;
+                while ((entry = sevenZFile.getNextEntry()) != null) {
+                    if (entry.getName().equals(mzIdentMLEntry.getName())) {
+                        int len;
+                        while ((len = sevenZFile.read(buffer)) > 0) {
+                            out.write(buffer, 0, len);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);   
+        }
+    }
+
+    /**
+     * Gets the entry of a .7z archive to validate, the first .mzid entry or, if there is none, the first file of the archive.
+     * @param sevenZFile the .7z archive
+     * @return the entry, null if the archive has no file
+     */
+    private static SevenZArchiveEntry get7zMzIdentMLEntry(SevenZFile sevenZFile) {
+        SevenZArchiveEntry mzIdentMLEntry = null;
+        for (SevenZArchiveEntry entry : sevenZFile.getEntries()) {
+            if (!entry.isDirectory() && entry.hasStream()
+                    && (mzIdentMLEntry == null || (!mzIdentMLEntry.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID) && entry.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID)))) {
+                mzIdentMLEntry = entry;
+            }
+        }
+
+        return mzIdentMLEntry;
+    }
+
+    /**
+     * Opens a stream of the decompressed content of a file, the compression is chosen by the extension of the file name.
+     * The stream of a .zip or .7z archive reads the same entry as the unpacking methods. Other files are read as they are.
+     * @param file the file
+     * @return the stream, it supports mark and reset
+     * @throws IOException if the file can not be opened
+     */
+    public static InputStream openDecompressedStream(String file) throws IOException {
+        String name = file.toLowerCase();
+        if (name.endsWith(STR_FILE_EXT_7Z)) {
+            final SevenZFile sevenZFile = new SevenZFile(new File(file));
+            SevenZArchiveEntry mzIdentMLEntry = ArchiveUnpacker.get7zMzIdentMLEntry(sevenZFile);
+            SevenZArchiveEntry entry = null;
             try {
-                ArchiveInputStream in = new ArchiveStreamFactory().createArchiveInputStream(ArchiveStreamFactory.SEVEN_Z, new FileInputStream(seven_zFile));
-                ZipArchiveEntry entry = (ZipArchiveEntry)in.getNextEntry();
-                out = new FileOutputStream(unzippedFile);
-                IOUtils.copy(in, out);
+                if (mzIdentMLEntry != null) {
+                    do {
+                        entry = sevenZFile.getNextEntry();
+                    }
+                    while (entry != null && !entry.getName().equals(mzIdentMLEntry.getName()));
+                }
             }
-            catch (ArchiveException exc) {
-                exc.printStackTrace(System.err);   
+            catch (IOException exc) {
+                sevenZFile.close();
+                throw exc;
             }
-            if (out != null) {
-                out.close();
+            final boolean bFound = (entry != null);
+
+            return new BufferedInputStream(new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    return bFound ? sevenZFile.read() : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return bFound ? sevenZFile.read(b, off, len) : -1;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    sevenZFile.close();
+                }
+            }, BUF_SIZE);
+        }
+
+        InputStream is = new BufferedInputStream(new FileInputStream(file), BUF_SIZE);
+        try {
+            if (name.endsWith(STR_FILE_EXT_GZ)) {
+                is = new GZIPInputStream(is);
             }
+            else if (name.endsWith(STR_FILE_EXT_ZIP)) {
+                ZipInputStream zipIS = new ZipInputStream(is);
+                zipIS.getNextEntry();
+                is = zipIS;
+            }
+            else if (name.endsWith(STR_FILE_EXT_XZ)) {
+                is = new XZInputStream(is);
+            }
+            else if (name.endsWith(STR_FILE_EXT_BZ2)) {
+                is = new BZip2CompressorInputStream(is, true);
+            }
+            else if (name.endsWith(STR_FILE_EXT_ZST)) {
+                is = new ZstdCompressorInputStream(is);
+            }
+            else {
+                return is;
+            }
+        }
+        catch (IOException exc) {
+            is.close();
+            throw exc;
+        }
+
+        return new BufferedInputStream(is, BUF_SIZE);
+    }
+
+    /**
+     * Decompress a .xz file, the blocks of multi-threaded compressed files concurrently.
+     * @param xzFile            the .xz file
+     * @param unzippedFile      the unzipped file
+     * @param numberOfThreads   the number of decoding threads
+     */
+    public static void decompressXzFile(String xzFile, String unzippedFile, int numberOfThreads) {
+        try {
+            new ParallelDecompressor(numberOfThreads).decompressXz(new File(xzFile), new File(unzippedFile));
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);   
+        }
+    }
+
+    /**
+     * Decompress a .bz2 file, the streams of parallel compressed (pbzip2) files concurrently.
+     * @param bzip2File         the .bz2 file
+     * @param unzippedFile      the unzipped file
+     * @param numberOfThreads   the number of decoding threads
+     */
+    public static void decompressBzip2File(String bzip2File, String unzippedFile, int numberOfThreads) {
+        try {
+            new ParallelDecompressor(numberOfThreads).decompressBzip2(new File(bzip2File), new File(unzippedFile));
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);   
+        }
+    }
+
+    /**
+     * Decompress a .zst file, the frames of multi-frame (pzstd) files concurrently.
+     * @param zstdFile          the .zst file
+     * @param unzippedFile      the unzipped file
+     * @param numberOfThreads   the number of decoding threads
+     */
+    public static void decompressZstdFile(String zstdFile, String unzippedFile, int numberOfThreads) {
+        try {
+            new ParallelDecompressor(numberOfThreads).decompressZstd(new File(zstdFile), new File(unzippedFile));
         }
         catch (IOException exc) {
             exc.printStackTrace(System.err);   
         }
-        */
     }
 }
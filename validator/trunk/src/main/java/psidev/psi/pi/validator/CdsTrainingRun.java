@@ -0,0 +1,115 @@
+package psidev.psi.pi.validator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import psidev.psi.pi.rulefilter.RuleFilterManager;
+import psidev.psi.pi.validator.report.ReportFormat;
+import psidev.psi.pi.validator.report.ValidationReportWriter;
+import psidev.psi.pi.validator.server.OfflineOntologyConfig;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Training run for the application class-data sharing (AppCDS) archive of the command line validator.
+ * Validates the given mzIdentML files like {@link MzIdentMLValidator#main(String[])} does, one validator per file,
+ * so that a JVM started with -XX:DumpLoadedClassList lists the classes of a command line validation.
+ * The ontologies are loaded with the offline configuration, so the training doesn't need network access.
+ * Errors in single files, including schema validation errors, are only printed, the training continues with the next file.
+ * <p>
+ * Usage: CdsTrainingRun &lt;cv mapping rules&gt; &lt;object rules&gt; &lt;rule filter&gt; &lt;mzIdentML file or folder&gt;...
+ */
+public class CdsTrainingRun {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_FILE_EXT_MZID = ".mzid";
+    private static final int NUMBER_OF_RULE_FILES = 3;
+
+    /**
+     * Constructor.
+     */
+    private CdsTrainingRun() {
+    }
+
+    /**
+     * Main method of the training run.
+     * @param args the rule files and the mzIdentML files resp. folders
+     * @throws IOException if the rule files or the ontology configuration can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length <= CdsTrainingRun.NUMBER_OF_RULE_FILES) {
+            System.err.println("Usage: CdsTrainingRun <cv mapping rules> <object rules> <rule filter> <mzIdentML file or folder>...");
+            System.exit(-1);
+        }
+
+        byte[] ontologyConfig;
+        try (InputStream is = OfflineOntologyConfig.create()) {
+            ontologyConfig = is.readAllBytes();
+        }
+
+        List<File> mzIdentMLFiles = new ArrayList<>();
+        for (int i = CdsTrainingRun.NUMBER_OF_RULE_FILES; i < args.length; i++) {
+            CdsTrainingRun.addMzIdentMLFiles(new File(args[i]), mzIdentMLFiles);
+        }
+
+        for (File mzIdentMLFile : mzIdentMLFiles) {
+            long start = System.currentTimeMillis();
+            try (InputStream cvMapping = new FileInputStream(args[0]);
+                 InputStream objectRules = new FileInputStream(args[1]);
+                 InputStream ruleFilter = new FileInputStream(args[2])) {
+                MzIdentMLValidator validator = new MzIdentMLValidator(new ByteArrayInputStream(ontologyConfig), cvMapping, objectRules, null);
+                validator.setMessageReportLevel(MessageLevel.INFO);
+                validator.setRuleFilterManager(new RuleFilterManager(ruleFilter));
+                validator.setExitOnInvalidSchema(false);
+
+                Collection<ValidatorMessage> msgs = validator.startValidation(mzIdentMLFile);
+                if (msgs != null) {
+                    try (ValidationReportWriter reportWriter = ReportFormat.JSONL.createWriter(new StringWriter())) {
+                        validator.writeValidatorMessages(msgs, reportWriter);
+                    }
+                    validator.getStatisticsReport(msgs.size());
+                    validator.getCvContextReport();
+                }
+                System.out.println("Trained with " + mzIdentMLFile.getName() + " in " + (System.currentTimeMillis() - start) + "ms.");
+            }
+            catch (Exception exc) {
+                System.err.println("Training with " + mzIdentMLFile.getName() + " failed: " + exc.getMessage());
+                exc.printStackTrace(System.err);
+            }
+        }
+    }
+
+    /**
+     * Adds a mzIdentML file, or all mzIdentML files of a folder and its subfolders, sorted by name.
+     * @param file              the file or folder
+     * @param mzIdentMLFiles    the list of files to add to
+     */
+    private static void addMzIdentMLFiles(File file, List<File> mzIdentMLFiles) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isDirectory() || child.getName().toLowerCase().endsWith(CdsTrainingRun.STR_FILE_EXT_MZID)) {
+                        CdsTrainingRun.addMzIdentMLFiles(child, mzIdentMLFiles);
+                    }
+                }
+            }
+        }
+        else if (file.isFile()) {
+            mzIdentMLFiles.add(file);
+        }
+        else {
+            System.err.println("Training file " + file.getPath() + " not found.");
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package psidev.psi.pi.validator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.MzIdentMLValidator.MzIdVersion;
+
+/**
+ * The header of an mzIdentML file: the root element with its namespace and version and the cvList.
+ * It's read from the first few KB of the file, so a file can be routed or rejected before it is indexed.
+ */
+public class MzIdentMLHeader {
+
+    /**
+     * Constants.
+     */
+    private static final int HEAD_LENGTH            = 16 * 1024;
+    private static final String STR_XML_DECLARATION = "<?xml";
+    private static final String STR_ROOT_ELEMENT    = "MzIdentML";
+    private static final String STR_NAMESPACE       = "http://psidev.info/psi/pi/mzIdentML/";
+    private static final String STR_CV_LIST         = "cvList";
+    private static final String STR_CV              = "cv";
+    private static final String STR_ID              = "id";
+    private static final String STR_URI             = "uri";
+    private static final String STR_VERSION         = "version";
+    private static final byte[] UTF8_BOM            = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF16BE_BOM         = {(byte) 0xFE, (byte) 0xFF};
+    private static final byte[] UTF16LE_BOM         = {(byte) 0xFF, (byte) 0xFE};
+    private static final Pattern ENCODING_PATTERN   = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+    private static final String STR_UTF8_ENCODING   = "encoding=\"UTF-8\"";
+    private static final String STR_BOM             = "\uFEFF";
+    private static final int BUF_SIZE               = 64 * 1024;
+
+    /**
+     * Members.
+     */
+    private boolean bEmpty = true;
+    private boolean bByteOrderMark = false;
+    private String encoding = null;
+    private String rootElement = null;
+    private String namespace = null;
+    private String version = null;
+    private final Map<String, String> cvs = new LinkedHashMap<>();
+
+    /**
+     * Constructor, use the read methods.
+     */
+    private MzIdentMLHeader() {
+    }
+
+    /**
+     * Reads the header of a file, decompressing it if needed (see {@link ArchiveUnpacker#openDecompressedStream(String)}).
+     * @param file the file
+     * @return the header
+     * @throws IOException if the file can not be read
+     */
+    public static MzIdentMLHeader read(File file) throws IOException {
+        try (InputStream is = ArchiveUnpacker.openDecompressedStream(file.getPath())) {
+            return MzIdentMLHeader.read(is);
+        }
+    }
+
+    /**
+     * Reads the header from the beginning of a stream. The stream is reset to the beginning afterwards.
+     * @param is the stream, it must support mark and reset
+     * @return the header
+     * @throws IOException if the stream can not be read
+     */
+    public static MzIdentMLHeader read(InputStream is) throws IOException {
+        byte[] head = new byte[MzIdentMLHeader.HEAD_LENGTH];
+        is.mark(head.length);
+        int length = 0;
+        int read;
+        while (length < head.length && (read = is.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        is.reset();
+
+        MzIdentMLHeader header = new MzIdentMLHeader();
+        header.parse(head, length);
+
+        return header;
+    }
+
+    /**
+     * Parses the root element and the cvList from the head of a file. The head ends somewhere in the file, so parsing stops there.
+     * The parser detects the encoding from the byte order mark resp. the XML declaration, which is optional.
+     * @param head      the first bytes of the file
+     * @param length    the number of bytes
+     */
+    private void parse(byte[] head, int length) {
+        int start = 0;
+        if (MzIdentMLHeader.startsWith(head, length, MzIdentMLHeader.UTF8_BOM)) {
+            start = MzIdentMLHeader.UTF8_BOM.length;
+        }
+        this.bByteOrderMark = start > 0 || MzIdentMLHeader.startsWith(head, length, MzIdentMLHeader.UTF16BE_BOM) || MzIdentMLHeader.startsWith(head, length, MzIdentMLHeader.UTF16LE_BOM);
+        this.bEmpty = (length - start == 0);
+        if (this.bEmpty) {
+            return;
+        }
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            this.parseElements(factory.createXMLStreamReader(new ByteArrayInputStream(head, 0, length)));
+        }
+        catch (XMLStreamException exc) {
+            // the head ends within the cvList or the file is not well-formed, keep what has been read so far
+        }
+
+        Charset charset = MzIdentMLHeader.getDeclaredCharset(head, start, length);
+        if (this.rootElement == null && charset != null) {
+            try {
+                // the parser does not know Java charset names like "Cp1252" used by some exporters, so decode it here
+                this.parseElements(factory.createXMLStreamReader(new InputStreamReader(new ByteArrayInputStream(head, start, length - start), charset)));
+                this.encoding = charset.name();
+            }
+            catch (XMLStreamException exc) {
+                // not well-formed resp. the head ends within the cvList
+            }
+        }
+
+        if (this.version == null && this.namespace != null && this.namespace.startsWith(MzIdentMLHeader.STR_NAMESPACE)) {
+            this.version = this.namespace.substring(MzIdentMLHeader.STR_NAMESPACE.length());
+        }
+    }
+
+    /**
+     * Reads the root element and the cvs of the cvList.
+     * @param reader the reader positioned at the beginning of the head
+     * @throws XMLStreamException if the head ends or is not well-formed
+     */
+    private void parseElements(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        boolean bInCvList = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 1) {
+                    this.encoding = reader.getEncoding();
+                    this.rootElement = reader.getLocalName();
+                    this.namespace = reader.getNamespaceURI();
+                    this.version = reader.getAttributeValue(null, MzIdentMLHeader.STR_VERSION);
+                }
+                else if (depth == 2) {
+                    bInCvList = MzIdentMLHeader.STR_CV_LIST.equals(reader.getLocalName());
+                    if (!bInCvList) {
+                        // the cvList is the first child of the root element
+                        break;
+                    }
+                }
+                else if (bInCvList && depth == 3 && MzIdentMLHeader.STR_CV.equals(reader.getLocalName())) {
+                    this.cvs.put(reader.getAttributeValue(null, MzIdentMLHeader.STR_ID), reader.getAttributeValue(null, MzIdentMLHeader.STR_URI));
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (bInCvList && depth == 1) {
+                    break;
+                }
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Checks, if the head starts with a byte order mark.
+     * @param head      the first bytes of the file
+     * @param length    the number of bytes
+     * @param bom       the byte order mark
+     * @return true, if the head starts with it
+     */
+    private static boolean startsWith(byte[] head, int length, byte[] bom) {
+        if (length < bom.length) {
+            return false;
+        }
+        for (int i = 0; i < bom.length; i++) {
+            if (head[i] != bom[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the Java charset declared in the XML declaration of a single byte or UTF-8 encoded head.
+     * @param head      the first bytes of the file
+     * @param start     the start of the XML declaration, after a byte order mark
+     * @param length    the number of bytes
+     * @return the charset, null if none or an unknown one is declared
+     */
+    private static Charset getDeclaredCharset(byte[] head, int start, int length) {
+        String text = new String(head, start, length - start, StandardCharsets.ISO_8859_1);
+        if (!text.startsWith(MzIdentMLHeader.STR_XML_DECLARATION)) {
+            return null;
+        }
+        Matcher matcher = MzIdentMLHeader.ENCODING_PATTERN.matcher(text.substring(0, Math.max(text.indexOf("?>"), 0)));
+        if (matcher.find() && Charset.isSupported(matcher.group(1))) {
+            return Charset.forName(matcher.group(1));
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the reason to reject the file.
+     * @return the end of a sentence starting with the file name, e.g. " is not a mzIdentML file.", null if the file can be validated
+     */
+    public String getRejectionReason() {
+        if (this.bEmpty) {
+            return " is empty.";
+        }
+        if (this.rootElement == null) {
+            return " is not a XML file or seems to be uncomplete or errorneous.";
+        }
+        if (this.namespace == null || !this.namespace.startsWith(MzIdentMLHeader.STR_NAMESPACE)) {
+            return " is not a mzIdentML file.";
+        }
+        if (this.getMzIdVersion() == null || !MzIdentMLHeader.STR_ROOT_ELEMENT.equals(this.rootElement)) {
+            return " has the unsupported mzIdentML version " + this.version + ".";
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the local name of the root element.
+     * @return the root element, null if none was found
+     */
+    public String getRootElement() {
+        return this.rootElement;
+    }
+
+    /**
+     * Gets the namespace of the root element.
+     * @return the namespace URI, null if no root element was found
+     */
+    public String getNamespace() {
+        return this.namespace;
+    }
+
+    /**
+     * Gets the version attribute of the root element, or the version of the namespace if there is no version attribute.
+     * @return the version, null if unknown
+     */
+    public String getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the encoding of the file, as detected by the parser from the byte order mark resp. the XML declaration.
+     * @return the encoding, null if no root element was found
+     */
+    public String getEncoding() {
+        return this.encoding;
+    }
+
+    /**
+     * Checks, if the file has to be transcoded before it is indexed: the indexer and the streaming checks read the bytes of the file,
+     * so they need an encoding, in which the markup is ASCII, and no byte order mark.
+     * @return true, if the file starts with a byte order mark or is e.g. UTF-16 encoded
+     */
+    public boolean isTranscodingNeeded() {
+        if (this.bByteOrderMark) {
+            return true;
+        }
+
+        return this.encoding != null && Charset.isSupported(this.encoding)
+                && !Arrays.equals(MzIdentMLHeader.STR_XML_DECLARATION.getBytes(Charset.forName(this.encoding)), MzIdentMLHeader.STR_XML_DECLARATION.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Writes a UTF-8 copy of the file without byte order mark, the encoding of the XML declaration is changed to UTF-8.
+     * @param xmlFile       the file, not compressed
+     * @param utf8File      the copy
+     * @throws IOException if the file can not be read resp. the copy can not be written
+     */
+    public void transcode(File xmlFile, File utf8File) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(xmlFile), Charset.forName(this.encoding));
+             Writer writer = Files.newBufferedWriter(utf8File.toPath(), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[MzIdentMLHeader.BUF_SIZE];
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+
+            String head = new String(buffer, 0, length);
+            if (head.startsWith(MzIdentMLHeader.STR_BOM)) {
+                head = head.substring(MzIdentMLHeader.STR_BOM.length());
+            }
+            int end = head.indexOf("?>");
+            if (head.startsWith(MzIdentMLHeader.STR_XML_DECLARATION) && end > 0) {
+                head = MzIdentMLHeader.ENCODING_PATTERN.matcher(head.substring(0, end)).replaceFirst(MzIdentMLHeader.STR_UTF8_ENCODING) + head.substring(end);
+            }
+            writer.write(head);
+
+            while ((read = reader.read(buffer)) > 0) {
+                writer.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Gets the mzIdentML version of the file.
+     * @return the version, null if it's not supported
+     */
+    public MzIdVersion getMzIdVersion() {
+        return MzIdVersion.forVersion(this.version);
+    }
+
+    /**
+     * Gets the controlled vocabularies of the cvList.
+     * @return map of the cv IDs to their URIs, in the order of the file
+     */
+    public Map<String, String> getCvs() {
+        return Collections.unmodifiableMap(this.cvs);
+    }
+}
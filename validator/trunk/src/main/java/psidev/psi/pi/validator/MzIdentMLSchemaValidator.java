@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLInputFactory;
@@ -42,6 +44,11 @@ public class MzIdentMLSchemaValidator {
      */
     private static final SchemaFactory SCHEMA_FACTORY = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
 
+    /**
+     * The schemas compiled so far. A compiled schema is immutable and thread safe, so it's shared by all validations of a version.
+     */
+    private static final Map<URI, Schema> COMPILED_SCHEMAS = new ConcurrentHashMap<>();
+
     /**
      * The schema to validate against.
      */
@@ -81,13 +88,21 @@ public class MzIdentMLSchemaValidator {
     }
 
     /**
-     * Sets the XML schema.
+     * Sets the XML schema. The schema is compiled the first time it is used.
      * @param aSchemaUri    the URI (Uniform Resource Identifier) of the schema
      * @throws SAXException SAX parsing exception
      * @throws MalformedURLException malformed URl exception
      */
     public void setSchema(URI aSchemaUri) throws SAXException, MalformedURLException {
-        this.schema = SCHEMA_FACTORY.newSchema(aSchemaUri.toURL());
+        Schema compiled = COMPILED_SCHEMAS.get(aSchemaUri);
+        if (compiled == null) {
+            // the factory isn't thread safe
+            synchronized (SCHEMA_FACTORY) {
+                compiled = SCHEMA_FACTORY.newSchema(aSchemaUri.toURL());
+            }
+            COMPILED_SCHEMAS.put(aSchemaUri, compiled);
+        }
+        this.schema = compiled;
     }
 
     /**
@@ -1,18 +1,21 @@
 package psidev.psi.pi.validator;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -22,20 +25,48 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.sax.SAXSource;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import psidev.psi.pi.rulefilter.RuleFilterManager;
+import psidev.psi.pi.validator.cvmapping.CompiledCvRule;
+import psidev.psi.pi.validator.index.ElementIndexStore;
+import psidev.psi.pi.validator.objectrules.AAggregatingObjectRule;
 import psidev.psi.pi.validator.objectrules.AdditionalSearchParamsObjectRule;
 import psidev.psi.pi.validator.objectrules.MandatoryElementsObjectRule;
+import psidev.psi.pi.validator.objectrules.PeptideEvidenceObjectRule;
 import psidev.psi.pi.validator.objectrules.ProteinAmbiguityGroupObjectRule;
+import psidev.psi.pi.validator.objectrules.CalculatedMassToChargeObjectRule;
+import psidev.psi.pi.validator.objectrules.EnzymeSpecificityObjectRule;
+import psidev.psi.pi.validator.objectrules.PeptideEvidenceSequenceObjectRule;
+import psidev.psi.pi.validator.objectrules.ReferentialIntegrityObjectRule;
+import psidev.psi.pi.validator.objectrules.SearchModificationConsistencyObjectRule;
+import psidev.psi.pi.validator.objectrules.SpectrumSourceObjectRule;
 import psidev.psi.pi.validator.objectrules.SearchTypeObjectRule;
-import psidev.psi.pi.validator.objectrules.XLinkPeptideModificationObjectRule;
-import psidev.psi.pi.validator.objectrules.XLinkSIIObjectRule;
+import psidev.psi.pi.validator.objectrules.util.RuleScheduler;
+import psidev.psi.pi.validator.ontology.SnapshotLocalOntology;
+import psidev.psi.pi.validator.ontology.SnapshotOntologyManager;
+import psidev.psi.pi.validator.report.ReportFormat;
+import psidev.psi.pi.validator.report.ValidationReportWriter;
 import psidev.psi.tools.cvrReader.CvRuleReaderException;
+import psidev.psi.tools.cvrReader.mapping.jaxb.CvMapping;
+import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.ontology_manager.impl.local.OntologyLoaderException;
 import psidev.psi.tools.ontology_manager.interfaces.OntologyAccess;
 import psidev.psi.tools.validator.Context;
@@ -50,11 +81,16 @@ import psidev.psi.tools.validator.rules.cvmapping.CvRule;
 import psidev.psi.tools.validator.rules.cvmapping.CvRuleManager;
 import uk.ac.ebi.jmzidml.MzIdentMLElement;
 import uk.ac.ebi.jmzidml.model.MzIdentMLObject;
+import uk.ac.ebi.jmzidml.model.mzidml.SearchDatabase;
 import uk.ac.ebi.jmzidml.model.mzidml.SpectrumIdentificationItem;
 import uk.ac.ebi.jmzidml.xml.io.MzIdentMLUnmarshaller;
+import uk.ac.ebi.jmzidml.xml.jaxb.unmarshaller.UnmarshallerFactory;
+import uk.ac.ebi.jmzidml.xml.jaxb.unmarshaller.filters.MzIdentMLNamespaceFilter;
+import uk.ac.ebi.jmzidml.xml.util.EscapingXMLUtilities;
+import uk.ac.ebi.jmzidml.xml.xxindex.MzIdentMLIndexer;
 
 /**
- * @author Florian Reisinger Date: 25-Oct-2010 modified by Salvador Martnez, Gerhard Mayer
+ * @author Florian Reisinger Date: 25-Oct-2010 modified by Salvador Mart�nez, Gerhard Mayer
  * @since $version
  */
 public class MzIdentMLValidator extends Validator {
@@ -65,6 +101,20 @@ public class MzIdentMLValidator extends Validator {
     private final Logger LOGGER = LogManager.getLogger(MzIdentMLValidator.class);
     
     private final String STR_NOT_MATCHING_MSGS_RECV = "Not matching messages received: ";
+    private static final String STR_EMPTY = "";
+    private static final String STR_VALIDATION_PROPERTIES = "validation.properties";
+    private static final String STR_MAPPING = "mapping";
+    private static final String STR_OBJECT  = "object";
+    private static final String STR_PERSISTENT_INDEX_PROPERTY = "element.index.persistent";
+    private static final String STR_INDEX_THREADS_PROPERTY = "element.index.threads";
+    private static final String STR_PARALLEL_OBJECT_RULES_PROPERTY = "object.rules.parallel";
+    private static final String STR_SPECTRUM_SOURCE_CHECK_PROPERTY = "spectrum.source.check";
+    private static final String STR_FASTA_RESOLUTION_PROPERTY = "fasta.sequence.resolution";
+    private static final String STR_MASS_TOLERANCE_PROPERTY = "mass.tolerance.ppm";
+    private static final String STR_ENZYME_SPECIFICITY_CHECK_PROPERTY = "enzyme.specificity.check";
+    private static final String STR_SEARCH_MODIFICATION_CHECK_PROPERTY = "search.modification.check";
+    private static final String STR_MODIFICATION_TOLERANCE_PROPERTY = "modification.mass.tolerance";
+    private static final double DEFAULT_MASS_TOLERANCE_PPM = 10.0;
     private static final String NEW_LINE = System.getProperty("line.separator");
     private static final String DOUBLE_NEW_LINE = NEW_LINE + NEW_LINE;
     private static final String TRIPLE_NEW_LINE = DOUBLE_NEW_LINE + NEW_LINE;
@@ -73,16 +123,62 @@ public class MzIdentMLValidator extends Validator {
     private static final String NEW_LINE_DOUBLE_TAB = NEW_LINE + DOUBLE_TAB;
     private final String STR_ELLIPSIS = "...";
     private static int progressSteps = 64;
+    private static final int MIN_ELEMENTS_PER_PARALLEL_PASS = 256;
 
     private final String STR_FILE_EXT_GZ    = ".gz";
     private final String STR_FILE_EXT_ZIP   = ".zip";
     private final String STR_FILE_EXT_7Z    = ".7z";
+    private final String STR_FILE_EXT_XZ    = ".xz";
+    private final String STR_FILE_EXT_BZ2   = ".bz2";
+    private final String STR_FILE_EXT_ZST   = ".zst";
+    private final String STR_UTF8_PREFIX    = "utf8_";
     
     /**
      * Enums.
      */
     public static enum MzIdVersion {
-        _1_1, _1_2
+        _1_1("1.1.0"), _1_2("1.2.0"), _1_3("1.3.0");
+
+        private final String version;
+
+        MzIdVersion(String version) {
+            this.version = version;
+        }
+
+        /**
+         * Gets the version as used in the names of the schemas and in the keys of the validation properties.
+         * @return the version, e.g. "1.2.0"
+         */
+        public String getVersion() {
+            return this.version;
+        }
+
+        /**
+         * Checks, if this version is the same or a later version than another one.
+         * The checks of features introduced with a version apply to all later versions.
+         * @param other the other version
+         * @return true, if this version is the same or later
+         */
+        public boolean isAtLeast(MzIdVersion other) {
+            return this.compareTo(other) >= 0;
+        }
+
+        /**
+         * Gets the version of a version attribute or namespace.
+         * @param version the version, e.g. "1.2.0" or "1.2"
+         * @return the version, null if it's not supported
+         */
+        public static MzIdVersion forVersion(String version) {
+            if (version != null) {
+                for (MzIdVersion mzIdVersion : MzIdVersion.values()) {
+                    if (mzIdVersion.version.equals(version) || mzIdVersion.version.equals(version + ".0")) {
+                        return mzIdVersion;
+                    }
+                }
+            }
+
+            return null;
+        }
     };
 
     /**
@@ -97,8 +193,12 @@ public class MzIdentMLValidator extends Validator {
     private boolean skipSchemaValidation = false;
 
     private MzIdentMLUnmarshaller unmarshaller = null;
+    private MzIdentMLIndexer indexer = null;    // element index of the unmarshaller, null if the index of jmzIdentML is used
     private RuleFilterManager ruleFilterManager;
     private ExtendedValidatorReport extendedReport;
+    private volatile List<CvRule> compiledCvRules = null;     // read by the SII worker threads
+    private final Map<String, RuleSet> ruleSets = new HashMap<>();   // rule sets loaded per mzIdentML version and type of validation
+    private RuleSet activeRuleSet = null;
 
     public static MzIdVersion currentFileVersion = null;
 
@@ -107,6 +207,28 @@ public class MzIdentMLValidator extends Validator {
     private int cntXMLSchemaValidatingMessages;
     private int cntUnanticipatedCVTerms = 0;
     private int cntXLInteractionScoringMessages = 0;
+
+    // settings used when running without a GUI (command line, embedded server)
+    private ValidationType validationType = ValidationType.SEMANTIC_VALIDATION;
+    private boolean showUnanticipatedCvTerms = true;
+    private int maxNumberToReportSameMessage = 1;
+    private boolean exitOnInvalidSchema = true;
+    private Boolean persistentIndex = null;
+    private int indexThreads = 0;
+    private Boolean parallelObjectRules = null;
+    private Boolean spectrumSourceCheck = null;
+    private Boolean fastaResolution = null;
+    private Double massTolerancePpm = null;
+    private Boolean enzymeSpecificityCheck = null;
+    private Boolean searchModificationCheck = null;
+    private Double modificationMassTolerance = null;
+    private final Object ruleResultLock = new Object();
+    private static Properties validationProperties = null;
+
+    // cancellation of a running validation and the messages not yet passed to the listener
+    private volatile boolean bCancelled = false;
+    private Consumer<Collection<ValidatorMessage>> messageListener = null;
+    private final List<ValidatorMessage> unpublishedMsgs = new ArrayList<>();
     
     /**
      * Constructor to initialise the validator with the custom ontology and cv-mapping without object rule settings.
@@ -139,6 +261,8 @@ public class MzIdentMLValidator extends Validator {
         final InputStream cvMappingFile = aCvMappingFile;
         final InputStream objectRuleFile = aCodedRuleFile;
 
+        this.setObjectAndMappingRules(cvMappingFile, objectRuleFile);
+
         try {
             cvMappingFile.close();
             objectRuleFile.close();
@@ -147,7 +271,6 @@ public class MzIdentMLValidator extends Validator {
             e1.printStackTrace(System.err);
         }
 
-        this.setObjectAndMappingRules(cvMappingFile, objectRuleFile);
         this.resetCountersAndGUI();
     }
     
@@ -234,8 +357,169 @@ public class MzIdentMLValidator extends Validator {
      */
     private void resetStaticObjectRuleMaps() {
         ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.clear();
+        PeptideEvidenceObjectRule.CROSS_REFERENCES.clear();
+    }
+
+    /**
+     * Gets the number of threads indexing and decompressing the input file.
+     * @return the number set with {@link #setIndexThreads(int)}, else the one of validation.properties, else the number of available processors
+     */
+    private int getNumberOfThreads() {
+        int numberOfThreads = this.indexThreads;
+        String strThreads = MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_INDEX_THREADS_PROPERTY);
+        if (numberOfThreads <= 0 && strThreads != null) {
+            try {
+                numberOfThreads = Integer.parseInt(strThreads.trim());
+            }
+            catch (NumberFormatException exc) {
+                this.LOGGER.warn("Invalid " + MzIdentMLValidator.STR_INDEX_THREADS_PROPERTY + ": " + strThreads);
+            }
+        }
+        if (numberOfThreads <= 0) {
+            numberOfThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        return numberOfThreads;
+    }
+
+    /**
+     * Creates the unmarshaller of the input file with the parallel built element index, which is persisted if enabled.
+     * Falls back to the index of jmzIdentML, if the file can't be indexed.
+     * @param xmlFile the mzIdentML file
+     * @return the unmarshaller
+     */
+    private MzIdentMLUnmarshaller createUnmarshaller(File xmlFile) {
+        boolean bPersistentIndex = (this.persistentIndex != null) ? this.persistentIndex
+                : Boolean.TRUE.toString().equalsIgnoreCase(MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_PERSISTENT_INDEX_PROPERTY));
+
+        try {
+            this.indexer = ElementIndexStore.openIndexer(xmlFile, bPersistentIndex, this.getNumberOfThreads());
+            return new MzIdentMLUnmarshaller(this.indexer);
+        }
+        catch (IOException exc) {
+            this.LOGGER.warn("Could not use the element index: " + exc.getMessage());
+        }
+
+        this.indexer = null;
+        return new MzIdentMLUnmarshaller(xmlFile);
+    }
+
+    /**
+     * Checks, if independent object rule passes resp. the elements of a pass may be checked on several threads.
+     * @return true, if enabled by the setter or by the validation properties
+     */
+    private boolean isParallelObjectRules() {
+        return (this.parallelObjectRules != null) ? this.parallelObjectRules
+                : !Boolean.FALSE.toString().equalsIgnoreCase(MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_PARALLEL_OBJECT_RULES_PROPERTY));
+    }
+
+    /**
+     * Checks, if the spectrumIDs are checked against the peak list files of the SpectraData.
+     * @return true, if enabled by the setter or by the validation properties
+     */
+    public boolean isSpectrumSourceCheck() {
+        return (this.spectrumSourceCheck != null) ? this.spectrumSourceCheck
+                : Boolean.TRUE.toString().equalsIgnoreCase(MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_SPECTRUM_SOURCE_CHECK_PROPERTY));
+    }
+
+    /**
+     * Checks, if the sequences of DBSequences without Seq are read from the FASTA files of the SearchDatabases.
+     * @return true, if enabled by the setter or by the validation properties
+     */
+    public boolean isFastaResolution() {
+        return (this.fastaResolution != null) ? this.fastaResolution
+                : Boolean.TRUE.toString().equalsIgnoreCase(MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_FASTA_RESOLUTION_PROPERTY));
+    }
+
+    /**
+     * Gets the tolerance of the calculatedMassToCharge check.
+     * @return the tolerance set with {@link #setMassTolerancePpm(double)}, else the one of validation.properties, else 10 ppm; 0 disables the check
+     */
+    private double getMassTolerancePpm() {
+        if (this.massTolerancePpm != null) {
+            return this.massTolerancePpm;
+        }
+
+        String strTolerance = MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_MASS_TOLERANCE_PROPERTY);
+        if (strTolerance != null) {
+            try {
+                return Double.parseDouble(strTolerance.trim());
+            }
+            catch (NumberFormatException exc) {
+                this.LOGGER.warn("Invalid " + MzIdentMLValidator.STR_MASS_TOLERANCE_PROPERTY + ": " + strTolerance);
+            }
+        }
+
+        return MzIdentMLValidator.DEFAULT_MASS_TOLERANCE_PPM;
+    }
+
+    /**
+     * Checks, if the PeptideEvidences are checked against the cleavage rules of the Enzymes of their protocol.
+     * @return true, unless disabled by the setter or by the validation properties
+     */
+    private boolean isEnzymeSpecificityCheck() {
+        return (this.enzymeSpecificityCheck != null) ? this.enzymeSpecificityCheck
+                : !Boolean.FALSE.toString().equalsIgnoreCase(MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_ENZYME_SPECIFICITY_CHECK_PROPERTY));
+    }
+
+    /**
+     * Checks, if the Modifications of the Peptides are checked against the SearchModifications of the protocols.
+     * @return true, unless disabled by the setter or by the validation properties
+     */
+    private boolean isSearchModificationCheck() {
+        return (this.searchModificationCheck != null) ? this.searchModificationCheck
+                : !Boolean.FALSE.toString().equalsIgnoreCase(MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_SEARCH_MODIFICATION_CHECK_PROPERTY));
+    }
+
+    /**
+     * Gets the tolerance of the comparison of the Modifications with the SearchModifications.
+     * @return the tolerance set with {@link #setModificationMassTolerance(double)}, else the one of validation.properties, else 0.01 Da
+     */
+    private double getModificationMassTolerance() {
+        if (this.modificationMassTolerance != null && this.modificationMassTolerance > 0.0) {
+            return this.modificationMassTolerance;
+        }
+
+        String strTolerance = MzIdentMLValidator.getValidationProperty(MzIdentMLValidator.STR_MODIFICATION_TOLERANCE_PROPERTY);
+        if (strTolerance != null) {
+            try {
+                double tolerance = Double.parseDouble(strTolerance.trim());
+                if (tolerance > 0.0) {
+                    return tolerance;
+                }
+            }
+            catch (NumberFormatException exc) {
+                // reported below
+            }
+            this.LOGGER.warn("Invalid " + MzIdentMLValidator.STR_MODIFICATION_TOLERANCE_PROPERTY + ": " + strTolerance);
+        }
+
+        return SearchModificationConsistencyObjectRule.DEFAULT_MASS_TOLERANCE;
+    }
+
+    /**
+     * Resets the results of a previous validation run, but keeps the loaded ontologies and rules.
+     * Used when the same validator instance validates several files one after the other, e.g. in the validation server.
+     */
+    public void resetValidationState() {
+        this.resetCountersAndGUI();
+        
+        if (this.ruleFilterManager != null) {
+            this.ruleFilterManager.restartRulesToSkip();
+        }
     }
     
+    /**
+     * Loads the ontologies of the ontology configuration. Local .obo files are loaded from their snapshots,
+     * see {@link SnapshotLocalOntology}. Called by the constructor of the super class.
+     * @param ontoConfig the ontology configuration
+     * @throws OntologyLoaderException if an ontology can't be loaded
+     */
+    @Override
+    public void setOntologyManager(InputStream ontoConfig) throws OntologyLoaderException {
+        this.setOntologyManager(new SnapshotOntologyManager(ontoConfig));
+    }
+
     /**
      * Checks, if the ontology files can be accessed.
      */
@@ -257,14 +541,11 @@ public class MzIdentMLValidator extends Validator {
      * @throws ValidatorException
      */
     private URI getMzIdentMLSchema(MzIdVersion version) throws ValidatorException {
-        switch (version) {
-            case _1_1:
-                return this.getMzIdentMLSchema("mzIdentML1.1.0.xsd", "url.schema.1.1.0");
-            case _1_2:
-                return this.getMzIdentMLSchema("mzIdentML1.2.0.xsd", "url.schema.1.2.0");
-            default:
-                throw new ValidatorException("Not supported mzIdentML version: " + version);
+        if (version == null) {
+            throw new ValidatorException("Not supported mzIdentML version: " + version);
         }
+
+        return this.getMzIdentMLSchema("mzIdentML" + version.getVersion() + ".xsd", "url.schema." + version.getVersion());
     }
 
     /**
@@ -281,7 +562,7 @@ public class MzIdentMLValidator extends Validator {
         if (url == null) {
             this.LOGGER.debug("Trying the remote official version of the schema");
             try {
-                url = new URL(MzIdentMLValidatorGUI.getProperty(schemaProperty));
+                url = new URL(this.gui != null ? MzIdentMLValidatorGUI.getProperty(schemaProperty) : MzIdentMLValidator.getValidationProperty(schemaProperty));
                 if (!this.checkURLAvailability(url))
                     throw new ValidatorException("Could not reach URL: " + url);
             }
@@ -392,6 +673,177 @@ public class MzIdentMLValidator extends Validator {
         this.skipSchemaValidation = skipSchemaValidation;
     }
 
+    /**
+     * Sets the type of validation (semantic or MIAPE) used when running without a GUI.
+     * 
+     * @param validationType the type of validation
+     */
+    public void setValidationType(ValidationType validationType) {
+        this.validationType = validationType;
+    }
+
+    /**
+     * Checks if MIAPE validation was selected, either in the GUI or via {@link #setValidationType(ValidationType)}.
+     * 
+     * @return true, if a MIAPE validation is performed
+     */
+    public boolean isMIAPEValidationSelected() {
+        if (this.gui != null) {
+            return this.gui.isMIAPEValidationSelected();
+        }
+        
+        return this.validationType == ValidationType.MIAPE_VALIDATION;
+    }
+
+    /**
+     * Flag to report CV terms not anticipated by the CV mapping rules when running without a GUI.
+     * 
+     * @param showUnanticipatedCvTerms set to true to report unanticipated CV terms
+     */
+    public void setShowUnanticipatedCvTerms(boolean showUnanticipatedCvTerms) {
+        this.showUnanticipatedCvTerms = showUnanticipatedCvTerms;
+    }
+
+    /**
+     * Checks if unanticipated CV terms are reported.
+     * 
+     * @return true, if unanticipated CV terms are reported
+     */
+    private boolean isShowUnanticipatedCvTerms() {
+        if (this.gui != null) {
+            return this.gui.jCheckBoxShowUnanticipatedCVTerms.isSelected();
+        }
+        
+        return this.showUnanticipatedCvTerms;
+    }
+
+    /**
+     * Sets how often the same message is reported when running without a GUI.
+     * 
+     * @param maxNumberToReportSameMessage the maximal number of times the same message is reported
+     */
+    public void setMaxNumberToReportSameMessage(int maxNumberToReportSameMessage) {
+        this.maxNumberToReportSameMessage = maxNumberToReportSameMessage;
+    }
+
+    /**
+     * Gets how often the same message is reported.
+     * 
+     * @return the maximal number of times the same message is reported
+     */
+    private int getMaxNumberToReportSameMessage() {
+        if (this.gui != null) {
+            return (Integer) this.gui.jSpinner.getValue();
+        }
+        
+        return this.maxNumberToReportSameMessage;
+    }
+
+    /**
+     * Flag to specify if the application exits on a file that is not valid against the schema (command line only).
+     * An embedding application sets this to false and gets the schema validation messages returned instead.
+     * 
+     * @param exitOnInvalidSchema set to false to return the schema validation messages instead of exiting
+     */
+    public void setExitOnInvalidSchema(boolean exitOnInvalidSchema) {
+        this.exitOnInvalidSchema = exitOnInvalidSchema;
+    }
+
+    /**
+     * Flag to specify if the element index of the input file is kept in a sidecar file (file name + '.mzidx'),
+     * so that the next validation of the unchanged file doesn't have to index it again.
+     * If not set, the flag is read from the property element.index.persistent of validation.properties.
+     * 
+     * @param persistentIndex set to true to keep the index, false (the default) to index the file on every validation
+     */
+    public void setPersistentIndex(boolean persistentIndex) {
+        this.persistentIndex = persistentIndex;
+    }
+
+    /**
+     * Sets the number of threads indexing the input file. Large files are split into chunks indexed in parallel.
+     * The threads also decompress .xz, .bz2 and .zst files in parallel, see {@link ParallelDecompressor}.
+     * If not set, the number is read from the property element.index.threads of validation.properties.
+     * 
+     * @param indexThreads the number of threads, 0 for the number of available processors
+     */
+    public void setIndexThreads(int indexThreads) {
+        this.indexThreads = indexThreads;
+    }
+
+    /**
+     * Flag to specify if independent object rule passes (see {@link RuleScheduler}) are run concurrently.
+     * If not set, the flag is read from the property object.rules.parallel of validation.properties.
+     * 
+     * @param parallelObjectRules set to false to run the object rule passes one after the other
+     */
+    public void setParallelObjectRules(boolean parallelObjectRules) {
+        this.parallelObjectRules = parallelObjectRules;
+    }
+
+    /**
+     * Flag to specify if the spectrumID of every SpectrumIdentificationResult is looked up in the local peak list file (MGF or mzML)
+     * of its SpectraData. If not set, the flag is read from the property spectrum.source.check of validation.properties.
+     * 
+     * @param spectrumSourceCheck set to true to check the spectra
+     */
+    public void setSpectrumSourceCheck(boolean spectrumSourceCheck) {
+        this.spectrumSourceCheck = spectrumSourceCheck;
+    }
+
+    /**
+     * Flag to specify if the sequences of DBSequences without Seq are read from the local FASTA file of their SearchDatabase
+     * (indexed in a .fai file next to it), so the PeptideEvidences can be checked against them.
+     * If not set, the flag is read from the property fasta.sequence.resolution of validation.properties.
+     * 
+     * @param fastaResolution set to true to read the sequences from the FASTA files
+     */
+    public void setFastaResolution(boolean fastaResolution) {
+        this.fastaResolution = fastaResolution;
+    }
+
+    /**
+     * Sets the tolerance in ppm, within which the calculatedMassToCharge of the SpectrumIdentificationItems must match the m/z of their Peptides.
+     * If not set, the tolerance is read from the property mass.tolerance.ppm of validation.properties.
+     * 
+     * @param massTolerancePpm the tolerance in ppm, 0 to disable the check
+     */
+    public void setMassTolerancePpm(double massTolerancePpm) {
+        this.massTolerancePpm = massTolerancePpm;
+    }
+
+    /**
+     * Flag to specify if the PeptideEvidences are checked against the SiteRegexp, semiSpecific and missedCleavages of the Enzymes
+     * of their SpectrumIdentificationProtocol.
+     * If not set, the flag is read from the property enzyme.specificity.check of validation.properties.
+     * 
+     * @param enzymeSpecificityCheck set to false to skip the check
+     */
+    public void setEnzymeSpecificityCheck(boolean enzymeSpecificityCheck) {
+        this.enzymeSpecificityCheck = enzymeSpecificityCheck;
+    }
+
+    /**
+     * Flag to specify if the Modifications of the Peptides are checked against the residues and massDelta of the SearchModifications
+     * of the SpectrumIdentificationProtocols.
+     * If not set, the flag is read from the property search.modification.check of validation.properties.
+     * 
+     * @param searchModificationCheck set to false to skip the check
+     */
+    public void setSearchModificationCheck(boolean searchModificationCheck) {
+        this.searchModificationCheck = searchModificationCheck;
+    }
+
+    /**
+     * Sets the tolerance in Dalton, within which the monoisotopicMassDelta of a Modification must match the massDelta of a SearchModification.
+     * If not set, the tolerance is read from the property modification.mass.tolerance of validation.properties.
+     * 
+     * @param modificationMassTolerance the tolerance in Dalton, greater than 0
+     */
+    public void setModificationMassTolerance(double modificationMassTolerance) {
+        this.modificationMassTolerance = modificationMassTolerance;
+    }
+
     /**
      * Get extended report
      * 
@@ -411,7 +863,7 @@ public class MzIdentMLValidator extends Validator {
      * 
      * @param xmlFile the mzIdentML file to validate.
      * @param unzippedPath  the path to the unzipped file
-     * @param extension the file extension (.gzip or .zip)
+     * @param extension the file extension (.gz, .zip, .7z, .xz, .bz2 or .zst)
      * @return the unzipped XML file
      */
     private File unzipXMLFile(File xmlFile, String unzippedPath, String extension) {
@@ -426,6 +878,15 @@ public class MzIdentMLValidator extends Validator {
             case STR_FILE_EXT_7Z:
                 ArchiveUnpacker.decompress7zFile(xmlFile.getPath(), unzippedFile.getPath());
                 break;
+            case STR_FILE_EXT_XZ:
+                ArchiveUnpacker.decompressXzFile(xmlFile.getPath(), unzippedFile.getPath(), this.getNumberOfThreads());
+                break;
+            case STR_FILE_EXT_BZ2:
+                ArchiveUnpacker.decompressBzip2File(xmlFile.getPath(), unzippedFile.getPath(), this.getNumberOfThreads());
+                break;
+            case STR_FILE_EXT_ZST:
+                ArchiveUnpacker.decompressZstdFile(xmlFile.getPath(), unzippedFile.getPath(), this.getNumberOfThreads());
+                break;
             default:
                 break;
         }
@@ -444,43 +905,62 @@ public class MzIdentMLValidator extends Validator {
      * @return a Collection of ValidatorMessages documenting the validation result.
      */
     public Collection<ValidatorMessage> startValidation(File xmlFile) {
-        String unzippedPath;
-        
-        if (xmlFile.getName().endsWith(this.STR_FILE_EXT_GZ)) {
-            unzippedPath = xmlFile.getPath().replace(this.STR_FILE_EXT_GZ, this.gui.STR_EMPTY);
-            xmlFile = this.unzipXMLFile(xmlFile, unzippedPath, this.STR_FILE_EXT_GZ);
+        // the header is read through the compression, so files that can't be validated are rejected before they are unpacked and indexed
+        MzIdentMLHeader header = null;
+        Collection<ValidatorMessage> locMsgs;
+        try {
+            header = MzIdentMLHeader.read(xmlFile);
+            locMsgs = this.makeBasicXMLFileChecks(xmlFile, header);
         }
-        else if (xmlFile.getName().endsWith(this.STR_FILE_EXT_ZIP)) {
-            unzippedPath = xmlFile.getPath().replace(this.STR_FILE_EXT_ZIP, this.gui.STR_EMPTY);
-            xmlFile = this.unzipXMLFile(xmlFile, unzippedPath, this.STR_FILE_EXT_ZIP);
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);
+            locMsgs = this.getInvalidOrEmptyFileErrorMessages(xmlFile, " could not be read: " + exc.getMessage());
         }
-        
-        Collection<ValidatorMessage> locMsgs = this.makeBasicXMLFileChecks(xmlFile);
         if (locMsgs != null) {
             return locMsgs;
         }
         else {
+            MzIdentMLValidator.currentFileVersion = header.getMzIdVersion();
+            this.LOGGER.info("MzIdentML " + header.getVersion() + " file, cvList: " + header.getCvs().keySet());
+
+            for (String extension : new String[] {this.STR_FILE_EXT_GZ, this.STR_FILE_EXT_ZIP, this.STR_FILE_EXT_7Z, this.STR_FILE_EXT_XZ, this.STR_FILE_EXT_BZ2, this.STR_FILE_EXT_ZST}) {
+                if (xmlFile.getName().toLowerCase().endsWith(extension)) {
+                    String unzippedPath = xmlFile.getPath().substring(0, xmlFile.getPath().length() - extension.length());
+                    xmlFile = this.unzipXMLFile(xmlFile, unzippedPath, extension);
+                    break;
+                }
+            }
+
+            // the indexer and the streaming checks read the bytes, so e.g. UTF-16 files are validated on a UTF-8 copy
+            File utf8File = null;
+            if (header.isTranscodingNeeded()) {
+                utf8File = new File(xmlFile.getAbsoluteFile().getParentFile(), this.STR_UTF8_PREFIX + xmlFile.getName());
+                try {
+                    this.LOGGER.info("Transcoding the " + header.getEncoding() + " encoded file to " + utf8File.getPath());
+                    header.transcode(xmlFile, utf8File);
+                }
+                catch (IOException exc) {
+                    exc.printStackTrace(System.err);
+                    utf8File.delete();
+                    return this.getInvalidOrEmptyFileErrorMessages(xmlFile, " could not be transcoded to UTF-8: " + exc.getMessage());
+                }
+                xmlFile = utf8File;
+            }
+
             this.initGuiProgress();
 
             this.updateProgress("Indexing input file" + this. STR_ELLIPSIS);
-            this.unmarshaller = new MzIdentMLUnmarshaller(xmlFile);
-            String mzIdentMLVersion = this.unmarshaller.getMzIdentMLVersion();
-
-            // flag if the version has changed
-            MzIdVersion currentFileVersionTMP = this.getMzIdentMLVersion(mzIdentMLVersion);
-            boolean versionChange = false;
-            if (MzIdentMLValidator.currentFileVersion != null && MzIdentMLValidator.currentFileVersion != currentFileVersionTMP) {
-                versionChange = true;
+            this.unmarshaller = this.createUnmarshaller(xmlFile);
+            MzIdVersion indexedVersion = this.getMzIdentMLVersion(this.unmarshaller.getMzIdentMLVersion());
+            if (indexedVersion != null && indexedVersion != MzIdentMLValidator.currentFileVersion) {
+                this.LOGGER.warn("The version of the indexed file " + indexedVersion + " differs from the version of the header " + MzIdentMLValidator.currentFileVersion);
+                MzIdentMLValidator.currentFileVersion = indexedVersion;
             }
             this.LOGGER.debug("MzIdentML file version set to :" + MzIdentMLValidator.currentFileVersion);
-            MzIdentMLValidator.currentFileVersion = currentFileVersionTMP;
 
             try {
-                // in case of not having a cvRule manager, load the rules depending
-                // on the version of the file or if the version of the file has changed
-                if (this.getCvRuleManager() == null || versionChange) {
-                    this.loadRulesByMzIdentVersion();
-                }
+                // select the rules for the version of the file and the type of validation, they are loaded only once
+                this.selectRuleSet();
 
                 // Reset old validation results. This will currently reset the status of all CvRules to a "not run" status
                 super.resetCvRuleStatus();
@@ -492,71 +972,66 @@ public class MzIdentMLValidator extends Validator {
                 ValidatorCvContext.getInstance().resetNotRecognised();
 
                 // XML Schema validation
+                this.checkCancelled();
                 this.schemaValidation(xmlFile);
                 boolean bSchemaCompliant = this.logSchemaValidationErrors();
                 if (!bSchemaCompliant) {
                     this.LOGGER.warn("Please make the .mzid file first schema compliant.");
                 }
+                this.publishMessages();
                 
                 // ---------------- Internal consistency check of the CvMappingRules
                 // Validate CV Mapping Rules
+                this.checkCancelled();
                 this.updateProgress("Checking internal consistency of CV rules" + this. STR_ELLIPSIS);
                 if (this.gui != null && !this.gui.skipCvRulesChecking()) {
                     this.addMessages(this.checkCvMappingRules(), this.msgLevel);
+                    this.publishMessages();
                 }
             }
             catch (ValidatorException ve) {
-                this.LOGGER.error("Exceptions during validation!", ve);
-                ve.printStackTrace(System.err);
+                this.logValidatorException(ve);
             }
 
             System.out.println("Number of rules to check: " + this.getCvRuleManager().getCvRules().size());
-            this.doValidationWork();
+            if (!this.bCancelled) {
+                this.doValidationWork(xmlFile);
+            }
 
-            this.updateProgress("Validation complete, compiling output" + this. STR_ELLIPSIS);
-            this.checkForNonAnticipatedCvTerms();
+            if (this.bCancelled) {
+                this.updateProgress("Validation cancelled, compiling output" + this. STR_ELLIPSIS);
+            }
+            else {
+                this.updateProgress("Validation complete, compiling output" + this. STR_ELLIPSIS);
+                this.checkForNonAnticipatedCvTerms();
+            }
+
+            if (utf8File != null && !utf8File.delete()) {
+                utf8File.deleteOnExit();
+            }
 
             return this.filterAndClusterMessages();
         }
     }
 
     /**
-     * Makes some simple test, e.g. if it's an non-empty and valid mzIdentML file
+     * Makes some simple test, e.g. if it's an non-empty and valid mzIdentML file of a supported version.
      * @param xmlFile the mzIdentML file to validate.
-     * @return a Collection of ValidatorMessages documenting the validation result.
+     * @param header the header of the file
+     * @return a Collection of ValidatorMessages documenting the validation result, null if the file can be validated.
      */
-    private Collection<ValidatorMessage> makeBasicXMLFileChecks(File xmlFile) {
-        if (xmlFile.length() > 0) {
-            if (this.LOGGER.isInfoEnabled()) {
-                this.LOGGER.info(NEW_LINE + "Starting new validation, input file: " + xmlFile.getAbsolutePath());
-            }
-            try {
-                BufferedReader fr = new BufferedReader(new FileReader(xmlFile));
-                if (!fr.readLine().startsWith("<?xml ")) {
-                    return this.getInvalidOrEmptyFileErrorMessages(xmlFile, " is not a XML file (XML declaration missing).");
-                }
-                else {
-                    String line;
-                    do { // skip comment lines
-                        line = fr.readLine();
-                    }
-                    while (line.startsWith("<!--"));
-                    
-                    if (!line.startsWith("<MzIdentML ")) {
-                        return this.getInvalidOrEmptyFileErrorMessages(xmlFile, " is not a mzIdentML file.");
-                    }
-                }
-            }
-            catch (IOException exc) {
-                exc.printStackTrace(System.err);
-            }
-            catch (NullPointerException exc) {
-                return this.getInvalidOrEmptyFileErrorMessages(xmlFile, " seems to be uncomplete or errorneous.");
-            }
-        }
-        else {
+    private Collection<ValidatorMessage> makeBasicXMLFileChecks(File xmlFile, MzIdentMLHeader header) {
+        if (xmlFile.length() == 0) {
             return this.getInvalidOrEmptyFileErrorMessages(xmlFile, " is empty.");
         }
+        if (this.LOGGER.isInfoEnabled()) {
+            this.LOGGER.info(NEW_LINE + "Starting new validation, input file: " + xmlFile.getAbsolutePath());
+        }
+
+        String rejectionReason = header.getRejectionReason();
+        if (rejectionReason != null) {
+            return this.getInvalidOrEmptyFileErrorMessages(xmlFile, rejectionReason);
+        }
         
         return null;
     }
@@ -601,19 +1076,115 @@ public class MzIdentMLValidator extends Validator {
     
     /**
      * Does the core validation work.
+     * @param xmlFile the mzIdentML file to validate
      */
-    private void doValidationWork() {
+    private void doValidationWork(File xmlFile) {
         try {
             this.checkMandatoryElements();
+            this.publishMessages();
+            this.checkCancelled();
+            this.checkReferentialIntegrity(xmlFile);
+            this.publishMessages();
+            this.checkCancelled();
+            this.checkPeptideEvidenceSequences(xmlFile);
+            this.publishMessages();
+            this.checkCancelled();
+            if (this.getMassTolerancePpm() > 0.0) {
+                this.checkCalculatedMassToCharge(xmlFile);
+                this.publishMessages();
+                this.checkCancelled();
+            }
+            if (this.isEnzymeSpecificityCheck()) {
+                this.checkEnzymeSpecificity(xmlFile);
+                this.publishMessages();
+                this.checkCancelled();
+            }
+            if (this.isSearchModificationCheck()) {
+                this.checkSearchModificationConsistency(xmlFile);
+                this.publishMessages();
+                this.checkCancelled();
+            }
+            if (this.isSpectrumSourceCheck()) {
+                this.checkSpectrumSources(xmlFile);
+                this.publishMessages();
+                this.checkCancelled();
+            }
             this.applyObjectRules();
+            this.checkCancelled();
             this.applyCVMappingRules();
         }
         catch (ValidatorException ve) {
+            this.logValidatorException(ve);
+        }
+    }
+
+    /**
+     * Logs an exception of the validation, a cancellation is only logged as information.
+     * @param ve the exception
+     */
+    private void logValidatorException(ValidatorException ve) {
+        if (this.bCancelled) {
+            this.LOGGER.info("Validation cancelled: " + ve.getMessage());
+        }
+        else {
             this.LOGGER.error("Exceptions during validation!", ve);
             ve.printStackTrace(System.err);
         }
     }
 
+    /**
+     * Requests the cancellation of the running validation.
+     * The validation stops at the next element and {@link #startValidation(File)} returns the messages found so far.
+     * The flag is reset with the counters, e.g. by {@link #resetValidationState()}.
+     */
+    public void cancel() {
+        this.bCancelled = true;
+    }
+
+    /**
+     * Checks if the cancellation of the validation was requested.
+     * @return true, if the validation was cancelled
+     */
+    public boolean isCancelled() {
+        return this.bCancelled;
+    }
+
+    /**
+     * Sets the listener getting the messages of the validation while it is running.
+     * The listener is called on the validation thread each time an element type is finished, with the messages added since the last call.
+     * @param messageListener the listener, null for none
+     */
+    public void setMessageListener(Consumer<Collection<ValidatorMessage>> messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    /**
+     * Throws an exception if the cancellation of the validation was requested. Called in the loops over the elements.
+     * @throws ValidatorException if the validation was cancelled
+     */
+    private void checkCancelled() throws ValidatorException {
+        if (this.bCancelled) {
+            throw new ValidatorException("Validation cancelled by the user");
+        }
+    }
+
+    /**
+     * Passes the messages added since the last call to the message listener.
+     */
+    private void publishMessages() {
+        if (this.messageListener != null) {
+            List<ValidatorMessage> newMsgs;
+            synchronized (this.unpublishedMsgs) {
+                if (this.unpublishedMsgs.isEmpty()) {
+                    return;
+                }
+                newMsgs = new ArrayList<>(this.unpublishedMsgs);
+                this.unpublishedMsgs.clear();
+            }
+            this.messageListener.accept(newMsgs);
+        }
+    }
+
     /**
      * Filters and clusters the messages.
      * 
@@ -651,7 +1222,7 @@ public class MzIdentMLValidator extends Validator {
                 if (filteredList.size() > 0) {
                     msgText = "unanticipated terms for XPath '" + xpath + "' : " + filteredList;
                     System.out.println(msgText);
-                    if (this.gui.jCheckBoxShowUnanticipatedCVTerms.isSelected()) {
+                    if (this.isShowUnanticipatedCvTerms()) {
                         valMsg = new ValidatorMessage(msgText, MessageLevel.WARN);
                         unrecognisedTermsForXPath.add(valMsg);
                         this.addMessages(unrecognisedTermsForXPath, MessageLevel.WARN);
@@ -704,7 +1275,42 @@ public class MzIdentMLValidator extends Validator {
     }
     
     /**
-     * Load the appropriate rules (semantic or MIAPE, 1.1 or 1.2) according to
+     * Selects the rules for the version of the current file and the type of validation.
+     * The rules are loaded the first time a version and type of validation is validated and kept for the following files.
+     * Rules set with the constructor or with {@link #reset(InputStream, InputStream)} are used for the version of the first file.
+     * 
+     * @throws ValidatorException
+     *             if some problem occurs while loading rules from configuration files
+     */
+    private void selectRuleSet() throws ValidatorException {
+        ValidationType type = this.isMIAPEValidationSelected() ? ValidationType.MIAPE_VALIDATION : ValidationType.SEMANTIC_VALIDATION;
+        String key = RuleSet.getKey(MzIdentMLValidator.currentFileVersion, type);
+        RuleSet ruleSet = this.ruleSets.get(key);
+        if (ruleSet != null && ruleSet == this.activeRuleSet) {
+            return;
+        }
+
+        if (ruleSet == null && this.activeRuleSet == null && this.getCvRuleManager() != null) {
+            // rules given explicitly
+            ruleSet = new RuleSet(this.getCvRuleManager(), this.getObjectRuleList(), this.compiledCvRules);
+        }
+        else if (ruleSet == null) {
+            this.getObjectRules().clear();
+            this.loadRulesByMzIdentVersion();
+            ruleSet = new RuleSet(this.getCvRuleManager(), this.getObjectRuleList(), this.compiledCvRules);
+        }
+        else {
+            this.LOGGER.info("Using the loaded rules for " + key);
+            this.setCvRuleManager(ruleSet.getCvRuleManager());
+            this.setObjectRules(new ArrayList<ObjectRule>(ruleSet.getObjectRules()));
+            this.compiledCvRules = ruleSet.getCompiledCvRules();
+        }
+        this.ruleSets.put(key, ruleSet);
+        this.activeRuleSet = ruleSet;
+    }
+
+    /**
+     * Load the appropriate rules (semantic or MIAPE, 1.1, 1.2 or 1.3) according to
      * the mzIdentML version
      * 
      * @throws ValidatorException
@@ -715,24 +1321,76 @@ public class MzIdentMLValidator extends Validator {
         this.LOGGER.info("Loading configuration files");
         this.updateProgress("Loading configuration files" + this. STR_ELLIPSIS);
 
-        if (this.gui != null) {
-            try {
-                final InputStream objectRuleInputStream = this.gui.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, this.gui.STR_OBJECT);
-                final InputStream mappingRuleInputStream = this.gui.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, this.gui.STR_MAPPING);
-                
-                this.setCvMappingRules(mappingRuleInputStream);
-                this.setObjectRules(objectRuleInputStream);
-            }
-            catch (FileNotFoundException e) {
-                throw new ValidatorException("Error loading configuration files.", e);
-            }
-            catch (CvRuleReaderException e) {
-                throw new ValidatorException("Error loading cvMapping rules.", e);
+        try {
+            final InputStream objectRuleInputStream = this.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, MzIdentMLValidator.STR_OBJECT);
+            final InputStream mappingRuleInputStream = this.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, MzIdentMLValidator.STR_MAPPING);
+            if (objectRuleInputStream == null || mappingRuleInputStream == null) {
+                throw new ValidatorException("No rule files found for mzIdentML version " + MzIdentMLValidator.currentFileVersion + " and " + this.validationType.getName());
             }
+
+            this.setCvMappingRules(mappingRuleInputStream);
+            this.setObjectRules(objectRuleInputStream);
+        }
+        catch (FileNotFoundException e) {
+            throw new ValidatorException("Error loading configuration files.", e);
+        }
+        catch (CvRuleReaderException e) {
+            throw new ValidatorException("Error loading cvMapping rules.", e);
+        }
+    }
+
+    /**
+     * Gets the mapping or object rule file for a mzIdentML version.
+     * Delegates to the GUI if there is one, otherwise the rule file named in the validation.properties of the classpath is used.
+     * 
+     * @param mzIdVersion the {@link MzIdVersion} of the file to validate
+     * @param ruleKind "mapping" or "object"
+     * @return InputStream for the rule file or null, if not found
+     * @throws FileNotFoundException file not found exception
+     */
+    private InputStream getRuleFileInputStream(MzIdVersion mzIdVersion, String ruleKind) throws FileNotFoundException {
+        if (this.gui != null) {
+            return this.gui.getRuleFileInputStream(mzIdVersion, ruleKind);
+        }
+        
+        String propertyName = ruleKind;
+        if (this.isMIAPEValidationSelected()) {
+            propertyName += ".rule.file.miape.validation.";
         }
         else {
-            throw new ValidatorException("No GUI has been specified, which is needed to know which type of validation (semantic or MIAPE) is going to be performed.");
+            propertyName += ".rule.file.semantic.validation.";
         }
+        
+        // unknown versions are validated with the rules of 1.2
+        propertyName += (mzIdVersion != null) ? mzIdVersion.getVersion() : MzIdVersion._1_2.getVersion();
+        
+        String ruleFile = MzIdentMLValidator.getValidationProperty(propertyName);
+        if (ruleFile == null) {
+            return null;
+        }
+        
+        return this.getClass().getClassLoader().getResourceAsStream(ruleFile.trim());
+    }
+
+    /**
+     * Reads a property from the validation.properties file of the classpath.
+     * @param propertyName the property name
+     * @return the property value or null, if not set
+     */
+    private static synchronized String getValidationProperty(String propertyName) {
+        if (MzIdentMLValidator.validationProperties == null) {
+            MzIdentMLValidator.validationProperties = new Properties();
+            try (InputStream is = MzIdentMLValidator.class.getClassLoader().getResourceAsStream(MzIdentMLValidator.STR_VALIDATION_PROPERTIES)) {
+                if (is != null) {
+                    MzIdentMLValidator.validationProperties.load(is);
+                }
+            }
+            catch (IOException exc) {
+                exc.printStackTrace(System.err);
+            }
+        }
+        
+        return MzIdentMLValidator.validationProperties.getProperty(propertyName);
     }
 
     /**
@@ -780,7 +1438,10 @@ public class MzIdentMLValidator extends Validator {
                     }).forEach((msg) -> {
                         this.extendedReport.addInvalidSchemaValidationMessage(msg.getMessage());
                     });
-                    System.exit(MzIdentMLValidatorGUI.EXIT_FAILURE);
+                    if (this.exitOnInvalidSchema) {
+                        System.exit(MzIdentMLValidatorGUI.EXIT_FAILURE);
+                    }
+                    return this.clusterByMessagesAndRules(this.getMessageCollection());
                 }
             }
             System.out.println("XML schema validation complete, file valid against .xsd schema.");
@@ -810,16 +1471,130 @@ public class MzIdentMLValidator extends Validator {
      * @return the mzid version
      */
     private MzIdVersion getMzIdentMLVersion(String mzIdentMLVersion) {
-        switch (mzIdentMLVersion) {
-            case "1.1.0":
-            case "1.1":
-                return MzIdentMLValidator.MzIdVersion._1_1;
-            case "1.2.0":
-            case "1.2":
-                return MzIdentMLValidator.MzIdVersion._1_2;
+        return MzIdentMLValidator.MzIdVersion.forVersion(mzIdentMLVersion);
+    }
+
+    /**
+     * Checks, if the current file has a version or a later version.
+     * 
+     * @param version the version
+     * @return true, if the version of the current file is known and the same or later
+     */
+    public static boolean isVersionAtLeast(MzIdVersion version) {
+        return MzIdentMLValidator.currentFileVersion != null && MzIdentMLValidator.currentFileVersion.isAtLeast(version);
+    }
+
+    /**
+     * Checks in one streaming pass over the file, that all references point to existing ids, that the ids are unique
+     * and that the referable elements are used.
+     * @param xmlFile the mzIdentML file to validate
+     * @throws ValidatorException if the file can not be read
+     */
+    private void checkReferentialIntegrity(File xmlFile) throws ValidatorException {
+        this.updateProgress("Checking references" + this. STR_ELLIPSIS);
+        final ReferentialIntegrityObjectRule referentialIntegrityObjectRule = new ReferentialIntegrityObjectRule(this.ontologyMngr);
+        for (ValidatorMessage validatorMessage : referentialIntegrityObjectRule.check(xmlFile)) {
+            this.addValidatorMessage(validatorMessage.getRule().getId(), validatorMessage, this.msgLevel);
+        }
+    }
+
+    /**
+     * Gets the object rules, which the Validator keeps as raw type.
+     * @return the object rules
+     */
+    private List<ObjectRule<?>> getObjectRuleList() {
+        List<ObjectRule<?>> objectRules = new ArrayList<>();
+        for (ObjectRule rule : this.getObjectRules()) {
+            objectRules.add(rule);
+        }
+
+        return objectRules;
+    }
+
+    /**
+     * Checks in one streaming pass over the file, that the PeptideEvidences match the sequences of their DBSequences and Peptides.
+     * @param xmlFile the mzIdentML file to validate
+     * @throws ValidatorException if the file can not be read
+     */
+    private void checkPeptideEvidenceSequences(File xmlFile) throws ValidatorException {
+        this.updateProgress("Checking peptide evidences against the protein sequences" + this. STR_ELLIPSIS);
+        final PeptideEvidenceSequenceObjectRule peptideEvidenceSequenceObjectRule = new PeptideEvidenceSequenceObjectRule(this.ontologyMngr);
+        peptideEvidenceSequenceObjectRule.setFastaResolution(this.isFastaResolution());
+        if (this.isFastaResolution()) {
+            peptideEvidenceSequenceObjectRule.setSearchDatabaseLocations(this.getSearchDatabaseLocations());
+        }
+        for (ValidatorMessage validatorMessage : peptideEvidenceSequenceObjectRule.check(xmlFile)) {
+            this.addValidatorMessage(validatorMessage.getRule().getId(), validatorMessage, this.msgLevel);
+        }
+    }
+
+    /**
+     * Gets the locations of the SearchDatabases of the input file, they follow the PeptideEvidences in the file.
+     * @return map of SearchDatabase id to location
+     */
+    private Map<String, String> getSearchDatabaseLocations() {
+        Map<String, String> locations = new HashMap<>();
+        Iterator<SearchDatabase> searchDbIter = this.unmarshaller.unmarshalCollectionFromXpath(MzIdentMLElement.SearchDatabase);
+        while (searchDbIter.hasNext()) {
+            SearchDatabase searchDb = searchDbIter.next();
+            locations.put(searchDb.getId(), searchDb.getLocation());
+        }
+
+        return locations;
+    }
+
+    /**
+     * Checks in one streaming pass over the file, that the calculatedMassToCharge of the SpectrumIdentificationItems match their Peptides.
+     * @param xmlFile the mzIdentML file to validate
+     * @throws ValidatorException if the file can not be read
+     */
+    private void checkCalculatedMassToCharge(File xmlFile) throws ValidatorException {
+        this.updateProgress("Checking the calculated m/z of the spectrum identification items" + this. STR_ELLIPSIS);
+        final CalculatedMassToChargeObjectRule calculatedMassToChargeObjectRule = new CalculatedMassToChargeObjectRule(this.ontologyMngr);
+        calculatedMassToChargeObjectRule.setTolerancePpm(this.getMassTolerancePpm());
+        for (ValidatorMessage validatorMessage : calculatedMassToChargeObjectRule.check(xmlFile)) {
+            this.addValidatorMessage(validatorMessage.getRule().getId(), validatorMessage, this.msgLevel);
+        }
+    }
+
+    /**
+     * Checks in one streaming pass over the file, that the PeptideEvidences are consistent with the Enzymes of their SpectrumIdentificationProtocols.
+     * @param xmlFile the mzIdentML file to validate
+     * @throws ValidatorException if the file can not be read
+     */
+    private void checkEnzymeSpecificity(File xmlFile) throws ValidatorException {
+        this.updateProgress("Checking the enzyme specificity of the peptide evidences" + this. STR_ELLIPSIS);
+        final EnzymeSpecificityObjectRule enzymeSpecificityObjectRule = new EnzymeSpecificityObjectRule(this.ontologyMngr);
+        for (ValidatorMessage validatorMessage : enzymeSpecificityObjectRule.check(xmlFile)) {
+            this.addValidatorMessage(validatorMessage.getRule().getId(), validatorMessage, this.msgLevel);
+        }
+    }
+
+    /**
+     * Checks in one streaming pass over the file, that the Modifications of the Peptides match the SearchModifications of the protocols.
+     * @param xmlFile the mzIdentML file to validate
+     * @throws ValidatorException if the file can not be read
+     */
+    private void checkSearchModificationConsistency(File xmlFile) throws ValidatorException {
+        this.updateProgress("Checking the peptide modifications against the search modifications" + this. STR_ELLIPSIS);
+        final SearchModificationConsistencyObjectRule searchModificationConsistencyObjectRule = new SearchModificationConsistencyObjectRule(this.ontologyMngr);
+        searchModificationConsistencyObjectRule.setTolerance(this.getModificationMassTolerance());
+        for (ValidatorMessage validatorMessage : searchModificationConsistencyObjectRule.check(xmlFile)) {
+            this.addValidatorMessage(validatorMessage.getRule().getId(), validatorMessage, this.msgLevel);
+        }
+    }
+
+    /**
+     * Checks in one streaming pass over the file, that the spectra referenced by the SpectrumIdentificationResults exist in the peak list files.
+     * @param xmlFile the mzIdentML file to validate
+     * @throws ValidatorException if the file can not be read
+     */
+    private void checkSpectrumSources(File xmlFile) throws ValidatorException {
+        this.updateProgress("Checking spectra in the peak list files" + this. STR_ELLIPSIS);
+        final SpectrumSourceObjectRule spectrumSourceObjectRule = new SpectrumSourceObjectRule(this.ontologyMngr);
+        for (ValidatorMessage validatorMessage : spectrumSourceObjectRule.check(xmlFile)) {
+            this.addValidatorMessage(validatorMessage.getRule().getId(), validatorMessage, this.msgLevel);
         }
-        
-        return null;
     }
 
     /**
@@ -869,50 +1644,110 @@ public class MzIdentMLValidator extends Validator {
 
     /**
      * Applies and checks all object rules.
+     * The element passes are ordered by the facts their rules produce and consume (see {@link RuleScheduler}),
+     * independent passes are run concurrently. The messages are added in the order of the passes.
+     * The elements of a pass are checked on several threads, if all rules of the pass are thread safe.
      * 
      * @throws ValidatorException 
      */
     private void applyObjectRules() throws ValidatorException {
-        int objectRulesChecked;
-        
         long startTime = System.currentTimeMillis();
 
-        this.checkElementObjectRule(MzIdentMLElement.SpectrumIdentificationProtocol); // should stand on the beginning
-        
-        this.checkElementObjectRule(MzIdentMLElement.CvList);
-        this.checkElementObjectRule(MzIdentMLElement.CvParam);
-        this.checkElementObjectRule(MzIdentMLElement.Param);
-        
-        if (this.gui.isMIAPEValidationSelected()) {
-            this.checkElementObjectRule(MzIdentMLElement.AnalysisSoftware);
-            this.checkElementObjectRule(MzIdentMLElement.Provider);
-        }
-        this.checkElementObjectRule(MzIdentMLElement.Person);
-        this.checkElementObjectRule(MzIdentMLElement.Organization);
-        this.checkElementObjectRule(MzIdentMLElement.PeptideEvidence);
-        this.checkElementObjectRule(MzIdentMLElement.Peptide);
-        this.checkElementObjectRule(MzIdentMLElement.SearchModification);
-        if (this.gui.isMIAPEValidationSelected()) {
-            this.checkElementObjectRule(MzIdentMLElement.Enzyme);
-        }
-        this.checkElementObjectRule(MzIdentMLElement.ProteinDetectionList);
-        this.checkElementObjectRule(MzIdentMLElement.ProteinAmbiguityGroup);
-        if (AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch) {
-            this.checkXLInterActionScorePairing();
+        List<MzIdentMLElement> passes = new ArrayList<>();
+        passes.add(MzIdentMLElement.SpectrumIdentificationProtocol);
+        passes.add(MzIdentMLElement.CvList);
+        passes.add(MzIdentMLElement.CvParam);
+        passes.add(MzIdentMLElement.Param);
+        if (this.isMIAPEValidationSelected()) {
+            passes.add(MzIdentMLElement.AnalysisSoftware);
+            passes.add(MzIdentMLElement.Provider);
+        }
+        passes.add(MzIdentMLElement.Person);
+        passes.add(MzIdentMLElement.Organization);
+        passes.add(MzIdentMLElement.PeptideEvidence);
+        passes.add(MzIdentMLElement.Peptide);
+        passes.add(MzIdentMLElement.SearchModification);
+        if (this.isMIAPEValidationSelected()) {
+            passes.add(MzIdentMLElement.Enzyme);
+        }
+        passes.add(MzIdentMLElement.ProteinDetectionList);
+        passes.add(MzIdentMLElement.ProteinAmbiguityGroup);
+        passes.add(MzIdentMLElement.SpectrumIdentificationItem);
+        if (MzIdentMLValidator.isVersionAtLeast(MzIdentMLValidator.MzIdVersion._1_2)) {
+            passes.add(MzIdentMLElement.DBSequence);
+            passes.add(MzIdentMLElement.SpectrumIdentificationResult);
+        }
+
+        boolean bParallel = this.isParallelObjectRules();
+        RuleScheduler scheduler = new RuleScheduler(this.getObjectRuleList());
+        List<List<MzIdentMLElement>> waves = scheduler.schedule(passes);
+        if (this.LOGGER.isDebugEnabled()) {
+            waves.forEach((wave) -> this.LOGGER.debug("Object rule passes: " + wave.stream().map(MzIdentMLElement::name).collect(Collectors.joining(", "))));
+        }
+
+        ExecutorService executor = bParallel ? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()) : null;
+        try {
+            for (List<MzIdentMLElement> wave : waves) {
+                this.checkCancelled();
+                List<Collection<ValidatorMessage>> results = new ArrayList<>();
+                if (executor != null && wave.size() > 1) {
+                    List<Future<Collection<ValidatorMessage>>> futures = new ArrayList<>();
+                    for (MzIdentMLElement element : wave) {
+                        futures.add(executor.submit(() -> this.checkElementObjectRule(element, scheduler, bParallel)));
+                    }
+                    for (Future<Collection<ValidatorMessage>> future : futures) {
+                        results.add(this.getPassResult(future));
+                    }
+                }
+                else {
+                    for (MzIdentMLElement element : wave) {
+                        results.add(this.checkElementObjectRule(element, scheduler, bParallel));
+                    }
+                }
+                for (Collection<ValidatorMessage> result : results) {
+                    this.addMessages(result, this.msgLevel);
+                }
+                this.publishMessages();
+            }
+        }
+        finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
-        objectRulesChecked = this.checkElementObjectRule(MzIdentMLElement.SpectrumIdentificationItem);
 
-        if (MzIdentMLValidator.currentFileVersion == MzIdentMLValidator.MzIdVersion._1_2) {
-            this.checkElementObjectRule(MzIdentMLElement.DBSequence);
-            //this.checkElementObjectRule(MzIdentMLElement.SpectrumIdentificationList);
-            objectRulesChecked = this.checkElementObjectRule(MzIdentMLElement.SpectrumIdentificationResult);
-            //objectRulesChecked = this.checkElementObjectRule(MzIdentMLElement.ProteinDetectionHypothesis);
+        // consumes the interaction scores of all ProteinAmbiguityGroups
+        if (AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch) {
+            this.checkXLInterActionScorePairing();
+            this.publishMessages();
         }
 
-        this.LOGGER.debug(objectRulesChecked + " object rules checked.");
+        this.LOGGER.debug(this.progress + " object rules checked.");
         this.LOGGER.debug("Object Rule validation done in " + (System.currentTimeMillis() - startTime) + "ms.");
     }
 
+    /**
+     * Waits for the messages of an object rule pass run by the executor.
+     * @param future the future of the pass
+     * @return the messages
+     * @throws ValidatorException if the pass failed
+     */
+    private Collection<ValidatorMessage> getPassResult(Future<Collection<ValidatorMessage>> future) throws ValidatorException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new ValidatorException("Object rule validation interrupted", exc);
+        }
+        catch (ExecutionException exc) {
+            if (exc.getCause() instanceof ValidatorException) {
+                throw (ValidatorException) exc.getCause();
+            }
+            throw new ValidatorException("Object rule validation failed", exc.getCause());
+        }
+    }
+
     /**
      * Checks the pairing of the cross-linking interaction scores (only in cross-linking case).
      */
@@ -929,7 +1764,9 @@ public class MzIdentMLValidator extends Validator {
                 }
             }
             
-            this.gui.bHasXLErrors = this.cntXLInteractionScoringMessages > 0;
+            if (this.gui != null) {
+                this.gui.bHasXLErrors = this.cntXLInteractionScoringMessages > 0;
+            }
         }
     }
     
@@ -942,7 +1779,7 @@ public class MzIdentMLValidator extends Validator {
     private String getXLInteractionScoreMsg(ImmutablePair<String, String> key, HashMap<String, String> pagID2PDHID_Map) {
         StringBuilder strB = new StringBuilder();
         
-        String pagIDs_pdhIDs = this.gui.STR_EMPTY;
+        String pagIDs_pdhIDs = MzIdentMLValidator.STR_EMPTY;
         String pdhID;
         for (String pagID : pagID2PDHID_Map.keySet()) {
             pdhID = pagID2PDHID_Map.get(pagID);
@@ -997,14 +1834,14 @@ public class MzIdentMLValidator extends Validator {
         this.checkElementCvMapping(MzIdentMLElement.SpectrumIdentificationList);    // this includes SIR and SII
         this.checkElementCvMapping(MzIdentMLElement.FragmentationTable);
         this.checkElementCvMapping(MzIdentMLElement.Measure);
-        if (MzIdentMLValidator.currentFileVersion == MzIdentMLValidator.MzIdVersion._1_2) {
+        if (MzIdentMLValidator.isVersionAtLeast(MzIdentMLValidator.MzIdVersion._1_2)) {
             this.checkElementCvMapping(MzIdentMLElement.ProteinDetectionList);
         }
         this.checkElementCvMapping(MzIdentMLElement.ProteinAmbiguityGroup);
         // disabled because is included in the SIL
         // this.checkElementCvMapping(MzIdentMLElement.SpectrumIdentificationResult);
         
-        if (MzIdentMLValidator.currentFileVersion == MzIdentMLValidator.MzIdVersion._1_2) {
+        if (MzIdentMLValidator.isVersionAtLeast(MzIdentMLValidator.MzIdVersion._1_2)) {
             this.checkElementCvMapping(MzIdentMLElement.ProteinDetectionHypothesis);
         }
         
@@ -1059,31 +1896,48 @@ public class MzIdentMLValidator extends Validator {
         
         // now we add all the collected messages from the spectra validators to the general message list
         this.addSyncMessages(sync_msgs, this.msgLevel);        
+        this.publishMessages();
+        this.checkCancelled();
     }
     
     /**
-     * Checks an object rule for an element.
-     * @param element the element to check
-     * @return the number of checked object rules
+     * Checks the object rules for all elements of a type.
+     * The rules checking the consistency of all elements get the facts collected from the elements at the end of the pass.
+     * @param element   the element to check
+     * @param scheduler the scheduler knowing the rules of the pass
+     * @param bParallel true, if the elements may be checked on several threads
+     * @return the messages
      * @throws ValidatorException 
      */
-    private int checkElementObjectRule(MzIdentMLElement element) throws ValidatorException {
-        if (this.gui != null) {
-            this.gui.setProgress(++this.progress, "Validating " + element.getXpath() + this.STR_ELLIPSIS);
+    private Collection<ValidatorMessage> checkElementObjectRule(MzIdentMLElement element, RuleScheduler scheduler, boolean bParallel) throws ValidatorException {
+        synchronized (this.ruleResultLock) {
+            ++this.progress;
+            if (this.gui != null) {
+                this.gui.setProgress(this.progress, "Validating " + element.getXpath() + this.STR_ELLIPSIS);
+            }
         }
-        Iterator<MzIdentMLObject> mzIdentMLIter = this.unmarshaller.unmarshalCollectionFromXpath(element);
+        List<AAggregatingObjectRule<?, ?>> aggregatingRules = scheduler.getAggregatingRules(element);
+        aggregatingRules.forEach((rule) -> rule.beginPass());
 
         Collection<ValidatorMessage> objectRuleResult = new ArrayList<>();
         if (element.getXpath() == null) {
             this.LOGGER.warn("XPath is null for element " + element.name());
         }
-        else if (!mzIdentMLIter.hasNext()) {
-            this.LOGGER.warn(element.getXpath() + " is not present. Maybe is because it is not indexed?");
+        else if (bParallel && this.indexer != null && scheduler.isThreadSafe(element)
+                && this.indexer.getCount(element.getXpath()) >= MzIdentMLValidator.MIN_ELEMENTS_PER_PARALLEL_PASS) {
+            objectRuleResult.addAll(this.checkElementObjectRuleInParallel(element));
         }
         else {
+            Iterator<MzIdentMLObject> mzIdentMLIter = this.unmarshaller.unmarshalCollectionFromXpath(element);
+            if (!mzIdentMLIter.hasNext()) {
+                this.LOGGER.warn(element.getXpath() + " is not present. Maybe is because it is not indexed?");
+            }
+            int ordinal = 0;
             while (mzIdentMLIter.hasNext()) {
+                this.checkCancelled();
                 try {
                     final MzIdentMLObject next = mzIdentMLIter.next();
+                    AAggregatingObjectRule.setElementOrdinal(ordinal++);
                     final Collection<ValidatorMessage> validationResult = this.validate(next);
                     if (validationResult != null && !validationResult.isEmpty())
                         objectRuleResult.addAll(validationResult);
@@ -1096,21 +1950,91 @@ public class MzIdentMLValidator extends Validator {
             }
         }
 
-        // Special handling: Now check the results for the cross-linking case
-        if (MzIdentMLValidator.currentFileVersion == MzIdentMLValidator.MzIdVersion._1_2) {
-            if (AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch) {
-                if (element.getClazz().getName().endsWith("SpectrumIdentificationResult")) {
-                    objectRuleResult.addAll(XLinkSIIObjectRule.checkRulesWithHashMapContent());
-                }
-                else if (element.getClazz().getName().endsWith("Peptide")) {
-                    objectRuleResult.addAll(XLinkPeptideModificationObjectRule.checkRulesWithHashMapContent());
-                }
-            }
+        // now check the facts collected from all elements, e.g. the pairing of cross-link donors and acceptors
+        for (AAggregatingObjectRule<?, ?> rule : aggregatingRules) {
+            objectRuleResult.addAll(rule.endPass());
         }
         
-        this.addMessages(objectRuleResult, this.msgLevel);
-        
-        return this.progress;
+        return objectRuleResult;
+    }
+
+    /**
+     * Checks the object rules for all elements of a type on several threads.
+     * The XML snippets of the elements are read from the element index in the order of the file and unmarshalled by the worker threads.
+     * The messages are returned in the order of the elements.
+     * @param element the element to check
+     * @return the messages
+     * @throws ValidatorException 
+     */
+    private Collection<ValidatorMessage> checkElementObjectRuleInParallel(MzIdentMLElement element) throws ValidatorException {
+        final Iterator<String> xmlIter = this.indexer.getXmlStringIterator(element.getXpath());
+        final ConcurrentSkipListMap<Integer, Collection<ValidatorMessage>> results = new ConcurrentSkipListMap<>();
+        final AtomicInteger nextOrdinal = new AtomicInteger();
+        final AtomicBoolean bNoRule = new AtomicBoolean();
+
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            List<Future<Collection<ValidatorMessage>>> futures = new ArrayList<>();
+            for (int i = 0; i < numberOfThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    while (true) {
+                        String xml;
+                        int ordinal;
+                        synchronized (xmlIter) {
+                            if (bNoRule.get() || this.bCancelled || !xmlIter.hasNext()) {
+                                return Collections.<ValidatorMessage>emptyList();
+                            }
+                            xml = xmlIter.next();
+                            ordinal = nextOrdinal.getAndIncrement();
+                        }
+                        try {
+                            final MzIdentMLObject next = this.unmarshalElement(xml, element.getClazz());
+                            AAggregatingObjectRule.setElementOrdinal(ordinal);
+                            results.put(ordinal, this.validate(next));
+                        }
+                        catch (IllegalArgumentException e) {
+                            this.LOGGER.warn(e.getMessage());
+                            // there is no rule to check this mzIdentML elements, so stop all threads
+                            bNoRule.set(true);
+                        }
+                    }
+                }));
+            }
+            for (Future<Collection<ValidatorMessage>> future : futures) {
+                this.getPassResult(future);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        this.checkCancelled();
+
+        Collection<ValidatorMessage> objectRuleResult = new ArrayList<>();
+        results.values().forEach(objectRuleResult::addAll);
+
+        return objectRuleResult;
+    }
+
+    /**
+     * Unmarshals the XML snippet of an element read from the element index, in the same way as the iterators of jmzIdentML do.
+     * @param <T>   type of the element
+     * @param xml   the XML snippet
+     * @param clazz the class of the element
+     * @return the element
+     * @throws ValidatorException if the snippet can't be unmarshalled
+     */
+    private <T> T unmarshalElement(String xml, Class<T> clazz) throws ValidatorException {
+        try {
+            MzIdentMLNamespaceFilter filter = new MzIdentMLNamespaceFilter();
+            Unmarshaller jaxbUnmarshaller = UnmarshallerFactory.getInstance().initializeUnmarshaller(this.indexer, null, filter);
+            InputSource source = new InputSource(new StringReader(EscapingXMLUtilities.escapeCharacters(xml)));
+
+            return jaxbUnmarshaller.unmarshal(new SAXSource(filter, source), clazz).getValue();
+        }
+        catch (JAXBException exc) {
+            throw new ValidatorException("Could not unmarshal the " + clazz.getSimpleName() + " element", exc);
+        }
     }
 
     /**
@@ -1130,14 +2054,16 @@ public class MzIdentMLValidator extends Validator {
                 
                 @SuppressWarnings("unchecked")
                 final Collection<ValidatorMessage> resultCheck = (Collection<ValidatorMessage>) rule.check(objectToCheck);
-                this.extendedReport.objectRuleExecuted(rule, resultCheck);
+                synchronized (this.ruleResultLock) {
+                    this.extendedReport.objectRuleExecuted(rule, resultCheck);
 
-                if (this.ruleFilterManager != null) {
-                    boolean valid = true;
-                    if (resultCheck != null && !resultCheck.isEmpty()) {
-                        valid = false;
+                    if (this.ruleFilterManager != null) {
+                        boolean valid = true;
+                        if (resultCheck != null && !resultCheck.isEmpty()) {
+                            valid = false;
+                        }
+                        this.ruleFilterManager.updateRulesToSkipByARuleResult(rule, valid);
                     }
-                    this.ruleFilterManager.updateRulesToSkipByARuleResult(rule, valid);
                 }
                 if (resultCheck != null) {
                     messages.addAll(resultCheck);
@@ -1166,11 +2092,12 @@ public class MzIdentMLValidator extends Validator {
 
         if (this.getCvRuleManager() != null) {
             boolean someMappingRuleCanCheck = false;
-            for (CvRule rule : this.getCvRuleManager().getCvRules()) {
+            for (CvRule rule : this.getCompiledCvRules()) {
                 if (rule.canCheck(xPath)) {
                     this.LOGGER.info(rule.getId() + " can check " + xPath);
                     someMappingRuleCanCheck = true;
                     for (Object obj : collection) {
+                        this.checkCancelled();
                         final Collection<ValidatorMessage> resultCheck = rule.check(obj, xPath);
                         if (this.ruleFilterManager != null) {
                             boolean valid = true;
@@ -1194,6 +2121,57 @@ public class MzIdentMLValidator extends Validator {
         return messages;
     }
 
+    /**
+     * Checks the CV mappings of a single object, e.g. a SpectrumIdentificationItem.
+     * @param object the object to check
+     * @param xPath the XPATH
+     * @throws ValidatorException validator exception
+     * @return collection of messages
+     */
+    @Override
+    public Collection<ValidatorMessage> checkCvMapping(Object object, String xPath) throws ValidatorException {
+        Collection<ValidatorMessage> messages = new ArrayList<>();
+
+        if (this.getCvRuleManager() != null) {
+            for (CvRule rule : this.getCompiledCvRules()) {
+                if (rule.canCheck(xPath)) {
+                    messages.addAll(rule.check(object, xPath));
+                }
+            }
+        }
+        else {
+            this.LOGGER.error("The CvRuleManager has not been set up yet.");
+        }
+
+        return messages;
+    }
+
+    /**
+     * Creates the manager of the CV mapping rules and compiles the rules against the loaded ontologies.
+     * Both setCvMappingRules methods create the manager here.
+     * @param ontologyManager   the ontology manager
+     * @param cvMapping         the CV mapping rules
+     */
+    @Override
+    protected void instantiateCvRuleManager(OntologyManager ontologyManager, CvMapping cvMapping) {
+        super.instantiateCvRuleManager(ontologyManager, cvMapping);
+
+        long start = System.currentTimeMillis();
+        List<CvRule> rules = CompiledCvRule.compileAll(this.getCvRuleManager().getCvRules(), ontologyManager);
+        this.LOGGER.info(rules.stream().filter((rule) -> rule instanceof CompiledCvRule && ((CompiledCvRule) rule).isCompiled()).count()
+                + " of " + rules.size() + " cvMapping rules compiled in " + (System.currentTimeMillis() - start) + "ms.");
+        this.compiledCvRules = rules;
+    }
+
+    /**
+     * Gets the CV mapping rules compiled against the loaded ontologies. They are compiled when the rules are set,
+     * the list is published through a volatile field, so the SII worker threads read it without locking.
+     * @return list of rules
+     */
+    private List<CvRule> getCompiledCvRules() {
+        return this.compiledCvRules;
+    }
+
     /**
      * Adds a message
      * @param sync_msgs
@@ -1258,7 +2236,7 @@ public class MzIdentMLValidator extends Validator {
             else {
                 if (errorHandler != null) {
                     errorHandler.getErrorsAsValidatorMessages().stream().forEach((validatorMessage) -> {
-                        String ruleId = this.gui.STR_EMPTY;
+                        String ruleId = MzIdentMLValidator.STR_EMPTY;
                         Rule rule = validatorMessage.getRule();
                         if (rule != null) {
                             ruleId = rule.getId();
@@ -1303,6 +2281,11 @@ public class MzIdentMLValidator extends Validator {
                 list.add(validatorMessage);
                 this.msgs.put(ruleId, list);
             }
+            if (this.messageListener != null) {
+                synchronized (this.unpublishedMsgs) {
+                    this.unpublishedMsgs.add(validatorMessage);
+                }
+            }
             this.extendedReport.setObjectRuleAsInvalid(ruleId);
         }
         else {
@@ -1316,6 +2299,7 @@ public class MzIdentMLValidator extends Validator {
      * @throws ValidatorException 
      */
     private void checkElementCvMapping(MzIdentMLElement element) throws ValidatorException {
+        this.checkCancelled();
         this.updateProgress("Validating " + element.getXpath() + this. STR_ELLIPSIS);
         Iterator<MzIdentMLObject> mzIdMLIter;
         try {
@@ -1346,6 +2330,7 @@ public class MzIdentMLValidator extends Validator {
             }
             
             while (mzIdMLIter.hasNext()) {
+                this.checkCancelled();
                 final MzIdentMLObject next = mzIdMLIter.next();
                 toValidate.add(next);
             }
@@ -1356,6 +2341,7 @@ public class MzIdentMLValidator extends Validator {
             catch (IllegalArgumentException e) {
                 this.LOGGER.info(e.getMessage());
             }
+            this.publishMessages();
         }
         catch (NullPointerException e) {
             // this is because the element has no XPath, and has to be validated in another way
@@ -1373,7 +2359,7 @@ public class MzIdentMLValidator extends Validator {
         if (this.gui != null) {
             this.progress = 0;
             
-            if (this.gui.isMIAPEValidationSelected()) {
+            if (this.isMIAPEValidationSelected()) {
                 progressSteps += 3;
             }
             
@@ -1401,15 +2387,21 @@ public class MzIdentMLValidator extends Validator {
      */
     private void resetCounters() {
         this.progress = 0;
+        this.bCancelled = false;
+        synchronized (this.unpublishedMsgs) {
+            this.unpublishedMsgs.clear();
+        }
         
         // resets the counters to zero
         this.cntMultipleClearedMessages = 0;
         this.cntXMLSchemaValidatingMessages = 0;
         this.cntUnanticipatedCVTerms = 0;
         this.cntXLInteractionScoringMessages = 0;
-        this.gui.cntDoubledUnanticipatedCVTermMessages = 0;
-        this.gui.cntFlawErrors = 0;
-        this.gui.bHasXLErrors = false;
+        if (this.gui != null) {
+            this.gui.cntDoubledUnanticipatedCVTermMessages = 0;
+            this.gui.cntFlawErrors = 0;
+            this.gui.bHasXLErrors = false;
+        }
     }
     
     /**
@@ -1446,8 +2438,10 @@ public class MzIdentMLValidator extends Validator {
             this.ruleFilterManager.restartRulesToSkip();
         }
 
-        // delete all objectRules
+        // delete all objectRules and the loaded rule sets
         this.getObjectRules().clear();
+        this.ruleSets.clear();
+        this.activeRuleSet = null;
 
         // delete all cvMappingRules
         final CvRuleManager cvRuleManager = this.getCvRuleManager();
@@ -1457,14 +2451,14 @@ public class MzIdentMLValidator extends Validator {
 
         // set the new cvMapping rules
         if (cvMappingRuleFile == null) {
-            cvMappingRuleFile = this.gui.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, this.gui.STR_MAPPING);
+            cvMappingRuleFile = this.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, MzIdentMLValidator.STR_MAPPING);
         }
         this.setCvMappingRules(cvMappingRuleFile);
         cvMappingRuleFile.close();
 
         // set the new object rules
         if (objectRuleFile == null) {
-            objectRuleFile = this.gui.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, this.gui.STR_OBJECT);
+            objectRuleFile = this.getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, MzIdentMLValidator.STR_OBJECT);
         }
         this.setObjectRules(objectRuleFile);
         objectRuleFile.close();
@@ -1611,9 +2605,8 @@ public class MzIdentMLValidator extends Validator {
         
         sb.append("CvMappingRule total count: ").append(this.extendedReport.getTotalCvRules()).append(NEW_LINE);
         sb.append("CvMappingRules not run: ").append(this.extendedReport.getNonCheckedCvRules().size()).append(NEW_LINE);
-        String cvMappingRuleColor = this.gui.getInvalidCvMappingColor();
-        int noOfInvalidCvRules = this.extendedReport.getInvalidCvRules().size() - this.gui.cntFlawErrors;
-        if (cvMappingRuleColor.equals(this.gui.COLOR_RED)) {
+        int noOfInvalidCvRules = this.extendedReport.getInvalidCvRules().size() - this.getFlawErrorCount();
+        if (this.gui == null || this.gui.getInvalidCvMappingColor().equals(this.gui.COLOR_RED)) {
             sb.append("CvMappingRules run & invalid: ").append(noOfInvalidCvRules).append(NEW_LINE);
         }
         else {
@@ -1626,9 +2619,8 @@ public class MzIdentMLValidator extends Validator {
         // Object rules
         sb.append("ObjectRules total count: ").append(this.extendedReport.getTotalObjectRules()).append(NEW_LINE);
         sb.append("ObjectRules not run: ").append(this.extendedReport.getObjectRulesNotChecked().size()).append(NEW_LINE);
-        String objRuleColor = this.gui.getInvalidObjectRuleColor();
         int noOfInvalidObjectRules = this.extendedReport.getObjectRulesInvalid().size();
-        if (objRuleColor.equals(this.gui.COLOR_RED)) {
+        if (this.gui == null || this.gui.getInvalidObjectRuleColor().equals(this.gui.COLOR_RED)) {
             sb.append("ObjectRules run & invalid: ").append(noOfInvalidObjectRules).append(NEW_LINE);
         }
         else {
@@ -1637,7 +2629,7 @@ public class MzIdentMLValidator extends Validator {
         sb.append("ObjectRules run & valid: ").append(this.extendedReport.getObjectRulesValid().size()).append(NEW_LINE);
         sb.append(NEW_LINE);
         
-        if (this.gui.jCheckBoxShowUnanticipatedCVTerms.isSelected()) {
+        if (this.isShowUnanticipatedCvTerms()) {
             sb.append("Unanticipated CV terms: ").append(this.cntUnanticipatedCVTerms).append(NEW_LINE);
         }
         if (AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch) {
@@ -1650,7 +2642,7 @@ public class MzIdentMLValidator extends Validator {
         
         if (this.cntMultipleClearedMessages > 0) {
             sb.append(NEW_LINE);
-            sb.append("Messages not reported since they occur more than ").append(this.gui.jSpinner.getValue()).append(" times: ").append(this.cntMultipleClearedMessages + this.gui.cntDoubledUnanticipatedCVTermMessages).append(NEW_LINE);
+            sb.append("Messages not reported since they occur more than ").append(this.getMaxNumberToReportSameMessage()).append(" times: ").append(this.cntMultipleClearedMessages + this.getDoubledUnanticipatedCVTermMessageCount()).append(NEW_LINE);
         }
     
         return sb.toString();
@@ -1661,7 +2653,23 @@ public class MzIdentMLValidator extends Validator {
      * @return the total number of invalid rules
      */
     private int getTotalNumberOfInvalidRules(int invalidCVRules, int invalidObjectRules) {
-        return invalidCVRules + invalidObjectRules + this.cntUnanticipatedCVTerms + this.cntXLInteractionScoringMessages + this.extendedReport.getInvalidSchemaValidation().size() - this.gui.cntFlawErrors - (Integer) this.gui.jSpinner.getValue();
+        return invalidCVRules + invalidObjectRules + this.cntUnanticipatedCVTerms + this.cntXLInteractionScoringMessages + this.extendedReport.getInvalidSchemaValidation().size() - this.getFlawErrorCount() - this.getMaxNumberToReportSameMessage();
+    }
+
+    /**
+     * Gets the number of messages caused by flaws in the rule definitions (counted by the GUI only).
+     * @return the number of flaw error messages
+     */
+    private int getFlawErrorCount() {
+        return this.gui != null ? this.gui.cntFlawErrors : 0;
+    }
+
+    /**
+     * Gets the number of doubled unanticipated CV term messages (counted by the GUI only).
+     * @return the number of doubled unanticipated CV term messages
+     */
+    private int getDoubledUnanticipatedCVTermMessageCount() {
+        return this.gui != null ? this.gui.cntDoubledUnanticipatedCVTermMessages : 0;
     }
     
     /**
@@ -1716,7 +2724,7 @@ public class MzIdentMLValidator extends Validator {
      * @throws URISyntaxException URI syntax exception
      */
     public static void main(String[] args) throws ValidatorException, OntologyLoaderException, URISyntaxException {
-        if (args == null || args.length != 6) {
+        if (args == null || args.length < 6 || args.length > 7) {
             printUsage();
         }
         
@@ -1758,7 +2766,23 @@ public class MzIdentMLValidator extends Validator {
             if (msgs != null) {
                 messages.addAll(msgs);
 
-                System.out.println(validator.getValidatorMessages(messages));
+                if (args.length == 7) {
+                    ReportFormat format = ReportFormat.forFileName(args[6]);
+                    if (format == null) {
+                        format = ReportFormat.JSONL;
+                    }
+                    try (ValidationReportWriter reportWriter = format.createWriter(Files.newBufferedWriter(Paths.get(args[6]), StandardCharsets.UTF_8))) {
+                        long cnt = validator.writeValidatorMessages(messages, reportWriter);
+                        System.out.println(DOUBLE_NEW_LINE + cnt + " messages written to " + args[6]);
+                    }
+                    catch (IOException exc) {
+                        System.err.println(DOUBLE_NEW_LINE + "Could not write the report file: " + exc.getMessage());
+                        exc.printStackTrace(System.err);
+                    }
+                }
+                else {
+                    System.out.println(validator.getValidatorMessages(messages));
+                }
                 System.out.println(NEW_LINE);
                 System.out.println(validator.getStatisticsReport(messages.size()));
                 System.out.println(NEW_LINE);
@@ -1874,7 +2898,7 @@ public class MzIdentMLValidator extends Validator {
      */
     private static void printUsage() {
         printError("Usage:" + DOUBLE_NEW_LINE + TAB  + MzIdentMLValidator.class.getName()
-            + " <ontology_config_file> <cv_mapping_config_file> <coded_rules_config_file> <xml_file_filter_file> <mzml_file_to_validate> <message_level>" + NEW_LINE + NEW_LINE_DOUBLE_TAB + "Where message level can be:" + NEW_LINE_DOUBLE_TAB + " - DEBUG" + NEW_LINE_DOUBLE_TAB + " - INFO" + NEW_LINE_DOUBLE_TAB + " - WARN" + NEW_LINE_DOUBLE_TAB +" - ERROR" + NEW_LINE_DOUBLE_TAB +" - FATAL");
+            + " <ontology_config_file> <cv_mapping_config_file> <coded_rules_config_file> <xml_file_filter_file> <mzml_file_to_validate> <message_level> [<report_file.jsonl|.csv>]" + NEW_LINE + NEW_LINE_DOUBLE_TAB + "Where message level can be:" + NEW_LINE_DOUBLE_TAB + " - DEBUG" + NEW_LINE_DOUBLE_TAB + " - INFO" + NEW_LINE_DOUBLE_TAB + " - WARN" + NEW_LINE_DOUBLE_TAB +" - ERROR" + NEW_LINE_DOUBLE_TAB +" - FATAL");
     }
 
     /**
@@ -1900,6 +2924,24 @@ public class MzIdentMLValidator extends Validator {
         return sb.toString();
     }
 
+    /**
+     * Writes the validator messages to a report writer, one message after the other.
+     * Unlike {@link #getValidatorMessages(Collection)} no report string is built in memory.
+     * Called with the filtered and clustered messages of a finished validation, not while it is running.
+     * @param aMessages     collection of messages
+     * @param reportWriter  the report writer
+     * @return the number of written messages
+     * @throws IOException if the report can not be written
+     */
+    public long writeValidatorMessages(Collection<ValidatorMessage> aMessages, ValidationReportWriter reportWriter) throws IOException {
+        for (ValidatorMessage valMsg : this.clearMultipleMessages(aMessages)) {
+            reportWriter.write(valMsg);
+        }
+        reportWriter.flush();
+
+        return reportWriter.getRecordCount();
+    }
+
     /**
      * Removes messages which occur more than a given number of times.
      * @param aMessages collection of messages
@@ -1927,7 +2969,7 @@ public class MzIdentMLValidator extends Validator {
                 
                 if (msgID_msgLevelMap.containsKey(idLevelPair)) {
                     msgID_msgLevelMap.put(idLevelPair, msgID_msgLevelMap.get(idLevelPair) + 1);
-                    if (msgID_msgLevelMap.get(idLevelPair) < (int) this.gui.jSpinner.getValue()) {
+                    if (msgID_msgLevelMap.get(idLevelPair) < this.getMaxNumberToReportSameMessage()) {
                         clearedMultipleMessages.add(msg);
                     }
                     else {
@@ -2062,7 +3104,7 @@ public class MzIdentMLValidator extends Validator {
         @Override
         public void run() {
             T element;
-            while ((element = this.iterat.next()) != null) {
+            while (!bCancelled && (element = this.iterat.next()) != null) {
                 try {
                     // check cvMapping rules
                     addMessages(checkCvMapping(element, MzIdentMLElement.SpectrumIdentificationItem.getXpath()), msgLevel); // hard coded
@@ -1,7 +1,6 @@
 package psidev.psi.pi.validator;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
 import java.awt.event.ActionEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
@@ -14,22 +13,22 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
-import javax.swing.JTextPane;
 import javax.swing.SpinnerModel;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.filechooser.FileFilter;
-import javax.swing.text.AttributeSet;
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyleContext;
 import javax.xml.bind.JAXBException;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.log4j.LogManager;
@@ -42,7 +41,6 @@ import psidev.psi.pi.rulefilter.RuleFilterManager;
 import psidev.psi.pi.validator.MzIdentMLValidator.MzIdVersion;
 import psidev.psi.pi.validator.objectrules.AdditionalSearchParamsObjectRule;
 import psidev.psi.pi.validator.objectrules.SearchTypeObjectRule;
-import psidev.psi.pi.validator.swingworker.SwingWorker;
 import psidev.psi.tools.cvrReader.CvRuleReaderException;
 import psidev.psi.tools.ontology_manager.impl.local.OntologyLoaderException;
 import psidev.psi.tools.validator.MessageLevel;
@@ -84,6 +82,9 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
     private final String STR_FILE_EXT_MZID      = ".mzid";
     private final String STR_FILE_EXT_XML       = ".xml";
     private final String STR_FILE_EXT_7Z        = ".7z";
+    private final String STR_FILE_EXT_MZID_XZ   = ".mzid.xz";
+    private final String STR_FILE_EXT_MZID_BZ2  = ".mzid.bz2";
+    private final String STR_FILE_EXT_MZID_ZST  = ".mzid.zst";
     public final String STR_EMPTY       = "";
     
     public final String STR_MAPPING    = "mapping";
@@ -98,7 +99,14 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
      */
     private Exception errorException;
     private long runStartTime = -1L;
-    private SwingWorker sw;
+    private final ExecutorService validationExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "mzIdentML validation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Collection<ValidatorMessage>> validationTask = null;
+    private volatile MzIdentMLValidator validator = null;   // kept between the runs, so the ontologies and rules are loaded only once
+    private volatile boolean bCancelRequested = false;
 
     protected RuleFilterManager ruleFilterManager;
     private String lastSelectedPath = this.STR_EMPTY;
@@ -154,8 +162,7 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
         jRadioCleavageRule = new javax.swing.JRadioButton();
         jRadioNoCleavageRule = new javax.swing.JRadioButton();
         jPanel5 = new javax.swing.JPanel();
-        jScrollPane1 = new javax.swing.JScrollPane();
-        jTextPaneMessages = new javax.swing.JTextPane();
+        jPanelMessages = new psidev.psi.pi.validator.ValidatorMessagePanel();
         jPanel6 = new javax.swing.JPanel();
         jProgressBar = new javax.swing.JProgressBar();
         jPanel8 = new javax.swing.JPanel();
@@ -368,18 +375,16 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
 
         jPanel5.setBorder(javax.swing.BorderFactory.createTitledBorder("Messages"));
 
-        jScrollPane1.setViewportView(jTextPaneMessages);
-
         javax.swing.GroupLayout jPanel5Layout = new javax.swing.GroupLayout(jPanel5);
         jPanel5.setLayout(jPanel5Layout);
         jPanel5Layout.setHorizontalGroup(
             jPanel5Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-            .addComponent(jScrollPane1, javax.swing.GroupLayout.Alignment.TRAILING)
+            .addComponent(jPanelMessages, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
         );
         jPanel5Layout.setVerticalGroup(
             jPanel5Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(jPanel5Layout.createSequentialGroup()
-                .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 627, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addComponent(jPanelMessages, javax.swing.GroupLayout.PREFERRED_SIZE, 627, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(0, 29, Short.MAX_VALUE))
         );
 
@@ -616,6 +621,12 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
      * @param evt 
      */
     private void jButtonValidateActionPerformed(ActionEvent evt) {
+        // while validating the button cancels the validation
+        if (this.validationTask != null && !this.validationTask.isDone()) {
+            this.cancelValidation();
+            return;
+        }
+
         // Check input file.
         String input = this.jTextInputFile.getText();
         if (input == null || input.trim().isEmpty()) {
@@ -667,118 +678,140 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
             // no filter rules
         }
 
-        // Call the SwingWorker that will start the validation.
-        this.sw = new SwingWorker() {
-            private MzIdentMLValidator validator = null;
+        this.jPanelMessages.clear();
+        this.jButtonValidate.setText("Cancel");
+        this.jButtonValidate.setToolTipText("Cancel the validation, the messages found so far are shown");
+        this.jButtonValidate.setEnabled(true);
 
-            @Override
-            public Object construct() {
-                Collection<ValidatorMessage> messages = new ArrayList<>();
-                jTextPaneMessages.setCaretPosition(0);
-                jTextPaneMessages.setText("");
-                jProgressBar.setIndeterminate(true);
-                jProgressBar.setString("Initializing validator" + STR_ELLIPSIS);
-                runStartTime = System.currentTimeMillis();
-
-                try {
-                    if (this.validator == null) {
-                        this.loadOntologyFiles();
-                    }
-                    else {
-                        // reset all validator fields except the ontologies
-                        validator.reset(getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, STR_MAPPING),
-                                        getRuleFileInputStream(MzIdentMLValidator.currentFileVersion, STR_OBJECT));
-                    }
+        // run the validation in the background, the messages are shown on the event dispatch thread when it is done or cancelled
+        this.bCancelRequested = false;
+        this.validationTask = CompletableFuture.supplyAsync(() -> this.runValidation(inputFile), this.validationExecutor);
+        this.validationTask.whenComplete((messages, exc) -> SwingUtilities.invokeLater(() -> {
+            if (exc != null) {
+                exc.printStackTrace(System.err);
+                this.notifyOfError((exc.getCause() instanceof Exception) ? (Exception) exc.getCause() : new Exception(exc));
+            }
+            this.validationDone(messages);
+        }));
+    }
 
-                    // this will add to the validator the rules to be skipped
-                    if (ruleFilterManager != null) {
-                        ruleFilterManager.filterRulesByUserOptions(getSelectedOptions());
-                    }
-                }
-                catch (ValidatorException | CvRuleReaderException | IOException e) {
-                    e.printStackTrace(System.err);
-                    notifyOfError(e);
-                }
+    /**
+     * Requests the cancellation of the running validation. The validation stops at the next element.
+     */
+    private void cancelValidation() {
+        this.bCancelRequested = true;
+        this.jButtonValidate.setEnabled(false);
+        this.jProgressBar.setString("Cancelling validation" + STR_ELLIPSIS);
 
-                if (this.validator != null) {
-                    this.resetAfterPressedValidationButton();
+        MzIdentMLValidator currentValidator = this.validator;
+        if (currentValidator != null) {
+            currentValidator.cancel();
+        }
+    }
 
-                    final Collection<ValidatorMessage> validationResult = this.validator.startValidation(inputFile);
-                    if (validationResult != null) {
-                        Collection<ValidatorMessage> clearedMsgs = this.validator.clearMultipleMessages(validationResult);
-                        messages.addAll(clearedMsgs);
-                    }
-                }
+    /**
+     * Validates a file, called on the validation thread.
+     * The validator with its ontologies and rules is created by the first run and kept for the following runs.
+     * @param inputFile the file to validate
+     * @return the messages, the ones found so far if the validation was cancelled
+     */
+    private Collection<ValidatorMessage> runValidation(File inputFile) {
+        Collection<ValidatorMessage> messages = new ArrayList<>();
+        this.jProgressBar.setIndeterminate(true);
+        this.jProgressBar.setString("Initializing validator" + STR_ELLIPSIS);
+        this.runStartTime = System.currentTimeMillis();
+
+        if (this.validator == null) {
+            this.loadOntologyFiles();
+        }
+        else {
+            // reset the results of the last run, but keep the ontologies and the loaded rules
+            this.validator.resetValidationState();
+        }
 
-                return messages;
+        // this will add to the validator the rules to be skipped
+        if (this.ruleFilterManager != null) {
+            this.ruleFilterManager.filterRulesByUserOptions(this.getSelectedOptions());
+        }
+
+        if (this.validator != null && !this.bCancelRequested) {
+            this.resetAfterPressedValidationButton();
+            if (this.bCancelRequested) {
+                this.validator.cancel();
             }
 
-            /**
-             * Common settings to set each time the validation button is pressed.
-             */
-            private void resetAfterPressedValidationButton() {
-                this.validator.setValidatorGUI(MzIdentMLValidatorGUI.this);
-                this.validator.setMessageReportLevel(getSelectedLevel());
-                // this.validator.setSchemaUris(getSchemaUri());
-                this.validator.setSkipSchemaValidation(skipXMLSchemaValidation());
+            final Collection<ValidatorMessage> validationResult = this.validator.startValidation(inputFile);
+            if (validationResult != null) {
+                Collection<ValidatorMessage> clearedMsgs = this.validator.clearMultipleMessages(validationResult);
+                messages.addAll(clearedMsgs);
+            }
+        }
 
-                // set the rule filter manager
-                this.validator.setRuleFilterManager(ruleFilterManager);
+        return messages;
+    }
 
-                jProgressBar.setString("Indexing mzIdentML file" + STR_ELLIPSIS);
-            }
-            
-            /**
-             * Loads the ontology files.
-             */
-            private void loadOntologyFiles() {
-                try {
-                    jProgressBar.setString("Loading configuration files" + STR_ELLIPSIS);
-
-                    InputStream isOntology;
-                    boolean bRemoteOntologies = jCheckBoxUseRemoteOntologies.isSelected();
-                    if (bRemoteOntologies) {
-                        isOntology = getOntologiesFileInputStream("ols.ontologies.file");
-                        MzIdentMLValidatorGUI.LOGGER.debug("Remote ontology: " + isOntology);
-                        if (isOntology != null) {
-                            this.validator = new MzIdentMLValidator(isOntology, MzIdentMLValidatorGUI.this);
-                            isOntology.close();
-                        }
-                        else {
-                            bRemoteOntologies = false;
-                        }
-                    }
+    /**
+     * Common settings to set each time the validation button is pressed.
+     */
+    private void resetAfterPressedValidationButton() {
+        final MessageLevel selectedMsgLevel = this.getSelectedLevel();
+        this.validator.setValidatorGUI(MzIdentMLValidatorGUI.this);
+        this.validator.setMessageReportLevel(selectedMsgLevel);
+        // this.validator.setSchemaUris(getSchemaUri());
+        this.validator.setSkipSchemaValidation(this.skipXMLSchemaValidation());
 
-                    if (!bRemoteOntologies) {
-                        isOntology = getOntologiesFileInputStream("local.ontologies.file");
-                        MzIdentMLValidatorGUI.LOGGER.debug("Local ontology: " + isOntology);
-                        if (isOntology != null) {
-                            // QUICK AND DIRTY HACK
-                            try {
-                                this.validator = new MzIdentMLValidator(isOntology, MzIdentMLValidatorGUI.this);
-                            }
-                            catch (OntologyLoaderException | FileNotFoundException | ValidatorException | CvRuleReaderException exc) {
-                                exc.printStackTrace(System.err);
-                            }
-                            isOntology.close();
-                        }
-                        else {
-                            MzIdentMLValidatorGUI.LOGGER.error("No ontologies file for validation.");
-                        }
-                    }
+        // set the rule filter manager
+        this.validator.setRuleFilterManager(this.ruleFilterManager);
+
+        // show the messages of each element type as soon as it is validated
+        this.validator.setMessageListener((newMsgs) -> SwingUtilities.invokeLater(() -> this.jPanelMessages.addMessages(newMsgs, selectedMsgLevel)));
+
+        this.jProgressBar.setString("Indexing mzIdentML file" + STR_ELLIPSIS);
+    }
+
+    /**
+     * Loads the ontology files and creates the validator.
+     */
+    private void loadOntologyFiles() {
+        try {
+            this.jProgressBar.setString("Loading configuration files" + STR_ELLIPSIS);
+
+            InputStream isOntology;
+            boolean bRemoteOntologies = this.jCheckBoxUseRemoteOntologies.isSelected();
+            if (bRemoteOntologies) {
+                isOntology = this.getOntologiesFileInputStream("ols.ontologies.file");
+                MzIdentMLValidatorGUI.LOGGER.debug("Remote ontology: " + isOntology);
+                if (isOntology != null) {
+                    this.validator = new MzIdentMLValidator(isOntology, MzIdentMLValidatorGUI.this);
+                    isOntology.close();
                 }
-                catch (IOException | OntologyLoaderException | ValidatorException | CvRuleReaderException e) {
-                    e.printStackTrace(System.err);
-                    notifyOfError(e);
+                else {
+                    bRemoteOntologies = false;
                 }
             }
 
-            @Override
-            public void finished() {
-                MzIdentMLValidatorGUI.this.validationDone(this.validator);
+            if (!bRemoteOntologies) {
+                isOntology = this.getOntologiesFileInputStream("local.ontologies.file");
+                MzIdentMLValidatorGUI.LOGGER.debug("Local ontology: " + isOntology);
+                if (isOntology != null) {
+                    // QUICK AND DIRTY HACK
+                    try {
+                        this.validator = new MzIdentMLValidator(isOntology, MzIdentMLValidatorGUI.this);
+                    }
+                    catch (OntologyLoaderException | FileNotFoundException | ValidatorException | CvRuleReaderException exc) {
+                        exc.printStackTrace(System.err);
+                    }
+                    isOntology.close();
+                }
+                else {
+                    MzIdentMLValidatorGUI.LOGGER.error("No ontologies file for validation.");
+                }
             }
-        };
-        sw.start();
+        }
+        catch (IOException | OntologyLoaderException | ValidatorException | CvRuleReaderException e) {
+            e.printStackTrace(System.err);
+            this.notifyOfError(e);
+        }
     }
 
     /**
@@ -861,11 +894,20 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
         return MzIdVersion._1_2.equals(mzIdVersion);
     }
 
+    /**
+     * Checks if the .mzid version is 1.3
+     * @param mzIdVersion the {@link MzIdVersion} of the file to validate: 1.1, 1.2 or 1.3.
+     * @return true if .mzid version is 1.3
+     */
+    private boolean isVersion13(MzIdVersion mzIdVersion) {
+        return MzIdVersion._1_3.equals(mzIdVersion);
+    }
+
     /**
      * Gets the file name/path of a mapping or object rule file.<br>
      * Note: If found in the folder were application has launched it overrides the default files.
      * 
-     * @param mzIdVersion the {@link MzIdVersion} of the file to validate: 1.1 or 1.2.
+     * @param mzIdVersion the {@link MzIdVersion} of the file to validate: 1.1, 1.2 or 1.3.
      * @param ruleKind "mapping" or "object"
      * @return InputStream for the rule file
      * @throws FileNotFoundException file not found exception
@@ -891,6 +933,11 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
             ruleFile = MzIdentMLValidatorGUI.getProperty(propertyName);
             MzIdentMLValidatorGUI.LOGGER.debug(".mzid version: 1.2.0");
         }
+        else if (this.isVersion13(mzIdVersion)) {
+            propertyName += "1.3.0";
+            ruleFile = MzIdentMLValidatorGUI.getProperty(propertyName);
+            MzIdentMLValidatorGUI.LOGGER.debug(".mzid version: 1.3.0");
+        }
         else {
             // set default
             MzIdentMLValidatorGUI.LOGGER.error("Usupported .mzid version: " + mzIdVersion);
@@ -972,9 +1019,10 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
 
     /**
      * Does the finalization work after validataion.
-     * @param validator
+     * @param messages the messages of the validation, null if it failed
      */
-    private void validationDone(MzIdentMLValidator validator) {
+    private void validationDone(Collection<ValidatorMessage> messages) {
+        final MzIdentMLValidator validator = this.validator;
         this.jProgressBar.setValue(this.jProgressBar.getMaximum());
         if (this.errorException != null) {
             String message = this.errorException.getMessage();
@@ -995,7 +1043,12 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
         long delta = System.currentTimeMillis() - this.runStartTime;
         // Reset run start time and moment.
         this.runStartTime = -1L;
-        this.jProgressBar.setString(MzIdentMLValidatorGUI.DEFAULT_PROGRESS_MESSAGE + " (last run took " + (delta / 1000) + " seconds)");
+        if (this.bCancelRequested) {
+            this.jProgressBar.setString("Validation cancelled after " + (delta / 1000) + " seconds, showing the messages found so far");
+        }
+        else {
+            this.jProgressBar.setString(MzIdentMLValidatorGUI.DEFAULT_PROGRESS_MESSAGE + " (last run took " + (delta / 1000) + " seconds)");
+        }
         
         // Re-enable GUI.
         this.reEnableGUI();
@@ -1004,10 +1057,10 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
         // jCheckBoxUseRemoteOntologies.setEnabled(true);
 
         // show results
-        if (validator != null) {
-            int cntMessages = this.showMessages(true, validator);
+        if (validator != null && messages != null) {
+            int cntMessages = this.showMessages(true, validator, messages);
             String reportString = validator.getHtmlStatisticsReport(cntMessages);
-            if (reportString != null) 
+            if (reportString != null && !this.bCancelRequested) 
                 JOptionPane.showMessageDialog(this, new String[] { this.STR_EMPTY, reportString }, "Rule Execution Report", JOptionPane.INFORMATION_MESSAGE);
         }
     }
@@ -1018,6 +1071,8 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
     private void reEnableGUI() {
         this.jTextInputFile.setEnabled(true);
         this.jButtonBrowse.setEnabled(true);
+        this.jButtonValidate.setText("Validate!");
+        this.jButtonValidate.setToolTipText("Start the validation process");
         this.jButtonValidate.setEnabled(true);
         this.jRadioInfoLevel.setEnabled(true);
         this.jRadioDebugLevel.setEnabled(true);
@@ -1043,7 +1098,7 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
      */
     private Collection<ValidatorMessage> filterOutSpecialProcessingMessages(Collection<ValidatorMessage> msgs, ExtendedValidatorReport report) {
         Collection<ValidatorMessage> filteredMsgs = new ArrayList<>();
-        ArrayList<String> messageList = new ArrayList<>();
+        Set<String> messageList = new HashSet<>();
         
         String ruleID, message;
         for (ValidatorMessage msg: msgs) {
@@ -1060,8 +1115,7 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
                 }
             } // flaw errors
             
-            if (!messageList.contains(message)) {
-                messageList.add(message);
+            if (messageList.add(message)) {
 
                 if (msg.getRule() != null) {
                     ruleID = msg.getRule().getId();
@@ -1234,36 +1288,28 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
      * Shows the messages.
      * @param showStatistics 
      * @param validator 
+     * @param msgs the messages of the validation
      * @return int
      */
-    private int showMessages(boolean showStatistics, MzIdentMLValidator validator) {
-        @SuppressWarnings("unchecked")
-        Collection<ValidatorMessage> msgs = (Collection<ValidatorMessage>) this.sw.get();
+    private int showMessages(boolean showStatistics, MzIdentMLValidator validator, Collection<ValidatorMessage> msgs) {
         Collection<ValidatorMessage> messages = this.filterOutSpecialProcessingMessages(msgs, validator.getExtendedReport());
 
-        Color col_BLACK = new Color(0, 0, 0);
-        Color col_RED   = new Color(255, 0, 0);
-        Color col_ORANGE= new Color(255, 128, 64);
-        Color col_GREEN = new Color(0, 160, 0);
         this.bHasCvErrors = false;
         this.bHasCvWarnings = false;
         this.bHasObjErrors = false;
         this.bHasObjWarnings = false;
         
+        StringBuilder report = new StringBuilder();
         if (messages != null && messages.size() > 0) {
-            this.appendMsgToTextPane(this.jTextPaneMessages, "The following messages were obtained during the validation of your XML file:" + NEW_LINE, col_BLACK);
-            
-            MutableInt count = new MutableInt(0);
-            this.appendMsgToTextPane(this.jTextPaneMessages, this.getRedSortedValidatorMessages(messages, count), col_RED);
-            this.appendMsgToTextPane(this.jTextPaneMessages, this.getOrangeSortedValidatorMessages(messages, count), col_ORANGE);
-            this.appendMsgToTextPane(this.jTextPaneMessages, this.getGreenSortedValidatorMessages(messages, count), col_GREEN);
-            this.appendMsgToTextPane(this.jTextPaneMessages, this.getBlackSortedValidatorMessages(messages, count), col_BLACK);
-            this.jTextPaneMessages.setCaretPosition(0);
-            this.jTextPaneMessages.setLocation(0,0 );
+            MessageLevel selectedMsgLevel = this.getSelectedLevel();
+            messages.stream().filter((message) -> (message.getLevel().isSame(selectedMsgLevel) || message.getLevel().isHigher(selectedMsgLevel))).forEach((ValidatorMessage message) -> {
+                MzIdentMLValidatorGUI.this.setFlagsFromRule(message.getRule(), message.getLevel());
+            }); // only messages that have the same message level as selected by the user or a higher one
+            this.jPanelMessages.setMessages(messages, selectedMsgLevel);
         }
         else {
-            this.appendMsgToTextPane(this.jTextPaneMessages, NEW_LINE + NEW_LINE + "No messages were returned by the validator.", col_BLACK);
-            if (this.errorException == null) {
+            report.append("No messages were returned by the validator.").append(NEW_LINE);
+            if (this.errorException == null && !this.bCancelRequested) {
                 JOptionPane.showMessageDialog(MzIdentMLValidatorGUI.this,
                     "Your mzIdentML file validated at the current message level.",
                     "No messages produced.", JOptionPane.INFORMATION_MESSAGE);
@@ -1274,15 +1320,13 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
             if (messages != null) {
                 final String statisticsReport = validator.getStatisticsReport(messages.size());
                 if (statisticsReport != null) {
-                    this.appendMsgToTextPane(this.jTextPaneMessages, NEW_LINE, col_BLACK);
-                    this.appendMsgToTextPane(this.jTextPaneMessages, NEW_LINE, col_BLACK);
-                    this.appendMsgToTextPane(this.jTextPaneMessages, "======== RULE STATISTICS ========", col_BLACK);
-                    this.appendMsgToTextPane(this.jTextPaneMessages, NEW_LINE, col_BLACK);
-                    this.appendMsgToTextPane(this.jTextPaneMessages, statisticsReport, col_BLACK);
-                    this.appendMsgToTextPane(this.jTextPaneMessages, validator.getCvContextReport(), col_BLACK);
+                    report.append("======== RULE STATISTICS ========").append(NEW_LINE);
+                    report.append(statisticsReport);
+                    report.append(validator.getCvContextReport());
                 }
             }
         }
+        this.jPanelMessages.setReport(report.toString());
         
         if (messages != null) {
             int noOfOutFilteredMsgs = msgs.size() - messages.size();
@@ -1292,118 +1336,6 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
             return 0;
         }
     }
-    
-    /**
-     * Appends a coloured message text to the TextPane.
-     * @param txtPane
-     * @param msg
-     * @param color 
-     */
-    private void appendMsgToTextPane(JTextPane txtPane, String msg, Color color)
-    {
-        StyleContext sc = StyleContext.getDefaultStyleContext();
-        
-        AttributeSet attrSet = sc.addAttribute(SimpleAttributeSet.EMPTY, StyleConstants.Foreground, color);
-        attrSet = sc.addAttribute(attrSet, StyleConstants.FontFamily, "Lucida Console");
-        attrSet = sc.addAttribute(attrSet, StyleConstants.FontSize, 11);
-        attrSet = sc.addAttribute(attrSet, StyleConstants.Alignment, StyleConstants.ALIGN_JUSTIFIED);
-
-        txtPane.setCaretPosition(txtPane.getDocument().getLength());
-        txtPane.setCharacterAttributes(attrSet, false);
-        txtPane.replaceSelection(msg);
-    }
-    
-    /**
-     * Gets a string containing all validator messages sorted according to the MessageLevel.
-     * @param aMessages
-     * @param count
-     * @return String of validator messages
-     */
-    private String getRedSortedValidatorMessages(Collection<ValidatorMessage> aMessages, MutableInt count) {
-        StringBuilder strB = new StringBuilder();
-        
-        strB.append(this.getValidatorMessages(aMessages, MessageLevel.FATAL, count));
-        strB.append(this.getValidatorMessages(aMessages, MessageLevel.ERROR, count));
-        
-        return strB.toString();
-    }
-    
-    /**
-     * Gets a string containing all validator messages sorted according to the MessageLevel.
-     * @param aMessages
-     * @param count
-     * @return String of validator messages
-     */
-    private String getOrangeSortedValidatorMessages(Collection<ValidatorMessage> aMessages, MutableInt count) {
-        StringBuilder strB = new StringBuilder();
-        
-        strB.append(this.getValidatorMessages(aMessages, MessageLevel.WARN, count));
-        
-        return strB.toString();
-    }
-    
-    /**
-     * Gets a string containing all validator messages sorted according to the MessageLevel.
-     * @param aMessages
-     * @param count
-     * @return String of validator messages
-     */
-    private String getGreenSortedValidatorMessages(Collection<ValidatorMessage> aMessages, MutableInt count) {
-        StringBuilder strB = new StringBuilder();
-        
-        strB.append(this.getValidatorMessages(aMessages, MessageLevel.INFO, count));
-        strB.append(this.getValidatorMessages(aMessages, MessageLevel.DEBUG, count));
-        
-        return strB.toString();
-    }
-
-    /**
-     * Gets a string containing all validator messages sorted according to the MessageLevel.
-     * @param aMessages
-     * @param count
-     * @return String of validator messages
-     */
-    private String getBlackSortedValidatorMessages(Collection<ValidatorMessage> aMessages, MutableInt count) {
-        StringBuilder strB = new StringBuilder();
-        
-        strB.append(this.getValidatorMessages(aMessages, MessageLevel.SUCCESS, count));
-        
-        return strB.toString();
-    }
-
-    /**
-     * Gets a string containing all validator messages for a given MessageLevel.
-     * @param aMessages
-     * @param specLevel
-     * @param count
-     * @return String of validator messages
-     */
-    private String getValidatorMessages(Collection<ValidatorMessage> aMessages, MessageLevel specLevel, MutableInt count) {
-        StringBuilder sb = new StringBuilder();
-        
-        MessageLevel selectedMsgLevel = this.getSelectedLevel();
-        aMessages.stream().filter((message) -> (message.getLevel().isSame(specLevel) && (message.getLevel().isSame(selectedMsgLevel) || message.getLevel().isHigher(selectedMsgLevel)))).forEach((ValidatorMessage message) -> {
-            count.increment();
-            sb.append(NEW_LINE).append(NEW_LINE).append("Message ").append(count.intValue()).append(":").append(NEW_LINE);
-            final Rule rule = message.getRule();
-            MzIdentMLValidatorGUI.this.setFlagsFromRule(rule, message.getLevel());
-            if (rule != null) {
-                sb.append(MzIdentMLValidatorGUI.this.STR_4_INDENTATION).append("Rule ID: ").append(rule.getId()).append(NEW_LINE);
-            }
-            sb.append(MzIdentMLValidatorGUI.this.STR_4_INDENTATION).append("Level: ").append(message.getLevel()).append(NEW_LINE);
-            if (message.getContext() != null) {
-                sb.append(MzIdentMLValidatorGUI.this.STR_4_INDENTATION).append(message.getContext()).append(NEW_LINE);
-            }
-            sb.append(MzIdentMLValidatorGUI.this.STR_4_INDENTATION).append("--> ").append(message.getMessage()).append(NEW_LINE);
-            if (rule != null && rule.getHowToFixTips() != null) {
-                rule.getHowToFixTips().stream().forEach((howToFixTip) -> {
-                    sb.append(MzIdentMLValidatorGUI.this.STR_4_INDENTATION).append("Tip: ").append(howToFixTip).append(NEW_LINE);
-                });
-            }
-        }); // only get messages that have the same message level as selected by the user
-
-        return sb.toString();
-    }
 
     /**
      * Set the color flags from the rule.
@@ -1507,7 +1439,7 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
      * Select the file to validate.
      */
     private void selectFile() {
-        JFileChooser jfc = this.getFileChooser("Select mzIdentML (.mzid / .mzid.gz) file to validate");
+        JFileChooser jfc = this.getFileChooser("Select mzIdentML (.mzid / .mzid.gz / .mzid.xz / .mzid.bz2 / .mzid.zst) file to validate");
 
         int returnVal = jfc.showOpenDialog(this.jTextInputFile);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
@@ -1562,6 +1494,9 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
                         || f.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID_GZ)
                         || f.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID_ZIP)
                         || f.getName().toLowerCase().endsWith(STR_FILE_EXT_7Z)
+                        || f.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID_XZ)
+                        || f.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID_BZ2)
+                        || f.getName().toLowerCase().endsWith(STR_FILE_EXT_MZID_ZST)
                         || f.getName().toLowerCase().endsWith(STR_FILE_EXT_XML)) {
                     result = true;
                 }
@@ -1759,6 +1694,7 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
     private javax.swing.JPanel jPanel7;
     private javax.swing.JPanel jPanel8;
     private javax.swing.JPanel jPanel9;
+    private psidev.psi.pi.validator.ValidatorMessagePanel jPanelMessages;
     private javax.swing.JProgressBar jProgressBar;
     private javax.swing.JRadioButton jRadioCleavageRule;
     private javax.swing.JRadioButton jRadioDebugLevel;
@@ -1771,10 +1707,8 @@ public class MzIdentMLValidatorGUI extends javax.swing.JPanel implements RuleFil
     private javax.swing.JRadioButton jRadioPMF;
     private javax.swing.JRadioButton jRadioPMFPFF;
     private javax.swing.JRadioButton jRadioWarnLevel;
-    private javax.swing.JScrollPane jScrollPane1;
     public javax.swing.JSpinner jSpinner;
     private javax.swing.JTextField jTextField1;
     private javax.swing.JTextField jTextInputFile;
-    private javax.swing.JTextPane jTextPaneMessages;
     // End of variables declaration//GEN-END:variables
 }
\ No newline at end of file
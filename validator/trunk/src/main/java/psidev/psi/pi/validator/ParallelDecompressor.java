@@ -0,0 +1,471 @@
+package psidev.psi.pi.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import psidev.psi.pi.validator.index.MappedXmlFile;
+
+/**
+ * Decompresses .xz, .bz2 and .zst files with several threads, where the format allows it.
+ * <ul>
+ * <li>xz: the blocks listed in the index of the stream(s) (xz -T, pixz) are decoded concurrently and written at their
+ * uncompressed offsets.</li>
+ * <li>bzip2: concatenated streams (pbzip2) are found by their stream and block headers and decoded concurrently.
+ * A header found by chance inside the compressed data makes the previous part fail, then the file is decoded
+ * sequentially.</li>
+ * <li>zstd: the frames (pzstd, concatenated .zst files) are found by walking the frame and block headers and decoded
+ * concurrently.</li>
+ * </ul>
+ * Files with a single block, stream or frame are decoded sequentially.
+ * The bzip2 and zstd segments are decoded into memory, so the size of a decoded segment and the number of segments
+ * decoded ahead of the writing are bounded.
+ */
+public class ParallelDecompressor {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(ParallelDecompressor.class);
+    private static final long MIN_SEGMENT_SIZE = 1L << 20;          // 1 MB compressed
+    private static final long MAX_SEGMENT_SIZE = 32L << 20;         // 32 MB compressed
+    private static final int MAX_DECODED_SEGMENT_SIZE = 64 << 20;   // 64 MB uncompressed, else the file is decoded sequentially
+    private static final long MAX_PENDING_DECODED_SIZE = 512L << 20; // 512 MB uncompressed decoded ahead of the writing
+    private static final int INITIAL_DECODED_SIZE = 4 << 20;        // 4 MB
+    private static final long MIN_XZ_RANGE_SIZE = 8L << 20;         // 8 MB uncompressed
+    private static final int BUF_SIZE = 1 << 16;
+    private static final byte[] BZIP2_STREAM_MAGIC = {'B', 'Z', 'h'};
+    private static final byte[] BZIP2_BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+    private static final byte[] BZIP2_EOS_MAGIC = {0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90};
+    private static final int ZSTD_FRAME_MAGIC = 0xFD2FB528;
+    private static final int ZSTD_SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int ZSTD_SKIPPABLE_MASK = 0xFFFFFFF0;
+    private static final int ZSTD_BLOCK_TYPE_RLE = 1;
+    private static final int ZSTD_BLOCK_TYPE_RESERVED = 3;
+    private static final int[] ZSTD_DICT_ID_SIZES = {0, 1, 2, 4};
+    private static final int[] ZSTD_FCS_SIZES = {0, 2, 4, 8};
+
+    /**
+     * Opens the decompressing stream of a part of a file.
+     */
+    private interface Decoder {
+        /**
+         * Opens the decompressing stream.
+         * @param in the compressed bytes
+         * @return the decompressed bytes
+         * @throws IOException if the data isn't valid
+         */
+        InputStream open(InputStream in) throws IOException;
+    }
+
+    /**
+     * Members.
+     */
+    private final int numberOfThreads;
+
+    /**
+     * Constructor.
+     * @param numberOfThreads the number of decoding threads
+     */
+    public ParallelDecompressor(int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    /**
+     * Decompresses a .xz file.
+     * @param xzFile        the .xz file
+     * @param unzippedFile  the decompressed file
+     * @throws IOException if the file can't be decompressed
+     */
+    public void decompressXz(File xzFile, File unzippedFile) throws IOException {
+        List<int[]> ranges = new ArrayList<>();
+        long length;
+        try (SeekableXZInputStream xzIS = new SeekableXZInputStream(new SeekableFileInputStream(xzFile))) {
+            length = xzIS.length();
+            int first = 0;
+            long rangeSize = 0L;
+            for (int i = 0; i < xzIS.getBlockCount(); i++) {
+                rangeSize += xzIS.getBlockSize(i);
+                if (rangeSize >= ParallelDecompressor.MIN_XZ_RANGE_SIZE || i == xzIS.getBlockCount() - 1) {
+                    ranges.add(new int[] {first, i + 1});
+                    first = i + 1;
+                    rangeSize = 0L;
+                }
+            }
+        }
+
+        try (RandomAccessFile out = new RandomAccessFile(unzippedFile, "rw")) {
+            out.setLength(length);
+            FileChannel channel = out.getChannel();
+            if (ranges.size() <= 1 || this.numberOfThreads == 1) {
+                for (int[] range : ranges) {
+                    ParallelDecompressor.decodeXzBlocks(xzFile, range, channel);
+                }
+                return;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.numberOfThreads, ranges.size()));
+            try {
+                List<Future<Void>> futures = new ArrayList<>();
+                for (int[] range : ranges) {
+                    futures.add(executor.submit(() -> {
+                        ParallelDecompressor.decodeXzBlocks(xzFile, range, channel);
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Decompressing interrupted", exc);
+            }
+            catch (ExecutionException exc) {
+                throw new IOException("Decompressing " + xzFile.getName() + " failed", exc.getCause());
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Decodes consecutive xz blocks and writes them at their uncompressed offset.
+     * @param xzFile    the .xz file
+     * @param range     the first and the end (exclusive) block
+     * @param channel   the decompressed file
+     * @throws IOException if the blocks can't be decoded
+     */
+    private static void decodeXzBlocks(File xzFile, int[] range, FileChannel channel) throws IOException {
+        try (SeekableXZInputStream xzIS = new SeekableXZInputStream(new SeekableFileInputStream(xzFile))) {
+            long pos = xzIS.getBlockPos(range[0]);
+            long end = xzIS.getBlockPos(range[1] - 1) + xzIS.getBlockSize(range[1] - 1);
+            xzIS.seekToBlock(range[0]);
+            byte[] buffer = new byte[ParallelDecompressor.BUF_SIZE];
+            while (pos < end) {
+                int len = xzIS.read(buffer, 0, (int) Math.min(buffer.length, end - pos));
+                if (len < 0) {
+                    throw new IOException("Unexpected end of " + xzFile.getName());
+                }
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, len);
+                while (bb.hasRemaining()) {
+                    pos += channel.write(bb, pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decompresses a .bz2 file.
+     * @param bzip2File     the .bz2 file
+     * @param unzippedFile  the decompressed file
+     * @throws IOException if the file can't be decompressed
+     */
+    public void decompressBzip2(File bzip2File, File unzippedFile) throws IOException {
+        List<long[]> segments;
+        try (MappedXmlFile mappedFile = new MappedXmlFile(bzip2File)) {
+            segments = ParallelDecompressor.findBzip2Streams(mappedFile);
+        }
+        this.decompressSegments(bzip2File, segments, (in) -> new BZip2CompressorInputStream(in, true), unzippedFile);
+    }
+
+    /**
+     * Decompresses a .zst file.
+     * @param zstdFile      the .zst file
+     * @param unzippedFile  the decompressed file
+     * @throws IOException if the file can't be decompressed
+     */
+    public void decompressZstd(File zstdFile, File unzippedFile) throws IOException {
+        List<long[]> segments;
+        try (RandomAccessFile in = new RandomAccessFile(zstdFile, "r")) {
+            segments = ParallelDecompressor.findZstdFrames(in);
+        }
+        this.decompressSegments(zstdFile, segments, (in) -> new ZstdCompressorInputStream(in), unzippedFile);
+    }
+
+    /**
+     * Splits a bzip2 file at the starts of concatenated streams, into segments of at least {@link #MIN_SEGMENT_SIZE} bytes.
+     * @param mappedFile the bzip2 file
+     * @return the segments (start, end)
+     */
+    private static List<long[]> findBzip2Streams(MappedXmlFile mappedFile) {
+        List<long[]> segments = new ArrayList<>();
+        long length = mappedFile.length();
+        long start = 0L;
+        long pos = ParallelDecompressor.MIN_SEGMENT_SIZE;
+        while (pos < length) {
+            if (ParallelDecompressor.isBzip2StreamStart(mappedFile, pos)) {
+                segments.add(new long[] {start, pos});
+                start = pos;
+                pos += ParallelDecompressor.MIN_SEGMENT_SIZE;
+            }
+            else {
+                pos++;
+            }
+        }
+        segments.add(new long[] {start, length});
+
+        return segments;
+    }
+
+    /**
+     * Checks, if a bzip2 stream starts at a position: 'BZh', the block size '1'...'9' and a block or end of stream header.
+     * @param mappedFile    the bzip2 file
+     * @param pos           the position
+     * @return true, if a stream header is at the position
+     */
+    private static boolean isBzip2StreamStart(MappedXmlFile mappedFile, long pos) {
+        int magicLength = ParallelDecompressor.BZIP2_STREAM_MAGIC.length;
+        if (pos + magicLength + 1 + ParallelDecompressor.BZIP2_BLOCK_MAGIC.length > mappedFile.length()) {
+            return false;
+        }
+        for (int i = 0; i < magicLength; i++) {
+            if (mappedFile.get(pos + i) != ParallelDecompressor.BZIP2_STREAM_MAGIC[i]) {
+                return false;
+            }
+        }
+        byte blockSize = mappedFile.get(pos + magicLength);
+        if (blockSize < '1' || blockSize > '9') {
+            return false;
+        }
+
+        return ParallelDecompressor.matches(mappedFile, pos + magicLength + 1, ParallelDecompressor.BZIP2_BLOCK_MAGIC)
+                || ParallelDecompressor.matches(mappedFile, pos + magicLength + 1, ParallelDecompressor.BZIP2_EOS_MAGIC);
+    }
+
+    /**
+     * Checks, if bytes are at a position.
+     * @param mappedFile    the file
+     * @param pos           the position
+     * @param bytes         the bytes
+     * @return true, if the bytes are at the position
+     */
+    private static boolean matches(MappedXmlFile mappedFile, long pos, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (mappedFile.get(pos + i) != bytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Splits a zstd file at the frame starts, into segments of at least {@link #MIN_SEGMENT_SIZE} bytes.
+     * Skippable frames stay with the following frame.
+     * @param in the zstd file
+     * @return the segments (start, end), a single segment for the whole file if the frames can't be walked
+     * @throws IOException if the file can't be read
+     */
+    private static List<long[]> findZstdFrames(RandomAccessFile in) throws IOException {
+        List<long[]> segments = new ArrayList<>();
+        long length = in.length();
+        long start = 0L;
+        long pos = 0L;
+        byte[] header = new byte[4];
+
+        while (pos < length) {
+            if (pos + 4 > length) {
+                return ParallelDecompressor.wholeFile(length);
+            }
+            in.seek(pos);
+            in.readFully(header, 0, 4);
+            int magic = ParallelDecompressor.littleEndian(header, 4);
+            pos += 4;
+            if ((magic & ParallelDecompressor.ZSTD_SKIPPABLE_MASK) == ParallelDecompressor.ZSTD_SKIPPABLE_MAGIC) {
+                in.readFully(header, 0, 4);
+                pos += 4 + (ParallelDecompressor.littleEndian(header, 4) & 0xFFFFFFFFL);
+                continue;
+            }
+            if (magic != ParallelDecompressor.ZSTD_FRAME_MAGIC) {
+                return ParallelDecompressor.wholeFile(length);
+            }
+
+            int descriptor = in.read();
+            if (descriptor < 0) {
+                return ParallelDecompressor.wholeFile(length);
+            }
+            int fcsFlag = (descriptor >> 6) & 0x3;
+            boolean bSingleSegment = (descriptor & 0x20) != 0;
+            boolean bChecksum = (descriptor & 0x04) != 0;
+            int fcsSize = (fcsFlag == 0 && bSingleSegment) ? 1 : ParallelDecompressor.ZSTD_FCS_SIZES[fcsFlag];
+            pos += 1 + (bSingleSegment ? 0 : 1) + ParallelDecompressor.ZSTD_DICT_ID_SIZES[descriptor & 0x3] + fcsSize;
+
+            boolean bLastBlock = false;
+            while (!bLastBlock) {
+                if (pos + 3 > length) {
+                    return ParallelDecompressor.wholeFile(length);
+                }
+                in.seek(pos);
+                in.readFully(header, 0, 3);
+                int blockHeader = ParallelDecompressor.littleEndian(header, 3);
+                bLastBlock = (blockHeader & 0x1) != 0;
+                int blockType = (blockHeader >> 1) & 0x3;
+                if (blockType == ParallelDecompressor.ZSTD_BLOCK_TYPE_RESERVED) {
+                    return ParallelDecompressor.wholeFile(length);
+                }
+                pos += 3 + ((blockType == ParallelDecompressor.ZSTD_BLOCK_TYPE_RLE) ? 1 : (blockHeader >>> 3));
+            }
+            if (bChecksum) {
+                pos += 4;
+            }
+
+            if (pos - start >= ParallelDecompressor.MIN_SEGMENT_SIZE && pos < length) {
+                segments.add(new long[] {start, pos});
+                start = pos;
+            }
+        }
+        segments.add(new long[] {start, length});
+
+        return segments;
+    }
+
+    /**
+     * Returns the little endian value of the first bytes.
+     * @param bytes the bytes
+     * @param count the number of bytes (max. 4)
+     * @return the value
+     */
+    private static int littleEndian(byte[] bytes, int count) {
+        int value = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns a single segment for the whole file.
+     * @param length the file length
+     * @return the segment
+     */
+    private static List<long[]> wholeFile(long length) {
+        List<long[]> segments = new ArrayList<>();
+        segments.add(new long[] {0L, length});
+
+        return segments;
+    }
+
+    /**
+     * Decodes the segments of a file concurrently and writes them in file order. At most one segment more than
+     * there are threads, and at most {@link #MAX_PENDING_DECODED_SIZE} bytes, are decoded ahead of the writing.
+     * If the segments can't be decoded or a decoded segment is too large, the file is decoded sequentially.
+     * @param compressedFile    the compressed file
+     * @param segments          the segments (start, end)
+     * @param decoder           the decoder of a segment
+     * @param unzippedFile      the decompressed file
+     * @throws IOException if the file can't be decompressed
+     */
+    private void decompressSegments(File compressedFile, List<long[]> segments, Decoder decoder, File unzippedFile) throws IOException {
+        boolean bParallel = segments.size() > 1 && this.numberOfThreads > 1;
+        for (long[] segment : segments) {
+            bParallel &= segment[1] - segment[0] <= ParallelDecompressor.MAX_SEGMENT_SIZE;
+        }
+
+        if (bParallel) {
+            int maxPending = (int) Math.min(this.numberOfThreads + 1, ParallelDecompressor.MAX_PENDING_DECODED_SIZE / ParallelDecompressor.MAX_DECODED_SEGMENT_SIZE);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(Math.min(this.numberOfThreads, maxPending), segments.size()));
+            try (FileChannel in = FileChannel.open(compressedFile.toPath());
+                 OutputStream out = new FileOutputStream(unzippedFile)) {
+                Deque<Future<byte[]>> pending = new ArrayDeque<>();
+                for (long[] segment : segments) {
+                    pending.add(executor.submit(() -> ParallelDecompressor.decodeSegment(in, segment, decoder)));
+                    if (pending.size() >= maxPending) {
+                        out.write(pending.poll().get());
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    out.write(pending.poll().get());
+                }
+
+                return;
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Decompressing interrupted", exc);
+            }
+            catch (ExecutionException exc) {
+                ParallelDecompressor.LOGGER.debug("Decompressing " + compressedFile.getName() + " in " + segments.size()
+                        + " parts failed, decompressing sequentially: " + exc.getCause().getMessage());
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        try (InputStream in = decoder.open(new BufferedInputStream(new FileInputStream(compressedFile), ParallelDecompressor.BUF_SIZE));
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(unzippedFile), ParallelDecompressor.BUF_SIZE)) {
+            ParallelDecompressor.copy(in, out);
+        }
+    }
+
+    /**
+     * Decodes a segment of a file.
+     * @param in        the compressed file
+     * @param segment   the segment (start, end)
+     * @param decoder   the decoder
+     * @return the decompressed bytes
+     * @throws IOException if the segment can't be decoded or is larger than {@link #MAX_DECODED_SEGMENT_SIZE} bytes decoded
+     */
+    private static byte[] decodeSegment(FileChannel in, long[] segment, Decoder decoder) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate((int) (segment[1] - segment[0]));
+        while (compressed.hasRemaining()) {
+            if (in.read(compressed, segment[0] + compressed.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(compressed.capacity() * 4L, ParallelDecompressor.INITIAL_DECODED_SIZE));
+        try (InputStream decoded = decoder.open(new ByteArrayInputStream(compressed.array()))) {
+            byte[] buffer = new byte[ParallelDecompressor.BUF_SIZE];
+            int len;
+            while ((len = decoded.read(buffer)) > 0) {
+                if (out.size() + len > ParallelDecompressor.MAX_DECODED_SEGMENT_SIZE) {
+                    throw new IOException("Decoded segment at " + segment[0] + " exceeds " + ParallelDecompressor.MAX_DECODED_SEGMENT_SIZE + " bytes");
+                }
+                out.write(buffer, 0, len);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Copies a stream.
+     * @param in    the input
+     * @param out   the output
+     * @throws IOException if the input can't be read or the output can't be written
+     */
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[ParallelDecompressor.BUF_SIZE];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+    }
+}
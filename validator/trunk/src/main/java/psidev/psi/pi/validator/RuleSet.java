@@ -0,0 +1,69 @@
+package psidev.psi.pi.validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import psidev.psi.tools.validator.rules.codedrule.ObjectRule;
+import psidev.psi.tools.validator.rules.cvmapping.CvRule;
+import psidev.psi.tools.validator.rules.cvmapping.CvRuleManager;
+
+/**
+ * The cvMapping and object rules loaded for one mzIdentML version and type of validation.
+ * The validator keeps the rule sets it has loaded, so that switching between versions or types of validation,
+ * e.g. in a batch of files or in the validation server, doesn't read and compile the rule files again.
+ */
+class RuleSet {
+
+    /**
+     * Members.
+     */
+    private final CvRuleManager cvRuleManager;
+    private final List<ObjectRule<?>> objectRules;
+    private final List<CvRule> compiledCvRules;
+
+    /**
+     * Constructor.
+     * @param cvRuleManager     the manager of the cvMapping rules
+     * @param objectRules       the object rules
+     * @param compiledCvRules   the compiled cvMapping rules
+     */
+    RuleSet(CvRuleManager cvRuleManager, Collection<? extends ObjectRule<?>> objectRules, List<CvRule> compiledCvRules) {
+        this.cvRuleManager = cvRuleManager;
+        this.objectRules = new ArrayList<>(objectRules);
+        this.compiledCvRules = compiledCvRules;
+    }
+
+    /**
+     * Gets the cache key of a rule set.
+     * @param version           the mzIdentML version
+     * @param validationType    the type of validation
+     * @return the key
+     */
+    static String getKey(MzIdentMLValidator.MzIdVersion version, ValidationType validationType) {
+        return version + "/" + validationType;
+    }
+
+    /**
+     * Gets the manager of the cvMapping rules.
+     * @return the manager
+     */
+    CvRuleManager getCvRuleManager() {
+        return this.cvRuleManager;
+    }
+
+    /**
+     * Gets the object rules.
+     * @return the object rules
+     */
+    List<ObjectRule<?>> getObjectRules() {
+        return this.objectRules;
+    }
+
+    /**
+     * Gets the compiled cvMapping rules.
+     * @return the compiled rules
+     */
+    List<CvRule> getCompiledCvRules() {
+        return this.compiledCvRules;
+    }
+}
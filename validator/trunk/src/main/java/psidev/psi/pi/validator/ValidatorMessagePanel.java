@@ -0,0 +1,610 @@
+package psidev.psi.pi.validator;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.swing.AbstractAction;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.JTextPane;
+import javax.swing.KeyStroke;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import psidev.psi.pi.validator.swingworker.SwingWorker;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorMessage;
+import psidev.psi.tools.validator.rules.Rule;
+
+/**
+ * Results view of the GUI: the validator messages in a table, grouped by level and rule.
+ * The table only renders the visible rows, the text of a message is built when the row is painted or selected.
+ * Filtering, sorting and grouping run in a background thread, the table model is replaced on the event dispatch
+ * thread when done. Clicking a group row collapses or expands the group.
+ * The detail pane shows the selected message, or the report (rule statistics) if no message is selected.
+ */
+public class ValidatorMessagePanel extends JPanel {
+
+    /**
+     * Constants.
+     */
+    private static final long serialVersionUID = 1L;
+    private static final MessageLevel[] LEVELS = {MessageLevel.FATAL, MessageLevel.ERROR, MessageLevel.WARN, MessageLevel.INFO, MessageLevel.DEBUG, MessageLevel.SUCCESS};
+    private static final String[] COLUMN_NAMES = {"#", "Level", "Rule ID", "Message"};
+    private static final int[] COLUMN_WIDTHS = {60, 60, 260, 600};
+    private static final int COL_NUMBER = 0;
+    private static final int COL_LEVEL = 1;
+    private static final int COL_RULE = 2;
+    private static final int FILTER_DELAY_MS = 300;
+    private static final String STR_NO_RULE = "-";
+    private static final String STR_COLLAPSED = "\u25B6 ";
+    private static final String STR_EXPANDED = "\u25BC ";
+    private static final String STR_SEPARATOR = " \u00B7 ";
+    private static final String STR_4_INDENTATION = "    ";
+    private static final String NEW_LINE = System.getProperty("line.separator");
+    private static final Color COLOR_RED = new Color(255, 0, 0);
+    private static final Color COLOR_ORANGE = new Color(255, 128, 64);
+    private static final Color COLOR_GREEN = new Color(0, 160, 0);
+    private static final Color COLOR_BLACK = new Color(0, 0, 0);
+
+    /**
+     * Enums.
+     */
+    public static enum GroupBy {
+        LEVEL_RULE("Level, rule"), RULE_LEVEL("Rule, level"), NONE("None");
+
+        private final String name;
+
+        /**
+         * Constructor.
+         * @param name the name shown in the combo box
+         */
+        private GroupBy(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    /**
+     * Group of messages with the same level and rule.
+     */
+    private static class Group {
+        private final MessageLevel level;
+        private final String ruleId;
+        private final String key;
+        private final String label;
+        private final boolean bCollapsed;
+        private int size;
+
+        /**
+         * Constructor.
+         * @param level         the level
+         * @param ruleId        the rule ID
+         * @param groupBy       the grouping
+         * @param bCollapsed    true, if the messages of the group are hidden
+         */
+        Group(MessageLevel level, String ruleId, GroupBy groupBy, boolean bCollapsed) {
+            this.level = level;
+            this.ruleId = ruleId;
+            this.key = Group.getKey(level, ruleId);
+            this.label = (groupBy == GroupBy.RULE_LEVEL) ? ruleId + ValidatorMessagePanel.STR_SEPARATOR + level : this.key;
+            this.bCollapsed = bCollapsed;
+        }
+
+        /**
+         * Gets the key of a group, which identifies a collapsed group independent of the grouping.
+         * @param level     the level
+         * @param ruleId    the rule ID
+         * @return the key
+         */
+        static String getKey(MessageLevel level, String ruleId) {
+            return level + ValidatorMessagePanel.STR_SEPARATOR + ruleId;
+        }
+    }
+
+    /**
+     * Rows of the table: message indices (&gt;= 0) and group headers (-1 - group index).
+     */
+    private static class View {
+        private final List<ValidatorMessage> messages;
+        private final int[] rows;
+        private final List<Group> groups;
+        private final int messageCount;
+
+        /**
+         * Constructor.
+         * @param messages      the messages
+         * @param rows          the rows
+         * @param groups        the groups
+         * @param messageCount  the number of messages passing the filter
+         */
+        View(List<ValidatorMessage> messages, int[] rows, List<Group> groups, int messageCount) {
+            this.messages = messages;
+            this.rows = rows;
+            this.groups = groups;
+            this.messageCount = messageCount;
+        }
+    }
+
+    /**
+     * Table model of a view, the cell values are derived from the messages when requested.
+     */
+    private static class MessageTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final View view;
+
+        /**
+         * Constructor.
+         * @param view the view
+         */
+        MessageTableModel(View view) {
+            this.view = view;
+        }
+
+        @Override
+        public int getRowCount() {
+            return this.view.rows.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return ValidatorMessagePanel.COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return ValidatorMessagePanel.COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            int entry = this.view.rows[row];
+            if (entry < 0) {
+                Group group = this.view.groups.get(-1 - entry);
+                if (column == ValidatorMessagePanel.COL_NUMBER) {
+                    return (group.bCollapsed ? ValidatorMessagePanel.STR_COLLAPSED : ValidatorMessagePanel.STR_EXPANDED);
+                }
+                else if (column == ValidatorMessagePanel.COL_LEVEL) {
+                    return group.level;
+                }
+                else if (column == ValidatorMessagePanel.COL_RULE) {
+                    return group.ruleId;
+                }
+                return group.label + " (" + group.size + (group.size == 1 ? " message)" : " messages)");
+            }
+
+            ValidatorMessage message = this.view.messages.get(entry);
+            switch (column) {
+                case ValidatorMessagePanel.COL_NUMBER:
+                    return entry + 1;
+                case ValidatorMessagePanel.COL_LEVEL:
+                    return message.getLevel();
+                case ValidatorMessagePanel.COL_RULE:
+                    return ValidatorMessagePanel.getRuleId(message);
+                default:
+                    return message.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Renders the rows in the colour of the level, group rows in bold.
+     */
+    private class MessageCellRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            Component component = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            View view = ValidatorMessagePanel.this.view;
+            int entry = (row < view.rows.length) ? view.rows[row] : 0;
+            MessageLevel level = (entry < 0) ? view.groups.get(-1 - entry).level : view.messages.get(entry).getLevel();
+            if (!isSelected) {
+                component.setForeground(ValidatorMessagePanel.getColor(level));
+            }
+            component.setFont(component.getFont().deriveFont((entry < 0) ? Font.BOLD : Font.PLAIN));
+
+            return component;
+        }
+    }
+
+    /**
+     * Members.
+     */
+    private List<ValidatorMessage> messages = Collections.emptyList();
+    private MessageLevel minLevel = MessageLevel.INFO;
+    private final Set<String> collapsedGroups = new HashSet<>();
+    private View view = new View(Collections.emptyList(), new int[0], Collections.emptyList(), 0);
+    private String report = "";
+    private int viewGeneration = 0;
+    private final JTable table = new JTable();
+    private final JTextField filterField = new JTextField(30);
+    private final JComboBox<GroupBy> groupByCombo = new JComboBox<>(GroupBy.values());
+    private final JLabel countLabel = new JLabel();
+    private final JTextPane detailPane = new JTextPane();
+    private final Timer filterTimer;
+
+    /**
+     * Constructor.
+     */
+    public ValidatorMessagePanel() {
+        super(new BorderLayout());
+
+        this.filterTimer = new Timer(ValidatorMessagePanel.FILTER_DELAY_MS, (evt) -> this.refresh());
+        this.filterTimer.setRepeats(false);
+        this.filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent evt) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent evt) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent evt) {
+                filterTimer.restart();
+            }
+        });
+        this.groupByCombo.addActionListener((evt) -> this.refresh());
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filter:"));
+        filterPanel.add(this.filterField);
+        filterPanel.add(new JLabel("Group by:"));
+        filterPanel.add(this.groupByCombo);
+        filterPanel.add(this.countLabel);
+        this.add(filterPanel, BorderLayout.NORTH);
+
+        this.table.setModel(new MessageTableModel(this.view));
+        this.table.setDefaultRenderer(Object.class, new MessageCellRenderer());
+        this.table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        this.table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        this.table.setFillsViewportHeight(true);
+        this.setColumnWidths();
+        this.table.getSelectionModel().addListSelectionListener((evt) -> {
+            if (!evt.getValueIsAdjusting()) {
+                this.showDetails();
+            }
+        });
+        this.table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent evt) {
+                toggleGroup(table.rowAtPoint(evt.getPoint()));
+            }
+        });
+        this.table.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "toggleGroup");
+        this.table.getActionMap().put("toggleGroup", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                toggleGroup(table.getSelectedRow());
+            }
+        });
+
+        this.detailPane.setEditable(false);
+        this.detailPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(this.table), new JScrollPane(this.detailPane));
+        splitPane.setResizeWeight(0.7);
+        this.add(splitPane, BorderLayout.CENTER);
+
+        this.updateCountLabel();
+    }
+
+    /**
+     * Shows the messages of a validation.
+     * @param messages the messages
+     * @param minLevel the lowest level to show
+     */
+    public void setMessages(Collection<ValidatorMessage> messages, MessageLevel minLevel) {
+        this.messages = new ArrayList<>(messages);
+        this.minLevel = minLevel;
+        this.collapsedGroups.clear();
+        this.refresh();
+    }
+
+    /**
+     * Appends messages to the shown ones, e.g. the messages of a running validation. The collapsed groups are kept.
+     * @param messages the new messages
+     * @param minLevel the lowest level to show
+     */
+    public void addMessages(Collection<ValidatorMessage> messages, MessageLevel minLevel) {
+        List<ValidatorMessage> allMessages = new ArrayList<>(this.messages.size() + messages.size());
+        allMessages.addAll(this.messages);
+        allMessages.addAll(messages);
+        this.messages = allMessages;
+        this.minLevel = minLevel;
+        this.refresh();
+    }
+
+    /**
+     * Sets the report shown in the detail pane while no message is selected.
+     * @param report the report text
+     */
+    public void setReport(String report) {
+        this.report = (report != null) ? report : "";
+        if (this.table.getSelectedRow() < 0) {
+            this.showDetails();
+        }
+    }
+
+    /**
+     * Removes the messages and the report.
+     */
+    public void clear() {
+        this.report = "";
+        this.setMessages(Collections.emptyList(), this.minLevel);
+    }
+
+    /**
+     * Builds the view of the current messages, filter and grouping in a background thread.
+     */
+    private void refresh() {
+        final int generation = ++this.viewGeneration;
+        final List<ValidatorMessage> msgs = this.messages;
+        final MessageLevel level = this.minLevel;
+        final String filter = this.filterField.getText().trim().toLowerCase(Locale.ROOT);
+        final GroupBy groupBy = (GroupBy) this.groupByCombo.getSelectedItem();
+        final Set<String> collapsed = new HashSet<>(this.collapsedGroups);
+
+        new SwingWorker() {
+            @Override
+            public Object construct() {
+                return ValidatorMessagePanel.buildView(msgs, level, filter, groupBy, collapsed);
+            }
+
+            @Override
+            public void finished() {
+                if (generation == viewGeneration && msgs == messages) {
+                    setView((View) this.get());
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Filters, sorts and groups the messages.
+     * @param messages  the messages
+     * @param minLevel  the lowest level to show
+     * @param filter    the lower case text a message, rule ID or context must contain, empty for all messages
+     * @param groupBy   the grouping
+     * @param collapsed the keys of the collapsed groups
+     * @return the view
+     */
+    private static View buildView(List<ValidatorMessage> messages, MessageLevel minLevel, String filter, GroupBy groupBy, Set<String> collapsed) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            ValidatorMessage message = messages.get(i);
+            MessageLevel level = message.getLevel();
+            if ((level.isSame(minLevel) || level.isHigher(minLevel)) && ValidatorMessagePanel.matches(message, filter)) {
+                indices.add(i);
+            }
+        }
+
+        // stable sort, so that the messages of a group stay in the order of the validation
+        if (groupBy == GroupBy.RULE_LEVEL) {
+            indices.sort((i1, i2) -> {
+                int cmp = ValidatorMessagePanel.getRuleId(messages.get(i1)).compareTo(ValidatorMessagePanel.getRuleId(messages.get(i2)));
+                return (cmp != 0) ? cmp : Integer.compare(ValidatorMessagePanel.getRank(messages.get(i1).getLevel()), ValidatorMessagePanel.getRank(messages.get(i2).getLevel()));
+            });
+        }
+        else {
+            indices.sort((i1, i2) -> {
+                int cmp = Integer.compare(ValidatorMessagePanel.getRank(messages.get(i1).getLevel()), ValidatorMessagePanel.getRank(messages.get(i2).getLevel()));
+                return (cmp != 0 || groupBy == GroupBy.NONE) ? cmp : ValidatorMessagePanel.getRuleId(messages.get(i1)).compareTo(ValidatorMessagePanel.getRuleId(messages.get(i2)));
+            });
+        }
+
+        List<Group> groups = new ArrayList<>();
+        int[] rows = new int[indices.size() * ((groupBy == GroupBy.NONE) ? 1 : 2)];
+        int cntRows = 0;
+        Group group = null;
+        for (int index : indices) {
+            if (groupBy != GroupBy.NONE) {
+                ValidatorMessage message = messages.get(index);
+                String ruleId = ValidatorMessagePanel.getRuleId(message);
+                if (group == null || !group.level.isSame(message.getLevel()) || !group.ruleId.equals(ruleId)) {
+                    group = new Group(message.getLevel(), ruleId, groupBy, collapsed.contains(Group.getKey(message.getLevel(), ruleId)));
+                    groups.add(group);
+                    rows[cntRows++] = -groups.size();
+                }
+                group.size++;
+                if (group.bCollapsed) {
+                    continue;
+                }
+            }
+            rows[cntRows++] = index;
+        }
+
+        int[] viewRows = new int[cntRows];
+        System.arraycopy(rows, 0, viewRows, 0, cntRows);
+
+        return new View(messages, viewRows, groups, indices.size());
+    }
+
+    /**
+     * Checks, if the message, rule ID or context of a message contains the filter text.
+     * @param message   the message
+     * @param filter    the lower case filter text
+     * @return true, if the message passes the filter
+     */
+    private static boolean matches(ValidatorMessage message, String filter) {
+        if (filter.isEmpty()) {
+            return true;
+        }
+
+        return (message.getMessage() != null && message.getMessage().toLowerCase(Locale.ROOT).contains(filter))
+                || ValidatorMessagePanel.getRuleId(message).toLowerCase(Locale.ROOT).contains(filter)
+                || (message.getContext() != null && message.getContext().toString().toLowerCase(Locale.ROOT).contains(filter));
+    }
+
+    /**
+     * Sets a new view, keeping the selected message or group selected if it is still shown.
+     * @param newView the view
+     */
+    private void setView(View newView) {
+        int selectedRow = (newView.messages == this.view.messages) ? this.table.getSelectedRow() : -1;
+        int selectedEntry = (selectedRow >= 0 && selectedRow < this.view.rows.length) ? this.view.rows[selectedRow] : Integer.MIN_VALUE;
+        String selectedGroup = (selectedEntry < 0 && selectedEntry != Integer.MIN_VALUE) ? this.view.groups.get(-1 - selectedEntry).key : null;
+
+        this.view = newView;
+        this.table.setModel(new MessageTableModel(newView));
+        this.setColumnWidths();
+        this.updateCountLabel();
+
+        for (int row = 0; row < newView.rows.length; row++) {
+            int entry = newView.rows[row];
+            if ((entry >= 0 && entry == selectedEntry) || (entry < 0 && newView.groups.get(-1 - entry).key.equals(selectedGroup))) {
+                this.table.setRowSelectionInterval(row, row);
+                this.table.scrollRectToVisible(this.table.getCellRect(row, 0, true));
+                return;
+            }
+        }
+        this.showDetails();
+    }
+
+    /**
+     * Collapses or expands a group.
+     * @param row the row of the group header
+     */
+    private void toggleGroup(int row) {
+        if (row < 0 || row >= this.view.rows.length || this.view.rows[row] >= 0) {
+            return;
+        }
+
+        String key = this.view.groups.get(-1 - this.view.rows[row]).key;
+        if (!this.collapsedGroups.remove(key)) {
+            this.collapsedGroups.add(key);
+        }
+        this.refresh();
+    }
+
+    /**
+     * Shows the selected message, or the report if no message is selected.
+     */
+    private void showDetails() {
+        int row = this.table.getSelectedRow();
+        if (row < 0 || row >= this.view.rows.length || this.view.rows[row] < 0) {
+            this.detailPane.setForeground(ValidatorMessagePanel.COLOR_BLACK);
+            this.detailPane.setText(this.report);
+        }
+        else {
+            ValidatorMessage message = this.view.messages.get(this.view.rows[row]);
+            this.detailPane.setForeground(ValidatorMessagePanel.getColor(message.getLevel()));
+            this.detailPane.setText(ValidatorMessagePanel.getDetails(message, this.view.rows[row] + 1));
+        }
+        this.detailPane.setCaretPosition(0);
+    }
+
+    /**
+     * Gets the text of a message with level, rule ID, context and the tips of the rule.
+     * @param message   the message
+     * @param number    the number of the message
+     * @return the text
+     */
+    private static String getDetails(ValidatorMessage message, int number) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("Message ").append(number).append(":").append(ValidatorMessagePanel.NEW_LINE);
+        final Rule rule = message.getRule();
+        if (rule != null) {
+            sb.append(ValidatorMessagePanel.STR_4_INDENTATION).append("Rule ID: ").append(rule.getId()).append(ValidatorMessagePanel.NEW_LINE);
+        }
+        sb.append(ValidatorMessagePanel.STR_4_INDENTATION).append("Level: ").append(message.getLevel()).append(ValidatorMessagePanel.NEW_LINE);
+        if (message.getContext() != null) {
+            sb.append(ValidatorMessagePanel.STR_4_INDENTATION).append(message.getContext()).append(ValidatorMessagePanel.NEW_LINE);
+        }
+        sb.append(ValidatorMessagePanel.STR_4_INDENTATION).append("--> ").append(message.getMessage()).append(ValidatorMessagePanel.NEW_LINE);
+        if (rule != null && rule.getHowToFixTips() != null) {
+            rule.getHowToFixTips().stream().forEach((howToFixTip) -> {
+                sb.append(ValidatorMessagePanel.STR_4_INDENTATION).append("Tip: ").append(howToFixTip).append(ValidatorMessagePanel.NEW_LINE);
+            });
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Sets the preferred column widths.
+     */
+    private void setColumnWidths() {
+        for (int i = 0; i < ValidatorMessagePanel.COLUMN_WIDTHS.length; i++) {
+            this.table.getColumnModel().getColumn(i).setPreferredWidth(ValidatorMessagePanel.COLUMN_WIDTHS[i]);
+        }
+    }
+
+    /**
+     * Shows the number of messages passing the filter.
+     */
+    private void updateCountLabel() {
+        this.countLabel.setText(this.view.messageCount + " of " + this.view.messages.size() + " messages");
+    }
+
+    /**
+     * Gets the rule ID of a message.
+     * @param message the message
+     * @return the rule ID, or "-" if the message has no rule
+     */
+    private static String getRuleId(ValidatorMessage message) {
+        return (message.getRule() != null && message.getRule().getId() != null) ? message.getRule().getId() : ValidatorMessagePanel.STR_NO_RULE;
+    }
+
+    /**
+     * Gets the rank of a level, most severe first.
+     * @param level the level
+     * @return the rank
+     */
+    private static int getRank(MessageLevel level) {
+        for (int i = 0; i < ValidatorMessagePanel.LEVELS.length; i++) {
+            if (ValidatorMessagePanel.LEVELS[i].isSame(level)) {
+                return i;
+            }
+        }
+
+        return ValidatorMessagePanel.LEVELS.length;
+    }
+
+    /**
+     * Gets the colour of a level.
+     * @param level the level
+     * @return the colour
+     */
+    private static Color getColor(MessageLevel level) {
+        if (level.isSame(MessageLevel.FATAL) || level.isSame(MessageLevel.ERROR)) {
+            return ValidatorMessagePanel.COLOR_RED;
+        }
+        else if (level.isSame(MessageLevel.WARN)) {
+            return ValidatorMessagePanel.COLOR_ORANGE;
+        }
+        else if (level.isSame(MessageLevel.INFO) || level.isSame(MessageLevel.DEBUG)) {
+            return ValidatorMessagePanel.COLOR_GREEN;
+        }
+
+        return ValidatorMessagePanel.COLOR_BLACK;
+    }
+}
@@ -0,0 +1,344 @@
+package psidev.psi.pi.validator.cvmapping;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import psidev.psi.tools.cvrReader.mapping.jaxb.CvReference;
+import psidev.psi.tools.cvrReader.mapping.jaxb.CvTerm;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.ontology_manager.OntologyUtils;
+import psidev.psi.tools.ontology_manager.interfaces.OntologyAccess;
+import psidev.psi.tools.ontology_manager.interfaces.OntologyTermI;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.Validator;
+import psidev.psi.tools.validator.ValidatorCvContext;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+import psidev.psi.tools.validator.rules.Rule;
+import psidev.psi.tools.validator.rules.cvmapping.CvRule;
+import psidev.psi.tools.validator.rules.cvmapping.CvRuleImpl;
+import psidev.psi.tools.validator.rules.cvmapping.MappingRuleStatus;
+import psidev.psi.tools.validator.rules.cvmapping.Recommendation;
+
+/**
+ * A CvMappingRule compiled at load time.
+ * CvRuleImpl evaluates the scope and element XPaths with JXPath and asks the ontology for the allowed terms
+ * (including all children) of every CvTerm again for every value it checks. Here the allowed accessions resp. term
+ * names of all CvTerms are expanded once into one hash index, and the XPaths are compiled to getter chains, so
+ * checking a valid object costs one hash probe per cvParam.
+ * Only objects which pass the rule are decided here; whenever the rule is violated, or something can't be evaluated
+ * this way, the check is delegated to the CvRuleImpl, so the messages stay exactly the same.
+ */
+public class CompiledCvRule implements CvRule {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_OR = "OR";
+    private static final String STR_AND = "AND";
+    private static final String STR_XOR = "XOR";
+    private static final String STR_SELF = ".";
+    private static final int[] NO_TERMS = new int[0];
+
+    /**
+     * Members.
+     */
+    private final CvRuleImpl delegate;
+    private final boolean bCompiled;
+    private final String combinationLogic;
+    private final int numberOfTerms;
+    private final boolean[] repeatable;
+    private final Map<String, int[]> termIndex;     // allowed value -> indices of the matching CvTerms
+    private final PropertyPath valuePath;           // element path relative to the scope path
+    private final Map<String, PropertyPath> scopePathByXpath = new ConcurrentHashMap<>();
+    private final PropertyPath notCompilable = PropertyPath.compile(CompiledCvRule.STR_SELF);
+
+    /**
+     * Constructor.
+     * @param delegate          the rule to compile
+     * @param ontologyManager   the ontology manager
+     */
+    private CompiledCvRule(CvRuleImpl delegate, OntologyManager ontologyManager) {
+        this.delegate = delegate;
+
+        List<CvTerm> cvTerms = delegate.getCVTerms() != null ? delegate.getCVTerms() : Collections.emptyList();
+        this.numberOfTerms = cvTerms.size();
+        this.repeatable = new boolean[this.numberOfTerms];
+        this.combinationLogic = delegate.getCvTermsCombinationLogic() != null ? delegate.getCvTermsCombinationLogic().trim().toUpperCase() : null;
+        this.valuePath = CompiledCvRule.compileRelativePath(delegate.getElementPath(), delegate.getScopePath());
+        this.termIndex = this.buildTermIndex(cvTerms, ontologyManager);
+
+        this.bCompiled = this.termIndex != null && this.valuePath != null
+                && (CompiledCvRule.STR_OR.equals(this.combinationLogic) || CompiledCvRule.STR_AND.equals(this.combinationLogic)
+                    || CompiledCvRule.STR_XOR.equals(this.combinationLogic));
+    }
+
+    /**
+     * Compiles all CvRuleImpl rules, other rules are kept as they are.
+     * @param cvRules           the rules of the CvRuleManager
+     * @param ontologyManager   the ontology manager
+     * @return the compiled rules, in the same order
+     */
+    public static List<CvRule> compileAll(Collection<CvRule> cvRules, OntologyManager ontologyManager) {
+        List<CvRule> compiled = new ArrayList<>(cvRules.size());
+        for (CvRule rule : cvRules) {
+            if (rule instanceof CvRuleImpl) {
+                compiled.add(new CompiledCvRule((CvRuleImpl) rule, ontologyManager));
+            }
+            else {
+                compiled.add(rule);
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Expands the CvTerms to the allowed values, exactly as CvRuleImpl does for every value.
+     * @param cvTerms           the CvTerms of the rule
+     * @param ontologyManager   the ontology manager
+     * @return allowed value -> indices of the matching CvTerms, or null if a CvTerm can't be expanded
+     */
+    private Map<String, int[]> buildTermIndex(List<CvTerm> cvTerms, OntologyManager ontologyManager) {
+        if (ontologyManager == null) {
+            return null;
+        }
+
+        Map<String, List<Integer>> valueToTerms = new HashMap<>();
+        Set<String> termKeys = new HashSet<>();
+        for (int i = 0; i < cvTerms.size(); i++) {
+            CvTerm cvTerm = cvTerms.get(i);
+            if (!(cvTerm.getCvIdentifierRef() instanceof CvReference) || !termKeys.add(cvTerm.getTermAccession() + '|' + cvTerm.getTermName())) {
+                return null;    // CvRuleImpl merges CvTerms with the same accession and name, leave that to it
+            }
+            OntologyAccess access = ontologyManager.getOntologyAccess(((CvReference) cvTerm.getCvIdentifierRef()).getCvIdentifier());
+            if (access == null) {
+                return null;
+            }
+            Set<OntologyTermI> validTerms = access.getValidTerms(cvTerm.getTermAccession(), cvTerm.isAllowChildren(), cvTerm.isUseTerm());
+            Collection<String> values = cvTerm.isUseTermName() ? OntologyUtils.getTermNames(validTerms) : OntologyUtils.getAccessions(validTerms);
+            for (String value : values) {
+                valueToTerms.computeIfAbsent(value, (key) -> new ArrayList<>(1)).add(i);
+            }
+            this.repeatable[i] = cvTerm.isIsRepeatable();
+        }
+
+        Map<String, int[]> index = new HashMap<>(valueToTerms.size() * 2);
+        valueToTerms.forEach((value, terms) -> index.put(value, terms.stream().mapToInt(Integer::intValue).toArray()));
+
+        return index;
+    }
+
+    /**
+     * Checks an object. Valid objects are decided by the compiled rule, all others by the CvRuleImpl.
+     * @param object    the object to check
+     * @param xPath     the XPath of the object
+     * @return collection of messages
+     * @throws ValidatorException validator exception
+     */
+    @Override
+    public Collection<ValidatorMessage> check(Object object, String xPath) throws ValidatorException {
+        // the first check of a validation sets the status of the rule, and the success messages are built by the delegate
+        if (!this.bCompiled || object == null || xPath == null || this.delegate.getStatus() != MappingRuleStatus.VALID_RULE
+                || Validator.isValidationSuccessReporting()) {
+            return this.delegate.check(object, xPath);
+        }
+
+        PropertyPath scopePath = this.scopePathByXpath.computeIfAbsent(xPath, (key) -> {
+            PropertyPath path = CompiledCvRule.compileRelativePath(this.delegate.getScopePath(), key);
+            return path != null ? path : this.notCompilable;
+        });
+        if (scopePath == this.notCompilable) {
+            return this.delegate.check(object, xPath);
+        }
+
+        List<Object> scopes = new ArrayList<>();
+        if (!scopePath.select(object, scopes)) {
+            return this.delegate.check(object, xPath);
+        }
+
+        List<String> recognised = new ArrayList<>();
+        List<String> notRecognised = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (Object scope : scopes) {
+            values.clear();
+            if (scope == null || !this.valuePath.select(scope, values) || !this.isValid(values, recognised, notRecognised)) {
+                return this.delegate.check(object, xPath);
+            }
+        }
+
+        // same bookkeeping of the recognised terms as CvRuleImpl.checkValuesAgainstCvTerms
+        ValidatorCvContext cvContext = ValidatorCvContext.getInstance();
+        String elementPath = this.delegate.getElementPath();
+        for (String value : recognised) {
+            cvContext.addRecognised(elementPath, value);
+            cvContext.removeNotRecognised(elementPath, value);
+        }
+        for (String value : notRecognised) {
+            if (!cvContext.isRecognised(elementPath, value)) {
+                cvContext.addNotRecognised(elementPath, value);
+            }
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * Checks the values of one scope object.
+     * @param values        the values pointed to by the element path
+     * @param recognised    the values matching a CvTerm are added here
+     * @param notRecognised the other values are added here
+     * @return true, if CvRuleImpl wouldn't report anything
+     */
+    private boolean isValid(List<Object> values, List<String> recognised, List<String> notRecognised) {
+        if (values.isEmpty()) {
+            return this.numberOfTerms == 0;
+        }
+
+        int[] usage = new int[this.numberOfTerms];
+        for (Object value : values) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            int[] terms = this.termIndex.getOrDefault((String) value, CompiledCvRule.NO_TERMS);
+            for (int term : terms) {
+                usage[term]++;
+            }
+            if (terms.length > 0) {
+                recognised.add((String) value);
+            }
+            else {
+                notRecognised.add((String) value);
+            }
+        }
+
+        int usedTerms = 0;
+        for (int i = 0; i < this.numberOfTerms; i++) {
+            if (usage[i] > 1 && !this.repeatable[i]) {
+                return false;
+            }
+            if (usage[i] > 0) {
+                usedTerms++;
+            }
+        }
+
+        switch (this.combinationLogic) {
+            case CompiledCvRule.STR_OR:
+                return usedTerms > 0;
+            case CompiledCvRule.STR_AND:
+                return usedTerms == this.numberOfTerms;
+            default:
+                return usedTerms == 1;
+        }
+    }
+
+    /**
+     * Compiles a path relative to a prefix, like CvRuleImpl.removeXpathPrefix.
+     * @param path      the absolute path
+     * @param prefix    the absolute prefix
+     * @return the compiled relative path, or null
+     */
+    private static PropertyPath compileRelativePath(String path, String prefix) {
+        if (path == null || prefix == null || prefix.isEmpty() || !path.startsWith(prefix)) {
+            return null;
+        }
+        String relative = path.substring(prefix.length());
+        if (!relative.isEmpty() && !relative.startsWith("/")) {
+            return null;    // e.g. '/a/bc' with prefix '/a/b'
+        }
+
+        return PropertyPath.compile(relative);
+    }
+
+    /**
+     * Checks, if the rule was compiled.
+     * @return true, if the rule can decide valid objects itself
+     */
+    public boolean isCompiled() {
+        return this.bCompiled;
+    }
+
+    /**
+     * Gets the compiled rule.
+     * @return the CvRuleImpl
+     */
+    public CvRuleImpl getDelegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public boolean canCheck(String xPath) {
+        return this.delegate.canCheck(xPath);
+    }
+
+    @Override
+    public String getElementPath() {
+        return this.delegate.getElementPath();
+    }
+
+    @Override
+    public String getScopePath() {
+        return this.delegate.getScopePath();
+    }
+
+    @Override
+    public List<CvTerm> getCVTerms() {
+        return this.delegate.getCVTerms();
+    }
+
+    @Override
+    public String getRequirementLevel() {
+        return this.delegate.getRequirementLevel();
+    }
+
+    @Override
+    public MessageLevel convertCvMappingLevel(Recommendation level) {
+        return this.delegate.convertCvMappingLevel(level);
+    }
+
+    @Override
+    public ValidatorMessage buildMessage(String xpath, Recommendation level, String message, Rule rule) {
+        return this.delegate.buildMessage(xpath, level, message, rule);
+    }
+
+    @Override
+    public MappingRuleStatus getStatus() {
+        return this.delegate.getStatus();
+    }
+
+    @Override
+    public void resetStatus() {
+        this.delegate.resetStatus();
+    }
+
+    @Override
+    public String getId() {
+        return this.delegate.getId();
+    }
+
+    @Override
+    public String getName() {
+        return this.delegate.getName();
+    }
+
+    @Override
+    public String getDescription() {
+        return this.delegate.getDescription();
+    }
+
+    @Override
+    public Collection<String> getHowToFixTips() {
+        return this.delegate.getHowToFixTips();
+    }
+
+    @Override
+    public String toString() {
+        return this.delegate.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package psidev.psi.pi.validator.cvmapping;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.apache.commons.jxpath.JXPathIntrospector;
+
+/**
+ * A simple location path of a CvMappingRule (e.g. 'threshold/cvParam/@accession') compiled to a chain of bean getters.
+ * It selects the same nodes as JXPath does on the JAXB objects: every step reads the JavaBean property of that name,
+ * null values are skipped and collections resp. arrays are expanded to their elements. Like JXPath, a null value of the
+ * last step is selected, if the property has an atomic type (e.g. String or Long).
+ * Paths with predicates, wildcards, axes or functions are not compiled.
+ */
+public class PropertyPath {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_SELF = ".";
+    private static final String STR_SLASH = "/";
+    private static final char CHAR_AT = '@';
+    private static final Pattern SIMPLE_STEP = Pattern.compile("@?[A-Za-z_][A-Za-z0-9_]*");
+    private static final Map<Class<?>, Map<String, Method>> GETTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Members.
+     */
+    private final String[] steps;
+
+    /**
+     * Constructor.
+     * @param steps the property names
+     */
+    private PropertyPath(String[] steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles a relative location path.
+     * @param path the path, e.g. '/threshold', 'cvParam/@accession' or '.'
+     * @return the compiled path, or null if the path is not a simple chain of child steps
+     */
+    public static PropertyPath compile(String path) {
+        if (path == null) {
+            return null;
+        }
+        String trimmed = path.trim();
+        if (trimmed.startsWith(PropertyPath.STR_SLASH)) {
+            trimmed = trimmed.substring(1);
+        }
+        if (trimmed.isEmpty() || trimmed.equals(PropertyPath.STR_SELF)) {
+            return new PropertyPath(new String[0]);
+        }
+
+        String[] steps = trimmed.split(PropertyPath.STR_SLASH, -1);
+        for (int i = 0; i < steps.length; i++) {
+            if (!PropertyPath.SIMPLE_STEP.matcher(steps[i]).matches()) {
+                return null;
+            }
+            if (steps[i].charAt(0) == PropertyPath.CHAR_AT) {
+                if (i < steps.length - 1) {
+                    return null;
+                }
+                steps[i] = steps[i].substring(1);
+            }
+        }
+
+        return new PropertyPath(steps);
+    }
+
+    /**
+     * Selects the nodes of the path.
+     * @param root      the context object
+     * @param results   the selected values are added here
+     * @return false, if a property doesn't exist or can't be read, i.e. the path can't be evaluated this way
+     */
+    public boolean select(Object root, List<Object> results) {
+        return this.select(root, 0, results);
+    }
+
+    /**
+     * Selects the nodes of the remaining steps.
+     * @param node      the current node
+     * @param stepIdx   the index of the next step
+     * @param results   the selected values are added here
+     * @return false, if a property doesn't exist or can't be read
+     */
+    private boolean select(Object node, int stepIdx, List<Object> results) {
+        if (node == null) {
+            return true;
+        }
+        if (node instanceof Collection) {
+            for (Object element : (Collection<?>) node) {
+                if (!this.select(element, stepIdx, results)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (node.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(node); i++) {
+                if (!this.select(Array.get(node, i), stepIdx, results)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (stepIdx == this.steps.length) {
+            results.add(node);
+            return true;
+        }
+
+        Method getter = PropertyPath.getGetters(node.getClass()).get(this.steps[stepIdx]);
+        if (getter == null) {
+            return false;
+        }
+        try {
+            Object value = getter.invoke(node);
+            if (value == null && stepIdx == this.steps.length - 1 && JXPathIntrospector.getBeanInfo(getter.getReturnType()).isAtomic()) {
+                // JXPath points to the null value of an atomic property, but not to a missing element
+                results.add(null);
+                return true;
+            }
+
+            return this.select(value, stepIdx + 1, results);
+        }
+        catch (IllegalAccessException | InvocationTargetException exc) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the getters of the bean properties of a class.
+     * @param clazz the class
+     * @return map of property name to getter
+     */
+    private static Map<String, Method> getGetters(Class<?> clazz) {
+        return PropertyPath.GETTERS.computeIfAbsent(clazz, (key) -> {
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(key);
+                Map<String, Method> getters = new HashMap<>();
+                for (PropertyDescriptor pd : beanInfo.getPropertyDescriptors()) {
+                    if (pd.getReadMethod() != null) {
+                        getters.put(pd.getName(), pd.getReadMethod());
+                    }
+                }
+                return getters;
+            }
+            catch (IntrospectionException exc) {
+                return Collections.emptyMap();
+            }
+        });
+    }
+}
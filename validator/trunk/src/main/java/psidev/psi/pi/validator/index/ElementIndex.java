@@ -0,0 +1,288 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import psidev.psi.tools.xxindex.index.ByteRange;
+import psidev.psi.tools.xxindex.index.IndexElement;
+import psidev.psi.tools.xxindex.index.LineNumberedByteRange;
+
+/**
+ * Byte offset index of an mzIdentML file: xpath -> byte ranges of the elements, class -> id -> element.
+ * The index is a read-only view on its serialized form, which is either a heap buffer (freshly built) or the
+ * memory-mapped sidecar file; only a small directory of the xpaths is kept on the heap.
+ * The byte ranges are read from the buffer on access, the id maps are created on first use per class.
+ * <p>
+ * Layout (big endian, strings as int length + UTF-8 bytes):
+ * <pre>
+ * int magic, int format version, long file length, long file mtime, long file hash, long config hash,
+ * string MzIdentML start tag,
+ * int #xpaths, per xpath: string xpath, int #elements, #elements * (long start, long stop, long line number),
+ * int #classes, per class: string class name, string xpath, int #ids, #ids * (int element ordinal, string id)
+ * </pre>
+ */
+public class ElementIndex {
+
+    /**
+     * Constants.
+     */
+    static final int MAGIC = 0x4D5A4958;      // "MZIX"
+    static final int FORMAT_VERSION = 1;
+    private static final int RANGE_SIZE = 3 * Long.BYTES;
+
+    /**
+     * Members.
+     */
+    private final ByteBuffer buffer;
+    private final long sourceLength;
+    private final long sourceLastModified;
+    private final long sourceHash;
+    private final long configHash;
+    private final String mzIdentMLStartTag;
+    private final Map<String, Section> xpathSections = new LinkedHashMap<>();
+    private final Map<String, Section> idSections = new HashMap<>();
+    private final Map<String, Map<String, IndexElement>> idMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, reads the directory of the serialized index.
+     * @param buffer the serialized index
+     * @throws IOException if the buffer doesn't contain an index of the current format
+     */
+    public ElementIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            ByteBuffer in = buffer.duplicate();
+            if (in.getInt() != ElementIndex.MAGIC || in.getInt() != ElementIndex.FORMAT_VERSION) {
+                throw new IOException("Not an element index of format version " + ElementIndex.FORMAT_VERSION);
+            }
+            this.sourceLength = in.getLong();
+            this.sourceLastModified = in.getLong();
+            this.sourceHash = in.getLong();
+            this.configHash = in.getLong();
+            this.mzIdentMLStartTag = ElementIndex.readString(in);
+
+            int numXpaths = in.getInt();
+            for (int i = 0; i < numXpaths; i++) {
+                String xpath = ElementIndex.readString(in);
+                int count = in.getInt();
+                this.xpathSections.put(xpath, new Section(xpath, in.position(), count));
+                in.position(in.position() + count * ElementIndex.RANGE_SIZE);
+            }
+
+            int numClasses = in.getInt();
+            for (int i = 0; i < numClasses; i++) {
+                String className = ElementIndex.readString(in);
+                String xpath = ElementIndex.readString(in);
+                int count = in.getInt();
+                this.idSections.put(className, new Section(xpath, in.position(), count));
+                for (int j = 0; j < count; j++) {
+                    in.getInt();
+                    int length = in.getInt();
+                    in.position(in.position() + length);
+                }
+            }
+        }
+        catch (BufferUnderflowException | IllegalArgumentException exc) {
+            throw new IOException("Truncated element index", exc);
+        }
+    }
+
+    /**
+     * Gets the length of the indexed file.
+     * @return the length in bytes
+     */
+    public long getSourceLength() {
+        return this.sourceLength;
+    }
+
+    /**
+     * Gets the last modification time of the indexed file.
+     * @return the time in ms
+     */
+    public long getSourceLastModified() {
+        return this.sourceLastModified;
+    }
+
+    /**
+     * Gets the hash of the indexed file.
+     * @return the hash
+     */
+    public long getSourceHash() {
+        return this.sourceHash;
+    }
+
+    /**
+     * Gets the hash of the index configuration the index was built with.
+     * @return the hash
+     */
+    public long getConfigHash() {
+        return this.configHash;
+    }
+
+    /**
+     * Gets the start tag of the MzIdentML root element.
+     * @return the start tag including the attributes
+     */
+    public String getMzIdentMLStartTag() {
+        return this.mzIdentMLStartTag;
+    }
+
+    /**
+     * Gets the indexed xpaths.
+     * @return unmodifiable set of xpaths
+     */
+    public Set<String> getXpaths() {
+        return Collections.unmodifiableSet(this.xpathSections.keySet());
+    }
+
+    /**
+     * Checks, if an xpath is indexed.
+     * @param xpath the xpath
+     * @return true, if indexed
+     */
+    public boolean containsXpath(String xpath) {
+        return this.xpathSections.containsKey(xpath);
+    }
+
+    /**
+     * Gets the number of elements of an xpath.
+     * @param xpath the xpath
+     * @return the number of elements, -1 if the xpath is not indexed
+     */
+    public int getCount(String xpath) {
+        Section section = this.xpathSections.get(xpath);
+
+        return (section != null) ? section.count : -1;
+    }
+
+    /**
+     * Gets the elements of an xpath.
+     * @param xpath the xpath
+     * @return unmodifiable list of the elements in file order, empty if the xpath is not indexed
+     */
+    public List<IndexElement> getElements(String xpath) {
+        Section section = this.xpathSections.get(xpath);
+        if (section == null) {
+            return Collections.emptyList();
+        }
+
+        return new AbstractList<IndexElement>() {
+            @Override
+            public IndexElement get(int ordinal) {
+                if (ordinal < 0 || ordinal >= section.count) {
+                    throw new IndexOutOfBoundsException("Element " + ordinal + " of " + section.count);
+                }
+                return ElementIndex.this.getElement(section, ordinal);
+            }
+
+            @Override
+            public int size() {
+                return section.count;
+            }
+        };
+    }
+
+    /**
+     * Checks, if the ids of a class are mapped.
+     * @param clazz the class
+     * @return true, if there is an id map for the class
+     */
+    public boolean isIdMapped(Class<?> clazz) {
+        return this.idSections.containsKey(clazz.getName());
+    }
+
+    /**
+     * Gets the id map of a class.
+     * @param clazz the class
+     * @return unmodifiable map of id to element, null if the class is not id mapped
+     */
+    public Map<String, IndexElement> getIdMap(Class<?> clazz) {
+        Section idSection = this.idSections.get(clazz.getName());
+        if (idSection == null) {
+            return null;
+        }
+
+        return this.idMaps.computeIfAbsent(clazz.getName(), (key) -> {
+            Section section = this.xpathSections.get(idSection.xpath);
+            if (section == null) {
+                return Collections.emptyMap();
+            }
+            Map<String, IndexElement> idMap = new HashMap<>(Math.max(16, idSection.count * 4 / 3 + 1));
+            ByteBuffer in = this.buffer.duplicate();
+            in.position(idSection.position);
+            for (int i = 0; i < idSection.count; i++) {
+                int ordinal = in.getInt();
+                idMap.put(ElementIndex.readString(in), this.getElement(section, ordinal));
+            }
+            return Collections.unmodifiableMap(idMap);
+        });
+    }
+
+    /**
+     * Gets the serialized index.
+     * @return a read-only view of the whole buffer
+     */
+    ByteBuffer getBuffer() {
+        ByteBuffer view = this.buffer.asReadOnlyBuffer();
+        view.clear();
+
+        return view;
+    }
+
+    /**
+     * Reads an element of a section.
+     * @param section   the section of the xpath
+     * @param ordinal   the ordinal of the element
+     * @return the element
+     */
+    private IndexElement getElement(Section section, int ordinal) {
+        int pos = section.position + ordinal * ElementIndex.RANGE_SIZE;
+        long start = this.buffer.getLong(pos);
+        long stop = this.buffer.getLong(pos + Long.BYTES);
+        long lineNumber = this.buffer.getLong(pos + 2 * Long.BYTES);
+
+        return (lineNumber != IndexElement.NO_LINE_NUMBER) ? new LineNumberedByteRange(start, stop, lineNumber) : new ByteRange(start, stop, lineNumber);
+    }
+
+    /**
+     * Reads a string as length and UTF-8 bytes.
+     * @param in the buffer
+     * @return the string
+     */
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Position and number of entries of an xpath resp. id map in the buffer.
+     */
+    private static class Section {
+        private final String xpath;
+        private final int position;
+        private final int count;
+
+        /**
+         * Constructor.
+         * @param xpath     the xpath
+         * @param position  the position of the first entry
+         * @param count     the number of entries
+         */
+        Section(String xpath, int position, int count) {
+            this.xpath = xpath;
+            this.position = position;
+            this.count = count;
+        }
+    }
+}
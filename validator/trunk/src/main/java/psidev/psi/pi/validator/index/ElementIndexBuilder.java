@@ -0,0 +1,233 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the byte ranges and ids of the indexed elements of a file and serializes them to an {@link ElementIndex}.
+ * The serialized form is the same for the in-memory index and the sidecar file, see {@link ElementIndex} for the layout.
+ */
+public class ElementIndexBuilder {
+
+    /**
+     * Constants.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Members.
+     */
+    private long sourceLength = 0L;
+    private long sourceLastModified = 0L;
+    private long sourceHash = 0L;
+    private long configHash = 0L;
+    private String mzIdentMLStartTag = "";
+    private final Map<String, long[]> ranges = new LinkedHashMap<>();        // xpath -> start, stop, line number triples
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private final Map<String, IdMap> idMaps = new LinkedHashMap<>();         // class name -> ids
+
+    /**
+     * Sets the key of the indexed file.
+     * @param sourceLength          the length of the file
+     * @param sourceLastModified    the last modification time of the file
+     * @param sourceHash            the hash of the file, see {@link ElementIndexStore}
+     * @param configHash            the hash of the index configuration (indexed xpaths, id mapped classes)
+     * @return this builder
+     */
+    public ElementIndexBuilder setSource(long sourceLength, long sourceLastModified, long sourceHash, long configHash) {
+        this.sourceLength = sourceLength;
+        this.sourceLastModified = sourceLastModified;
+        this.sourceHash = sourceHash;
+        this.configHash = configHash;
+
+        return this;
+    }
+
+    /**
+     * Sets the start tag of the MzIdentML root element.
+     * @param mzIdentMLStartTag the start tag including the attributes
+     * @return this builder
+     */
+    public ElementIndexBuilder setMzIdentMLStartTag(String mzIdentMLStartTag) {
+        this.mzIdentMLStartTag = (mzIdentMLStartTag != null) ? mzIdentMLStartTag : "";
+
+        return this;
+    }
+
+    /**
+     * Adds an xpath, even if no element of it is added.
+     * @param xpath the xpath
+     * @return this builder
+     */
+    public ElementIndexBuilder addXpath(String xpath) {
+        if (!this.ranges.containsKey(xpath)) {
+            this.ranges.put(xpath, new long[3 * ElementIndexBuilder.INITIAL_CAPACITY]);
+            this.counts.put(xpath, 0);
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds the byte range of an element. The elements of an xpath must be added in file order.
+     * @param xpath         the xpath of the element
+     * @param start         the offset of the start tag
+     * @param stop          the offset after the end tag
+     * @param lineNumber    the line number of the start tag, or IndexElement.NO_LINE_NUMBER
+     * @return the ordinal of the element within its xpath
+     */
+    public int addElement(String xpath, long start, long stop, long lineNumber) {
+        this.addXpath(xpath);
+        int count = this.counts.get(xpath);
+        long[] triples = this.ranges.get(xpath);
+        if (3 * count + 3 > triples.length) {
+            triples = Arrays.copyOf(triples, 2 * triples.length);
+            this.ranges.put(xpath, triples);
+        }
+        triples[3 * count] = start;
+        triples[3 * count + 1] = stop;
+        triples[3 * count + 2] = lineNumber;
+        this.counts.put(xpath, count + 1);
+
+        return count;
+    }
+
+    /**
+     * Gets the number of elements added for an xpath.
+     * @param xpath the xpath
+     * @return the number of elements, -1 if the xpath was not added
+     */
+    public int getCount(String xpath) {
+        Integer count = this.counts.get(xpath);
+
+        return (count != null) ? count : -1;
+    }
+
+    /**
+     * Gets the start offset of an added element.
+     * @param xpath     the xpath of the element
+     * @param ordinal   the ordinal of the element within its xpath
+     * @return the offset of the start tag
+     */
+    public long getStart(String xpath, int ordinal) {
+        return this.ranges.get(xpath)[3 * ordinal];
+    }
+
+    /**
+     * Gets the stop offset of an added element.
+     * @param xpath     the xpath of the element
+     * @param ordinal   the ordinal of the element within its xpath
+     * @return the offset after the end tag
+     */
+    public long getStop(String xpath, int ordinal) {
+        return this.ranges.get(xpath)[3 * ordinal + 1];
+    }
+
+    /**
+     * Adds the id of an element of an id mapped class.
+     * @param clazz     the class of the element
+     * @param xpath     the xpath of the element
+     * @param ordinal   the ordinal of the element within its xpath
+     * @param id        the id
+     * @return this builder
+     */
+    public ElementIndexBuilder addId(Class<?> clazz, String xpath, int ordinal, String id) {
+        IdMap idMap = this.idMaps.computeIfAbsent(clazz.getName(), (key) -> new IdMap(xpath));
+        idMap.ordinals.add(ordinal);
+        idMap.ids.add(id);
+
+        return this;
+    }
+
+    /**
+     * Adds a class to the id mapped classes, even if no id of it is added.
+     * @param clazz the class
+     * @param xpath the xpath of its elements
+     * @return this builder
+     */
+    public ElementIndexBuilder addIdMappedClass(Class<?> clazz, String xpath) {
+        this.idMaps.computeIfAbsent(clazz.getName(), (key) -> new IdMap(xpath));
+
+        return this;
+    }
+
+    /**
+     * Serializes the collected elements.
+     * @return the index
+     * @throws IOException if the index can't be serialized
+     */
+    public ElementIndex build() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(ElementIndex.MAGIC);
+            out.writeInt(ElementIndex.FORMAT_VERSION);
+            out.writeLong(this.sourceLength);
+            out.writeLong(this.sourceLastModified);
+            out.writeLong(this.sourceHash);
+            out.writeLong(this.configHash);
+            ElementIndexBuilder.writeString(out, this.mzIdentMLStartTag);
+
+            out.writeInt(this.ranges.size());
+            for (Map.Entry<String, long[]> entry : this.ranges.entrySet()) {
+                int count = this.counts.get(entry.getKey());
+                ElementIndexBuilder.writeString(out, entry.getKey());
+                out.writeInt(count);
+                long[] triples = entry.getValue();
+                for (int i = 0; i < 3 * count; i++) {
+                    out.writeLong(triples[i]);
+                }
+            }
+
+            out.writeInt(this.idMaps.size());
+            for (Map.Entry<String, IdMap> entry : this.idMaps.entrySet()) {
+                IdMap idMap = entry.getValue();
+                ElementIndexBuilder.writeString(out, entry.getKey());
+                ElementIndexBuilder.writeString(out, idMap.xpath);
+                out.writeInt(idMap.ids.size());
+                for (int i = 0; i < idMap.ids.size(); i++) {
+                    out.writeInt(idMap.ordinals.get(i));
+                    ElementIndexBuilder.writeString(out, idMap.ids.get(i));
+                }
+            }
+        }
+
+        return new ElementIndex(ByteBuffer.wrap(bos.toByteArray()));
+    }
+
+    /**
+     * Writes a string as length and UTF-8 bytes.
+     * @param out   the output
+     * @param str   the string
+     * @throws IOException if it can't be written
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * The ids of one class.
+     */
+    private static class IdMap {
+        private final String xpath;
+        private final List<Integer> ordinals = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+
+        /**
+         * Constructor.
+         * @param xpath the xpath of the elements
+         */
+        IdMap(String xpath) {
+            this.xpath = xpath;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+import uk.ac.ebi.jmzidml.xml.Constants;
+import uk.ac.ebi.jmzidml.xml.xxindex.MzIdentMLIndexer;
+
+/**
+ * Persists the {@link ElementIndex} of an mzIdentML file as sidecar file (file name + '.mzidx'), so that repeated
+ * validations of the same file don't have to re-index it. Persistence is opt-in, every caller passes bPersistent.
+ * The sidecar is memory-mapped when opened and is only used, if the length, the modification time and the hash
+ * of the file as well as the index configuration (indexed xpaths, id mapped elements of MzIdentMLElement.cfg.xml)
+ * are unchanged. The hash covers the first and the last 64 kB of the file, hashing the whole file would cost as
+ * much as indexing it.
+ * If the directory of the file is not writable, the sidecar is kept in the temp directory.
+ * Files are indexed with the {@link ParallelElementIndexer}.
+ */
+public class ElementIndexStore {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(ElementIndexStore.class);
+    private static final String STR_SIDECAR_EXT = ".mzidx";
+    private static final String STR_TMP_EXT = ".tmp";
+    private static final String STR_TMP_DIR = "mzidentml-index";
+    private static final String STR_NEW_LINE = "\n";
+    private static final int HASH_BLOCK_SIZE = 1 << 16;
+    private static final Pattern ID_PATTERN = Pattern.compile("\\sid\\s*=\\s*['\"]([^'\"]*)['\"]", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Constructor.
+     */
+    private ElementIndexStore() {
+    }
+
+    /**
+     * Opens an indexer for a file.
+     * @param xmlFile           the mzIdentML file
+     * @param bPersistent       true to use resp. write the sidecar index, false to index the file in memory only
+     * @param numberOfThreads   the number of threads indexing the file
+     * @return the indexer to create the MzIdentMLUnmarshaller with
+     * @throws IOException if the file can't be indexed
+     */
+    public static MzIdentMLIndexer openIndexer(File xmlFile, boolean bPersistent, int numberOfThreads) throws IOException {
+        return new MappedMzIdentMLIndexer(xmlFile, ElementIndexStore.getIndex(xmlFile, bPersistent, numberOfThreads));
+    }
+
+    /**
+     * Gets the index of a file.
+     * @param xmlFile           the mzIdentML file
+     * @param bPersistent       true to use resp. write the sidecar index, false to index the file in memory only
+     * @param numberOfThreads   the number of threads indexing the file
+     * @return the index
+     * @throws IOException if the file can't be indexed
+     */
+    public static ElementIndex getIndex(File xmlFile, boolean bPersistent, int numberOfThreads) throws IOException {
+        long sourceHash = ElementIndexStore.computeSourceHash(xmlFile);
+        long configHash = ElementIndexStore.computeConfigHash();
+        File sidecar = ElementIndexStore.getSidecarFile(xmlFile);
+
+        ElementIndex index = bPersistent ? ElementIndexStore.load(sidecar, xmlFile, sourceHash, configHash) : null;
+        if (index != null) {
+            ElementIndexStore.LOGGER.info("Using element index " + sidecar.getAbsolutePath());
+            return index;
+        }
+
+        long start = System.currentTimeMillis();
+        index = ElementIndexStore.build(xmlFile, sourceHash, configHash, numberOfThreads);
+        ElementIndexStore.LOGGER.info("Indexed " + xmlFile.getName() + " in " + (System.currentTimeMillis() - start) + "ms.");
+        if (bPersistent) {
+            ElementIndexStore.save(index, sidecar);
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the sidecar file of a file.
+     * @param xmlFile the mzIdentML file
+     * @return the sidecar next to the file, or in the temp directory if the directory of the file is not writable
+     */
+    public static File getSidecarFile(File xmlFile) {
+        File absFile = xmlFile.getAbsoluteFile();
+        File sidecar = new File(absFile.getPath() + ElementIndexStore.STR_SIDECAR_EXT);
+        File dir = absFile.getParentFile();
+        if (sidecar.canRead() || (dir != null && dir.canWrite())) {
+            return sidecar;
+        }
+
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"), ElementIndexStore.STR_TMP_DIR);
+        return new File(tmpDir, absFile.getName() + "-" + Integer.toHexString(absFile.getPath().hashCode()) + ElementIndexStore.STR_SIDECAR_EXT);
+    }
+
+    /**
+     * Loads and memory-maps a sidecar.
+     * @param sidecar       the sidecar file
+     * @param xmlFile       the mzIdentML file
+     * @param sourceHash    the current hash of the file
+     * @param configHash    the current hash of the index configuration
+     * @return the index or null, if the sidecar doesn't exist, is not readable or outdated
+     */
+    private static ElementIndex load(File sidecar, File xmlFile, long sourceHash, long configHash) {
+        if (!sidecar.isFile() || sidecar.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            ElementIndex index = new ElementIndex(buffer);
+            if (index.getSourceLength() == xmlFile.length()
+                    && index.getSourceLastModified() == xmlFile.lastModified()
+                    && index.getSourceHash() == sourceHash
+                    && index.getConfigHash() == configHash) {
+                return index;
+            }
+            ElementIndexStore.LOGGER.info("Element index " + sidecar.getAbsolutePath() + " is outdated.");
+        }
+        catch (IOException exc) {
+            ElementIndexStore.LOGGER.warn("Could not read element index " + sidecar.getAbsolutePath() + ": " + exc.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes the sidecar. A failure is only logged, the index is used in memory then.
+     * @param index     the index
+     * @param sidecar   the sidecar file
+     */
+    private static void save(ElementIndex index, File sidecar) {
+        File tmpFile = new File(sidecar.getPath() + ElementIndexStore.STR_TMP_EXT);
+        try {
+            File dir = sidecar.getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                Files.createDirectories(dir.toPath());
+            }
+            try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = index.getBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmpFile.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException exc) {
+            ElementIndexStore.LOGGER.warn("Could not write element index " + sidecar.getAbsolutePath() + ": " + exc.getMessage());
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Indexes a file with the parallel indexer.
+     * @param xmlFile           the mzIdentML file
+     * @param sourceHash        the hash of the file
+     * @param configHash        the hash of the index configuration
+     * @param numberOfThreads   the number of threads
+     * @return the index
+     * @throws IOException if the file can't be indexed
+     */
+    private static ElementIndex build(File xmlFile, long sourceHash, long configHash, int numberOfThreads) throws IOException {
+        ElementIndexBuilder builder = new ElementIndexBuilder().setSource(xmlFile.length(), xmlFile.lastModified(), sourceHash, configHash);
+
+        Set<String> xpaths = new HashSet<>();
+        for (String xpath : Constants.XML_INDEXED_XPATHS) {
+            if (xpath != null) {
+                xpaths.add(xpath);
+            }
+        }
+        int numChunks = new ParallelElementIndexer(xpaths, numberOfThreads).index(xmlFile, builder);
+        if (numChunks > 1) {
+            ElementIndexStore.LOGGER.debug("Indexed " + xmlFile.getName() + " in " + numChunks + " parallel chunks.");
+        }
+        ElementIndexStore.addStartTagAndIds(builder, xmlFile);
+
+        return builder.build();
+    }
+
+    /**
+     * Adds the start tag of the MzIdentML element and the ids of the id mapped elements to the byte ranges
+     * collected by an indexer.
+     * @param builder the builder containing the byte ranges
+     * @param xmlFile the mzIdentML file
+     * @throws IOException if the file is not an mzIdentML file or an id mapped element has no id
+     */
+    static void addStartTagAndIds(ElementIndexBuilder builder, File xmlFile) throws IOException {
+        String rootXpath = MzIdentMLElement.MzIdentML.getXpath();
+        if (builder.getCount(rootXpath) < 1) {
+            throw new IOException("Index does not contain mzIdentML root! We are not dealing with an mzIdentML file!");
+        }
+
+        Charset charset = ElementIndexStore.detectCharset(xmlFile);
+        try (MappedXmlFile mappedFile = new MappedXmlFile(xmlFile)) {
+            long rootStart = builder.getStart(rootXpath, 0);
+            String cvListXpath = MzIdentMLElement.CvList.getXpath();
+            if (builder.getCount(cvListXpath) > 0) {
+                // like jmzIdentML: everything from the root element to the CvList
+                builder.setMzIdentMLStartTag(mappedFile.readString(rootStart, builder.getStart(cvListXpath, 0) - 1, charset).replace(ElementIndexStore.STR_NEW_LINE, ""));
+            }
+            else {
+                builder.setMzIdentMLStartTag(mappedFile.readStartTag(rootStart, builder.getStop(rootXpath, 0), charset));
+            }
+
+            for (MzIdentMLElement element : MzIdentMLElement.values()) {
+                if (element.isIdMapped() && element.isIndexed()) {
+                    String xpath = element.getXpath();
+                    builder.addXpath(xpath);      // jmzIdentML also lists the id mapped xpaths without elements
+                    builder.addIdMappedClass(element.getClazz(), xpath);
+                    for (int i = 0; i < builder.getCount(xpath); i++) {
+                        String startTag = mappedFile.readStartTag(builder.getStart(xpath, i), builder.getStop(xpath, i), charset);
+                        Matcher matcher = ElementIndexStore.ID_PATTERN.matcher(startTag);
+                        if (!matcher.find()) {
+                            throw new IOException("Error initializing ID cache: No id attribute found for element " + startTag);
+                        }
+                        builder.addId(element.getClazz(), xpath, i, matcher.group(1));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Detects the encoding of a file from its XML declaration.
+     * @param xmlFile the XML file
+     * @return the encoding, UTF-8 if it can't be detected
+     */
+    static Charset detectCharset(File xmlFile) {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile))) {
+            return ObjectRuleUtil.getDeclaredCharset(is);
+        }
+        catch (IOException exc) {
+            ElementIndexStore.LOGGER.warn("Could not detect the encoding of " + xmlFile.getName() + ": " + exc.getMessage());
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Computes the hash of the first and the last block of a file.
+     * @param xmlFile the file
+     * @return the CRC32 of the blocks
+     * @throws IOException if the file can't be read
+     */
+    static long computeSourceHash(File xmlFile) throws IOException {
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile raf = new RandomAccessFile(xmlFile, "r")) {
+            long length = raf.length();
+            byte[] block = new byte[(int) Math.min(length, ElementIndexStore.HASH_BLOCK_SIZE)];
+            raf.readFully(block);
+            crc.update(block);
+            if (length > ElementIndexStore.HASH_BLOCK_SIZE) {
+                block = new byte[(int) Math.min(length - ElementIndexStore.HASH_BLOCK_SIZE, ElementIndexStore.HASH_BLOCK_SIZE)];
+                raf.seek(length - block.length);
+                raf.readFully(block);
+                crc.update(block);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Computes the hash of the index configuration, i.e. the indexed xpaths and the id mapped elements.
+     * @return the CRC32 of the configuration
+     */
+    static long computeConfigHash() {
+        List<String> config = new ArrayList<>();
+        for (String xpath : Constants.XML_INDEXED_XPATHS) {
+            if (xpath != null) {
+                config.add(xpath);
+            }
+        }
+        Collections.sort(config);
+        for (MzIdentMLElement element : MzIdentMLElement.values()) {
+            if (element.isIdMapped() && element.isIndexed()) {
+                config.add(element.getClazz().getName());
+            }
+        }
+        config.add(String.valueOf(ElementIndex.FORMAT_VERSION));
+
+        CRC32 crc = new CRC32();
+        crc.update(String.join(ElementIndexStore.STR_NEW_LINE, config).getBytes(StandardCharsets.UTF_8));
+
+        return crc.getValue();
+    }
+}
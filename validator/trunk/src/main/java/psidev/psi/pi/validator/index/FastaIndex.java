@@ -0,0 +1,278 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import psidev.psi.pi.validator.objectrules.util.IdDictionary;
+
+/**
+ * Offset index of a FASTA file, to read the sequence of an accession from the memory mapped file without loading the database.
+ * The index is kept in a samtools-style .fai file (name, length, offset, residues per line, bytes per line) next to the FASTA file,
+ * or in the temp directory if that directory is not writable, and is rebuilt when the FASTA file is newer.
+ * The name of an entry is the first word of its header line, for UniProt style names (db|accession|entry name)
+ * the accession and the entry name are also looked up.
+ */
+public class FastaIndex implements Closeable {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(FastaIndex.class);
+    private static final String STR_FAI_EXT = ".fai";
+    private static final String STR_TMP_EXT = ".tmp";
+    private static final String STR_TMP_DIR = "mzidentml-index";
+    private static final String STR_SEPARATOR = "\t";
+    private static final byte HEADER_START = '>';
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Members.
+     */
+    private final MappedXmlFile fasta;
+    private final IdDictionary names = new IdDictionary();
+    private long[] offsets = new long[FastaIndex.INITIAL_CAPACITY];    // name -> offset of the first residue
+    private int[] lengths = new int[FastaIndex.INITIAL_CAPACITY];      // name -> number of residues
+    private int[] lineBases = new int[FastaIndex.INITIAL_CAPACITY];    // name -> residues per line
+    private int[] lineWidths = new int[FastaIndex.INITIAL_CAPACITY];   // name -> bytes per line
+    private int numberOfEntries = 0;
+
+    /**
+     * Constructor, maps the FASTA file.
+     * @param file the FASTA file
+     * @throws IOException if the file can't be mapped
+     */
+    private FastaIndex(File file) throws IOException {
+        this.fasta = new MappedXmlFile(file);
+    }
+
+    /**
+     * Opens the index of a FASTA file, loads the .fai file if it's up to date, otherwise builds and writes it.
+     * @param file the FASTA file
+     * @return the index
+     * @throws IOException if the FASTA file can't be read
+     */
+    public static FastaIndex open(File file) throws IOException {
+        FastaIndex index = new FastaIndex(file);
+        File faiFile = FastaIndex.getFaiFile(file);
+        if (!faiFile.isFile() || faiFile.lastModified() < file.lastModified() || !index.load(faiFile)) {
+            index.build();
+            index.save(faiFile);
+        }
+        index.addAliases();
+
+        return index;
+    }
+
+    /**
+     * Gets the .fai file of a FASTA file.
+     * @param file the FASTA file
+     * @return the .fai file next to the FASTA file, or in the temp directory if the directory of the file is not writable
+     */
+    public static File getFaiFile(File file) {
+        File absFile = file.getAbsoluteFile();
+        File faiFile = new File(absFile.getPath() + FastaIndex.STR_FAI_EXT);
+        File dir = absFile.getParentFile();
+        if (faiFile.canRead() || (dir != null && dir.canWrite())) {
+            return faiFile;
+        }
+
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"), FastaIndex.STR_TMP_DIR);
+        return new File(tmpDir, absFile.getName() + "-" + Integer.toHexString(absFile.getPath().hashCode()) + FastaIndex.STR_FAI_EXT);
+    }
+
+    /**
+     * Indexes the FASTA file in one pass over the mapped file.
+     */
+    private void build() {
+        long length = this.fasta.length();
+        long pos = 0L;
+        int entry = -1;
+        while (pos < length) {
+            long lineEnd = pos;
+            while (lineEnd < length && this.fasta.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            if (this.fasta.get(pos) == FastaIndex.HEADER_START) {
+                long nameEnd = pos + 1;
+                while (nameEnd < lineEnd && !Character.isWhitespace(this.fasta.get(nameEnd))) {
+                    nameEnd++;
+                }
+                entry = this.addEntry(this.fasta.readString(pos + 1, nameEnd, StandardCharsets.ISO_8859_1), lineEnd + 1);
+            }
+            else if (entry >= 0) {
+                int residues = 0;
+                for (long i = pos; i < lineEnd; i++) {
+                    if (!Character.isWhitespace(this.fasta.get(i))) {
+                        residues++;
+                    }
+                }
+                if (this.lineBases[entry] == 0) {
+                    this.lineBases[entry] = residues;
+                    this.lineWidths[entry] = (int) (Math.min(lineEnd + 1, length) - pos);
+                }
+                this.lengths[entry] += residues;
+            }
+            pos = lineEnd + 1;
+        }
+        this.numberOfEntries = this.names.size();
+    }
+
+    /**
+     * Adds an entry.
+     * @param name      the name of the entry
+     * @param offset    the offset of the first residue
+     * @return the int of the name
+     */
+    private int addEntry(String name, long offset) {
+        int entry = this.names.add(name);
+        if (entry >= this.offsets.length) {
+            int newLength = Math.max(entry + 1, this.offsets.length * 2);
+            this.offsets = Arrays.copyOf(this.offsets, newLength);
+            this.lengths = Arrays.copyOf(this.lengths, newLength);
+            this.lineBases = Arrays.copyOf(this.lineBases, newLength);
+            this.lineWidths = Arrays.copyOf(this.lineWidths, newLength);
+        }
+        this.offsets[entry] = offset;
+        this.lengths[entry] = 0;
+        this.lineBases[entry] = 0;
+        this.lineWidths[entry] = 0;
+
+        return entry;
+    }
+
+    /**
+     * Adds the accession and the entry name of UniProt style names (db|accession|entry name) as further names of the entries.
+     * Names which are already used are not replaced.
+     */
+    private void addAliases() {
+        int numberOfNames = this.numberOfEntries;
+        for (int entry = 0; entry < numberOfNames; entry++) {
+            String[] parts = this.names.getId(entry).split("\\|");
+            for (int i = 1; i < parts.length && i < 3; i++) {
+                if (!parts[i].isEmpty() && !this.names.contains(parts[i])) {
+                    int alias = this.addEntry(parts[i], this.offsets[entry]);
+                    this.lengths[alias] = this.lengths[entry];
+                    this.lineBases[alias] = this.lineBases[entry];
+                    this.lineWidths[alias] = this.lineWidths[entry];
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the entries of a .fai file.
+     * @param faiFile the .fai file
+     * @return true, if the file was read, false if it's not readable or not a .fai file
+     */
+    private boolean load(File faiFile) {
+        try (BufferedReader reader = Files.newBufferedReader(faiFile.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(FastaIndex.STR_SEPARATOR);
+                if (fields.length < 5) {
+                    this.names.clear();
+                    return false;
+                }
+                int entry = this.addEntry(fields[0], Long.parseLong(fields[2]));
+                this.lengths[entry] = Integer.parseInt(fields[1]);
+                this.lineBases[entry] = Integer.parseInt(fields[3]);
+                this.lineWidths[entry] = Integer.parseInt(fields[4]);
+            }
+            this.numberOfEntries = this.names.size();
+
+            return true;
+        }
+        catch (IOException | NumberFormatException exc) {
+            FastaIndex.LOGGER.warn("Could not read FASTA index " + faiFile.getAbsolutePath() + ": " + exc.getMessage());
+            this.names.clear();
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes the .fai file. A failure is only logged, the index is used in memory then.
+     * @param faiFile the .fai file
+     */
+    private void save(File faiFile) {
+        File tmpFile = new File(faiFile.getPath() + FastaIndex.STR_TMP_EXT);
+        try {
+            File dir = faiFile.getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                Files.createDirectories(dir.toPath());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.ISO_8859_1)) {
+                for (int entry = 0; entry < this.numberOfEntries; entry++) {
+                    writer.write(this.names.getId(entry) + FastaIndex.STR_SEPARATOR + this.lengths[entry] + FastaIndex.STR_SEPARATOR + this.offsets[entry]
+                            + FastaIndex.STR_SEPARATOR + this.lineBases[entry] + FastaIndex.STR_SEPARATOR + this.lineWidths[entry]);
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpFile.toPath(), faiFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException exc) {
+            FastaIndex.LOGGER.warn("Could not write FASTA index " + faiFile.getAbsolutePath() + ": " + exc.getMessage());
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Gets the number of residues of an entry.
+     * @param accession the name, accession or entry name
+     * @return the length, -1 if the accession is not in the file
+     */
+    public int getLength(String accession) {
+        int entry = this.names.get(accession);
+        return (entry == IdDictionary.NOT_FOUND) ? -1 : this.lengths[entry];
+    }
+
+    /**
+     * Reads the sequence of an entry from the mapped file, line breaks are skipped.
+     * @param accession the name, accession or entry name
+     * @return the sequence, null if the accession is not in the file
+     */
+    public String getSequence(String accession) {
+        int entry = this.names.get(accession);
+        if (entry == IdDictionary.NOT_FOUND) {
+            return null;
+        }
+
+        char[] residues = new char[this.lengths[entry]];
+        long pos = this.offsets[entry];
+        int count = 0;
+        while (count < residues.length && pos < this.fasta.length()) {
+            byte b = this.fasta.get(pos++);
+            if (!Character.isWhitespace(b)) {
+                residues[count++] = (char) b;
+            }
+        }
+
+        return new String(residues, 0, count);
+    }
+
+    /**
+     * Gets the number of entries in the FASTA file.
+     * @return the number of entries
+     */
+    public int size() {
+        return this.numberOfEntries;
+    }
+
+    /**
+     * Closes the mapped FASTA file.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.fasta.close();
+    }
+}
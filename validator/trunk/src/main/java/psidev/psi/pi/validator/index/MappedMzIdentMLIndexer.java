@@ -0,0 +1,188 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.naming.ConfigurationException;
+import psidev.psi.tools.xxindex.index.IndexElement;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+import uk.ac.ebi.jmzidml.xml.xxindex.MzIdentMLIndexer;
+
+/**
+ * MzIdentMLIndexer backed by an {@link ElementIndex}, i.e. by a persisted or a parallel built index instead of
+ * the index jmzIdentML builds on every MzIdentMLUnmarshaller(File).
+ * The XML snippets are read as byte ranges of the file and decoded with the charset of its XML declaration.
+ */
+public class MappedMzIdentMLIndexer implements MzIdentMLIndexer {
+
+    /**
+     * Constants.
+     */
+    private static final int MAX_START_TAG_LENGTH = 2048;
+    private static final char TAG_END = '>';
+
+    /**
+     * Members.
+     */
+    private final File xmlFile;
+    private final ElementIndex index;
+    private final Charset charset;
+
+    /**
+     * Constructor.
+     * @param xmlFile   the mzIdentML file
+     * @param index     the index of the file
+     */
+    public MappedMzIdentMLIndexer(File xmlFile, ElementIndex index) {
+        this.xmlFile = xmlFile;
+        this.index = index;
+        this.charset = ElementIndexStore.detectCharset(xmlFile);
+    }
+
+    /**
+     * Gets the index.
+     * @return the index
+     */
+    public ElementIndex getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public Iterator<String> getXmlStringIterator(String xpath) {
+        if (!this.index.containsXpath(xpath)) {
+            return null;
+        }
+        List<IndexElement> elements = this.index.getElements(xpath);
+
+        return new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < elements.size();
+            }
+
+            @Override
+            public String next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return MappedMzIdentMLIndexer.this.getXmlString(elements.get(this.next++));
+            }
+        };
+    }
+
+    @Override
+    public int getCount(String xpath) {
+        return this.index.getCount(xpath);
+    }
+
+    @Override
+    public String getXmlString(String id, Class clazz) {
+        Map<String, IndexElement> idMap = this.index.getIdMap(clazz);
+        IndexElement element = (idMap != null) ? idMap.get(id) : null;
+
+        return (element != null) ? this.getXmlString(element) : null;
+    }
+
+    @Override
+    public List<IndexElement> getIndexElements(String xpath) {
+        return this.index.getElements(xpath);
+    }
+
+    @Override
+    public Map<String, IndexElement> getIndexElements(Class clazz) {
+        Map<String, IndexElement> idMap = this.index.getIdMap(clazz);
+
+        return (idMap != null) ? new HashMap<>(idMap) : new HashMap<>();
+    }
+
+    @Override
+    public String getXmlString(IndexElement element) {
+        if (element == null) {
+            throw new IllegalStateException("Attempting to read NULL ByteRange");
+        }
+        try {
+            return this.readString(element.getStart(), element.getStop());
+        }
+        catch (IOException exc) {
+            throw new IllegalStateException("Could not extract XML from file: " + this.xmlFile, exc);
+        }
+    }
+
+    @Override
+    public Set<String> getXpath() {
+        return new HashSet<>(this.index.getXpaths());
+    }
+
+    @Override
+    public String getStartTag(String id, Class clazz) {
+        Map<String, IndexElement> idMap = this.index.getIdMap(clazz);
+        IndexElement element = (idMap != null) ? idMap.get(id) : null;
+        if (element == null) {
+            return null;
+        }
+        try {
+            long stop = Math.min(element.getStop(), element.getStart() + MappedMzIdentMLIndexer.MAX_START_TAG_LENGTH);
+            String xml = this.readString(element.getStart(), stop);
+            int end = xml.indexOf(MappedMzIdentMLIndexer.TAG_END);
+
+            return (end >= 0) ? xml.substring(0, end + 1) : xml;
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    @Override
+    public String getMzIdentMLAttributeXMLString() {
+        return this.index.getMzIdentMLStartTag();
+    }
+
+    @Override
+    public boolean isIDmapped(String id, Class clazz) {
+        if (id == null) {
+            return false;
+        }
+        Map<String, IndexElement> idMap = this.index.getIdMap(clazz);
+
+        return idMap != null && idMap.containsKey(id);
+    }
+
+    @Override
+    public Set<String> getIDsForElement(MzIdentMLElement element) throws ConfigurationException {
+        if (!element.isIdMapped()) {
+            throw new ConfigurationException("API not configured to support ID mapping for element: " + element.getTagName());
+        }
+        Map<String, IndexElement> idMap = this.index.getIdMap(element.getClazz());
+
+        return (idMap != null) ? idMap.keySet() : Collections.emptySet();
+    }
+
+    /**
+     * Reads a byte range of the file, the file is opened per call, so the indexer may be used by several threads.
+     * @param start the offset of the first byte
+     * @param stop  the offset after the last byte
+     * @return the decoded range
+     * @throws IOException if the file can't be read
+     */
+    private String readString(long start, long stop) throws IOException {
+        byte[] bytes = new byte[(int) (stop - start)];
+        try (RandomAccessFile raf = new RandomAccessFile(this.xmlFile, "r")) {
+            raf.seek(start);
+            raf.readFully(bytes);
+        }
+
+        return new String(bytes, this.charset);
+    }
+}
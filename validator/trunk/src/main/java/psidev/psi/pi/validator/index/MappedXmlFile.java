@@ -0,0 +1,106 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping of a (possibly larger than 2 GB) XML file in segments.
+ * Used to read start tags at the offsets of an {@link ElementIndex} without seeking through a stream.
+ */
+public class MappedXmlFile implements Closeable {
+
+    /**
+     * Constants.
+     */
+    private static final int SEGMENT_BITS = 30;                             // 1 GB segments
+    private static final long SEGMENT_SIZE = 1L << MappedXmlFile.SEGMENT_BITS;
+    private static final byte TAG_END = '>';
+
+    /**
+     * Members.
+     */
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long length;
+
+    /**
+     * Constructor, maps the file.
+     * @param file the file
+     * @throws IOException if the file can't be mapped
+     */
+    public MappedXmlFile(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.length = this.channel.size();
+        int numSegments = (int) ((this.length + MappedXmlFile.SEGMENT_SIZE - 1) / MappedXmlFile.SEGMENT_SIZE);
+        this.segments = new MappedByteBuffer[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            long offset = i * MappedXmlFile.SEGMENT_SIZE;
+            this.segments[i] = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MappedXmlFile.SEGMENT_SIZE, this.length - offset));
+        }
+    }
+
+    /**
+     * Gets the length of the file.
+     * @return the length in bytes
+     */
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * Gets a byte.
+     * @param pos the offset in the file
+     * @return the byte
+     */
+    public byte get(long pos) {
+        return this.segments[(int) (pos >>> MappedXmlFile.SEGMENT_BITS)].get((int) (pos & (MappedXmlFile.SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Reads a byte range as string.
+     * @param start     the offset of the first byte
+     * @param stop      the offset after the last byte
+     * @param charset   the encoding of the file
+     * @return the string
+     */
+    public String readString(long start, long stop, Charset charset) {
+        long end = Math.min(stop, this.length);
+        byte[] bytes = new byte[(int) Math.max(0L, end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.get(start + i);
+        }
+
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Reads the start tag of an element, i.e. up to and including the first '>'.
+     * @param start     the offset of the element
+     * @param stop      the offset after the element
+     * @param charset   the encoding of the file
+     * @return the start tag
+     */
+    public String readStartTag(long start, long stop, Charset charset) {
+        long end = Math.min(stop, this.length);
+        long pos = start;
+        while (pos < end && this.get(pos) != MappedXmlFile.TAG_END) {
+            pos++;
+        }
+
+        return this.readString(start, Math.min(pos + 1, end), charset);
+    }
+
+    /**
+     * Closes the file channel. The mapping itself is released by the garbage collector.
+     * @throws IOException if the channel can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
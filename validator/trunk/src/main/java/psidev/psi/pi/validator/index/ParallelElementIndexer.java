@@ -0,0 +1,496 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the byte ranges of an {@link ElementIndex} by scanning a memory-mapped file in parallel.
+ * The file is split into byte ranges, each boundary is moved forward to the start tag of an element whose
+ * parent path is known (SpectrumIdentificationResult, PeptideEvidence, Peptide, DBSequence), and the ranges are
+ * scanned concurrently. Elements which span several ranges (the ancestors of these elements) are completed when
+ * the partial results are merged in file order.
+ * The merge checks that every range ends exactly where the next one starts and with the parent path the next
+ * one assumed; if not (e.g. a boundary was found inside a comment), the file is scanned sequentially instead.
+ * Byte ranges and line numbers are the same as the ones of the xxindex indexer (start: offset of '&lt;',
+ * stop: offset after the closing '&gt;', line number: 1-based line of the end of the start tag, namespace
+ * prefixes ignored).
+ */
+public class ParallelElementIndexer {
+
+    /**
+     * Constants.
+     */
+    private static final long MIN_CHUNK_SIZE = 8L << 20;          // 8 MB
+    private static final String STR_SLASH = "/";
+    private static final String[][] RESYNC_ELEMENTS = {
+        {"SpectrumIdentificationResult", "MzIdentML", "DataCollection", "AnalysisData", "SpectrumIdentificationList"},
+        {"PeptideEvidence", "MzIdentML", "SequenceCollection"},
+        {"Peptide", "MzIdentML", "SequenceCollection"},
+        {"DBSequence", "MzIdentML", "SequenceCollection"}
+    };
+    private static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PI_END = "?>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Members.
+     */
+    private final Set<String> xpaths;
+    private final int numberOfThreads;
+    private final long minChunkSize;
+
+    /**
+     * Constructor.
+     * @param xpaths            the xpaths to index
+     * @param numberOfThreads   the number of threads, i.e. the max. number of byte ranges
+     */
+    public ParallelElementIndexer(Set<String> xpaths, int numberOfThreads) {
+        this(xpaths, numberOfThreads, ParallelElementIndexer.MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param xpaths            the xpaths to index
+     * @param numberOfThreads   the number of threads, i.e. the max. number of byte ranges
+     * @param minChunkSize      the min. size of a byte range
+     */
+    ParallelElementIndexer(Set<String> xpaths, int numberOfThreads, long minChunkSize) {
+        this.xpaths = xpaths;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+        this.minChunkSize = Math.max(1L, minChunkSize);
+    }
+
+    /**
+     * Indexes a file and adds the elements of the indexed xpaths to the builder.
+     * @param xmlFile   the XML file
+     * @param builder   the builder
+     * @return the number of byte ranges scanned in parallel (1, if the file was scanned sequentially)
+     * @throws IOException if the file can't be read or has an unbalanced end tag
+     */
+    public int index(File xmlFile, ElementIndexBuilder builder) throws IOException {
+        try (MappedXmlFile mappedFile = new MappedXmlFile(xmlFile)) {
+            List<Chunk> chunks = this.split(mappedFile);
+            if (chunks.size() > 1) {
+                Map<String, List<long[]>> elements = this.scanParallel(mappedFile, chunks);
+                if (elements != null) {
+                    ParallelElementIndexer.addToBuilder(elements, builder);
+                    return chunks.size();
+                }
+            }
+
+            Chunk whole = new Chunk(0L, mappedFile.length(), Collections.emptyList());
+            Map<String, List<long[]>> elements = ParallelElementIndexer.merge(Collections.singletonList(whole.scan(mappedFile, this.xpaths)));
+            if (elements == null) {
+                throw new IOException("Unbalanced end tag in " + xmlFile.getName());
+            }
+            ParallelElementIndexer.addToBuilder(elements, builder);
+
+            return 1;
+        }
+    }
+
+    /**
+     * Splits the file into byte ranges starting at the start tags of the resync elements.
+     * @param mappedFile the file
+     * @return the byte ranges
+     */
+    private List<Chunk> split(MappedXmlFile mappedFile) {
+        long length = mappedFile.length();
+        int numChunks = (int) Math.max(1L, Math.min(this.numberOfThreads, length / this.minChunkSize));
+        List<Chunk> chunks = new ArrayList<>();
+        long from = 0L;
+        List<String> fromPath = Collections.emptyList();
+
+        for (int i = 1; i < numChunks; i++) {
+            long nominal = Math.max(from + 1, i * (length / numChunks));
+            long limit = (i + 1 < numChunks) ? (i + 1) * (length / numChunks) : length;
+            for (long pos = nominal; pos < limit; pos++) {
+                if (mappedFile.get(pos) == '<') {
+                    List<String> parentPath = ParallelElementIndexer.getResyncParentPath(mappedFile, pos);
+                    if (parentPath != null) {
+                        chunks.add(new Chunk(from, pos, fromPath));
+                        from = pos;
+                        fromPath = parentPath;
+                        break;
+                    }
+                }
+            }
+        }
+        chunks.add(new Chunk(from, length, fromPath));
+
+        return chunks;
+    }
+
+    /**
+     * Checks, if a resync element starts at a position.
+     * @param mappedFile    the file
+     * @param pos           the offset of a '&lt;'
+     * @return the names of the parent elements, or null if there is no resync element
+     */
+    private static List<String> getResyncParentPath(MappedXmlFile mappedFile, long pos) {
+        for (String[] resync : ParallelElementIndexer.RESYNC_ELEMENTS) {
+            String name = resync[0];
+            long end = pos + 1 + name.length();
+            if (end >= mappedFile.length()) {
+                continue;
+            }
+            boolean bMatches = true;
+            for (int i = 0; i < name.length() && bMatches; i++) {
+                bMatches = mappedFile.get(pos + 1 + i) == name.charAt(i);
+            }
+            byte next = mappedFile.get(end);
+            if (bMatches && (next == '>' || next == '/' || ParallelElementIndexer.isWhitespace(next))) {
+                return Arrays.asList(resync).subList(1, resync.length);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Scans the byte ranges in parallel and merges the results.
+     * @param mappedFile    the file
+     * @param chunks        the byte ranges
+     * @return the elements per xpath, or null if the ranges don't fit together
+     * @throws IOException if a range can't be scanned
+     */
+    private Map<String, List<long[]>> scanParallel(MappedXmlFile mappedFile, List<Chunk> chunks) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.numberOfThreads, chunks.size()));
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                futures.add(executor.submit(() -> chunk.scan(mappedFile, this.xpaths)));
+            }
+            for (Future<Chunk> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Indexing interrupted", exc);
+        }
+        catch (ExecutionException exc) {
+            throw new IOException("Indexing failed", exc.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        return ParallelElementIndexer.merge(chunks);
+    }
+
+    /**
+     * Merges the scanned byte ranges in file order.
+     * @param chunks the scanned byte ranges
+     * @return the elements per xpath (start, stop, line number), or null if the ranges don't fit together
+     */
+    private static Map<String, List<long[]>> merge(List<Chunk> chunks) {
+        Map<String, List<long[]>> elements = new LinkedHashMap<>();
+        List<Frame> openFrames = new ArrayList<>();
+        long lineOffset = 1L;
+        long expectedFrom = 0L;
+
+        for (Chunk chunk : chunks) {
+            if (chunk.from != expectedFrom || chunk.end != chunk.to || chunk.bUnderflow || openFrames.size() != chunk.initialPath.size()) {
+                return null;
+            }
+            for (int i = 0; i < openFrames.size(); i++) {
+                if (!openFrames.get(i).name.equals(chunk.initialPath.get(i))) {
+                    return null;
+                }
+            }
+
+            for (Map.Entry<String, LongList> entry : chunk.elements.entrySet()) {
+                LongList triples = entry.getValue();
+                List<long[]> list = elements.computeIfAbsent(entry.getKey(), (key) -> new ArrayList<>());
+                for (int i = 0; i < triples.size; i += 3) {
+                    list.add(new long[] {triples.values[i], triples.values[i + 1], triples.values[i + 2] + lineOffset});
+                }
+            }
+            for (long stop : chunk.inheritedStops) {
+                Frame frame = openFrames.remove(openFrames.size() - 1);
+                if (frame.bIndexed) {
+                    elements.computeIfAbsent(frame.xpath, (key) -> new ArrayList<>()).add(new long[] {frame.start, stop, frame.line});
+                }
+            }
+            for (Frame frame : chunk.openFrames) {
+                openFrames.add(new Frame(frame.name, frame.xpath, frame.start, frame.line + lineOffset, frame.bIndexed));
+            }
+
+            lineOffset += chunk.newLines;
+            expectedFrom = chunk.to;
+        }
+
+        // the ancestors of the resync elements were added after their descendants
+        elements.values().forEach((list) -> list.sort((e1, e2) -> Long.compare(e1[0], e2[0])));
+
+        return elements;
+    }
+
+    /**
+     * Adds the elements to the builder.
+     * @param elements  the elements per xpath
+     * @param builder   the builder
+     */
+    private static void addToBuilder(Map<String, List<long[]>> elements, ElementIndexBuilder builder) {
+        for (Map.Entry<String, List<long[]>> entry : elements.entrySet()) {
+            for (long[] element : entry.getValue()) {
+                builder.addElement(entry.getKey(), element[0], element[1], element[2]);
+            }
+        }
+    }
+
+    /**
+     * Checks for XML whitespace.
+     * @param b the byte
+     * @return true, if whitespace
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * A byte range of the file and the result of its scan.
+     */
+    private static class Chunk {
+        private final long from;
+        private final long to;
+        private final List<String> initialPath;                     // names of the open elements at 'from'
+        private final Map<String, LongList> elements = new HashMap<>();
+        private final List<Long> inheritedStops = new ArrayList<>(); // stops of the elements opened before 'from'
+        private final List<Frame> openFrames = new ArrayList<>();    // elements opened, but not closed in the range
+        private long end;
+        private long newLines = 0L;
+        private boolean bUnderflow = false;
+
+        /**
+         * Constructor.
+         * @param from          the offset of the first byte
+         * @param to            the offset after the last byte
+         * @param initialPath   the names of the elements open at 'from'
+         */
+        Chunk(long from, long to, List<String> initialPath) {
+            this.from = from;
+            this.to = to;
+            this.initialPath = initialPath;
+        }
+
+        /**
+         * Scans the byte range. Line numbers are counted from 0 at 'from'.
+         * @param mappedFile    the file
+         * @param xpaths        the xpaths to index
+         * @return this chunk
+         */
+        Chunk scan(MappedXmlFile mappedFile, Set<String> xpaths) {
+            Map<String, Map<String, String>> childXpaths = new HashMap<>();
+            int inherited = this.initialPath.size();
+            StringBuilder path = new StringBuilder();
+            for (String name : this.initialPath) {
+                path.append(ParallelElementIndexer.STR_SLASH).append(name);
+                this.openFrames.add(new Frame(name, path.toString(), -1L, -1L, false));
+            }
+
+            long length = mappedFile.length();
+            long pos = this.from;
+            while (pos < this.to) {
+                byte b = mappedFile.get(pos);
+                if (b != '<') {
+                    if (b == '\n') {
+                        this.newLines++;
+                    }
+                    pos++;
+                    continue;
+                }
+
+                long tagStart = pos;
+                byte next = (pos + 1 < length) ? mappedFile.get(pos + 1) : 0;
+                if (next == '!' || next == '?') {
+                    byte[] terminator = this.startsWith(mappedFile, pos, ParallelElementIndexer.COMMENT_START) ? ParallelElementIndexer.COMMENT_END
+                            : this.startsWith(mappedFile, pos, ParallelElementIndexer.CDATA_START) ? ParallelElementIndexer.CDATA_END
+                            : (next == '?') ? ParallelElementIndexer.PI_END : null;
+                    pos = (terminator != null) ? this.skipTo(mappedFile, pos + 2, terminator) : this.skipTag(mappedFile, pos + 2);
+                    continue;
+                }
+
+                boolean bEndTag = next == '/';
+                long nameStart = bEndTag ? pos + 2 : pos + 1;
+                long nameEnd = nameStart;
+                long localStart = nameStart;
+                while (nameEnd < length) {
+                    byte c = mappedFile.get(nameEnd);
+                    if (c == '>' || c == '/' || ParallelElementIndexer.isWhitespace(c)) {
+                        break;
+                    }
+                    if (c == ':') {
+                        localStart = nameEnd + 1;
+                    }
+                    nameEnd++;
+                }
+                pos = this.skipTag(mappedFile, nameEnd);
+                long line = this.newLines;          // like xxindex: the line of the '>' of the start tag
+                boolean bEmptyElement = !bEndTag && mappedFile.get(pos - 2) == '/';
+
+                if (!bEndTag) {
+                    String name = mappedFile.readString(localStart, nameEnd, StandardCharsets.UTF_8);
+                    String parentXpath = this.openFrames.isEmpty() ? "" : this.openFrames.get(this.openFrames.size() - 1).xpath;
+                    String xpath = childXpaths.computeIfAbsent(parentXpath, (key) -> new HashMap<>())
+                            .computeIfAbsent(name, (key) -> parentXpath + ParallelElementIndexer.STR_SLASH + key);
+                    this.openFrames.add(new Frame(name, xpath, tagStart, line, xpaths.contains(xpath)));
+                }
+                if (bEndTag || bEmptyElement) {
+                    if (this.openFrames.isEmpty()) {
+                        this.bUnderflow = true;
+                        continue;
+                    }
+                    Frame frame = this.openFrames.remove(this.openFrames.size() - 1);
+                    if (this.openFrames.size() < inherited) {
+                        inherited--;
+                        this.inheritedStops.add(pos);
+                    }
+                    else if (frame.bIndexed) {
+                        this.elements.computeIfAbsent(frame.xpath, (key) -> new LongList()).add(frame.start, pos, frame.line);
+                    }
+                }
+            }
+            this.end = pos;
+            // only the elements opened in this range stay open
+            this.openFrames.subList(0, inherited).clear();
+
+            return this;
+        }
+
+        /**
+         * Checks, if the bytes at a position are the given ones.
+         * @param mappedFile    the file
+         * @param pos           the position
+         * @param bytes         the bytes
+         * @return true, if equal
+         */
+        private boolean startsWith(MappedXmlFile mappedFile, long pos, byte[] bytes) {
+            if (pos + bytes.length > mappedFile.length()) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (mappedFile.get(pos + i) != bytes[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Skips to the end of a comment, CDATA section or processing instruction, counting the new lines.
+         * @param mappedFile    the file
+         * @param pos           the position inside the construct
+         * @param terminator    the end of the construct
+         * @return the position after the terminator
+         */
+        private long skipTo(MappedXmlFile mappedFile, long pos, byte[] terminator) {
+            long length = mappedFile.length();
+            while (pos < length && !this.startsWith(mappedFile, pos, terminator)) {
+                if (mappedFile.get(pos) == '\n') {
+                    this.newLines++;
+                }
+                pos++;
+            }
+
+            return Math.min(length, pos + terminator.length);
+        }
+
+        /**
+         * Skips to the end of a tag, ignoring '&gt;' in quoted attribute values and counting the new lines.
+         * @param mappedFile    the file
+         * @param pos           the position inside the tag
+         * @return the position after the '&gt;'
+         */
+        private long skipTag(MappedXmlFile mappedFile, long pos) {
+            long length = mappedFile.length();
+            byte quote = 0;
+            while (pos < length) {
+                byte c = mappedFile.get(pos++);
+                if (c == '\n') {
+                    this.newLines++;
+                }
+                else if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                }
+                else if (c == '"' || c == '\'') {
+                    quote = c;
+                }
+                else if (c == '>') {
+                    break;
+                }
+            }
+
+            return pos;
+        }
+    }
+
+    /**
+     * An open element.
+     */
+    private static class Frame {
+        private final String name;
+        private final String xpath;
+        private final long start;
+        private final long line;
+        private final boolean bIndexed;
+
+        /**
+         * Constructor.
+         * @param name      the local name
+         * @param xpath     the xpath
+         * @param start     the offset of the start tag
+         * @param line      the line number of the start tag
+         * @param bIndexed  true, if the xpath is indexed
+         */
+        Frame(String name, String xpath, long start, long line, boolean bIndexed) {
+            this.name = name;
+            this.xpath = xpath;
+            this.start = start;
+            this.line = line;
+            this.bIndexed = bIndexed;
+        }
+    }
+
+    /**
+     * Growable array of longs.
+     */
+    private static class LongList {
+        private long[] values = new long[48];
+        private int size = 0;
+
+        /**
+         * Adds a start, stop, line number triple.
+         * @param start the start
+         * @param stop  the stop
+         * @param line  the line number
+         */
+        void add(long start, long stop, long line) {
+            if (this.size + 3 > this.values.length) {
+                this.values = Arrays.copyOf(this.values, 2 * this.values.length);
+            }
+            this.values[this.size++] = start;
+            this.values[this.size++] = stop;
+            this.values[this.size++] = line;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Index of the spectra of a peak list file (MGF or mzML), built in one pass over the memory mapped file.
+ * For MGF files the position, TITLE and SCANS of every BEGIN IONS block are indexed,
+ * for mzML files the position, nativeID (id attribute) and scan number (scan=) of every spectrum element.
+ * Used to check that the spectra referenced by the SpectrumIdentificationResults exist.
+ */
+public class SpectrumSourceIndex {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_FILE_EXT_MGF    = ".mgf";
+    private static final String STR_FILE_EXT_MZML   = ".mzml";
+    private static final byte[] BEGIN_IONS          = "BEGIN IONS".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TITLE               = "TITLE=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SCANS               = "SCANS=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SPECTRUM_TAG        = "<spectrum ".getBytes(StandardCharsets.US_ASCII);
+    private static final String STR_ID_ATTRIBUTE    = " id=\"";
+    private static final String STR_SCAN            = "scan=";
+
+    /**
+     * Members.
+     */
+    private final boolean bMzML;
+    private int spectrumCount = 0;
+    private final Set<String> nativeIDs = new HashSet<>();
+    private final Set<String> titles = new HashSet<>();
+    private final BitSet scans = new BitSet();
+
+    /**
+     * Constructor.
+     * @param bMzML true for an mzML file, false for an MGF file
+     */
+    private SpectrumSourceIndex(boolean bMzML) {
+        this.bMzML = bMzML;
+    }
+
+    /**
+     * Checks, if a file is a peak list which can be indexed.
+     * @param file the file
+     * @return true for .mgf and .mzML files
+     */
+    public static boolean isSupported(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(SpectrumSourceIndex.STR_FILE_EXT_MGF) || name.endsWith(SpectrumSourceIndex.STR_FILE_EXT_MZML);
+    }
+
+    /**
+     * Indexes a peak list file.
+     * @param file the .mgf or .mzML file
+     * @return the index
+     * @throws IOException if the file can't be read
+     */
+    public static SpectrumSourceIndex build(File file) throws IOException {
+        SpectrumSourceIndex index = new SpectrumSourceIndex(file.getName().toLowerCase().endsWith(SpectrumSourceIndex.STR_FILE_EXT_MZML));
+        try (MappedXmlFile mappedFile = new MappedXmlFile(file)) {
+            if (index.bMzML) {
+                index.indexMzML(mappedFile);
+            }
+            else {
+                index.indexMgf(mappedFile);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Indexes the BEGIN IONS blocks of an MGF file. Only the first bytes of each line are looked at, peak lines are skipped.
+     * @param file the mapped file
+     */
+    private void indexMgf(MappedXmlFile file) {
+        long length = file.length();
+        long pos = 0L;
+        while (pos < length) {
+            long lineEnd = pos;
+            while (lineEnd < length && file.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            byte first = file.get(pos);
+            if (first == 'B' && SpectrumSourceIndex.startsWith(file, pos, lineEnd, SpectrumSourceIndex.BEGIN_IONS)) {
+                this.spectrumCount++;
+            }
+            else if (first == 'T' && SpectrumSourceIndex.startsWith(file, pos, lineEnd, SpectrumSourceIndex.TITLE)) {
+                this.titles.add(SpectrumSourceIndex.readValue(file, pos + SpectrumSourceIndex.TITLE.length, lineEnd));
+            }
+            else if (first == 'S' && SpectrumSourceIndex.startsWith(file, pos, lineEnd, SpectrumSourceIndex.SCANS)) {
+                this.addScans(SpectrumSourceIndex.readValue(file, pos + SpectrumSourceIndex.SCANS.length, lineEnd));
+            }
+            pos = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Indexes the spectrum elements of an mzML file.
+     * @param file the mapped file
+     */
+    private void indexMzML(MappedXmlFile file) {
+        long length = file.length();
+        byte[] tag = SpectrumSourceIndex.SPECTRUM_TAG;
+        for (long pos = 0L; pos + tag.length <= length; pos++) {
+            if (file.get(pos) == tag[0] && SpectrumSourceIndex.startsWith(file, pos, length, tag)) {
+                this.spectrumCount++;
+                String startTag = file.readStartTag(pos, length, StandardCharsets.UTF_8);
+                int idStart = startTag.indexOf(SpectrumSourceIndex.STR_ID_ATTRIBUTE);
+                if (idStart >= 0) {
+                    idStart += SpectrumSourceIndex.STR_ID_ATTRIBUTE.length();
+                    int idEnd = startTag.indexOf('"', idStart);
+                    if (idEnd > idStart) {
+                        String nativeID = startTag.substring(idStart, idEnd);
+                        this.nativeIDs.add(nativeID);
+                        int scan = SpectrumSourceIndex.getScanNumber(nativeID);
+                        if (scan >= 0) {
+                            this.scans.set(scan);
+                        }
+                    }
+                }
+                pos += startTag.length() - 1;
+            }
+        }
+    }
+
+    /**
+     * Adds the scan numbers of an MGF SCANS line, e.g. "1234", "1234-1236" or "1234,1240".
+     * @param value the value of the line
+     */
+    private void addScans(String value) {
+        for (String part : value.split(",")) {
+            String[] range = part.trim().split("-");
+            try {
+                int from = Integer.parseInt(range[0].trim());
+                int to = (range.length > 1) ? Integer.parseInt(range[1].trim()) : from;
+                if (from >= 0 && to >= from) {
+                    this.scans.set(from, to + 1);
+                }
+            }
+            catch (NumberFormatException exc) {
+                // not a scan number
+            }
+        }
+    }
+
+    /**
+     * Gets the scan number of a nativeID, e.g. 1234 of "controllerType=0 controllerNumber=1 scan=1234".
+     * @param nativeID the nativeID or spectrumID
+     * @return the scan number, -1 if there is none
+     */
+    public static int getScanNumber(String nativeID) {
+        int start = nativeID.startsWith(SpectrumSourceIndex.STR_SCAN) ? 0 : nativeID.indexOf(" " + SpectrumSourceIndex.STR_SCAN) + 1;
+        if (start < 0 || !nativeID.startsWith(SpectrumSourceIndex.STR_SCAN, start)) {
+            return -1;
+        }
+        start += SpectrumSourceIndex.STR_SCAN.length();
+        int end = start;
+        while (end < nativeID.length() && Character.isDigit(nativeID.charAt(end))) {
+            end++;
+        }
+        try {
+            return (end > start) ? Integer.parseInt(nativeID.substring(start, end)) : -1;
+        }
+        catch (NumberFormatException exc) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks, if the bytes at a position start with a prefix.
+     * @param file      the mapped file
+     * @param pos       the position
+     * @param end       the end of the range to look at
+     * @param prefix    the prefix
+     * @return true, if the prefix was found
+     */
+    private static boolean startsWith(MappedXmlFile file, long pos, long end, byte[] prefix) {
+        if (end - pos < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (file.get(pos + i) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the value of an MGF line without the line end.
+     * @param file  the mapped file
+     * @param start the start of the value
+     * @param end   the end of the line
+     * @return the trimmed value
+     */
+    private static String readValue(MappedXmlFile file, long start, long end) {
+        return file.readString(start, end, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Checks, if this is the index of an mzML file.
+     * @return true for mzML, false for MGF
+     */
+    public boolean isMzML() {
+        return this.bMzML;
+    }
+
+    /**
+     * Gets the number of spectra.
+     * @return the number of spectra
+     */
+    public int getSpectrumCount() {
+        return this.spectrumCount;
+    }
+
+    /**
+     * Checks, if a spectrum with a nativeID (id attribute of the mzML spectrum element) exists.
+     * @param nativeID the nativeID
+     * @return true, if it exists
+     */
+    public boolean hasNativeID(String nativeID) {
+        return this.nativeIDs.contains(nativeID);
+    }
+
+    /**
+     * Checks, if a spectrum with a TITLE exists (MGF).
+     * @param title the title
+     * @return true, if it exists
+     */
+    public boolean hasTitle(String title) {
+        return this.titles.contains(title);
+    }
+
+    /**
+     * Checks, if the file has scan numbers (SCANS lines in MGF, scan= in the mzML nativeIDs).
+     * @return true, if at least one scan number was found
+     */
+    public boolean hasScans() {
+        return !this.scans.isEmpty();
+    }
+
+    /**
+     * Checks, if a spectrum with a scan number exists.
+     * @param scan the scan number
+     * @return true, if it exists
+     */
+    public boolean hasScan(int scan) {
+        return scan >= 0 && this.scans.get(scan);
+    }
+}
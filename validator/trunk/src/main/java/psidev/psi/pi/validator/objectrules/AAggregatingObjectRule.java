@@ -0,0 +1,145 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import psidev.psi.pi.validator.objectrules.util.FactAccumulator;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Abstract base class for object rules checking the consistency of the whole file.
+ * While the elements of a pass are checked, possibly on several threads, each thread collects the facts
+ * of its elements in its own accumulator. At the end of the pass the accumulators are merged and the
+ * merged facts are checked once.
+ *
+ * @param <T> type of jmzIdentML object
+ * @param <A> type of the accumulator
+ */
+public abstract class AAggregatingObjectRule<T extends Object, A extends FactAccumulator<A>> extends AObjectRule<T> {
+
+    /**
+     * Constants.
+     */
+    private static final ThreadLocal<Integer> ELEMENT_ORDINAL = ThreadLocal.withInitial(() -> 0);
+
+    /**
+     * Members.
+     */
+    private final ConcurrentLinkedQueue<A> accumulators = new ConcurrentLinkedQueue<>();
+    private volatile ThreadLocal<A> threadAccumulator = this.newThreadAccumulator();
+
+    /**
+     * Constructor.
+     */
+    public AAggregatingObjectRule() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public AAggregatingObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+    }
+
+    /**
+     * Starts a pass over the elements of a file and drops the facts of a previous pass.
+     */
+    public void beginPass() {
+        this.threadAccumulator = this.newThreadAccumulator();
+        this.accumulators.clear();
+    }
+
+    /**
+     * Sets the position of the element in the file, which is checked next on the current thread.
+     * The merged accumulators are not in the order of the file, so rules reporting e.g. the first of duplicates sort by it.
+     * @param ordinal the 0-based position of the element among the elements of the pass
+     */
+    public static void setElementOrdinal(int ordinal) {
+        AAggregatingObjectRule.ELEMENT_ORDINAL.set(ordinal);
+    }
+
+    /**
+     * Gets the position of the element in the file, which is checked on the current thread.
+     * @return the 0-based position of the element among the elements of the pass
+     */
+    protected static int getElementOrdinal() {
+        return AAggregatingObjectRule.ELEMENT_ORDINAL.get();
+    }
+
+    /**
+     * Collects the facts of an element into the accumulator of the current thread.
+     *
+     * @param obj the element
+     * @return collection of messages about the element itself
+     * @throws ValidatorException validator exception
+     */
+    @Override
+    public Collection<ValidatorMessage> check(T obj) throws ValidatorException {
+        List<ValidatorMessage> messages = new ArrayList<>();
+        this.collect(obj, this.threadAccumulator.get(), messages);
+
+        return messages;
+    }
+
+    /**
+     * Ends a pass, merges the accumulators of all threads in the order of their creation and checks the merged facts.
+     * @return collection of messages about the whole file
+     */
+    public Collection<ValidatorMessage> endPass() {
+        A merged = this.createAccumulator();
+        for (A accumulator : this.accumulators) {
+            merged.merge(accumulator);
+        }
+        this.beginPass();
+
+        return this.reduce(merged);
+    }
+
+    /**
+     * The accumulators are thread confined, so the rule can check elements on several threads.
+     * @return true
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Creates an empty accumulator.
+     * @return the accumulator
+     */
+    protected abstract A createAccumulator();
+
+    /**
+     * Collects the facts of an element.
+     * @param obj           the element
+     * @param accumulator   the accumulator of the current thread
+     * @param messages      the messages about the element itself
+     * @throws ValidatorException validator exception
+     */
+    protected abstract void collect(T obj, A accumulator, List<ValidatorMessage> messages) throws ValidatorException;
+
+    /**
+     * Checks the facts collected from all elements of the pass.
+     * @param accumulator the merged accumulator
+     * @return collection of messages
+     */
+    protected abstract Collection<ValidatorMessage> reduce(A accumulator);
+
+    /**
+     * Creates the thread local accumulators, which are registered for the merge at the end of the pass.
+     * @return the thread local
+     */
+    private ThreadLocal<A> newThreadAccumulator() {
+        return ThreadLocal.withInitial(() -> {
+            A accumulator = this.createAccumulator();
+            this.accumulators.add(accumulator);
+            return accumulator;
+        });
+    }
+}
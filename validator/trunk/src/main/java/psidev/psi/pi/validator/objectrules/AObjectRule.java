@@ -1,11 +1,16 @@
 package psidev.psi.pi.validator.objectrules;
 
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.net.URLEncoder;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import psidev.psi.pi.validator.RESTClient;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.rules.codedrule.ObjectRule;
 
@@ -177,6 +182,50 @@ public abstract class AObjectRule<T extends Object> extends ObjectRule<T> {
     public String getId() {
         return this.getClass().getSimpleName();
     }
+
+    /**
+     * Gets the class of the objects this rule checks, i.e. the type argument of the rule.
+     * @return the class, Object.class if the rule checks any object
+     */
+    public Class<?> getCheckedClass() {
+        Class<?> clazz = this.getClass();
+        while (clazz.getSuperclass() != AObjectRule.class) {
+            clazz = clazz.getSuperclass();
+        }
+        Type type = clazz.getGenericSuperclass();
+        if (type instanceof ParameterizedType) {
+            Type typeArg = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (typeArg instanceof Class) {
+                return (Class<?>) typeArg;
+            }
+        }
+
+        return Object.class;
+    }
+
+    /**
+     * Gets the facts this rule collects for rules checking other elements.
+     * @return the produced facts, empty by default
+     */
+    public Set<RuleFact> getProducedFacts() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Gets the facts this rule reads, which are collected by rules checking other elements.
+     * @return the consumed facts, empty by default
+     */
+    public Set<RuleFact> getConsumedFacts() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Checks, if the rule can check several elements on different threads at the same time.
+     * @return false by default, since most rules keep the state of the last checked element in members
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
     
     /**
      * Calls OLS webserver and gets child terms for a termID.
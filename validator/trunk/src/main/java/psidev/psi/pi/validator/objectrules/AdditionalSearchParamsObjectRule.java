@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -160,6 +163,15 @@ public class AdditionalSearchParamsObjectRule extends AObjectRule<SpectrumIdenti
         return messages;
     }
 
+    /**
+     * Produces the additional search params flags.
+     * @return the produced facts
+     */
+    @Override
+    public Set<RuleFact> getProducedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
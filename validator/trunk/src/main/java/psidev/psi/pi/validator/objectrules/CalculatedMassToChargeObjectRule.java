@@ -0,0 +1,396 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.objectrules.util.MassTables;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import psidev.psi.pi.validator.objectrules.util.PackedSequenceStore;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+
+/**
+ * Checks in one streaming (StAX) pass, that the calculatedMassToCharge of every SpectrumIdentificationItem is the
+ * theoretical m/z of its Peptide (residues, modifications and water) at its chargeState, within a ppm tolerance.
+ * The Peptide sequences are packed into a {@link PackedSequenceStore} and the sums of their modification masses are kept
+ * while reading the SequenceCollection. The residue masses are the standard ones, overridden by the Residues of the MassTable
+ * referenced by the item; the modification masses are the monoisotopicMassDelta attributes or the masses of unimod.obo
+ * and PSI-MOD.obo. The mass of a Peptide is computed once per mass table when it's referenced the first time.
+ * Peptides with cross-link modifications, modifications without a known mass or residues without a mass (e.g. X) are skipped,
+ * as well as the items of cross-linked or noncovalently associated peptides, whose calculated m/z is the one of the pair.
+ * Reported in bulk.
+ * This rule is not in the list of object rules to execute, it's called with the file by the validator.
+ */
+public class CalculatedMassToChargeObjectRule extends AObjectRule<File> {
+
+    /**
+     * Constants.
+     */
+    private static final Context SII_CONTEXT            = new Context(MzIdentMLElement.SpectrumIdentificationItem.getXpath());
+    private static final String STR_PEPTIDE             = "Peptide";
+    private static final String STR_PEPTIDE_SEQ         = "PeptideSequence";
+    private static final String STR_MODIFICATION        = "Modification";
+    private static final String STR_SUBSTITUTION_MOD    = "SubstitutionModification";
+    private static final String STR_CV_PARAM            = "cvParam";
+    private static final String STR_MASS_TABLE          = "MassTable";
+    private static final String STR_RESIDUE             = "Residue";
+    private static final String STR_SII                 = "SpectrumIdentificationItem";
+    private static final String STR_ID                  = "id";
+    private static final String STR_ACCESSION           = "accession";
+    private static final String STR_MONO_MASS_DELTA     = "monoisotopicMassDelta";
+    private static final String STR_ORIGINAL_RESIDUE    = "originalResidue";
+    private static final String STR_REPLACEMENT_RESIDUE = "replacementResidue";
+    private static final String STR_CODE                = "code";
+    private static final String STR_MASS                = "mass";
+    private static final String STR_CALCULATED_MZ       = "calculatedMassToCharge";
+    private static final String STR_CHARGE_STATE        = "chargeState";
+    private static final String STR_PEPTIDE_REF         = "peptide_ref";
+    private static final String STR_MASS_TABLE_REF      = "massTable_ref";
+    private static final String STR_CROSS_LINK_DONOR    = "MS:1002509";
+    private static final String STR_CROSS_LINK_ACCEPTOR = "MS:1002510";
+    private static final String STR_CROSS_LINK_SII      = "MS:1002511";
+    private static final String STR_NONCOVALENT_SII     = "MS:1003331";
+    private static final String STR_DEFAULT_MASS_TABLE  = "";
+    private static final double NOT_COMPUTED            = Double.NEGATIVE_INFINITY;
+    private static final double DEFAULT_TOLERANCE_PPM   = 10.0;
+    private static final int MAX_EXAMPLES               = 5;
+
+    /**
+     * Members.
+     */
+    private double tolerancePpm = CalculatedMassToChargeObjectRule.DEFAULT_TOLERANCE_PPM;
+    private final PackedSequenceStore peptides = new PackedSequenceStore();
+    private double[] modificationMasses = new double[1024];                 // peptide -> sum of the modification masses, NaN if unknown
+    private final Map<String, double[]> residueMasses = new HashMap<>();    // mass table id -> residue masses
+    private final Map<String, double[]> peptideMasses = new HashMap<>();    // mass table id -> peptide -> neutral mass
+    private int checkedCount = 0;
+    private int mismatchCount = 0;
+    private final List<String> mismatchExamples = new ArrayList<>();
+    private String pendingId = null;                                        // the SpectrumIdentificationItem being read
+    private double pendingCalculatedMz = Double.NaN;
+    private double pendingTheoreticalMz = Double.NaN;
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public CalculatedMassToChargeObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+
+        this.setName("Calculated m/z check");
+
+        this.setDescription("Check that the calculatedMassToCharge of every SpectrumIdentificationItem is the m/z of its Peptide and modifications at its chargeState.");
+
+        this.addTip("Make sure calculatedMassToCharge is the theoretical m/z (monoisotopic, protonated) of the Peptide including all its modifications.");
+        this.addTip("Make sure every Modification of the Peptide is listed, including fixed modifications, with its monoisotopicMassDelta.");
+    }
+
+    /**
+     * Sets the tolerance of the comparison.
+     * @param tolerancePpm the maximum difference in ppm
+     */
+    public void setTolerancePpm(double tolerancePpm) {
+        this.tolerancePpm = tolerancePpm;
+    }
+
+    /**
+     * Checks, if the object is a File.
+     *
+     * @param obj   the object to check
+     * @return true, if obj is a File
+     */
+    @Override
+    public boolean canCheck(Object obj) {
+        return (obj instanceof File);
+    }
+
+    /**
+     * Scans the file and reports the SpectrumIdentificationItems whose calculatedMassToCharge doesn't match the Peptide.
+     *
+     * @param xmlFile the mzIdentML file
+     * @return collection of messages
+     * @throws ValidatorException if the file can not be read
+     */
+    @Override
+    public Collection<ValidatorMessage> check(File xmlFile) throws ValidatorException {
+        this.reset();
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16)) {
+            XMLStreamReader reader = ObjectRuleUtil.createXMLStreamReader(is);
+            try {
+                int peptide = PackedSequenceStore.NOT_FOUND;
+                boolean bInSequence = false;
+                boolean bModificationMassKnown = true;
+                double[] massTable = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.CHARACTERS && bInSequence) {
+                        this.peptides.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    else if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (CalculatedMassToChargeObjectRule.STR_SII.equals(name)) {
+                            this.startSpectrumIdentificationItem(reader);
+                        }
+                        else if (this.pendingId != null && CalculatedMassToChargeObjectRule.STR_CV_PARAM.equals(name)) {
+                            String accession = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_ACCESSION);
+                            if (CalculatedMassToChargeObjectRule.STR_CROSS_LINK_SII.equals(accession) || CalculatedMassToChargeObjectRule.STR_NONCOVALENT_SII.equals(accession)) {
+                                this.pendingId = null;
+                            }
+                        }
+                        else if (CalculatedMassToChargeObjectRule.STR_PEPTIDE.equals(name)) {
+                            peptide = this.startPeptide(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_ID));
+                        }
+                        else if (peptide != PackedSequenceStore.NOT_FOUND) {
+                            if (CalculatedMassToChargeObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                                bInSequence = true;
+                            }
+                            else if (CalculatedMassToChargeObjectRule.STR_MODIFICATION.equals(name)) {
+                                double delta = CalculatedMassToChargeObjectRule.parseDouble(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_MONO_MASS_DELTA));
+                                bModificationMassKnown = !Double.isNaN(delta);
+                                if (bModificationMassKnown) {
+                                    this.modificationMasses[peptide] += delta;
+                                }
+                            }
+                            else if (CalculatedMassToChargeObjectRule.STR_SUBSTITUTION_MOD.equals(name)) {
+                                this.modificationMasses[peptide] += CalculatedMassToChargeObjectRule.getSubstitutionMass(reader);
+                            }
+                            else if (CalculatedMassToChargeObjectRule.STR_CV_PARAM.equals(name)) {
+                                String accession = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_ACCESSION);
+                                if (CalculatedMassToChargeObjectRule.STR_CROSS_LINK_DONOR.equals(accession) || CalculatedMassToChargeObjectRule.STR_CROSS_LINK_ACCEPTOR.equals(accession)) {
+                                    // the calculated m/z of cross-linked peptides is the one of the pair
+                                    this.modificationMasses[peptide] = Double.NaN;
+                                }
+                                else if (!bModificationMassKnown && accession != null) {
+                                    double delta = MassTables.getModificationMass(accession);
+                                    bModificationMassKnown = !Double.isNaN(delta);
+                                    if (bModificationMassKnown) {
+                                        this.modificationMasses[peptide] += delta;
+                                    }
+                                }
+                            }
+                        }
+                        else if (CalculatedMassToChargeObjectRule.STR_MASS_TABLE.equals(name)) {
+                            massTable = MassTables.createStandardResidueMasses();
+                            this.residueMasses.put(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_ID), massTable);
+                        }
+                        else if (massTable != null && CalculatedMassToChargeObjectRule.STR_RESIDUE.equals(name)) {
+                            String code = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_CODE);
+                            double mass = CalculatedMassToChargeObjectRule.parseDouble(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_MASS));
+                            if (code != null && code.length() == 1 && !Double.isNaN(mass)) {
+                                massTable[PackedSequenceStore.encode(code.charAt(0))] = mass;
+                            }
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (CalculatedMassToChargeObjectRule.STR_SII.equals(name)) {
+                            this.endSpectrumIdentificationItem();
+                        }
+                        else if (CalculatedMassToChargeObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                            bInSequence = false;
+                        }
+                        else if (CalculatedMassToChargeObjectRule.STR_MODIFICATION.equals(name) && peptide != PackedSequenceStore.NOT_FOUND) {
+                            if (!bModificationMassKnown) {
+                                this.modificationMasses[peptide] = Double.NaN;
+                            }
+                            bModificationMassKnown = true;
+                        }
+                        else if (CalculatedMassToChargeObjectRule.STR_PEPTIDE.equals(name)) {
+                            peptide = PackedSequenceStore.NOT_FOUND;
+                        }
+                        else if (CalculatedMassToChargeObjectRule.STR_MASS_TABLE.equals(name)) {
+                            massTable = null;
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new ValidatorException("Could not check the calculated m/z values of " + xmlFile.getName(), exc);
+        }
+
+        List<ValidatorMessage> messages = new ArrayList<>();
+        if (this.mismatchCount > 0) {
+            messages.add(new ValidatorMessage(this.mismatchCount + " of " + this.checkedCount + " SpectrumIdentificationItem(s) at "
+                    + CalculatedMassToChargeObjectRule.SII_CONTEXT.getContext() + " have a calculatedMassToCharge which differs more than "
+                    + this.tolerancePpm + " ppm from the m/z of the Peptide at the chargeState, e.g. " + this.mismatchExamples,
+                    MessageLevel.ERROR, CalculatedMassToChargeObjectRule.SII_CONTEXT, this));
+        }
+        this.reset();
+
+        return messages;
+    }
+
+    /**
+     * Starts a Peptide.
+     * @param id the id of the Peptide
+     * @return the int of the Peptide
+     */
+    private int startPeptide(String id) {
+        if (id == null) {
+            return PackedSequenceStore.NOT_FOUND;
+        }
+        int peptide = this.peptides.startSequence(id);
+        if (peptide >= this.modificationMasses.length) {
+            this.modificationMasses = Arrays.copyOf(this.modificationMasses, Math.max(peptide + 1, this.modificationMasses.length * 2));
+        }
+        this.modificationMasses[peptide] = 0.0;
+
+        return peptide;
+    }
+
+    /**
+     * Gets the mass delta of a SubstitutionModification, the monoisotopicMassDelta or else the difference of the residue masses.
+     * @param reader the stream reader positioned on the SubstitutionModification start element
+     * @return the mass delta, NaN if unknown
+     */
+    private static double getSubstitutionMass(XMLStreamReader reader) {
+        double delta = CalculatedMassToChargeObjectRule.parseDouble(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_MONO_MASS_DELTA));
+        if (!Double.isNaN(delta)) {
+            return delta;
+        }
+        String original = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_ORIGINAL_RESIDUE);
+        String replacement = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_REPLACEMENT_RESIDUE);
+        if (original == null || replacement == null || original.length() != 1 || replacement.length() != 1) {
+            return Double.NaN;
+        }
+        double[] masses = MassTables.createStandardResidueMasses();
+
+        return masses[PackedSequenceStore.encode(replacement.charAt(0))] - masses[PackedSequenceStore.encode(original.charAt(0))];
+    }
+
+    /**
+     * Computes the m/z of the Peptide of a SpectrumIdentificationItem. It's compared at the end of the item,
+     * as its cvParams may show that it's one of a pair.
+     * @param reader the stream reader positioned on the SpectrumIdentificationItem start element
+     */
+    private void startSpectrumIdentificationItem(XMLStreamReader reader) {
+        this.pendingId = null;
+        double calculatedMz = CalculatedMassToChargeObjectRule.parseDouble(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_CALCULATED_MZ));
+        String peptideRef = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_PEPTIDE_REF);
+        int charge;
+        try {
+            charge = Integer.parseInt(reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_CHARGE_STATE));
+        }
+        catch (NumberFormatException exc) {
+            return;
+        }
+        if (Double.isNaN(calculatedMz) || calculatedMz <= 0.0 || charge == 0 || peptideRef == null) {
+            return;
+        }
+        int peptide = this.peptides.get(peptideRef);
+        if (peptide == PackedSequenceStore.NOT_FOUND) {
+            return;
+        }
+
+        double mass = this.getPeptideMass(peptide, reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_MASS_TABLE_REF));
+        if (Double.isNaN(mass)) {
+            return;
+        }
+        this.pendingId = reader.getAttributeValue(null, CalculatedMassToChargeObjectRule.STR_ID);
+        this.pendingCalculatedMz = calculatedMz;
+        this.pendingTheoreticalMz = (mass + charge * MassTables.PROTON) / Math.abs(charge);
+    }
+
+    /**
+     * Compares the calculatedMassToCharge of the SpectrumIdentificationItem with the m/z of its Peptide.
+     */
+    private void endSpectrumIdentificationItem() {
+        if (this.pendingId == null) {
+            return;
+        }
+        this.checkedCount++;
+        if (Math.abs(this.pendingCalculatedMz - this.pendingTheoreticalMz) / this.pendingTheoreticalMz * 1.0e6 > this.tolerancePpm) {
+            this.mismatchCount++;
+            if (this.mismatchExamples.size() < CalculatedMassToChargeObjectRule.MAX_EXAMPLES) {
+                this.mismatchExamples.add(this.pendingId + " (" + this.pendingCalculatedMz + " instead of "
+                        + String.format(Locale.US, "%.4f", this.pendingTheoreticalMz) + ")");
+            }
+        }
+        this.pendingId = null;
+    }
+
+    /**
+     * Gets the neutral mass of a Peptide, computed on the first call for a mass table.
+     * @param peptide           the int of the Peptide
+     * @param massTableRef      the id of the MassTable, null for the standard residue masses
+     * @return the mass, NaN if a residue or modification mass is unknown
+     */
+    private double getPeptideMass(int peptide, String massTableRef) {
+        String massTableId = (massTableRef != null && this.residueMasses.containsKey(massTableRef)) ? massTableRef : CalculatedMassToChargeObjectRule.STR_DEFAULT_MASS_TABLE;
+        double[] masses = this.peptideMasses.get(massTableId);
+        if (masses == null || masses.length < this.peptides.size()) {
+            int oldLength = (masses == null) ? 0 : masses.length;
+            masses = (masses == null) ? new double[this.peptides.size()] : Arrays.copyOf(masses, this.peptides.size());
+            Arrays.fill(masses, oldLength, masses.length, CalculatedMassToChargeObjectRule.NOT_COMPUTED);
+            this.peptideMasses.put(massTableId, masses);
+        }
+
+        if (masses[peptide] == CalculatedMassToChargeObjectRule.NOT_COMPUTED) {
+            double[] residues = this.residueMasses.get(massTableId);
+            if (residues == null) {
+                residues = MassTables.createStandardResidueMasses();
+                this.residueMasses.put(massTableId, residues);
+            }
+            double mass = MassTables.WATER + this.modificationMasses[peptide];
+            int length = this.peptides.getLength(peptide);
+            for (int i = 0; i < length; i++) {
+                mass += residues[this.peptides.getCode(peptide, i)];
+            }
+            masses[peptide] = (length == 0) ? Double.NaN : mass;
+        }
+
+        return masses[peptide];
+    }
+
+    /**
+     * Parses a double attribute.
+     * @param value the attribute value
+     * @return the number, NaN if missing or no number
+     */
+    private static double parseDouble(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        }
+        catch (NumberFormatException exc) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Releases the sequences and counts of the last scan.
+     */
+    private void reset() {
+        this.peptides.clear();
+        this.modificationMasses = new double[1024];
+        this.residueMasses.clear();
+        this.peptideMasses.clear();
+        this.checkedCount = 0;
+        this.mismatchCount = 0;
+        this.mismatchExamples.clear();
+        this.pendingId = null;
+    }
+}
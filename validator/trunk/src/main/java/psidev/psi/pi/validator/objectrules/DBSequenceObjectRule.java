@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -61,7 +64,7 @@ public class DBSequenceObjectRule extends AObjectRule<DBSequence> {
     public Collection<ValidatorMessage> check(DBSequence dbSeq) throws ValidatorException {
         List<ValidatorMessage> messages = new ArrayList<>();
         
-        if (!PeptideEvidenceObjectRule.dbSeqRefSet.contains(dbSeq.getId())) {
+        if (!PeptideEvidenceObjectRule.CROSS_REFERENCES.isDBSequenceReferenced(dbSeq.getId())) {
             messages.add(new ValidatorMessage("The DBSequence with ID " + dbSeq.getId() + " is not referenced by a PeptideEvidence element at" + 
                 DBSequenceObjectRule.DBSEQUENCE_CONTEXT.getContext(),
                 MessageLevel.WARN, DBSequenceObjectRule.DBSEQUENCE_CONTEXT, this));
@@ -70,6 +73,24 @@ public class DBSequenceObjectRule extends AObjectRule<DBSequence> {
         return messages;
     }
 
+    /**
+     * Reads the Peptide and DBSequence references of the PeptideEvidences.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.PEPTIDE_EVIDENCE_REFERENCES);
+    }
+
+    /**
+     * The rule only reads the cross references collected from the PeptideEvidences.
+     * @return true
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
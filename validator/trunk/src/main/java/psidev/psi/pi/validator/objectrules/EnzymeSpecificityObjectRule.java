@@ -0,0 +1,519 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.objectrules.util.CompiledEnzyme;
+import psidev.psi.pi.validator.objectrules.util.IdDictionary;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import psidev.psi.pi.validator.objectrules.util.PackedSequenceStore;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+
+/**
+ * Checks, that the identified peptides are consistent with the Enzymes of their SpectrumIdentificationProtocol:
+ * a PeptideEvidence must be cleaved at both termini (at one, if semiSpecific) and must not contain more than missedCleavages sites.
+ * One streaming (StAX) pass reads the Peptide sequences into a {@link PackedSequenceStore}, pre, post and start of the PeptideEvidences,
+ * the Enzymes of the protocols and the PeptideEvidences referenced by the SpectrumIdentificationItems of each list.
+ * Each SiteRegexp (or the regular expression of the cleavage agent name in the PSI-MS CV) is compiled once into a {@link CompiledEnzyme}
+ * and the PeptideEvidences are checked in parallel after the pass.
+ * The protein termini ('-') and the N-terminus after an initiator methionine count as cleavage sites, an unknown pre or post ('?') is not checked.
+ * Decoys and the protocols with 'no cleavage' or 'unspecific cleavage' are skipped.
+ * Reported in bulk, with the fraction of inconsistent PeptideEvidences per protocol.
+ * This rule is not in the list of object rules to execute, it's called with the file by the validator.
+ */
+public class EnzymeSpecificityObjectRule extends AObjectRule<File> {
+
+    /**
+     * Constants.
+     */
+    private static final Context PEV_CONTEXT            = new Context(MzIdentMLElement.PeptideEvidence.getXpath());
+    private static final String STR_PEPTIDE             = "Peptide";
+    private static final String STR_PEPTIDE_SEQ         = "PeptideSequence";
+    private static final String STR_PEPTIDE_EVIDENCE    = "PeptideEvidence";
+    private static final String STR_SPECTRUM_ID         = "SpectrumIdentification";
+    private static final String STR_SI_PROTOCOL         = "SpectrumIdentificationProtocol";
+    private static final String STR_SI_LIST             = "SpectrumIdentificationList";
+    private static final String STR_PEPTIDE_EV_REF_ELEM = "PeptideEvidenceRef";
+    private static final String STR_ENZYMES             = "Enzymes";
+    private static final String STR_ENZYME              = "Enzyme";
+    private static final String STR_ENZYME_NAME         = "EnzymeName";
+    private static final String STR_SITE_REGEXP         = "SiteRegexp";
+    private static final String STR_CV_PARAM            = "cvParam";
+    private static final String STR_ID                  = "id";
+    private static final String STR_ACCESSION           = "accession";
+    private static final String STR_PEPTIDE_REF         = "peptide_ref";
+    private static final String STR_PEPTIDE_EV_REF      = "peptideEvidence_ref";
+    private static final String STR_SI_PROTOCOL_REF     = "spectrumIdentificationProtocol_ref";
+    private static final String STR_SI_LIST_REF         = "spectrumIdentificationList_ref";
+    private static final String STR_START               = "start";
+    private static final String STR_PRE                 = "pre";
+    private static final String STR_POST                = "post";
+    private static final String STR_IS_DECOY            = "isDecoy";
+    private static final String STR_INDEPENDENT         = "independent";
+    private static final String STR_SEMI_SPECIFIC       = "semiSpecific";
+    private static final String STR_MISSED_CLEAVAGES    = "missedCleavages";
+    private static final String STR_NO_ENZYME           = "MS:1001091";
+    private static final String STR_NO_CLEAVAGE         = "MS:1001955";
+    private static final String STR_UNSPECIFIC_CLEAVAGE = "MS:1001956";
+    private static final char TERMINUS                  = '-';
+    private static final char UNKNOWN                   = '?';
+    private static final char INITIATOR_METHIONINE      = 'M';
+    private static final byte NOT_CHECKED               = -1;
+    private static final byte CONSISTENT                = 0;
+    private static final byte NON_SPECIFIC              = 1;
+    private static final byte OVER_MISSED               = 2;
+    private static final int INITIAL_CAPACITY           = 1024;
+    private static final int MAX_EXAMPLES               = 5;
+
+    /**
+     * The Enzymes of a SpectrumIdentificationProtocol.
+     */
+    private static class ProtocolEnzymes {
+        private final List<CompiledEnzyme> enzymes = new ArrayList<>();    // independent enzymes, dependent ones are combined into one
+        private String unknownEnzyme = null;                                // id of an Enzyme without (valid) regular expression
+        private boolean bUnspecific = false;
+        private final BitSet peptideEvidences = new BitSet();
+    }
+
+    /**
+     * Members.
+     */
+    private final PackedSequenceStore peptides = new PackedSequenceStore();
+    private final IdDictionary peptideEvidenceIds = new IdDictionary();
+    private int[] peptideOfEvidence = new int[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+    private int[] starts = new int[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+    private char[] pres = new char[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+    private char[] posts = new char[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+    private final Map<String, String> protocolOfList = new HashMap<>();                 // SpectrumIdentificationList id -> protocol id
+    private final Map<String, ProtocolEnzymes> protocols = new LinkedHashMap<>();        // protocol id -> enzymes
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public EnzymeSpecificityObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+
+        this.setName("Enzyme specificity check");
+
+        this.setDescription("Check that the PeptideEvidences of every SpectrumIdentificationProtocol are cleaved according to its Enzymes, their specificity and missed cleavages.");
+
+        this.addTip("Make sure the SiteRegexp, semiSpecific and missedCleavages of the Enzymes are the settings of the search.");
+        this.addTip("Make sure pre and post of the PeptideEvidences are the residues before and after the peptide in the protein sequence.");
+    }
+
+    /**
+     * Checks, if the object is a File.
+     *
+     * @param obj   the object to check
+     * @return true, if obj is a File
+     */
+    @Override
+    public boolean canCheck(Object obj) {
+        return (obj instanceof File);
+    }
+
+    /**
+     * Scans the file and reports the fractions of PeptideEvidences, which are inconsistent with the Enzymes of their protocol.
+     *
+     * @param xmlFile the mzIdentML file
+     * @return collection of messages
+     * @throws ValidatorException if the file can not be read
+     */
+    @Override
+    public Collection<ValidatorMessage> check(File xmlFile) throws ValidatorException {
+        this.reset();
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16)) {
+            XMLStreamReader reader = ObjectRuleUtil.createXMLStreamReader(is);
+            try {
+                this.scan(reader);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new ValidatorException("Could not check the enzyme specificity of " + xmlFile.getName(), exc);
+        }
+
+        List<ValidatorMessage> messages = new ArrayList<>();
+        this.protocols.forEach((protocolId, protocol) -> this.checkProtocol(protocolId, protocol, messages));
+        this.reset();
+
+        return messages;
+    }
+
+    /**
+     * Reads the sequences, PeptideEvidences, Enzymes and references of the file.
+     * @param reader the stream reader
+     * @throws XMLStreamException if the file is not well-formed
+     */
+    private void scan(XMLStreamReader reader) throws XMLStreamException {
+        ProtocolEnzymes protocol = null;
+        ProtocolEnzymes listProtocol = null;
+        boolean bIndependent = false;
+        List<CompiledEnzyme> dependentEnzymes = new ArrayList<>();
+        String enzymeId = null;
+        boolean bSemiSpecific = false;
+        int missedCleavages = CompiledEnzyme.UNLIMITED;
+        StringBuilder siteRegexp = null;
+        boolean bInSiteRegexp = false;
+        boolean bInEnzymeName = false;
+        String enzymeAccession = null;
+        String peptideId = null;
+        boolean bInSequence = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && (bInSequence || bInSiteRegexp)) {
+                if (bInSequence) {
+                    this.peptides.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+                else {
+                    siteRegexp.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+            else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (EnzymeSpecificityObjectRule.STR_PEPTIDE_EV_REF_ELEM.equals(name)) {
+                    if (listProtocol != null) {
+                        int peptideEvidence = this.peptideEvidenceIds.get(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_PEPTIDE_EV_REF));
+                        if (peptideEvidence != IdDictionary.NOT_FOUND) {
+                            listProtocol.peptideEvidences.set(peptideEvidence);
+                        }
+                    }
+                }
+                else if (EnzymeSpecificityObjectRule.STR_PEPTIDE_EVIDENCE.equals(name)) {
+                    this.addPeptideEvidence(reader);
+                }
+                else if (EnzymeSpecificityObjectRule.STR_PEPTIDE.equals(name)) {
+                    peptideId = reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_ID);
+                }
+                else if (peptideId != null && EnzymeSpecificityObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                    this.peptides.startSequence(peptideId);
+                    bInSequence = true;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SPECTRUM_ID.equals(name)) {
+                    this.protocolOfList.put(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_SI_LIST_REF),
+                            reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_SI_PROTOCOL_REF));
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SI_PROTOCOL.equals(name)) {
+                    protocol = new ProtocolEnzymes();
+                    this.protocols.put(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_ID), protocol);
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SI_LIST.equals(name)) {
+                    listProtocol = this.protocols.get(this.protocolOfList.get(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_ID)));
+                }
+                else if (EnzymeSpecificityObjectRule.STR_ENZYMES.equals(name)) {
+                    bIndependent = EnzymeSpecificityObjectRule.parseBoolean(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_INDEPENDENT));
+                    dependentEnzymes.clear();
+                }
+                else if (EnzymeSpecificityObjectRule.STR_ENZYME.equals(name)) {
+                    enzymeId = reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_ID);
+                    bSemiSpecific = EnzymeSpecificityObjectRule.parseBoolean(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_SEMI_SPECIFIC));
+                    missedCleavages = EnzymeSpecificityObjectRule.parseMissedCleavages(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_MISSED_CLEAVAGES));
+                    siteRegexp = null;
+                    enzymeAccession = null;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SITE_REGEXP.equals(name)) {
+                    siteRegexp = new StringBuilder();
+                    bInSiteRegexp = true;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_ENZYME_NAME.equals(name)) {
+                    bInEnzymeName = true;
+                }
+                else if (bInEnzymeName && enzymeAccession == null && EnzymeSpecificityObjectRule.STR_CV_PARAM.equals(name)) {
+                    enzymeAccession = reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_ACCESSION);
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if (EnzymeSpecificityObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                    bInSequence = false;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_PEPTIDE.equals(name)) {
+                    peptideId = null;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SITE_REGEXP.equals(name)) {
+                    bInSiteRegexp = false;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_ENZYME_NAME.equals(name)) {
+                    bInEnzymeName = false;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_ENZYME.equals(name) && protocol != null) {
+                    CompiledEnzyme enzyme = this.compileEnzyme(protocol, enzymeId, siteRegexp, enzymeAccession, bSemiSpecific, missedCleavages);
+                    if (enzyme != null) {
+                        (bIndependent ? protocol.enzymes : dependentEnzymes).add(enzyme);
+                    }
+                }
+                else if (EnzymeSpecificityObjectRule.STR_ENZYMES.equals(name) && protocol != null && !dependentEnzymes.isEmpty()) {
+                    protocol.enzymes.add(CompiledEnzyme.combine(dependentEnzymes));
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SI_PROTOCOL.equals(name)) {
+                    protocol = null;
+                }
+                else if (EnzymeSpecificityObjectRule.STR_SI_LIST.equals(name)) {
+                    listProtocol = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores pre, post, start and the Peptide of a PeptideEvidence, decoys are skipped.
+     * @param reader the stream reader positioned on the PeptideEvidence start element
+     */
+    private void addPeptideEvidence(XMLStreamReader reader) {
+        String id = reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_ID);
+        if (id == null || EnzymeSpecificityObjectRule.parseBoolean(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_IS_DECOY))) {
+            return;
+        }
+
+        int peptideEvidence = this.peptideEvidenceIds.add(id);
+        if (peptideEvidence >= this.peptideOfEvidence.length) {
+            int newLength = Math.max(peptideEvidence + 1, this.peptideOfEvidence.length * 2);
+            this.peptideOfEvidence = Arrays.copyOf(this.peptideOfEvidence, newLength);
+            this.starts = Arrays.copyOf(this.starts, newLength);
+            this.pres = Arrays.copyOf(this.pres, newLength);
+            this.posts = Arrays.copyOf(this.posts, newLength);
+        }
+        String peptideRef = reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_PEPTIDE_REF);
+        this.peptideOfEvidence[peptideEvidence] = (peptideRef == null) ? PackedSequenceStore.NOT_FOUND : this.peptides.get(peptideRef);
+        this.pres[peptideEvidence] = EnzymeSpecificityObjectRule.parseResidue(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_PRE));
+        this.posts[peptideEvidence] = EnzymeSpecificityObjectRule.parseResidue(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_POST));
+        try {
+            this.starts[peptideEvidence] = Integer.parseInt(reader.getAttributeValue(null, EnzymeSpecificityObjectRule.STR_START));
+        }
+        catch (NumberFormatException exc) {
+            this.starts[peptideEvidence] = 0;
+        }
+    }
+
+    /**
+     * Compiles the SiteRegexp of an Enzyme, or the regular expression of its name in the PSI-MS CV.
+     * @param protocol          the enzymes of the protocol, marked as unspecific or unknown if the enzyme can't be compiled
+     * @param enzymeId          the id of the Enzyme
+     * @param siteRegexp        the SiteRegexp, null if not given
+     * @param accession         the accession of the EnzymeName, null if not given
+     * @param bSemiSpecific     the semiSpecific attribute
+     * @param missedCleavages   the missedCleavages attribute
+     * @return the compiled enzyme, null if it can't be compiled
+     */
+    private CompiledEnzyme compileEnzyme(ProtocolEnzymes protocol, String enzymeId, StringBuilder siteRegexp, String accession, boolean bSemiSpecific, int missedCleavages) {
+        if (EnzymeSpecificityObjectRule.STR_NO_ENZYME.equals(accession) || EnzymeSpecificityObjectRule.STR_NO_CLEAVAGE.equals(accession)
+                || EnzymeSpecificityObjectRule.STR_UNSPECIFIC_CLEAVAGE.equals(accession)) {
+            protocol.bUnspecific = true;
+            return null;
+        }
+
+        String regexp = (siteRegexp != null && siteRegexp.toString().trim().length() > 0) ? siteRegexp.toString()
+                : (accession == null) ? null : CompiledEnzyme.getRegexp(accession);
+        if (regexp == null) {
+            protocol.unknownEnzyme = enzymeId;
+            return null;
+        }
+        try {
+            return CompiledEnzyme.compile(regexp, bSemiSpecific, missedCleavages);
+        }
+        catch (PatternSyntaxException exc) {
+            protocol.unknownEnzyme = enzymeId;
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks the PeptideEvidences of a protocol in parallel and reports the inconsistent ones.
+     * @param protocolId    the id of the SpectrumIdentificationProtocol
+     * @param protocol      the enzymes and PeptideEvidences of the protocol
+     * @param messages      the list to add the messages to
+     */
+    private void checkProtocol(String protocolId, ProtocolEnzymes protocol, List<ValidatorMessage> messages) {
+        if (protocol.bUnspecific || protocol.peptideEvidences.isEmpty() || (protocol.enzymes.isEmpty() && protocol.unknownEnzyme == null)) {
+            return;
+        }
+        if (protocol.unknownEnzyme != null) {
+            messages.add(new ValidatorMessage("The Enzyme '" + protocol.unknownEnzyme + "' of SpectrumIdentificationProtocol '" + protocolId
+                    + "' has neither a valid SiteRegexp nor a cleavage agent name with a regular expression, the specificity of its PeptideEvidences was not checked.",
+                    MessageLevel.INFO, EnzymeSpecificityObjectRule.PEV_CONTEXT, this));
+            return;
+        }
+
+        byte[] results = new byte[protocol.peptideEvidences.length()];
+        protocol.peptideEvidences.stream().parallel().forEach((peptideEvidence) -> results[peptideEvidence] = this.checkPeptideEvidence(protocol, peptideEvidence));
+
+        int checkedCount = 0;
+        int nonSpecificCount = 0;
+        int overMissedCount = 0;
+        List<String> nonSpecificExamples = new ArrayList<>();
+        List<String> overMissedExamples = new ArrayList<>();
+        for (int peptideEvidence = protocol.peptideEvidences.nextSetBit(0); peptideEvidence >= 0; peptideEvidence = protocol.peptideEvidences.nextSetBit(peptideEvidence + 1)) {
+            byte result = results[peptideEvidence];
+            if (result == EnzymeSpecificityObjectRule.NOT_CHECKED) {
+                continue;
+            }
+            checkedCount++;
+            if ((result & EnzymeSpecificityObjectRule.NON_SPECIFIC) != 0) {
+                nonSpecificCount++;
+                if (nonSpecificExamples.size() < EnzymeSpecificityObjectRule.MAX_EXAMPLES) {
+                    nonSpecificExamples.add(this.peptideEvidenceIds.getId(peptideEvidence));
+                }
+            }
+            if ((result & EnzymeSpecificityObjectRule.OVER_MISSED) != 0) {
+                overMissedCount++;
+                if (overMissedExamples.size() < EnzymeSpecificityObjectRule.MAX_EXAMPLES) {
+                    overMissedExamples.add(this.peptideEvidenceIds.getId(peptideEvidence));
+                }
+            }
+        }
+
+        if (nonSpecificCount > 0) {
+            messages.add(new ValidatorMessage(nonSpecificCount + " of " + checkedCount + " PeptideEvidence(s) (" + EnzymeSpecificityObjectRule.formatPercent(nonSpecificCount, checkedCount)
+                    + ") identified with SpectrumIdentificationProtocol '" + protocolId + "' are not cleaved at the termini required by the specificity of its Enzymes, e.g. " + nonSpecificExamples,
+                    MessageLevel.WARN, EnzymeSpecificityObjectRule.PEV_CONTEXT, this));
+        }
+        if (overMissedCount > 0) {
+            messages.add(new ValidatorMessage(overMissedCount + " of " + checkedCount + " PeptideEvidence(s) (" + EnzymeSpecificityObjectRule.formatPercent(overMissedCount, checkedCount)
+                    + ") identified with SpectrumIdentificationProtocol '" + protocolId + "' have more missed cleavages than the missedCleavages of its Enzymes, e.g. " + overMissedExamples,
+                    MessageLevel.WARN, EnzymeSpecificityObjectRule.PEV_CONTEXT, this));
+        }
+    }
+
+    /**
+     * Checks a PeptideEvidence against the enzymes of its protocol, it's consistent if one of the independent enzymes accepts both its
+     * termini and its missed cleavages, else the flags of the enzyme with the fewest violations are returned.
+     * @param protocol          the enzymes of the protocol
+     * @param peptideEvidence   the int of the PeptideEvidence
+     * @return NOT_CHECKED, CONSISTENT or the flags NON_SPECIFIC and OVER_MISSED
+     */
+    private byte checkPeptideEvidence(ProtocolEnzymes protocol, int peptideEvidence) {
+        int peptide = this.peptideOfEvidence[peptideEvidence];
+        int length = (peptide == PackedSequenceStore.NOT_FOUND) ? 0 : this.peptides.getLength(peptide);
+        char pre = this.pres[peptideEvidence];
+        char post = this.posts[peptideEvidence];
+        if (length == 0 || (pre == EnzymeSpecificityObjectRule.UNKNOWN && post == EnzymeSpecificityObjectRule.UNKNOWN)) {
+            return EnzymeSpecificityObjectRule.NOT_CHECKED;
+        }
+
+        // pre, the peptide sequence and post
+        char[] residues = new char[length + 2];
+        residues[0] = pre;
+        for (int i = 0; i < length; i++) {
+            residues[i + 1] = this.peptides.getResidue(peptide, i);
+        }
+        residues[length + 1] = post;
+
+        byte result = EnzymeSpecificityObjectRule.NON_SPECIFIC | EnzymeSpecificityObjectRule.OVER_MISSED;
+        for (CompiledEnzyme enzyme : protocol.enzymes) {
+            boolean bNTermSpecific = pre == EnzymeSpecificityObjectRule.UNKNOWN || pre == EnzymeSpecificityObjectRule.TERMINUS
+                    || (pre == EnzymeSpecificityObjectRule.INITIATOR_METHIONINE && this.starts[peptideEvidence] == 2)
+                    || enzyme.isCleavageSite(residues, 1);
+            boolean bCTermSpecific = post == EnzymeSpecificityObjectRule.UNKNOWN || post == EnzymeSpecificityObjectRule.TERMINUS
+                    || enzyme.isCleavageSite(residues, length + 1);
+            boolean bSpecific = enzyme.isSemiSpecific() ? (bNTermSpecific || bCTermSpecific) : (bNTermSpecific && bCTermSpecific);
+
+            int missed = 0;
+            for (int pos = 2; pos <= length; pos++) {
+                if (enzyme.isCleavageSite(residues, pos)) {
+                    missed++;
+                }
+            }
+            boolean bOverMissed = enzyme.getMissedCleavages() != CompiledEnzyme.UNLIMITED && missed > enzyme.getMissedCleavages();
+
+            byte verdict = (byte) ((bSpecific ? EnzymeSpecificityObjectRule.CONSISTENT : EnzymeSpecificityObjectRule.NON_SPECIFIC)
+                    | (bOverMissed ? EnzymeSpecificityObjectRule.OVER_MISSED : EnzymeSpecificityObjectRule.CONSISTENT));
+            if (verdict == EnzymeSpecificityObjectRule.CONSISTENT) {
+                return verdict;
+            }
+            if (Integer.bitCount(verdict) < Integer.bitCount(result)) {
+                result = verdict;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a boolean attribute, which is "1" or "true" in the files of the different versions.
+     * @param value the attribute value
+     * @return true, if the value is true
+     */
+    private static boolean parseBoolean(String value) {
+        return "1".equals(value) || Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Parses the missedCleavages attribute.
+     * @param value the attribute value
+     * @return the number, UNLIMITED if not given or invalid
+     */
+    private static int parseMissedCleavages(String value) {
+        if (value == null) {
+            return CompiledEnzyme.UNLIMITED;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException exc) {
+            return CompiledEnzyme.UNLIMITED;
+        }
+    }
+
+    /**
+     * Parses a pre or post attribute.
+     * @param value the attribute value
+     * @return the upper case residue, '-' for a terminus, '?' if missing or unknown
+     */
+    private static char parseResidue(String value) {
+        if (value == null || value.length() != 1) {
+            return EnzymeSpecificityObjectRule.UNKNOWN;
+        }
+
+        return Character.toUpperCase(value.charAt(0));
+    }
+
+    /**
+     * Formats a fraction as percentage.
+     * @param count the count
+     * @param total the total
+     * @return the percentage with one decimal, "&lt;0.1%" for smaller fractions
+     */
+    private static String formatPercent(int count, int total) {
+        double percent = 100.0 * count / total;
+        return (percent < 0.1) ? "<0.1%" : String.format(Locale.US, "%.1f%%", percent);
+    }
+
+    /**
+     * Releases the sequences and references of the last scan.
+     */
+    private void reset() {
+        this.peptides.clear();
+        this.peptideEvidenceIds.clear();
+        this.peptideOfEvidence = new int[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+        this.starts = new int[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+        this.pres = new char[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+        this.posts = new char[EnzymeSpecificityObjectRule.INITIAL_CAPACITY];
+        this.protocolOfList.clear();
+        this.protocols.clear();
+    }
+}
@@ -2,16 +2,17 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.CrossReferenceIndex;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
 import psidev.psi.tools.validator.ValidatorException;
 import psidev.psi.tools.validator.ValidatorMessage;
 import uk.ac.ebi.jmzidml.MzIdentMLElement;
-import uk.ac.ebi.jmzidml.model.mzidml.DBSequence;
 import uk.ac.ebi.jmzidml.model.mzidml.PeptideEvidence;
 
 /**
@@ -28,9 +29,7 @@ public class PeptideEvidenceObjectRule extends AObjectRule<PeptideEvidence> {
     private static final Context PEV_CONTEXT    = new Context(MzIdentMLElement.PeptideEvidence.getXpath());
     private final String startEndAttrMissingMsg = " must have correct start and end attributes set (since it's not a de novo search).";
     private final String startEndAttrWrongMsg   = " has wrong start and end attributes set (start must be >= 1 and end >=start, but < length of the protein sequence.";
-    public static HashSet<String> peptideRefSet = new HashSet<>();
-    public static HashSet<String> dbSeqRefSet   = new HashSet<>();
-    public static HashMap<String, String> peptideRef2PeptideEvidenceIDMap = new HashMap<>();
+    public static final CrossReferenceIndex CROSS_REFERENCES = new CrossReferenceIndex();   // references to Peptides and DBSequences
     
     /**
      * Constructors.
@@ -80,24 +79,13 @@ public class PeptideEvidenceObjectRule extends AObjectRule<PeptideEvidence> {
                 this.addMissingMessageToCollection(pev, messages);
             }
             
+            // start and end are checked against the DBSequence by the PeptideEvidenceSequenceObjectRule in one pass over the file
             if (start < 1 || end <= start) {
                 this.addWrongMessageToCollection(pev, messages);
             }
-            else {
-                DBSequence dbSequence = pev.getDBSequence();    // TODO: Why is dbSequence here null ?
-                
-                if (dbSequence != null && end > dbSequence.getSeq().length()) {
-                    this.addWrongMessageToCollection(pev, messages);
-                }
-                else {
-                    this.LOGGER.info("dbSequence is null");
-                }
-            }
         }
         
-        PeptideEvidenceObjectRule.peptideRefSet.add(pev.getPeptideRef());
-        PeptideEvidenceObjectRule.dbSeqRefSet.add(pev.getDBSequenceRef());
-        PeptideEvidenceObjectRule.peptideRef2PeptideEvidenceIDMap.put(pev.getPeptideRef(), pev.getId());
+        PeptideEvidenceObjectRule.CROSS_REFERENCES.addPeptideEvidence(pev.getId(), pev.getPeptideRef(), pev.getDBSequenceRef());
 
         return messages;
     }
@@ -124,6 +112,24 @@ public class PeptideEvidenceObjectRule extends AObjectRule<PeptideEvidence> {
         + this.startEndAttrWrongMsg, MessageLevel.ERROR, PeptideEvidenceObjectRule.PEV_CONTEXT, this));
     }
     
+    /**
+     * Produces the Peptide and DBSequence references of the PeptideEvidences.
+     * @return the produced facts
+     */
+    @Override
+    public Set<RuleFact> getProducedFacts() {
+        return EnumSet.of(RuleFact.PEPTIDE_EVIDENCE_REFERENCES);
+    }
+
+    /**
+     * Reads the search type flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.SEARCH_TYPE);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
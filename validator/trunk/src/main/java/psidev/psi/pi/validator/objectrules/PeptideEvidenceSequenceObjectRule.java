@@ -0,0 +1,409 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.index.FastaIndex;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import psidev.psi.pi.validator.objectrules.util.PackedSequenceStore;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+
+/**
+ * Checks in one streaming (StAX) pass, that every PeptideEvidence matches the protein sequence of its DBSequence:
+ * the residues start..end must be the PeptideSequence of the Peptide, pre and post must be the flanking residues ('-' at a terminus).
+ * The SequenceCollection lists the DBSequences, then the Peptides, then the PeptideEvidences, so the sequences are packed
+ * into {@link PackedSequenceStore}s while reading and each PeptideEvidence is checked when it's read, without JAXB objects.
+ * PeptideEvidences without start/end, with a DBSequence without Seq, of translated nucleic acid sequences (frame) and decoys,
+ * whose DBSequence often contains the target sequence, are skipped.
+ * If FASTA resolution is enabled, the sequence of a DBSequence without Seq is read from the local FASTA file of its SearchDatabase
+ * through a {@link FastaIndex}, when it's referenced the first time.
+ * Reported in bulk, one message per kind of mismatch.
+ * This rule is not in the list of object rules to execute, it's called with the file by the validator.
+ */
+public class PeptideEvidenceSequenceObjectRule extends AObjectRule<File> {
+
+    /**
+     * Constants.
+     */
+    private static final Context PEV_CONTEXT        = new Context(MzIdentMLElement.PeptideEvidence.getXpath());
+    private static final String STR_DBSEQUENCE      = "DBSequence";
+    private static final String STR_SEQ             = "Seq";
+    private static final String STR_PEPTIDE         = "Peptide";
+    private static final String STR_PEPTIDE_SEQ     = "PeptideSequence";
+    private static final String STR_PEPTIDE_EVIDENCE = "PeptideEvidence";
+    private static final String STR_ID              = "id";
+    private static final String STR_START           = "start";
+    private static final String STR_END             = "end";
+    private static final String STR_PRE             = "pre";
+    private static final String STR_POST            = "post";
+    private static final String STR_PEPTIDE_REF     = "peptide_ref";
+    private static final String STR_DBSEQUENCE_REF  = "dBSequence_ref";
+    private static final String STR_FRAME           = "frame";
+    private static final String STR_IS_DECOY        = "isDecoy";
+    private static final String STR_ACCESSION       = "accession";
+    private static final String STR_SEARCH_DB_REF   = "searchDatabase_ref";
+    private static final char TERMINUS              = '-';
+    private static final char UNKNOWN               = '?';
+    private static final int MAX_EXAMPLES           = 5;
+
+    /**
+     * Members.
+     */
+    private final PackedSequenceStore proteins = new PackedSequenceStore();
+    private final PackedSequenceStore peptides = new PackedSequenceStore();
+    private int outOfRangeCount = 0;
+    private int sequenceMismatchCount = 0;
+    private int flankingMismatchCount = 0;
+    private final List<String> outOfRangeExamples = new ArrayList<>();
+    private final List<String> sequenceMismatchExamples = new ArrayList<>();
+    private final List<String> flankingMismatchExamples = new ArrayList<>();
+    private boolean bFastaResolution = false;
+    private File mzIdentMLDir = null;
+    private Map<String, String> searchDatabaseLocations = Collections.emptyMap();   // SearchDatabase id -> location
+    private final Map<String, String> unresolvedAccessions = new HashMap<>();      // DBSequence id -> accession
+    private final Map<String, String> unresolvedSearchDbRefs = new HashMap<>();   // DBSequence id -> SearchDatabase id
+    private final Map<String, FastaIndex> fastaIndexes = new HashMap<>();         // SearchDatabase id -> index, null if not available
+    private final Map<String, String> missingFastaFiles = new LinkedHashMap<>();  // SearchDatabase id -> location
+    private int accessionNotFoundCount = 0;
+    private final List<String> accessionNotFoundExamples = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public PeptideEvidenceSequenceObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+
+        this.setName("PeptideEvidence sequence check");
+
+        this.setDescription("Check that the PeptideSequence of every PeptideEvidence occurs at start..end of the DBSequence and that pre and post are the flanking residues.");
+
+        this.addTip("Make sure start and end of the PeptideEvidence are the 1-based positions of the peptide in the protein sequence.");
+        this.addTip("Make sure pre and post are the residues before and after the peptide, '-' at the N- resp. C-terminus of the protein.");
+    }
+
+    /**
+     * Flag to specify if the sequences of DBSequences without Seq are read from the local FASTA files of the SearchDatabases.
+     * The locations of the FASTA files are set with {@link #setSearchDatabaseLocations(Map)}.
+     * @param bFastaResolution true to read the sequences from the FASTA files
+     */
+    public void setFastaResolution(boolean bFastaResolution) {
+        this.bFastaResolution = bFastaResolution;
+    }
+
+    /**
+     * Sets the locations of the SearchDatabases of the validated file, needed to resolve sequences from the FASTA files.
+     * @param searchDatabaseLocations map of SearchDatabase id to location
+     */
+    public void setSearchDatabaseLocations(Map<String, String> searchDatabaseLocations) {
+        this.searchDatabaseLocations = searchDatabaseLocations;
+    }
+
+    /**
+     * Checks, if the object is a File.
+     *
+     * @param obj   the object to check
+     * @return true, if obj is a File
+     */
+    @Override
+    public boolean canCheck(Object obj) {
+        return (obj instanceof File);
+    }
+
+    /**
+     * Scans the file and reports the PeptideEvidences which don't match their DBSequence.
+     *
+     * @param xmlFile the mzIdentML file
+     * @return collection of messages
+     * @throws ValidatorException if the file can not be read
+     */
+    @Override
+    public Collection<ValidatorMessage> check(File xmlFile) throws ValidatorException {
+        this.reset();
+        this.mzIdentMLDir = xmlFile.getAbsoluteFile().getParentFile();
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16)) {
+            XMLStreamReader reader = ObjectRuleUtil.createXMLStreamReader(is);
+            try {
+                String id = null;
+                PackedSequenceStore store = null;
+                boolean bInSequence = false;
+                boolean bHasSequence = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.CHARACTERS && bInSequence) {
+                        store.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    else if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (PeptideEvidenceSequenceObjectRule.STR_PEPTIDE_EVIDENCE.equals(name)) {
+                            this.checkPeptideEvidence(reader);
+                        }
+                        else if (PeptideEvidenceSequenceObjectRule.STR_DBSEQUENCE.equals(name)) {
+                            id = reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_ID);
+                            store = this.proteins;
+                            bHasSequence = false;
+                            if (this.bFastaResolution && id != null) {
+                                this.unresolvedAccessions.put(id, reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_ACCESSION));
+                                this.unresolvedSearchDbRefs.put(id, reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_SEARCH_DB_REF));
+                            }
+                        }
+                        else if (PeptideEvidenceSequenceObjectRule.STR_PEPTIDE.equals(name)) {
+                            id = reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_ID);
+                            store = this.peptides;
+                        }
+                        else if (id != null && (PeptideEvidenceSequenceObjectRule.STR_SEQ.equals(name) || PeptideEvidenceSequenceObjectRule.STR_PEPTIDE_SEQ.equals(name))) {
+                            store.startSequence(id);
+                            bInSequence = true;
+                            bHasSequence = true;
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (PeptideEvidenceSequenceObjectRule.STR_SEQ.equals(name) || PeptideEvidenceSequenceObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                            bInSequence = false;
+                        }
+                        else if (PeptideEvidenceSequenceObjectRule.STR_DBSEQUENCE.equals(name) || PeptideEvidenceSequenceObjectRule.STR_PEPTIDE.equals(name)) {
+                            if (bHasSequence && store == this.proteins) {
+                                this.unresolvedAccessions.remove(id);
+                                this.unresolvedSearchDbRefs.remove(id);
+                            }
+                            id = null;
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new ValidatorException("Could not check the PeptideEvidence sequences of " + xmlFile.getName(), exc);
+        }
+        finally {
+            this.closeFastaIndexes();
+        }
+
+        List<ValidatorMessage> messages = this.createMessages();
+        this.reset();
+
+        return messages;
+    }
+
+    /**
+     * Checks a PeptideEvidence against the packed protein and peptide sequences.
+     * @param reader the stream reader positioned on the PeptideEvidence start element
+     */
+    private void checkPeptideEvidence(XMLStreamReader reader) {
+        String dbSequenceRef = reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_DBSEQUENCE_REF);
+        if (dbSequenceRef == null
+                || reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_FRAME) != null
+                || Boolean.parseBoolean(reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_IS_DECOY))) {
+            return;
+        }
+        int protein = this.proteins.get(dbSequenceRef);
+        if (protein == PackedSequenceStore.NOT_FOUND && this.unresolvedAccessions.containsKey(dbSequenceRef)) {
+            protein = this.resolveFromFasta(dbSequenceRef);
+        }
+        if (protein == PackedSequenceStore.NOT_FOUND || this.proteins.getLength(protein) == 0) {
+            return;
+        }
+        int start;
+        int end;
+        try {
+            // missing or wrong attributes are reported by the PeptideEvidenceObjectRule
+            start = Integer.parseInt(reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_START));
+            end = Integer.parseInt(reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_END));
+        }
+        catch (NumberFormatException exc) {
+            return;
+        }
+        if (start < 1 || end < start) {
+            return;
+        }
+
+        String id = reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_ID);
+        int proteinLength = this.proteins.getLength(protein);
+        if (end > proteinLength) {
+            this.outOfRangeCount++;
+            PeptideEvidenceSequenceObjectRule.addExample(this.outOfRangeExamples, id);
+            return;
+        }
+
+        String peptideRef = reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_PEPTIDE_REF);
+        int peptide = (peptideRef == null) ? PackedSequenceStore.NOT_FOUND : this.peptides.get(peptideRef);
+        if (peptide != PackedSequenceStore.NOT_FOUND && this.peptides.getLength(peptide) > 0
+                && (end - start + 1 != this.peptides.getLength(peptide) || !this.proteins.regionMatches(protein, start - 1, this.peptides, peptide))) {
+            this.sequenceMismatchCount++;
+            PeptideEvidenceSequenceObjectRule.addExample(this.sequenceMismatchExamples, id);
+        }
+
+        char expectedPre = (start == 1) ? PeptideEvidenceSequenceObjectRule.TERMINUS : this.proteins.getResidue(protein, start - 2);
+        char expectedPost = (end == proteinLength) ? PeptideEvidenceSequenceObjectRule.TERMINUS : this.proteins.getResidue(protein, end);
+        if (!PeptideEvidenceSequenceObjectRule.isFlankingResidue(reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_PRE), expectedPre)
+                || !PeptideEvidenceSequenceObjectRule.isFlankingResidue(reader.getAttributeValue(null, PeptideEvidenceSequenceObjectRule.STR_POST), expectedPost)) {
+            this.flankingMismatchCount++;
+            PeptideEvidenceSequenceObjectRule.addExample(this.flankingMismatchExamples, id);
+        }
+    }
+
+    /**
+     * Reads the sequence of a DBSequence without Seq from the FASTA file of its SearchDatabase into the protein store.
+     * @param dbSequenceId the id of the DBSequence
+     * @return the int of the DBSequence in the protein store, NOT_FOUND if the sequence is not available
+     */
+    private int resolveFromFasta(String dbSequenceId) {
+        String accession = this.unresolvedAccessions.remove(dbSequenceId);
+        String searchDbRef = this.unresolvedSearchDbRefs.remove(dbSequenceId);
+        if (accession == null || searchDbRef == null) {
+            return PackedSequenceStore.NOT_FOUND;
+        }
+
+        if (!this.fastaIndexes.containsKey(searchDbRef)) {
+            FastaIndex fastaIndex = null;
+            String location = this.searchDatabaseLocations.get(searchDbRef);
+            File fastaFile = ObjectRuleUtil.findLocalFile(location, this.mzIdentMLDir);
+            if (fastaFile == null) {
+                this.missingFastaFiles.put(searchDbRef, location);
+            }
+            else {
+                try {
+                    fastaIndex = FastaIndex.open(fastaFile);
+                }
+                catch (IOException exc) {
+                    exc.printStackTrace(System.err);
+                    this.missingFastaFiles.put(searchDbRef, location);
+                }
+            }
+            this.fastaIndexes.put(searchDbRef, fastaIndex);
+        }
+
+        FastaIndex fastaIndex = this.fastaIndexes.get(searchDbRef);
+        if (fastaIndex == null) {
+            return PackedSequenceStore.NOT_FOUND;
+        }
+        String sequence = fastaIndex.getSequence(accession);
+        if (sequence == null) {
+            this.accessionNotFoundCount++;
+            PeptideEvidenceSequenceObjectRule.addExample(this.accessionNotFoundExamples, accession);
+            return PackedSequenceStore.NOT_FOUND;
+        }
+        int protein = this.proteins.startSequence(dbSequenceId);
+        this.proteins.append(sequence);
+
+        return protein;
+    }
+
+    /**
+     * Closes the mapped FASTA files.
+     */
+    private void closeFastaIndexes() {
+        for (FastaIndex fastaIndex : this.fastaIndexes.values()) {
+            if (fastaIndex != null) {
+                try {
+                    fastaIndex.close();
+                }
+                catch (IOException exc) {
+                    exc.printStackTrace(System.err);
+                }
+            }
+        }
+        this.fastaIndexes.clear();
+    }
+
+    /**
+     * Checks a pre or post attribute, a missing or unknown ('?') residue is accepted.
+     * @param value     the attribute value
+     * @param expected  the residue of the protein sequence
+     * @return true, if the attribute matches
+     */
+    private static boolean isFlankingResidue(String value, char expected) {
+        if (value == null || value.length() != 1 || value.charAt(0) == PeptideEvidenceSequenceObjectRule.UNKNOWN) {
+            return true;
+        }
+
+        return Character.toUpperCase(value.charAt(0)) == expected;
+    }
+
+    /**
+     * Keeps the first ids as examples.
+     * @param examples  the examples
+     * @param id        the id of the PeptideEvidence
+     */
+    private static void addExample(List<String> examples, String id) {
+        if (examples.size() < PeptideEvidenceSequenceObjectRule.MAX_EXAMPLES) {
+            examples.add(id);
+        }
+    }
+
+    /**
+     * Creates the bulk messages after the scan.
+     * @return list of messages
+     */
+    private List<ValidatorMessage> createMessages() {
+        List<ValidatorMessage> messages = new ArrayList<>();
+        if (this.outOfRangeCount > 0) {
+            messages.add(new ValidatorMessage(this.outOfRangeCount + " PeptideEvidence element(s) at " + PeptideEvidenceSequenceObjectRule.PEV_CONTEXT.getContext()
+                    + " have an end beyond the length of the DBSequence, e.g. " + this.outOfRangeExamples,
+                    MessageLevel.ERROR, PeptideEvidenceSequenceObjectRule.PEV_CONTEXT, this));
+        }
+        if (this.sequenceMismatchCount > 0) {
+            messages.add(new ValidatorMessage(this.sequenceMismatchCount + " PeptideEvidence element(s) at " + PeptideEvidenceSequenceObjectRule.PEV_CONTEXT.getContext()
+                    + " have start and end attributes which don't locate the PeptideSequence in the DBSequence, e.g. " + this.sequenceMismatchExamples,
+                    MessageLevel.ERROR, PeptideEvidenceSequenceObjectRule.PEV_CONTEXT, this));
+        }
+        if (this.flankingMismatchCount > 0) {
+            messages.add(new ValidatorMessage(this.flankingMismatchCount + " PeptideEvidence element(s) at " + PeptideEvidenceSequenceObjectRule.PEV_CONTEXT.getContext()
+                    + " have pre or post attributes which are not the flanking residues in the DBSequence, e.g. " + this.flankingMismatchExamples,
+                    MessageLevel.ERROR, PeptideEvidenceSequenceObjectRule.PEV_CONTEXT, this));
+        }
+
+        this.missingFastaFiles.forEach((searchDbRef, location) -> {
+            messages.add(new ValidatorMessage("The FASTA file '" + location + "' of SearchDatabase '" + searchDbRef
+                    + "' was not found, the PeptideEvidences of its DBSequences without Seq were not checked.",
+                    MessageLevel.INFO, PeptideEvidenceSequenceObjectRule.PEV_CONTEXT, this));
+        });
+        if (this.accessionNotFoundCount > 0) {
+            messages.add(new ValidatorMessage(this.accessionNotFoundCount + " accession(s) of DBSequences without Seq were not found in the FASTA file of their SearchDatabase, e.g. "
+                    + this.accessionNotFoundExamples, MessageLevel.INFO, PeptideEvidenceSequenceObjectRule.PEV_CONTEXT, this));
+        }
+
+        return messages;
+    }
+
+    /**
+     * Releases the sequences and counts of the last scan.
+     */
+    private void reset() {
+        this.proteins.clear();
+        this.peptides.clear();
+        this.outOfRangeCount = 0;
+        this.sequenceMismatchCount = 0;
+        this.flankingMismatchCount = 0;
+        this.outOfRangeExamples.clear();
+        this.sequenceMismatchExamples.clear();
+        this.flankingMismatchExamples.clear();
+        this.unresolvedAccessions.clear();
+        this.unresolvedSearchDbRefs.clear();
+        this.missingFastaFiles.clear();
+        this.accessionNotFoundCount = 0;
+        this.accessionNotFoundExamples.clear();
+    }
+}
@@ -2,8 +2,11 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -131,6 +134,15 @@ public class PeptideLevelStatsObjectRule extends AObjectRule<SpectrumIdentificat
         + " doesn't contain the " + this.tripletMsg + "required in case of peptide-level scoring", MessageLevel.ERROR, PeptideLevelStatsObjectRule.SII_CONTEXT, this));
     }
     
+    /**
+     * Reads the additional search params flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -61,7 +64,7 @@ public class PeptideObjectRule extends AObjectRule<Peptide> {
     public Collection<ValidatorMessage> check(Peptide pept) throws ValidatorException {
         List<ValidatorMessage> messages = new ArrayList<>();
         
-        if (!PeptideEvidenceObjectRule.peptideRefSet.contains(pept.getId())) {
+        if (!PeptideEvidenceObjectRule.CROSS_REFERENCES.isPeptideReferenced(pept.getId())) {
             messages.add(new ValidatorMessage("The peptide with ID " + pept.getId() + " is not referenced by a PeptideEvidence element at" + 
                 PeptideObjectRule.PEPTIDE_CONTEXT.getContext(),
                 MessageLevel.WARN, PeptideObjectRule.PEPTIDE_CONTEXT, this));
@@ -70,6 +73,24 @@ public class PeptideObjectRule extends AObjectRule<Peptide> {
         return messages;
     }
 
+    /**
+     * Reads the Peptide and DBSequence references of the PeptideEvidences.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.PEPTIDE_EVIDENCE_REFERENCES);
+    }
+
+    /**
+     * The rule only reads the cross references collected from the PeptideEvidences.
+     * @return true
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -2,9 +2,12 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -44,10 +47,11 @@ public class ProteinAmbiguityGroupObjectRule extends AObjectRule<ProteinAmbiguit
     private static final String XL_INTERACTION_SCORE    = "MS:1002664"; // protein interaction score derived from cross-linking
     private static final String XL_INTERACTION_SCORE_PPL= "MS:1002676"; // protein-pair-level global FDR
     private static final String XL_INTERACTION_SCORE_RPL= "MS:1002677"; // residue-pair-level global FDR
-    private final String STR_REGEXP_XL_INTERACTION_SCORE= "(\\d+[.][a|b]:(\\d+|null):\\d+[.]\\d+([Ee][+-][0-9]+)*:(true|false]\\{1\\}))";
-
-    private final String STR_COLON = ":";
-    private final String STR_POINT = ".";
+    private static final String STR_TRUE                = "true";
+    private static final String STR_FALSE               = "false";
+    private static final String STR_NULL                = "null";
+    private static final char CHAR_COLON                = ':';
+    private static final char CHAR_POINT                = '.';
 
     /**
      * Members.
@@ -168,52 +172,45 @@ public class ProteinAmbiguityGroupObjectRule extends AObjectRule<ProteinAmbiguit
             String acc = cvParam.getAccession();
             if (this.isAXLInteractionScore(acc)) {                           
                 cvValueXLInteractionScore = cvParam.getValue();
-                if (!cvValueXLInteractionScore.matches(this.STR_REGEXP_XL_INTERACTION_SCORE)) {
+                int posScoreEnd = ProteinAmbiguityGroupObjectRule.parseXLInteractionScore(cvValueXLInteractionScore);
+                if (posScoreEnd == this.NOT_FOUND) {
                     this.xlInteractionScoreRegExError = true;
                     this.addRegexViolationMessageToCollection(cvParam, pag, pdh, messages);
                 }
                 else {
-                    int pos = cvValueXLInteractionScore.indexOf(this.STR_COLON);
-                    int posPoint = cvValueXLInteractionScore.indexOf(this.STR_POINT);
-                    if (posPoint > this.NOT_FOUND && pos > posPoint) {
+                    // the value is valid, so only the positions of the separators have to be looked up
+                    int posPoint = cvValueXLInteractionScore.indexOf(ProteinAmbiguityGroupObjectRule.CHAR_POINT);
+                    int posScoreStart = cvValueXLInteractionScore.indexOf(ProteinAmbiguityGroupObjectRule.CHAR_COLON, posPoint + 3) + 1;
+                    if (posScoreStart > 0 && posScoreEnd > posScoreStart) {
+                        boolean bIsLoopLink = false;
+
                         String xlInteractID = cvValueXLInteractionScore.substring(0, posPoint);
-                        Character xlInteractIDSuffix = cvValueXLInteractionScore.substring(posPoint + 1, pos).charAt(0);
-                        
-                        String restStr = cvValueXLInteractionScore.substring(pos + 1);
-                        int posNext = restStr.indexOf(this.STR_COLON);
-                        int posLast = restStr.lastIndexOf(this.STR_COLON);
-                        if (posNext > this.NOT_FOUND && posLast > posNext) {
-                            boolean bIsLoopLink = false;
-                            
-                            String score = restStr.substring(posNext + 1, posLast);
-                            ImmutablePair<String, String> key = new ImmutablePair<>(xlInteractID, score);
-                            if (!ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.containsKey(key)) {
-                                ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.put((ImmutablePair<String, String>) key, new HashMap<>());
-                                ProteinAmbiguityGroupObjectRule.INTERACT_ID_TO_SUFFIX_MAP.put(xlInteractID, xlInteractIDSuffix);
-                            }
-                            else { // special handling for loop links
-                                if (!ProteinAmbiguityGroupObjectRule.INTERACT_ID_TO_SUFFIX_MAP.get(xlInteractID).equals(xlInteractIDSuffix)) {
-                                    ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.remove(key);    // special handling for loop-link
-                                    bIsLoopLink = true;
-                                }
+                        Character xlInteractIDSuffix = cvValueXLInteractionScore.charAt(posPoint + 1);
+                        String score = cvValueXLInteractionScore.substring(posScoreStart, posScoreEnd);
+                        ImmutablePair<String, String> key = new ImmutablePair<>(xlInteractID, score);
+                        if (!ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.containsKey(key)) {
+                            ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.put(key, new HashMap<>());
+                            ProteinAmbiguityGroupObjectRule.INTERACT_ID_TO_SUFFIX_MAP.put(xlInteractID, xlInteractIDSuffix);
+                        }
+                        else { // special handling for loop links
+                            if (!ProteinAmbiguityGroupObjectRule.INTERACT_ID_TO_SUFFIX_MAP.get(xlInteractID).equals(xlInteractIDSuffix)) {
+                                ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.remove(key);    // special handling for loop-link
+                                bIsLoopLink = true;
                             }
-                            
-                            // only if key was not removed (because it is a loop-link, e.g. no proteolytic site exists between the intra-molecular cross-linked residues
-                            if (!bIsLoopLink) {
-                            //if (ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.containsKey(key)) {
-                                HashMap<String, String> key2HashMap = ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.get(key);
-                                if (key2HashMap.containsKey(pag.getId())) {
-                                    String pdhIDFromMap = key2HashMap.get(pag.getId());
-                                    if (!pdh.getId().equals(pdhIDFromMap)) {
-                                        key2HashMap.put(pag.getId(), pdh.getId());
-                                        ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.put(key, key2HashMap);
-                                    }
-                                }
-                                else {
+                        }
+
+                        // only if key was not removed (because it is a loop-link, e.g. no proteolytic site exists between the intra-molecular cross-linked residues
+                        if (!bIsLoopLink) {
+                            HashMap<String, String> key2HashMap = ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.get(key);
+                            if (key2HashMap.containsKey(pag.getId())) {
+                                String pdhIDFromMap = key2HashMap.get(pag.getId());
+                                if (!pdh.getId().equals(pdhIDFromMap)) {
                                     key2HashMap.put(pag.getId(), pdh.getId());
-                                    ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID.put(key, key2HashMap);
                                 }
                             }
+                            else {
+                                key2HashMap.put(pag.getId(), pdh.getId());
+                            }
                         }
                     }
                     else {
@@ -227,6 +224,99 @@ public class ProteinAmbiguityGroupObjectRule extends AObjectRule<ProteinAmbiguit
         }
     }
 
+    /**
+     * Parses a cross-linking interaction score value in a single pass without allocations.
+     * The value must match ID.SUFFIX:PEPTIDE_REF|null:SCORE:PASS_THRESHOLD, i.e. the regular expression
+     * \\d+[.][a|b]:(\\d+|null):\\d+[.]\\d+([Ee][+-][0-9]+)*:(true|false)
+     * e.g. '1.a:12:0.005:true'.
+     * @param value the cvParam value
+     * @return the position of the colon after the score, or NOT_FOUND (-1) if the value is invalid
+     */
+    static int parseXLInteractionScore(String value) {
+        if (value == null) {
+            return -1;
+        }
+        int len = value.length();
+
+        // ID
+        int i = ProteinAmbiguityGroupObjectRule.skipDigits(value, 0);
+        if (i == 0 || i + 3 > len || value.charAt(i) != ProteinAmbiguityGroupObjectRule.CHAR_POINT) {
+            return -1;
+        }
+        // suffix
+        char suffix = value.charAt(i + 1);
+        if ((suffix != 'a' && suffix != 'b' && suffix != '|') || value.charAt(i + 2) != ProteinAmbiguityGroupObjectRule.CHAR_COLON) {
+            return -1;
+        }
+        i += 3;
+
+        // peptide reference or null
+        if (value.startsWith(ProteinAmbiguityGroupObjectRule.STR_NULL, i)) {
+            i += ProteinAmbiguityGroupObjectRule.STR_NULL.length();
+        }
+        else {
+            int start = i;
+            i = ProteinAmbiguityGroupObjectRule.skipDigits(value, i);
+            if (i == start) {
+                return -1;
+            }
+        }
+        if (i >= len || value.charAt(i) != ProteinAmbiguityGroupObjectRule.CHAR_COLON) {
+            return -1;
+        }
+        i++;
+
+        // score with optional exponents
+        int start = i;
+        i = ProteinAmbiguityGroupObjectRule.skipDigits(value, i);
+        if (i == start || i >= len || value.charAt(i) != ProteinAmbiguityGroupObjectRule.CHAR_POINT) {
+            return -1;
+        }
+        start = ++i;
+        i = ProteinAmbiguityGroupObjectRule.skipDigits(value, i);
+        if (i == start) {
+            return -1;
+        }
+        while (i < len && (value.charAt(i) == 'E' || value.charAt(i) == 'e')) {
+            if (i + 1 >= len || (value.charAt(i + 1) != '+' && value.charAt(i + 1) != '-')) {
+                return -1;
+            }
+            start = i + 2;
+            i = ProteinAmbiguityGroupObjectRule.skipDigits(value, start);
+            if (i == start) {
+                return -1;
+            }
+        }
+        if (i >= len || value.charAt(i) != ProteinAmbiguityGroupObjectRule.CHAR_COLON) {
+            return -1;
+        }
+        int posScoreEnd = i++;
+
+        // pass threshold
+        int rest = len - i;
+        if ((rest == ProteinAmbiguityGroupObjectRule.STR_TRUE.length() && value.startsWith(ProteinAmbiguityGroupObjectRule.STR_TRUE, i))
+                || (rest == ProteinAmbiguityGroupObjectRule.STR_FALSE.length() && value.startsWith(ProteinAmbiguityGroupObjectRule.STR_FALSE, i))) {
+            return posScoreEnd;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Skips ASCII digits.
+     * @param value the string
+     * @param from  the start position
+     * @return the position of the first non-digit character at or after from
+     */
+    private static int skipDigits(String value, int from) {
+        int i = from;
+        while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+        }
+
+        return i;
+    }
+
     /**
      * Initializes the map for XL interaction score terms
      */
@@ -326,6 +416,24 @@ public class ProteinAmbiguityGroupObjectRule extends AObjectRule<ProteinAmbiguit
         return new ValidatorMessage(strB.toString() + ProteinAmbiguityGroupObjectRule.PAG_CONTEXT.getContext(), MessageLevel.INFO, ProteinAmbiguityGroupObjectRule.PAG_CONTEXT, this);       
     }
     
+    /**
+     * Produces the cross-linking interaction scores.
+     * @return the produced facts
+     */
+    @Override
+    public Set<RuleFact> getProducedFacts() {
+        return EnumSet.of(RuleFact.XL_INTERACTION_SCORES);
+    }
+
+    /**
+     * Reads the additional search params flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
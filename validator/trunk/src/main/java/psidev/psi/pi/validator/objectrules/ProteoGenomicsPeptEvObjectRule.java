@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -119,6 +122,15 @@ public class ProteoGenomicsPeptEvObjectRule extends AObjectRule<PeptideEvidence>
         + " doesn't contain the " + this.quartetMsg + "required in case of a proteogenomics search", MessageLevel.ERROR, ProteoGenomicsPeptEvObjectRule.PEV_CONTEXT, this));
     }
     
+    /**
+     * Reads the additional search params flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -0,0 +1,365 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.objectrules.util.IdDictionary;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Checks the referential integrity of a whole mzIdentML file in one streaming (StAX) pass:
+ * every id attribute and every reference attribute (*_ref, cvRef, unitCvRef) is recorded in an {@link IdDictionary},
+ * no JAXB objects are created or resolved, so the memory is proportional to the number of distinct ids.
+ * Like the keys of the schema, the ids are unique per element type: an id is recorded together with the name of its element,
+ * a reference together with the element it must point to (peptide_ref to Peptide, contact_ref to Person or Organization, cvRef to cv, ...).
+ * Reported in bulk, one message per referencing attribute resp. element type:
+ * <ul>
+ * <li>dangling references (ERROR): a reference to an id which is not defined by an element of the referenced type</li>
+ * <li>duplicate ids (ERROR): an id used by two elements of the same type</li>
+ * <li>unused elements (WARN): elements which exist only to be referenced, but are not referenced</li>
+ * </ul>
+ * This rule is not in the list of object rules to execute, it's called with the file by the validator.
+ */
+public class ReferentialIntegrityObjectRule extends AObjectRule<File> {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_ID              = "id";
+    private static final String STR_REF_SUFFIX      = "_ref";
+    private static final String STR_CV_REF          = "cvRef";
+    private static final String STR_UNIT_CV_REF     = "unitCvRef";
+    private static final String STR_CONTACT_REF     = "contact_ref";
+    private static final String STR_CV              = "cv";
+    private static final String STR_PERSON          = "Person";
+    private static final String STR_ORGANIZATION    = "Organization";
+    private static final String STR_ATTRIBUTE_SEP   = "/@";
+    private static final char KEY_SEP               = ':';     // can't occur in an element name
+    private static final int MAX_EXAMPLES           = 5;
+    private static final Set<String> REFERENCED_ELEMENTS = new HashSet<>(Arrays.asList(
+        "DBSequence", "Peptide", "PeptideEvidence", "SpectraData", "SearchDatabase",
+        "SpectrumIdentificationProtocol", "ProteinDetectionProtocol", "SpectrumIdentificationList"));
+
+    /**
+     * Members.
+     */
+    private final IdDictionary ids = new IdDictionary();
+    private final BitSet defined = new BitSet();
+    private final BitSet referenced = new BitSet();
+    private int[] firstReference = new int[0];      // key -> index of the first referencing attribute
+    private final Map<Integer, String[]> targets = new HashMap<>();     // index of the referencing attribute -> referenced element names
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private final Map<Integer, Integer> duplicateCounts = new LinkedHashMap<>();
+    private final Map<Integer, List<String>> duplicateExamples = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public ReferentialIntegrityObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+
+        this.setName("Referential integrity check");
+
+        this.setDescription("Check that every reference points to an existing element of the referenced type, that ids are unique per element type and that referable elements are used.");
+
+        this.addTip("Make sure every *_ref, cvRef and unitCvRef attribute contains the id of an element of the referenced type in the file, e.g. peptide_ref the id of a Peptide.");
+        this.addTip("Make sure every id is unique among the elements of its type.");
+        this.addTip("Remove DBSequence, Peptide, PeptideEvidence, SpectraData, SearchDatabase, protocol and list elements which are not referenced.");
+    }
+
+    /**
+     * Checks, if the object is a File.
+     *
+     * @param obj   the object to check
+     * @return true, if obj is a File
+     */
+    @Override
+    public boolean canCheck(Object obj) {
+        return (obj instanceof File);
+    }
+
+    /**
+     * Scans the file and reports dangling references, duplicate ids and unused elements.
+     *
+     * @param xmlFile the mzIdentML file
+     * @return collection of messages
+     * @throws ValidatorException if the file can not be read
+     */
+    @Override
+    public Collection<ValidatorMessage> check(File xmlFile) throws ValidatorException {
+        this.reset();
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16)) {
+            XMLStreamReader reader = ObjectRuleUtil.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        this.scanAttributes(reader);
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new ValidatorException("Could not check the referential integrity of " + xmlFile.getName(), exc);
+        }
+
+        List<ValidatorMessage> messages = this.createMessages();
+        this.reset();
+
+        return messages;
+    }
+
+    /**
+     * Records the id and reference attributes of an element.
+     * @param reader the stream reader positioned on a start element
+     */
+    private void scanAttributes(XMLStreamReader reader) {
+        String elementName = reader.getLocalName();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attrName = reader.getAttributeLocalName(i);
+            if (ReferentialIntegrityObjectRule.STR_ID.equals(attrName)) {
+                this.define(reader.getAttributeValue(i), elementName);
+            }
+            else if (attrName.endsWith(ReferentialIntegrityObjectRule.STR_REF_SUFFIX)
+                    || ReferentialIntegrityObjectRule.STR_CV_REF.equals(attrName)
+                    || ReferentialIntegrityObjectRule.STR_UNIT_CV_REF.equals(attrName)) {
+                this.reference(reader.getAttributeValue(i), elementName, attrName);
+            }
+        }
+    }
+
+    /**
+     * Records the definition of an id.
+     * @param id            the id
+     * @param elementName   the name of the defining element
+     */
+    private void define(String id, String elementName) {
+        int idx = this.ids.add(ReferentialIntegrityObjectRule.getKey(elementName, id));
+        this.ensureCapacity(idx);
+
+        if (this.defined.get(idx)) {
+            int element = this.getNameIndex(elementName);
+            this.duplicateCounts.merge(element, 1, Integer::sum);
+            List<String> examples = this.duplicateExamples.computeIfAbsent(element, (key) -> new ArrayList<>());
+            if (examples.size() < ReferentialIntegrityObjectRule.MAX_EXAMPLES) {
+                examples.add(id);
+            }
+        }
+        else {
+            this.defined.set(idx);
+        }
+    }
+
+    /**
+     * Records a reference to an id, keyed by the first element type it may point to.
+     * @param id            the referenced id
+     * @param elementName   the name of the referencing element
+     * @param attrName      the name of the referencing attribute
+     */
+    private void reference(String id, String elementName, String attrName) {
+        int attr = this.getNameIndex(elementName + ReferentialIntegrityObjectRule.STR_ATTRIBUTE_SEP + attrName);
+        String[] targetNames = this.targets.computeIfAbsent(attr, (key) -> ReferentialIntegrityObjectRule.getTargets(attrName));
+        int idx = this.ids.add(ReferentialIntegrityObjectRule.getKey(targetNames[0], id));
+        this.ensureCapacity(idx);
+
+        if (!this.referenced.get(idx)) {
+            this.referenced.set(idx);
+            this.firstReference[idx] = attr;
+        }
+    }
+
+    /**
+     * Gets the names of the elements a reference attribute may point to.
+     * @param attrName the name of the reference attribute
+     * @return the element names, e.g. Peptide for peptide_ref
+     */
+    private static String[] getTargets(String attrName) {
+        if (ReferentialIntegrityObjectRule.STR_CV_REF.equals(attrName) || ReferentialIntegrityObjectRule.STR_UNIT_CV_REF.equals(attrName)) {
+            return new String[] { ReferentialIntegrityObjectRule.STR_CV };
+        }
+        if (ReferentialIntegrityObjectRule.STR_CONTACT_REF.equalsIgnoreCase(attrName)) {    // Contact_ref in 1.0
+            return new String[] { ReferentialIntegrityObjectRule.STR_PERSON, ReferentialIntegrityObjectRule.STR_ORGANIZATION };
+        }
+
+        // peptide_ref -> Peptide, dBSequence_ref -> DBSequence (1.1+), DBSequence_ref -> DBSequence (1.0)
+        String name = attrName.substring(0, attrName.length() - ReferentialIntegrityObjectRule.STR_REF_SUFFIX.length());
+        return new String[] { name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1) };
+    }
+
+    /**
+     * Gets the key of an id of an element type.
+     * @param elementName   the element name
+     * @param id            the id
+     * @return the key
+     */
+    private static String getKey(String elementName, String id) {
+        return elementName + ReferentialIntegrityObjectRule.KEY_SEP + id;
+    }
+
+    /**
+     * Checks, if the id of a key is defined by any of the element types the referencing attribute may point to.
+     * @param idx           the int of the key
+     * @param targetNames   the referenced element names
+     * @return true, if defined
+     */
+    private boolean isDefined(int idx, String[] targetNames) {
+        if (this.defined.get(idx)) {
+            return true;
+        }
+        String id = this.getId(idx);
+        for (int i = 1; i < targetNames.length; i++) {
+            int other = this.ids.get(ReferentialIntegrityObjectRule.getKey(targetNames[i], id));
+            if (other != IdDictionary.NOT_FOUND && this.defined.get(other)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the element name of a key.
+     * @param idx the int of the key
+     * @return the element name
+     */
+    private String getElementName(int idx) {
+        String key = this.ids.getId(idx);
+        return key.substring(0, key.indexOf(ReferentialIntegrityObjectRule.KEY_SEP));
+    }
+
+    /**
+     * Gets the id of a key.
+     * @param idx the int of the key
+     * @return the XML id
+     */
+    private String getId(int idx) {
+        String key = this.ids.getId(idx);
+        return key.substring(key.indexOf(ReferentialIntegrityObjectRule.KEY_SEP) + 1);
+    }
+
+    /**
+     * Creates the bulk messages after the scan.
+     * @return list of messages
+     */
+    private List<ValidatorMessage> createMessages() {
+        List<ValidatorMessage> messages = new ArrayList<>();
+        Map<Integer, int[]> danglingCounts = new LinkedHashMap<>();
+        Map<Integer, List<String>> danglingExamples = new HashMap<>();
+        Map<Integer, int[]> unusedCounts = new LinkedHashMap<>();
+        Map<Integer, List<String>> unusedExamples = new HashMap<>();
+
+        for (int idx = this.referenced.nextSetBit(0); idx >= 0; idx = this.referenced.nextSetBit(idx + 1)) {
+            if (!this.isDefined(idx, this.targets.get(this.firstReference[idx]))) {
+                this.count(this.firstReference[idx], idx, danglingCounts, danglingExamples);
+            }
+        }
+        for (int idx = this.defined.nextSetBit(0); idx >= 0; idx = this.defined.nextSetBit(idx + 1)) {
+            if (!this.referenced.get(idx)) {
+                String elementName = this.getElementName(idx);
+                if (ReferentialIntegrityObjectRule.REFERENCED_ELEMENTS.contains(elementName)) {
+                    this.count(this.getNameIndex(elementName), idx, unusedCounts, unusedExamples);
+                }
+            }
+        }
+
+        danglingCounts.forEach((attr, cnt) -> {
+            String attrName = this.names.get(attr);
+            messages.add(new ValidatorMessage(cnt[0] + " reference(s) in " + attrName + " point to ids of no " + String.join(" or ", this.targets.get(attr))
+                    + " element in the file, e.g. " + danglingExamples.get(attr), MessageLevel.ERROR, new Context(attrName), this));
+        });
+        this.duplicateCounts.forEach((element, cnt) -> {
+            String elementName = this.names.get(element);
+            messages.add(new ValidatorMessage(cnt + " " + elementName + " element(s) have an id which is already used by another " + elementName + ", e.g. "
+                    + this.duplicateExamples.get(element), MessageLevel.ERROR, new Context(elementName), this));
+        });
+        unusedCounts.forEach((element, cnt) -> {
+            String elementName = this.names.get(element);
+            messages.add(new ValidatorMessage(cnt[0] + " " + elementName + " element(s) are not referenced anywhere in the file, e.g. "
+                    + unusedExamples.get(element), MessageLevel.WARN, new Context(elementName), this));
+        });
+
+        return messages;
+    }
+
+    /**
+     * Counts an id for a group and keeps the first ids as examples.
+     * @param group     the group (name index)
+     * @param idx       the int of the key
+     * @param counts    the counts per group
+     * @param examples  the examples per group
+     */
+    private void count(int group, int idx, Map<Integer, int[]> counts, Map<Integer, List<String>> examples) {
+        counts.computeIfAbsent(group, (key) -> new int[1])[0]++;
+        List<String> groupExamples = examples.computeIfAbsent(group, (key) -> new ArrayList<>());
+        if (groupExamples.size() < ReferentialIntegrityObjectRule.MAX_EXAMPLES) {
+            groupExamples.add(this.getId(idx));
+        }
+    }
+
+    /**
+     * Gets the index of an element or attribute name.
+     * @param name the name
+     * @return the index
+     */
+    private int getNameIndex(String name) {
+        Integer index = this.nameIndex.get(name);
+        if (index == null) {
+            index = this.names.size();
+            this.names.add(name);
+            this.nameIndex.put(name, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Grows the per-id arrays.
+     * @param idx the int of the id
+     */
+    private void ensureCapacity(int idx) {
+        if (idx >= this.firstReference.length) {
+            int newLength = Math.max(1024, Math.max(idx + 1, this.firstReference.length * 2));
+            this.firstReference = Arrays.copyOf(this.firstReference, newLength);
+        }
+    }
+
+    /**
+     * Releases the index of the last scan.
+     */
+    private void reset() {
+        this.ids.clear();
+        this.defined.clear();
+        this.referenced.clear();
+        this.firstReference = new int[0];
+        this.targets.clear();
+        this.names.clear();
+        this.nameIndex.clear();
+        this.duplicateCounts.clear();
+        this.duplicateExamples.clear();
+    }
+}
@@ -2,7 +2,11 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.PrecompiledRegExp;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -24,7 +28,7 @@ public class SIIModLocalizationScoringRule extends AObjectRule<SpectrumIdentific
      * Constants.
      */
     private static final Context SII_CONTEXT = new Context(MzIdentMLElement.SpectrumIdentificationItem.getXpath());
-    private final String STR_REGEXP_MOD_LOCALIZATION = "(\\d+:\\d+.\\d+[Ee]{0,1}[+-]{0,1}\\d*:\\d+[|]*\\d*:(true|false){1})";
+    private static final PrecompiledRegExp REGEXP_MOD_LOCALIZATION = new PrecompiledRegExp("(\\d+:\\d+.\\d+[Ee]{0,1}[+-]{0,1}\\d*:\\d+[|]*\\d*:(true|false){1})");
 
     /**
      * Constructors.
@@ -86,7 +90,7 @@ public class SIIModLocalizationScoringRule extends AObjectRule<SpectrumIdentific
                         case "MS:1002552":  // peptide:H-Score
                         case "MS:1002553":  // peptide:D-Score
                         case "MS:1002554":  // peptide:MD-Score
-                            if (!cv.getValue().matches(this.STR_REGEXP_MOD_LOCALIZATION)) {
+                            if (!SIIModLocalizationScoringRule.REGEXP_MOD_LOCALIZATION.matches(cv.getValue())) {
                                 this.addMessageToCollection(cv, sii, messages);
                             }
                             break;
@@ -110,6 +114,15 @@ public class SIIModLocalizationScoringRule extends AObjectRule<SpectrumIdentific
         + "/cvParam ('" + cv.getName() + "') is not valid.", MessageLevel.ERROR, SIIModLocalizationScoringRule.SII_CONTEXT, this));
     }
     
+    /**
+     * Reads the additional search params flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -126,7 +139,7 @@ public class SIIModLocalizationScoringRule extends AObjectRule<SpectrumIdentific
         ret.add("PASS_THRESHOLD = true | false with regards to the threshold specified in Feature A. If no Threshold has been specified, this MUST always be true");
         ret.add("e.g. '1:0.03:2|3:true' or '1:0.97:8|9:false'");
         ret.add("according to the regular expression ");
-        ret.add(this.STR_REGEXP_MOD_LOCALIZATION);
+        ret.add(SIIModLocalizationScoringRule.REGEXP_MOD_LOCALIZATION.getRegExp());
 
         return ret;
     }
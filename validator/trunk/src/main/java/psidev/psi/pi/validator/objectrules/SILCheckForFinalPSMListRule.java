@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.ValidatorException;
 import psidev.psi.tools.validator.ValidatorMessage;
@@ -66,6 +69,15 @@ public class SILCheckForFinalPSMListRule extends AObjectRule<SpectrumIdentificat
         return messages;
     }
 
+    /**
+     * Produces the final PSM list flag.
+     * @return the produced facts
+     */
+    @Override
+    public Set<RuleFact> getProducedFacts() {
+        return EnumSet.of(RuleFact.FINAL_PSM_LIST);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -2,9 +2,14 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import psidev.psi.pi.validator.objectrules.util.FactAccumulator;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -18,7 +23,7 @@ import uk.ac.ebi.jmzidml.model.mzidml.SpectrumIdentificationResult;
  * Remark: This object rule is DEACTIVATED, since not listed in ObjectRules.1.2.0.xml and ObjectRulesMIAPE.1.2.0.xml
  * @author Gerhard Mayer
  */
-public class SIRUniqueSpectrumIDSpectrumRefCombinationRule extends AObjectRule<SpectrumIdentificationResult> {
+public class SIRUniqueSpectrumIDSpectrumRefCombinationRule extends AAggregatingObjectRule<SpectrumIdentificationResult, SIRUniqueSpectrumIDSpectrumRefCombinationRule.SpectrumFacts> {
 
     /**
      * Constants.
@@ -29,15 +34,12 @@ public class SIRUniqueSpectrumIDSpectrumRefCombinationRule extends AObjectRule<S
      * Members.
      */
     public static boolean bIsFinalPSMList = false;
-    private static HashMap<ImmutablePair, Boolean> spectIDSpectDataRefMap = null;
 
     /**
      * Constructors.
      */
     public SIRUniqueSpectrumIDSpectrumRefCombinationRule() {
         this(null);
-        
-        SIRUniqueSpectrumIDSpectrumRefCombinationRule.spectIDSpectDataRefMap = new HashMap<>();
     }
 
     /**
@@ -46,8 +48,6 @@ public class SIRUniqueSpectrumIDSpectrumRefCombinationRule extends AObjectRule<S
      */
     public SIRUniqueSpectrumIDSpectrumRefCombinationRule(OntologyManager ontologyManager) {
         super(ontologyManager);
-        
-        SIRUniqueSpectrumIDSpectrumRefCombinationRule.spectIDSpectDataRefMap = new HashMap<>();
     }
 
     /**
@@ -62,35 +62,67 @@ public class SIRUniqueSpectrumIDSpectrumRefCombinationRule extends AObjectRule<S
     }
 
     /**
-     * Checks, if the combination of spectrumId and spectrumRef is unique for "final PSM lists'
+     * Creates an empty accumulator.
+     * @return the accumulator
+     */
+    @Override
+    protected SpectrumFacts createAccumulator() {
+        return new SpectrumFacts();
+    }
+
+    /**
+     * Collects the combination of spectrumId and spectrumRef for "final PSM lists".
      * 
-     * @param sir the SpectrumIdentificationResult element
-     * @return collection of messages
+     * @param sir       the SpectrumIdentificationResult element
+     * @param facts     the accumulator of the current thread
+     * @param messages  the messages about the element itself
      * @throws ValidatorException validator exception
      */
     @Override
-    public Collection<ValidatorMessage> check(SpectrumIdentificationResult sir) throws ValidatorException {
+    protected void collect(SpectrumIdentificationResult sir, SpectrumFacts facts, List<ValidatorMessage> messages) throws ValidatorException {
+        if (bIsFinalPSMList) {
+            facts.add(new ImmutablePair<>(sir.getSpectrumID(), sir.getSpectraDataRef()), AAggregatingObjectRule.getElementOrdinal(), sir.getId());
+        }
+    }
+
+    /**
+     * Checks, if the combination of spectrumId and spectrumRef is unique for "final PSM lists'.
+     * Reports every SpectrumIdentificationResult repeating the combination of a previous one in the file, in the order of the file.
+     * 
+     * @param facts the combinations collected from all SpectrumIdentificationResults
+     * @return collection of messages
+     */
+    @Override
+    protected Collection<ValidatorMessage> reduce(SpectrumFacts facts) {
         List<ValidatorMessage> messages = new ArrayList<>();
 
         if (bIsFinalPSMList) {
-            ImmutablePair<String, String> pair = new ImmutablePair<>(sir.getSpectrumID(), sir.getSpectraDataRef());
-            
-            if (SIRUniqueSpectrumIDSpectrumRefCombinationRule.spectIDSpectDataRefMap.containsKey(pair)) {
+            List<ImmutablePair<Integer, String>> duplicates = new ArrayList<>();
+            for (List<ImmutablePair<Integer, String>> sirs : facts.pairToSirs.values()) {
+                // the accumulators are merged in the order of the threads, not of the file
+                sirs.sort(Comparator.comparing(ImmutablePair::getLeft));
+                duplicates.addAll(sirs.subList(1, sirs.size()));
+            }
+            duplicates.sort(Comparator.comparing(ImmutablePair::getLeft));
+            for (ImmutablePair<Integer, String> sir : duplicates) {
                 messages.add(new ValidatorMessage("The combination of spectrumId and spectrumRef of the SpectrumIdentificationResult (id='"
-                + sir.getId() + "') element at " + SIRUniqueSpectrumIDSpectrumRefCombinationRule.SIR_CONTEXT.getContext()
+                + sir.getRight() + "') element at " + SIRUniqueSpectrumIDSpectrumRefCombinationRule.SIR_CONTEXT.getContext()
                 + "must be unique for 'final PSM lists', ", MessageLevel.ERROR, SIRUniqueSpectrumIDSpectrumRefCombinationRule.SIR_CONTEXT, this));
             }
-            else {
-                SIRUniqueSpectrumIDSpectrumRefCombinationRule.spectIDSpectDataRefMap.put(pair, Boolean.TRUE);
-            }
-        }
-        else {
-            SIRUniqueSpectrumIDSpectrumRefCombinationRule.spectIDSpectDataRefMap.clear();
         }
         
         return messages;
     }
 
+    /**
+     * Reads the final PSM list flag.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.FINAL_PSM_LIST);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -104,4 +136,34 @@ public class SIRUniqueSpectrumIDSpectrumRefCombinationRule extends AObjectRule<S
 
         return ret;
     }
+
+    /**
+     * SpectrumIdentificationResult ID's with their position in the file per combination of spectrumId and spectrumRef.
+     */
+    public static class SpectrumFacts implements FactAccumulator<SpectrumFacts> {
+
+        /**
+         * Members.
+         */
+        private final HashMap<ImmutablePair<String, String>, List<ImmutablePair<Integer, String>>> pairToSirs = new HashMap<>();
+
+        /**
+         * Adds a SpectrumIdentificationResult.
+         * @param pair      the spectrumId and spectrumRef
+         * @param ordinal   the position of the SpectrumIdentificationResult in the file
+         * @param sirID     the SpectrumIdentificationResult ID
+         */
+        private void add(ImmutablePair<String, String> pair, int ordinal, String sirID) {
+            this.pairToSirs.computeIfAbsent(pair, (key) -> new ArrayList<>()).add(new ImmutablePair<>(ordinal, sirID));
+        }
+
+        /**
+         * Merges the SpectrumIdentificationResult ID's of another accumulator.
+         * @param other the other accumulator
+         */
+        @Override
+        public void merge(SpectrumFacts other) {
+            other.pairToSirs.forEach((pair, sirs) -> this.pairToSirs.computeIfAbsent(pair, (key) -> new ArrayList<>()).addAll(sirs));
+        }
+    }
 }
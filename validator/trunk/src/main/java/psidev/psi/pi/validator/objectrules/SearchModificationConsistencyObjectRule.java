@@ -0,0 +1,359 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.objectrules.util.MassTables;
+import psidev.psi.pi.validator.objectrules.util.ModificationMassIndex;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import psidev.psi.pi.validator.objectrules.util.PackedSequenceStore;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+
+/**
+ * Checks in one streaming (StAX) pass, that every Modification of the Peptides matches a fixed or variable SearchModification
+ * of the SpectrumIdentificationProtocols: the same residue (or '.' for any residue) and the mass delta within 0.01 Da.
+ * The SequenceCollection precedes the protocols, so the Modifications are counted per distinct residue and mass delta while reading,
+ * the SearchModifications are put into a {@link ModificationMassIndex} of (residue, mass bucket) keys
+ * and each distinct Modification is looked up in O(1) after the pass.
+ * The residue of a Modification is the one at its location, the first resp. last residue for a terminal location, else its residues attribute.
+ * The mass delta is the monoisotopicMassDelta or the mass of its unimod or PSI-MOD cvParam; Modifications without residue or mass are skipped,
+ * as well as cross-link acceptors, whose mass delta of 0 is declared differently by the search engines.
+ * The SearchModifications of all protocols are used, as the Peptides are shared by the protocols.
+ * Reported in bulk.
+ * This rule is not in the list of object rules to execute, it's called with the file by the validator.
+ */
+public class SearchModificationConsistencyObjectRule extends AObjectRule<File> {
+
+    /**
+     * Constants.
+     */
+    private static final Context MODIFICATION_CONTEXT   = new Context(MzIdentMLElement.Modification.getXpath());
+    private static final String STR_PEPTIDE             = "Peptide";
+    private static final String STR_PEPTIDE_SEQ         = "PeptideSequence";
+    private static final String STR_MODIFICATION        = "Modification";
+    private static final String STR_SEARCH_MODIFICATION = "SearchModification";
+    private static final String STR_CV_PARAM            = "cvParam";
+    private static final String STR_ID                  = "id";
+    private static final String STR_ACCESSION           = "accession";
+    private static final String STR_LOCATION            = "location";
+    private static final String STR_RESIDUES            = "residues";
+    private static final String STR_MONO_MASS_DELTA     = "monoisotopicMassDelta";
+    private static final String STR_MASS_DELTA          = "massDelta";
+    private static final String STR_CROSS_LINK_ACCEPTOR = "MS:1002510";
+    public static final double DEFAULT_MASS_TOLERANCE   = 0.01;
+    private static final int MAX_EXAMPLES               = 5;
+
+    /**
+     * The Modifications with the same residue and mass delta.
+     */
+    private static class ModificationCount {
+        private final char residue;
+        private final double mass;
+        private final String peptideId;     // the first Peptide with the Modification
+        private int count = 0;
+
+        /**
+         * Constructor.
+         * @param residue   the residue
+         * @param mass      the mass delta
+         * @param peptideId the id of the Peptide
+         */
+        private ModificationCount(char residue, double mass, String peptideId) {
+            this.residue = residue;
+            this.mass = mass;
+            this.peptideId = peptideId;
+        }
+    }
+
+    /**
+     * Members.
+     */
+    private ModificationMassIndex searchModifications = new ModificationMassIndex(SearchModificationConsistencyObjectRule.DEFAULT_MASS_TOLERANCE);
+    private final List<Map<Double, ModificationCount>> modifications = new ArrayList<>();     // residue code -> mass delta -> count
+    private int searchModificationCount = 0;
+    private final StringBuilder sequence = new StringBuilder();
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public SearchModificationConsistencyObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+
+        this.setName("SearchModification consistency check");
+
+        this.setDescription("Check that every Modification of the Peptides matches the residue and massDelta of a SearchModification of the SpectrumIdentificationProtocols.");
+
+        this.addTip("Make sure all fixed and variable modifications of the search are listed in the SearchModificationParams, with their residues and massDelta.");
+        this.addTip("Make sure the monoisotopicMassDelta and location of the Modifications are correct.");
+    }
+
+    /**
+     * Sets the tolerance of the comparison of the mass deltas.
+     * @param tolerance the maximum difference in Dalton, greater than 0
+     */
+    public void setTolerance(double tolerance) {
+        this.searchModifications = new ModificationMassIndex(tolerance);
+    }
+
+    /**
+     * Checks, if the object is a File.
+     *
+     * @param obj   the object to check
+     * @return true, if obj is a File
+     */
+    @Override
+    public boolean canCheck(Object obj) {
+        return (obj instanceof File);
+    }
+
+    /**
+     * Scans the file and reports the Modifications which don't match any SearchModification.
+     *
+     * @param xmlFile the mzIdentML file
+     * @return collection of messages
+     * @throws ValidatorException if the file can not be read
+     */
+    @Override
+    public Collection<ValidatorMessage> check(File xmlFile) throws ValidatorException {
+        this.reset();
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16)) {
+            XMLStreamReader reader = ObjectRuleUtil.createXMLStreamReader(is);
+            try {
+                String peptideId = null;
+                boolean bInSequence = false;
+                boolean bInModification = false;
+                boolean bCrossLinkAcceptor = false;
+                int location = -1;
+                String residues = null;
+                double mass = Double.NaN;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.CHARACTERS && bInSequence) {
+                        this.appendResidues(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    else if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (peptideId != null && SearchModificationConsistencyObjectRule.STR_MODIFICATION.equals(name)) {
+                            bInModification = true;
+                            location = SearchModificationConsistencyObjectRule.parseLocation(reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_LOCATION));
+                            residues = reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_RESIDUES);
+                            mass = SearchModificationConsistencyObjectRule.parseMass(reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_MONO_MASS_DELTA));
+                            bCrossLinkAcceptor = false;
+                        }
+                        else if (bInModification && SearchModificationConsistencyObjectRule.STR_CV_PARAM.equals(name)) {
+                            String accession = reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_ACCESSION);
+                            if (SearchModificationConsistencyObjectRule.STR_CROSS_LINK_ACCEPTOR.equals(accession)) {
+                                bCrossLinkAcceptor = true;
+                            }
+                            else if (Double.isNaN(mass)) {
+                                mass = MassTables.getModificationMass(accession);
+                            }
+                        }
+                        else if (SearchModificationConsistencyObjectRule.STR_PEPTIDE.equals(name)) {
+                            peptideId = reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_ID);
+                            this.sequence.setLength(0);
+                        }
+                        else if (peptideId != null && SearchModificationConsistencyObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                            bInSequence = true;
+                        }
+                        else if (SearchModificationConsistencyObjectRule.STR_SEARCH_MODIFICATION.equals(name)) {
+                            this.addSearchModification(reader);
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (bInModification && SearchModificationConsistencyObjectRule.STR_MODIFICATION.equals(name)) {
+                            if (!bCrossLinkAcceptor) {
+                                this.countModification(peptideId, location, residues, mass);
+                            }
+                            bInModification = false;
+                        }
+                        else if (SearchModificationConsistencyObjectRule.STR_PEPTIDE_SEQ.equals(name)) {
+                            bInSequence = false;
+                        }
+                        else if (SearchModificationConsistencyObjectRule.STR_PEPTIDE.equals(name)) {
+                            peptideId = null;
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new ValidatorException("Could not check the modifications of " + xmlFile.getName(), exc);
+        }
+
+        List<ValidatorMessage> messages = this.createMessages();
+        this.reset();
+
+        return messages;
+    }
+
+    /**
+     * Appends the residues of the current PeptideSequence, whitespace is skipped.
+     * @param text      the characters
+     * @param start     the index of the first character
+     * @param length    the number of characters
+     */
+    private void appendResidues(char[] text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (!Character.isWhitespace(text[i])) {
+                this.sequence.append(Character.toUpperCase(text[i]));
+            }
+        }
+    }
+
+    /**
+     * Adds every residue of a SearchModification with its massDelta to the index.
+     * @param reader the stream reader positioned on the SearchModification start element
+     */
+    private void addSearchModification(XMLStreamReader reader) {
+        double massDelta = SearchModificationConsistencyObjectRule.parseMass(reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_MASS_DELTA));
+        String residues = reader.getAttributeValue(null, SearchModificationConsistencyObjectRule.STR_RESIDUES);
+        if (Double.isNaN(massDelta) || residues == null) {
+            return;
+        }
+
+        // a list of residues, e.g. "S T Y", or "." (resp. empty in older files) for any residue
+        if (residues.trim().isEmpty()) {
+            this.searchModifications.add(ModificationMassIndex.ANY_RESIDUE, massDelta);
+        }
+        for (int i = 0; i < residues.length(); i++) {
+            char residue = residues.charAt(i);
+            if (!Character.isWhitespace(residue)) {
+                this.searchModifications.add(Character.toUpperCase(residue), massDelta);
+            }
+        }
+        this.searchModificationCount++;
+    }
+
+    /**
+     * Counts a Modification by its residue and mass delta.
+     * @param peptideId the id of the Peptide
+     * @param location  the location, -1 if not given
+     * @param residues  the residues attribute, null if not given
+     * @param mass      the mass delta, NaN if not known
+     */
+    private void countModification(String peptideId, int location, String residues, double mass) {
+        if (Double.isNaN(mass)) {
+            return;
+        }
+        int length = this.sequence.length();
+        char residue;
+        if (length > 0 && location >= 0 && location <= length + 1) {
+            residue = this.sequence.charAt(Math.min(Math.max(location, 1), length) - 1);
+        }
+        else if (residues != null && residues.trim().length() > 0) {
+            residue = Character.toUpperCase(residues.trim().charAt(0));
+        }
+        else {
+            return;
+        }
+
+        int code = PackedSequenceStore.encode(residue);
+        while (this.modifications.size() <= code) {
+            this.modifications.add(new LinkedHashMap<>());
+        }
+        this.modifications.get(code).computeIfAbsent(mass, (key) -> new ModificationCount(residue, mass, peptideId)).count++;
+    }
+
+    /**
+     * Creates the bulk message after the scan.
+     * @return list of messages
+     */
+    private List<ValidatorMessage> createMessages() {
+        List<ValidatorMessage> messages = new ArrayList<>();
+        if (this.searchModificationCount == 0) {
+            // without SearchModificationParams there is nothing to compare against, the mandatory elements check reports missing params
+            return messages;
+        }
+
+        int checkedCount = 0;
+        int mismatchCount = 0;
+        List<String> mismatchExamples = new ArrayList<>();
+        for (Map<Double, ModificationCount> residueModifications : this.modifications) {
+            for (ModificationCount modification : residueModifications.values()) {
+                checkedCount += modification.count;
+                if (!this.searchModifications.contains(modification.residue, modification.mass)) {
+                    mismatchCount += modification.count;
+                    if (mismatchExamples.size() < SearchModificationConsistencyObjectRule.MAX_EXAMPLES) {
+                        mismatchExamples.add(String.format(Locale.US, "%+.4f", modification.mass) + " on " + modification.residue
+                                + " (" + modification.count + "x, e.g. Peptide '" + modification.peptideId + "')");
+                    }
+                }
+            }
+        }
+
+        if (mismatchCount > 0) {
+            messages.add(new ValidatorMessage(mismatchCount + " of " + checkedCount + " Modification(s) at " + SearchModificationConsistencyObjectRule.MODIFICATION_CONTEXT.getContext()
+                    + " don't match the residues and massDelta of any of the " + this.searchModificationCount + " SearchModification(s) of the SpectrumIdentificationProtocols, e.g. " + mismatchExamples,
+                    MessageLevel.WARN, SearchModificationConsistencyObjectRule.MODIFICATION_CONTEXT, this));
+        }
+
+        return messages;
+    }
+
+    /**
+     * Parses the location of a Modification.
+     * @param value the attribute value
+     * @return the location, -1 if not given or invalid
+     */
+    private static int parseLocation(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException exc) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a mass delta.
+     * @param value the attribute value
+     * @return the mass, NaN if not given or invalid
+     */
+    private static double parseMass(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        }
+        catch (NumberFormatException exc) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Releases the counts of the last scan.
+     */
+    private void reset() {
+        this.searchModifications.clear();
+        this.modifications.clear();
+        this.searchModificationCount = 0;
+        this.sequence.setLength(0);
+    }
+}
@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -95,6 +98,15 @@ public class SearchTypeObjectRule extends AObjectRule<SpectrumIdentificationProt
         return messages;
     }
 
+    /**
+     * Produces the search type flags.
+     * @return the produced facts
+     */
+    @Override
+    public Set<RuleFact> getProducedFacts() {
+        return EnumSet.of(RuleFact.SEARCH_TYPE);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
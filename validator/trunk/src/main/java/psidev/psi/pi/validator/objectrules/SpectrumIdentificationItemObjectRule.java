@@ -2,7 +2,10 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -96,26 +99,33 @@ public class SpectrumIdentificationItemObjectRule extends AObjectRule<SpectrumId
         List<PeptideEvidenceRef> pevList = spectrumIdentificationItem.getPeptideEvidenceRef();
         String peptideRef = spectrumIdentificationItem.getPeptideRef();
         
+        boolean bMatchingPeptideEvidence = pevList.isEmpty();   // a missing PeptideEvidenceRef is reported by another rule
         for (PeptideEvidenceRef pevRef : pevList) {
-            String pevID = pevRef.getPeptideEvidenceRef();
-            
-            if (PeptideEvidenceObjectRule.peptideRef2PeptideEvidenceIDMap.containsKey(peptideRef)) {
-                if (PeptideEvidenceObjectRule.peptideRef2PeptideEvidenceIDMap.get(peptideRef).equals(pevID)) {
-                    break;
-                }
-            }
-            else {
-                this.bInconsistentPeptideAndPeptideEvidenceRefs = true;
-                messages.add(new ValidatorMessage(
-                    "There is no PeptideEvidenceRef element that matches the peptide referenced by peptide_ref in the SpectrumIdentificationItem (id='"
-                        + siiID + "') element at "
-                        + SpectrumIdentificationItemObjectRule.SII_CONTEXT.getContext(), MessageLevel.ERROR, SII_CONTEXT, this));
+            if (PeptideEvidenceObjectRule.CROSS_REFERENCES.isEvidenceOfPeptide(pevRef.getPeptideEvidenceRef(), peptideRef)) {
+                bMatchingPeptideEvidence = true;
+                break;
             }
         }
+        if (!bMatchingPeptideEvidence) {
+            this.bInconsistentPeptideAndPeptideEvidenceRefs = true;
+            messages.add(new ValidatorMessage(
+                "There is no PeptideEvidenceRef element that matches the peptide referenced by peptide_ref in the SpectrumIdentificationItem (id='"
+                    + siiID + "') element at "
+                    + SpectrumIdentificationItemObjectRule.SII_CONTEXT.getContext(), MessageLevel.ERROR, SII_CONTEXT, this));
+        }
         
         return messages;
     }
 
+    /**
+     * Reads the Peptide and DBSequence references of the PeptideEvidences.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.PEPTIDE_EVIDENCE_REFERENCES);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
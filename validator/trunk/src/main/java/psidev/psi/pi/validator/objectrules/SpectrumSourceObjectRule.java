@@ -0,0 +1,298 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import psidev.psi.pi.validator.index.SpectrumSourceIndex;
+import psidev.psi.pi.validator.objectrules.util.ObjectRuleUtil;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Checks that the spectrum referenced by every SpectrumIdentificationResult exists in the peak list file
+ * of its SpectraData, if that file (MGF or mzML) is available locally.
+ * The mzIdentML file is read in one streaming (StAX) pass, each peak list file is indexed once by a {@link SpectrumSourceIndex}
+ * when it's referenced the first time, the spectrumIDs are checked according to the SpectrumIDFormat of the SpectraData.
+ * Reported in bulk, one message per SpectraData.
+ * This rule is not in the list of object rules to execute, it's called with the file by the validator if the check is enabled.
+ */
+public class SpectrumSourceObjectRule extends AObjectRule<File> {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_SPECTRA_DATA            = "SpectraData";
+    private static final String STR_SPECTRUM_ID_FORMAT      = "SpectrumIDFormat";
+    private static final String STR_CV_PARAM                = "cvParam";
+    private static final String STR_SIR                     = "SpectrumIdentificationResult";
+    private static final String STR_ID                      = "id";
+    private static final String STR_LOCATION                = "location";
+    private static final String STR_ACCESSION               = "accession";
+    private static final String STR_SPECTRUM_ID             = "spectrumID";
+    private static final String STR_SPECTRA_DATA_REF        = "spectraData_ref";
+    private static final String STR_INDEX_FORMAT            = "MS:1000774";     // index=, 0-based
+    private static final String STR_SCAN_FORMAT             = "MS:1000776";     // scan=
+    private static final String STR_MASCOT_QUERY_FORMAT     = "MS:1001528";     // query=, 1-based
+    private static final String STR_MZML_ID_FORMAT          = "MS:1001530";     // mzMLid=
+    private static final String STR_INDEX                   = "index=";
+    private static final String STR_QUERY                   = "query=";
+    private static final String STR_MZML_ID                 = "mzMLid=";
+    private static final int MAX_EXAMPLES                   = 5;
+
+    /**
+     * A SpectraData element and the result of the check of the spectra referencing it.
+     */
+    private static final class SpectraSource {
+        private final String id;
+        private final String location;
+        private String format = null;
+        private File file = null;
+        private SpectrumSourceIndex index = null;
+        private boolean bIndexed = false;
+        private int checked = 0;
+        private int missing = 0;
+        private int uncheckable = 0;
+        private final List<String> examples = new ArrayList<>();
+
+        SpectraSource(String id, String location) {
+            this.id = id;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Members.
+     */
+    private final Map<String, SpectraSource> sources = new LinkedHashMap<>();
+    private File mzIdentMLDir = null;
+
+    /**
+     * Constructor.
+     * @param ontologyManager the ontology manager
+     */
+    public SpectrumSourceObjectRule(OntologyManager ontologyManager) {
+        super(ontologyManager);
+
+        this.setName("Spectrum source check");
+
+        this.setDescription("Check that the spectrum referenced by every SpectrumIdentificationResult exists in the peak list file (MGF or mzML) of its SpectraData.");
+
+        this.addTip("Make sure the spectrumID attributes use the SpectrumIDFormat of the SpectraData.");
+        this.addTip("Make sure the location of the SpectraData is the peak list file which was searched.");
+    }
+
+    /**
+     * Checks, if the object is a File.
+     *
+     * @param obj   the object to check
+     * @return true, if obj is a File
+     */
+    @Override
+    public boolean canCheck(Object obj) {
+        return (obj instanceof File);
+    }
+
+    /**
+     * Scans the file and reports the spectrumIDs which are not found in the peak list files.
+     *
+     * @param xmlFile the mzIdentML file
+     * @return collection of messages
+     * @throws ValidatorException if the file can not be read
+     */
+    @Override
+    public Collection<ValidatorMessage> check(File xmlFile) throws ValidatorException {
+        this.sources.clear();
+        this.mzIdentMLDir = xmlFile.getAbsoluteFile().getParentFile();
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16)) {
+            XMLStreamReader reader = ObjectRuleUtil.createXMLStreamReader(is);
+            try {
+                SpectraSource currentSource = null;
+                boolean bInSpectrumIDFormat = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (SpectrumSourceObjectRule.STR_SIR.equals(name)) {
+                            this.checkSpectrum(reader.getAttributeValue(null, SpectrumSourceObjectRule.STR_SPECTRUM_ID),
+                                    reader.getAttributeValue(null, SpectrumSourceObjectRule.STR_SPECTRA_DATA_REF));
+                        }
+                        else if (SpectrumSourceObjectRule.STR_SPECTRA_DATA.equals(name)) {
+                            currentSource = new SpectraSource(reader.getAttributeValue(null, SpectrumSourceObjectRule.STR_ID),
+                                    reader.getAttributeValue(null, SpectrumSourceObjectRule.STR_LOCATION));
+                            this.sources.put(currentSource.id, currentSource);
+                        }
+                        else if (currentSource != null && SpectrumSourceObjectRule.STR_SPECTRUM_ID_FORMAT.equals(name)) {
+                            bInSpectrumIDFormat = true;
+                        }
+                        else if (bInSpectrumIDFormat && SpectrumSourceObjectRule.STR_CV_PARAM.equals(name)) {
+                            currentSource.format = reader.getAttributeValue(null, SpectrumSourceObjectRule.STR_ACCESSION);
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (SpectrumSourceObjectRule.STR_SPECTRUM_ID_FORMAT.equals(name)) {
+                            bInSpectrumIDFormat = false;
+                        }
+                        else if (SpectrumSourceObjectRule.STR_SPECTRA_DATA.equals(name)) {
+                            currentSource = null;
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new ValidatorException("Could not check the spectrum sources of " + xmlFile.getName(), exc);
+        }
+
+        List<ValidatorMessage> messages = this.createMessages();
+        this.sources.clear();
+
+        return messages;
+    }
+
+    /**
+     * Checks the spectrum of a SpectrumIdentificationResult. The peak list file is indexed when it's referenced the first time.
+     * @param spectrumID        the spectrumID
+     * @param spectraDataRef    the id of the SpectraData
+     */
+    private void checkSpectrum(String spectrumID, String spectraDataRef) {
+        SpectraSource source = this.sources.get(spectraDataRef);
+        if (source == null || spectrumID == null) {
+            // a dangling reference, reported by the referential integrity check
+            return;
+        }
+        if (!source.bIndexed) {
+            source.bIndexed = true;
+            source.file = ObjectRuleUtil.findLocalFile(source.location, this.mzIdentMLDir);
+            if (source.file != null && SpectrumSourceIndex.isSupported(source.file)) {
+                try {
+                    source.index = SpectrumSourceIndex.build(source.file);
+                }
+                catch (IOException exc) {
+                    exc.printStackTrace(System.err);
+                }
+            }
+        }
+        if (source.index == null) {
+            return;
+        }
+
+        Boolean bFound = SpectrumSourceObjectRule.findSpectrum(source.index, source.format, spectrumID);
+        if (bFound == null) {
+            source.uncheckable++;
+        }
+        else {
+            source.checked++;
+            if (!bFound) {
+                source.missing++;
+                if (source.examples.size() < SpectrumSourceObjectRule.MAX_EXAMPLES) {
+                    source.examples.add(spectrumID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a spectrumID in the index of a peak list file.
+     * @param index         the index
+     * @param format        accession of the SpectrumIDFormat
+     * @param spectrumID    the spectrumID
+     * @return true if the spectrum exists, false if not, null if the spectrumID can't be checked
+     */
+    private static Boolean findSpectrum(SpectrumSourceIndex index, String format, String spectrumID) {
+        if (SpectrumSourceObjectRule.STR_INDEX_FORMAT.equals(format)) {
+            int idx = SpectrumSourceObjectRule.parseNumber(spectrumID, SpectrumSourceObjectRule.STR_INDEX);
+            return (idx < 0) ? Boolean.FALSE : Boolean.valueOf(idx < index.getSpectrumCount());
+        }
+        if (SpectrumSourceObjectRule.STR_MASCOT_QUERY_FORMAT.equals(format)) {
+            int query = SpectrumSourceObjectRule.parseNumber(spectrumID, SpectrumSourceObjectRule.STR_QUERY);
+            return (query < 1) ? Boolean.FALSE : Boolean.valueOf(query <= index.getSpectrumCount());
+        }
+        if (SpectrumSourceObjectRule.STR_MZML_ID_FORMAT.equals(format)) {
+            if (!index.isMzML() || !spectrumID.startsWith(SpectrumSourceObjectRule.STR_MZML_ID)) {
+                return null;
+            }
+            return index.hasNativeID(spectrumID.substring(SpectrumSourceObjectRule.STR_MZML_ID.length()));
+        }
+        if (index.isMzML()) {
+            // the vendor nativeID formats are the id attributes of the mzML spectra
+            return index.hasNativeID(spectrumID);
+        }
+        if (SpectrumSourceObjectRule.STR_SCAN_FORMAT.equals(format) && index.hasScans()) {
+            return index.hasScan(SpectrumSourceIndex.getScanNumber(spectrumID));
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the number of a spectrumID like "index=12".
+     * @param spectrumID    the spectrumID
+     * @param prefix        the prefix
+     * @return the number, -1 if the spectrumID has not the format
+     */
+    private static int parseNumber(String spectrumID, String prefix) {
+        if (!spectrumID.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(spectrumID.substring(prefix.length()).trim());
+        }
+        catch (NumberFormatException exc) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates the bulk messages after the scan.
+     * @return list of messages
+     */
+    private List<ValidatorMessage> createMessages() {
+        List<ValidatorMessage> messages = new ArrayList<>();
+        for (SpectraSource source : this.sources.values()) {
+            if (!source.bIndexed) {
+                continue;
+            }
+            Context context = new Context(SpectrumSourceObjectRule.STR_SPECTRA_DATA + "[@id='" + source.id + "']");
+            if (source.file == null) {
+                messages.add(new ValidatorMessage("The peak list file '" + source.location + "' of SpectraData '" + source.id
+                        + "' was not found, its spectra were not checked.", MessageLevel.INFO, context, this));
+            }
+            else if (source.index == null) {
+                messages.add(new ValidatorMessage("The peak list file '" + source.file.getName() + "' of SpectraData '" + source.id
+                        + "' is no MGF or mzML file or can't be read, its spectra were not checked.", MessageLevel.INFO, context, this));
+            }
+            else {
+                if (source.missing > 0) {
+                    messages.add(new ValidatorMessage(source.missing + " of " + source.checked + " spectrumID(s) referencing SpectraData '" + source.id
+                            + "' were not found in '" + source.file.getName() + "' (" + source.index.getSpectrumCount() + " spectra), e.g. "
+                            + source.examples, MessageLevel.ERROR, context, this));
+                }
+                if (source.uncheckable > 0) {
+                    messages.add(new ValidatorMessage(source.uncheckable + " spectrumID(s) referencing SpectraData '" + source.id
+                            + "' could not be checked against '" + source.file.getName() + "' with the SpectrumIDFormat " + source.format
+                            + ".", MessageLevel.INFO, context, this));
+                }
+            }
+        }
+
+        return messages;
+    }
+}
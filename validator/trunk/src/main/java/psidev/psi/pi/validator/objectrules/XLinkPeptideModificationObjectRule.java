@@ -2,8 +2,13 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import psidev.psi.pi.validator.MzIdentMLValidator;
+import psidev.psi.pi.validator.objectrules.util.FactAccumulator;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -20,7 +25,7 @@ import uk.ac.ebi.jmzidml.model.mzidml.Peptide;
  * @author Gerhard
  * 
  */
-public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
+public class XLinkPeptideModificationObjectRule extends AAggregatingObjectRule<Peptide, XLinkPeptideModificationObjectRule.XLinkPeptideFacts> {
 
     /**
      * Constants.
@@ -28,19 +33,12 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
     private static final Context PEPTIDE_CONTEXT = new Context(MzIdentMLElement.Peptide.getXpath());
     private static final String ACC_XL_DONOR   = "MS:1002509";
     private static final String ACC_XL_RECEIVER= "MS:1002510";
-    
-    /**
-     * Members.
-     */
-    private static HashMap<String, HashMap<String, String>> XL_CVVALUE2CVACCESSION2PEPTID_MAP = null;   // CV value --> (CV accession--> peptide ID)
 
     /**
      * Constructor.
      */
     public XLinkPeptideModificationObjectRule() {
         this(null);
-        
-        XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP = new HashMap<>();
     }
 
     /**
@@ -49,8 +47,6 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
      */
     public XLinkPeptideModificationObjectRule(OntologyManager ontologyManager) {
         super(ontologyManager);
-        
-        XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP = new HashMap<>();
     }
 
     /**
@@ -65,33 +61,39 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
     }
 
     /**
-     * Checks, if there are cross-link donor and cross-link acceptor and if the
-     * CV terms MS:1002509 - 'cross-link donor' and MS:1002510 - 'cross-link acceptor' are paired with the same value in two different Peptide Modifications
+     * Creates an empty accumulator.
+     * @return the accumulator
+     */
+    @Override
+    protected XLinkPeptideFacts createAccumulator() {
+        return new XLinkPeptideFacts();
+    }
+
+    /**
+     * Collects the values of the CV terms MS:1002509 - 'cross-link donor' and MS:1002510 - 'cross-link acceptor'
+     * of the Modifications of a Peptide.
      * 
-     * @param pept the Peptide element
-     * @return collection of messages
+     * @param pept          the Peptide element
+     * @param facts         the accumulator of the current thread
+     * @param messages      the messages about empty values
      * @throws ValidatorException validator exception
      */
     @Override
-    public Collection<ValidatorMessage> check(Peptide pept) throws ValidatorException {
-        List<ValidatorMessage> messages = new ArrayList<>();
-        
+    protected void collect(Peptide pept, XLinkPeptideFacts facts, List<ValidatorMessage> messages) throws ValidatorException {
         if (AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch) {
             for (Modification mod: pept.getModification()) {
                 for (CvParam cv: mod.getCvParam()) {
                     switch (cv.getAccession()) {
                         case ACC_XL_DONOR:      // cross-link donor
-                            this.checkForEmptyCVValueAndFillMap(pept, mod, cv, messages);
+                            this.checkForEmptyCVValueAndFillMap(pept, mod, cv, facts, messages);
                             break;
                         case ACC_XL_RECEIVER:   // cross-link acceptor
-                            this.checkForEmptyCVValueAndFillMap(pept, mod, cv, messages);
+                            this.checkForEmptyCVValueAndFillMap(pept, mod, cv, facts, messages);
                             break;
                     }
                 }
             }
         }
-        
-        return messages;
     }
 
     /**
@@ -99,9 +101,10 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
      * @param pept
      * @param mod
      * @param cv
+     * @param facts
      * @param messages 
      */
-    private void checkForEmptyCVValueAndFillMap(Peptide pept, Modification mod, CvParam cv, List<ValidatorMessage> messages) {
+    private void checkForEmptyCVValueAndFillMap(Peptide pept, Modification mod, CvParam cv, XLinkPeptideFacts facts, List<ValidatorMessage> messages) {
         String cvValue = cv.getValue();
         
         // check for empty CV value
@@ -113,27 +116,32 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
         }
         
         // fill data to map
-        if (!XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP.containsKey(cvValue)) {
-            XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP.put(cvValue, new HashMap<>());
-        }
-        XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP.get(cvValue).put(cv.getAccession(), pept.getId());
+        facts.put(cvValue, cv.getAccession(), pept.getId());
     }
     
     /**
-     * Checks the rules by access to the HashMap.
+     * Checks, if the CV terms MS:1002509 - 'cross-link donor' and MS:1002510 - 'cross-link acceptor' are paired
+     * with the same value in two different Peptide Modifications.
+     * Only checked for cross-linking searches of mzIdentML 1.2 and later files.
+     * @param facts the values collected from all Peptides
      * @return collection of messages
      */
-    public static Collection<ValidatorMessage> checkRulesWithHashMapContent() {
+    @Override
+    protected Collection<ValidatorMessage> reduce(XLinkPeptideFacts facts) {
         List<ValidatorMessage> messages = new ArrayList<>();
         
-        if (XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP.isEmpty()) {
+        if (!AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch || !MzIdentMLValidator.isVersionAtLeast(MzIdentMLValidator.MzIdVersion._1_2)) {
+            return messages;
+        }
+        
+        if (facts.cvValueToAccToPeptID.isEmpty()) {
             ValidatorMessage valMsg = new ValidatorMessage("No cross-linked modified peptides donors (MS:1002509) / receivers (MS:1002510) are found for a cross-linking file "
                 + XLinkPeptideModificationObjectRule.PEPTIDE_CONTEXT.getContext(),
                 MessageLevel.ERROR);
             messages.add(valMsg);
         }
         else {
-            XLinkPeptideModificationObjectRule.checkForPairedDonorReceiverPairs(messages);
+            XLinkPeptideModificationObjectRule.checkForPairedDonorReceiverPairs(facts.cvValueToAccToPeptID, messages);
         }
         
         return messages;
@@ -141,13 +149,14 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
         
     /**
      * Checks, if 'cross-link donor' and 'cross-link acceptor' are always paired correctly.
+     * @param cvValueToAccToPeptID
      * @param messages 
      */
-    private static void checkForPairedDonorReceiverPairs(Collection<ValidatorMessage> messages) {
+    private static void checkForPairedDonorReceiverPairs(HashMap<String, HashMap<String, String>> cvValueToAccToPeptID, Collection<ValidatorMessage> messages) {
         ValidatorMessage valMsg;
         
-        for (String cvVal: XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP.keySet()) {
-            HashMap<String, String> acc2PeptIDMap = XLinkPeptideModificationObjectRule.XL_CVVALUE2CVACCESSION2PEPTID_MAP.get(cvVal);
+        for (String cvVal: cvValueToAccToPeptID.keySet()) {
+            HashMap<String, String> acc2PeptIDMap = cvValueToAccToPeptID.get(cvVal);
 
             if (acc2PeptIDMap.size() == 2) { 
                 int cntDonor = 0;
@@ -208,6 +217,15 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
         return strB.toString();
     }
     
+    /**
+     * Reads the additional search params flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -221,4 +239,34 @@ public class XLinkPeptideModificationObjectRule extends AObjectRule<Peptide> {
         
         return ret;
     }
+
+    /**
+     * Peptide ID's per CV value and cross-link donor / acceptor accession.
+     */
+    public static class XLinkPeptideFacts implements FactAccumulator<XLinkPeptideFacts> {
+
+        /**
+         * Members.
+         */
+        private final HashMap<String, HashMap<String, String>> cvValueToAccToPeptID = new HashMap<>();   // CV value --> (CV accession--> peptide ID)
+
+        /**
+         * Adds a cross-link donor or acceptor.
+         * @param cvValue   the CV value
+         * @param acc       the CV accession
+         * @param peptID    the Peptide ID
+         */
+        private void put(String cvValue, String acc, String peptID) {
+            this.cvValueToAccToPeptID.computeIfAbsent(cvValue, (key) -> new HashMap<>()).put(acc, peptID);
+        }
+
+        /**
+         * Merges the Peptide ID's of another accumulator.
+         * @param other the other accumulator
+         */
+        @Override
+        public void merge(XLinkPeptideFacts other) {
+            other.cvValueToAccToPeptID.forEach((cvValue, acc2PeptID) -> this.cvValueToAccToPeptID.computeIfAbsent(cvValue, (key) -> new HashMap<>()).putAll(acc2PeptID));
+        }
+    }
 }
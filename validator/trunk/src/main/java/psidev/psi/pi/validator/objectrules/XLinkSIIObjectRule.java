@@ -2,9 +2,14 @@ package psidev.psi.pi.validator.objectrules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import psidev.psi.pi.validator.MzIdentMLValidator;
+import psidev.psi.pi.validator.objectrules.util.FactAccumulator;
+import psidev.psi.pi.validator.objectrules.util.RuleFact;
 import psidev.psi.tools.ontology_manager.OntologyManager;
 import psidev.psi.tools.validator.Context;
 import psidev.psi.tools.validator.MessageLevel;
@@ -30,29 +35,18 @@ import uk.ac.ebi.jmzidml.model.mzidml.SpectrumIdentificationResult;
  * @author Gerhard
  * 
  */
-public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult> {
+public class XLinkSIIObjectRule extends AAggregatingObjectRule<SpectrumIdentificationResult, XLinkSIIObjectRule.XLinkSIIFacts> {
 
     /**
      * Constants.
      */
     private static final Context SIR_CONTEXT = new Context(MzIdentMLElement.SpectrumIdentificationResult.getXpath());
-    
-    /**
-     * Members.
-     */
-    // mapping from sirID and cvValue to the SII-ID list
-    private static HashMap<ImmutablePair<String, String>, ArrayList<String>> XL_SIRID_AND_CVVALUE2SII_IDLISTMAP = null;
-    // mapping from sirID and cvValue to the chargeState list
-    private static HashMap<ImmutablePair<String, String>, ArrayList<Integer>> XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP = null;
 
     /**
      * Constructor.
      */
     public XLinkSIIObjectRule() {
         this(null);
-        
-        XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP = new HashMap<>();
-        XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP = new HashMap<>();
     }
 
     /**
@@ -61,9 +55,6 @@ public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult
      */
     public XLinkSIIObjectRule(OntologyManager ontologyManager) {
         super(ontologyManager);
-        
-        XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP = new HashMap<>();
-        XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP = new HashMap<>();
     }
 
     /**
@@ -78,21 +69,28 @@ public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult
     }
 
     /**
-     * Checks, if for each CV term MS:1002511 - 'cross-link spectrum identification item' there exists the same CV term
-     * with the same value in another SpectrumIdentificationItem of the same SpectrumIdentificationResult.
+     * Creates an empty accumulator.
+     * @return the accumulator
+     */
+    @Override
+    protected XLinkSIIFacts createAccumulator() {
+        return new XLinkSIIFacts();
+    }
+
+    /**
+     * Collects the values of the CV terms MS:1002511 - 'cross-link spectrum identification item'
+     * of the SpectrumIdentificationItems of a SpectrumIdentificationResult.
      * 
-     * @param sir the SpectrumIdentificationResult element
-     * @return collection of messages
+     * @param sir           the SpectrumIdentificationResult element
+     * @param facts         the accumulator of the current thread
+     * @param messages      the messages about empty values
      * @throws ValidatorException validator exception
      */
     @Override
-    public Collection<ValidatorMessage> check(SpectrumIdentificationResult sir) throws ValidatorException {
-        List<ValidatorMessage> messages = new ArrayList<>();
-
+    protected void collect(SpectrumIdentificationResult sir, XLinkSIIFacts facts, List<ValidatorMessage> messages) throws ValidatorException {
         if (AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch) {
             String sirID = sir.getId();
             
-            ImmutablePair<String, String> sirID_CvValue_key;
             for (SpectrumIdentificationItem sii: sir.getSpectrumIdentificationItem()) {
                 for (CvParam cv: sii.getCvParam()) {
                     if (cv != null) {
@@ -107,49 +105,41 @@ public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult
                                         MessageLevel.WARN, XLinkSIIObjectRule.SIR_CONTEXT, this));
                                 }
 
-                                // fill the first map
-                                sirID_CvValue_key = new ImmutablePair<>(sirID, cvValue);
-                                if (!XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP.containsKey(sirID_CvValue_key)) {
-                                    XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP.put(sirID_CvValue_key, new ArrayList<>());
-                                }
-                                XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP.get(sirID_CvValue_key).add(sii.getId());
-
-                                // fill the second map
-                                sirID_CvValue_key = new ImmutablePair<>(sirID, cvValue);
-                                if (!XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP.containsKey(sirID_CvValue_key)) {
-                                    XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP.put(sirID_CvValue_key, new ArrayList<>());
-                                }
-                                if (!XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP.get(sirID_CvValue_key).contains(sii.getChargeState())) {
-                                    XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP.get(sirID_CvValue_key).add(sii.getChargeState());
-                                }
+                                facts.add(new ImmutablePair<>(sirID, cvValue), sii.getId(), sii.getChargeState());
                                 break;
                         }
                     }
                 }
             }
         }
-
-        return messages;
     }
 
     /**
-     * Checks the rules by access to the HashMap.
+     * Checks, if for each CV term MS:1002511 - 'cross-link spectrum identification item' there exists the same CV term
+     * with the same value in another SpectrumIdentificationItem of the same SpectrumIdentificationResult.
+     * Only checked for cross-linking searches of mzIdentML 1.2 and later files.
+     * @param facts the values collected from all SpectrumIdentificationResults
      * @return collection of messages
      */
-    public static Collection<ValidatorMessage> checkRulesWithHashMapContent() {
+    @Override
+    protected Collection<ValidatorMessage> reduce(XLinkSIIFacts facts) {
         List<ValidatorMessage> messages = new ArrayList<>();
         ValidatorMessage valMsg;
         
-        if (XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP.isEmpty()) {
+        if (!AdditionalSearchParamsObjectRule.bIsCrossLinkingSearch || !MzIdentMLValidator.isVersionAtLeast(MzIdentMLValidator.MzIdVersion._1_2)) {
+            return messages;
+        }
+        
+        if (facts.siiIDs.isEmpty()) {
             valMsg = new ValidatorMessage("No CV terms MS:1002511 - 'cross-link spectrum identification item' found for a cross-linking file."
                 + XLinkSIIObjectRule.SIR_CONTEXT.getContext(),
                 MessageLevel.ERROR);
             messages.add(valMsg);
         }
         else {
-            for (ImmutablePair<String, String> sirID_CvValue_key: XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP.keySet()) {
+            for (ImmutablePair<String, String> sirID_CvValue_key: facts.siiIDs.keySet()) {
                 String cvValue = sirID_CvValue_key.right;
-                ArrayList<Integer> chargeStateList = XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2CHARGESTATELISTMAP.get(sirID_CvValue_key);
+                ArrayList<Integer> chargeStateList = facts.chargeStates.get(sirID_CvValue_key);
                 
                 if (chargeStateList.size() > 1) {
                     valMsg = new ValidatorMessage("The cvParam's MS:1002511 with the value " + cvValue + " are used in SpectrumIdentificationItem's with " +
@@ -157,7 +147,7 @@ public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult
                     messages.add(valMsg);
                 }
                 else {
-                    ArrayList<String> siiIdList = XLinkSIIObjectRule.XL_SIRID_AND_CVVALUE2SII_IDLISTMAP.get(sirID_CvValue_key);
+                    ArrayList<String> siiIdList = facts.siiIDs.get(sirID_CvValue_key);
                 
                     if (siiIdList.size() == 1) {
                         valMsg = new ValidatorMessage("The cvParam MS:1002511 with value " + cvValue +
@@ -199,6 +189,15 @@ public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult
         return messages;
     }
     
+    /**
+     * Reads the additional search params flags.
+     * @return the consumed facts
+     */
+    @Override
+    public Set<RuleFact> getConsumedFacts() {
+        return EnumSet.of(RuleFact.ADDITIONAL_SEARCH_PARAMS);
+    }
+
     /**
      * Gets the tips how to fix the error.
      * 
@@ -212,4 +211,45 @@ public class XLinkSIIObjectRule extends AObjectRule<SpectrumIdentificationResult
 
         return ret;
     }
+
+    /**
+     * SpectrumIdentificationItem ID's and charge states per SpectrumIdentificationResult and MS:1002511 value.
+     */
+    public static class XLinkSIIFacts implements FactAccumulator<XLinkSIIFacts> {
+
+        /**
+         * Members.
+         */
+        // mapping from sirID and cvValue to the SII-ID list
+        private final HashMap<ImmutablePair<String, String>, ArrayList<String>> siiIDs = new HashMap<>();
+        // mapping from sirID and cvValue to the chargeState list
+        private final HashMap<ImmutablePair<String, String>, ArrayList<Integer>> chargeStates = new HashMap<>();
+
+        /**
+         * Adds a SpectrumIdentificationItem.
+         * @param sirID_CvValue_key the SpectrumIdentificationResult ID and the MS:1002511 value
+         * @param siiID             the SpectrumIdentificationItem ID
+         * @param chargeState       the charge state of the SpectrumIdentificationItem
+         */
+        private void add(ImmutablePair<String, String> sirID_CvValue_key, String siiID, Integer chargeState) {
+            this.siiIDs.computeIfAbsent(sirID_CvValue_key, (key) -> new ArrayList<>()).add(siiID);
+            ArrayList<Integer> chargeStateList = this.chargeStates.computeIfAbsent(sirID_CvValue_key, (key) -> new ArrayList<>());
+            if (!chargeStateList.contains(chargeState)) {
+                chargeStateList.add(chargeState);
+            }
+        }
+
+        /**
+         * Merges the ID's and charge states of another accumulator.
+         * @param other the other accumulator
+         */
+        @Override
+        public void merge(XLinkSIIFacts other) {
+            other.siiIDs.forEach((key, ids) -> this.siiIDs.computeIfAbsent(key, (k) -> new ArrayList<>()).addAll(ids));
+            other.chargeStates.forEach((key, states) -> {
+                ArrayList<Integer> chargeStateList = this.chargeStates.computeIfAbsent(key, (k) -> new ArrayList<>());
+                states.stream().filter((state) -> !chargeStateList.contains(state)).forEach(chargeStateList::add);
+            });
+        }
+    }
 }
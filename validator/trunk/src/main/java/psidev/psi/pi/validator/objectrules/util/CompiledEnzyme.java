@@ -0,0 +1,224 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The cleavage rule of an Enzyme: its SiteRegexp, semiSpecific and missedCleavages.
+ * The SiteRegexp is compiled once into a table of the residue pairs it cleaves between (indexed by the codes of {@link PackedSequenceStore}),
+ * so a cleavage site is looked up in O(1) instead of running the regular expression.
+ * Regular expressions, which depend on more than the residue before and after the site, are detected and evaluated as regular expressions.
+ * A site is a position where the SiteRegexp matches, either as lookarounds (e.g. (?&lt;=[KR])(?!P)) or ending there (e.g. [KR](?!P)).
+ * Immutable, so it may be used by several threads.
+ */
+public class CompiledEnzyme {
+
+    /**
+     * Constants.
+     */
+    public static final int UNLIMITED           = -1;
+    private static final int ALPHABET_SIZE      = 32;
+    private static final int FIRST_RESIDUE      = 1;
+    private static final int LAST_RESIDUE       = 26;
+    private static final String STR_PSI_MS_OBO  = "psi-ms.obo";
+    private static final String STR_ID_LINE     = "id: ";
+    private static final String STR_REGEXP_LINE = "relationship: has_regexp ";
+    private static final String STR_COMMENT     = "!";
+
+    /**
+     * Members.
+     */
+    private static Map<String, String> REGEXPS = null;     // cleavage agent accession -> regular expression
+    private final Pattern pattern;
+    private final boolean semiSpecific;
+    private final int missedCleavages;
+    private final boolean[] sites = new boolean[CompiledEnzyme.ALPHABET_SIZE * CompiledEnzyme.ALPHABET_SIZE];
+    private final boolean bLocal;
+
+    /**
+     * Constructor.
+     * @param pattern           the compiled SiteRegexp
+     * @param semiSpecific      true, if one specific terminus is enough
+     * @param missedCleavages   the maximum number of missed cleavages, UNLIMITED if not given
+     */
+    private CompiledEnzyme(Pattern pattern, boolean semiSpecific, int missedCleavages) {
+        this.pattern = pattern;
+        this.semiSpecific = semiSpecific;
+        this.missedCleavages = missedCleavages;
+        this.bLocal = this.buildSiteTable();
+    }
+
+    /**
+     * Compiles the cleavage rule of an Enzyme.
+     * @param regexp            the SiteRegexp
+     * @param semiSpecific      true, if one specific terminus is enough
+     * @param missedCleavages   the maximum number of missed cleavages, UNLIMITED if not given
+     * @return the compiled enzyme
+     * @throws java.util.regex.PatternSyntaxException if the SiteRegexp is not a valid regular expression
+     */
+    public static CompiledEnzyme compile(String regexp, boolean semiSpecific, int missedCleavages) {
+        return new CompiledEnzyme(Pattern.compile(regexp.trim()), semiSpecific, missedCleavages);
+    }
+
+    /**
+     * Combines the enzymes of a search with dependent enzymes: a site of any enzyme is a site of the combination.
+     * The combination is semi-specific if any enzyme is, its missed cleavages are the most of the enzymes.
+     * @param enzymes the compiled enzymes
+     * @return the combined enzyme
+     */
+    public static CompiledEnzyme combine(Collection<CompiledEnzyme> enzymes) {
+        if (enzymes.size() == 1) {
+            return enzymes.iterator().next();
+        }
+
+        String regexp = enzymes.stream().map((enzyme) -> "(?:" + enzyme.pattern.pattern() + ")").collect(Collectors.joining("|"));
+        boolean bSemiSpecific = enzymes.stream().anyMatch((enzyme) -> enzyme.semiSpecific);
+        int maxMissedCleavages = enzymes.stream().anyMatch((enzyme) -> enzyme.missedCleavages == CompiledEnzyme.UNLIMITED)
+                ? CompiledEnzyme.UNLIMITED : enzymes.stream().mapToInt((enzyme) -> enzyme.missedCleavages).max().orElse(CompiledEnzyme.UNLIMITED);
+
+        return new CompiledEnzyme(Pattern.compile(regexp), bSemiSpecific, maxMissedCleavages);
+    }
+
+    /**
+     * Gets the regular expression of a cleavage agent name term (has_regexp relation in psi-ms.obo).
+     * @param accession the accession of the cleavage agent, e.g. MS:1001251
+     * @return the regular expression, null if the term has none
+     */
+    public static String getRegexp(String accession) {
+        return CompiledEnzyme.getRegexps().get(accession);
+    }
+
+    /**
+     * Checks, if one specific terminus is enough.
+     * @return true, if semi-specific
+     */
+    public boolean isSemiSpecific() {
+        return this.semiSpecific;
+    }
+
+    /**
+     * Gets the maximum number of missed cleavages.
+     * @return the number, UNLIMITED if not given
+     */
+    public int getMissedCleavages() {
+        return this.missedCleavages;
+    }
+
+    /**
+     * Checks, if the sites only depend on the residues before and after them, so they are looked up in the table.
+     * @return true, if the table is used
+     */
+    public boolean isLocal() {
+        return this.bLocal;
+    }
+
+    /**
+     * Checks, if there is a cleavage site between two residues of a sequence.
+     * @param residues  the sequence
+     * @param pos       the index of the residue after the site, 1 to length - 1
+     * @return true, if the enzyme cleaves there
+     */
+    public boolean isCleavageSite(char[] residues, int pos) {
+        if (this.bLocal) {
+            return this.sites[PackedSequenceStore.encode(residues[pos - 1]) * CompiledEnzyme.ALPHABET_SIZE + PackedSequenceStore.encode(residues[pos])];
+        }
+
+        return this.matchesSite(CharBuffer.wrap(residues), pos);
+    }
+
+    /**
+     * Fills the table of the residue pairs with a site between them and verifies, that one more residue before or after the pair
+     * doesn't change the result.
+     * @return true, if the table can be used
+     */
+    private boolean buildSiteTable() {
+        char[] pair = new char[2];
+        for (int before = CompiledEnzyme.FIRST_RESIDUE; before <= CompiledEnzyme.LAST_RESIDUE; before++) {
+            for (int after = CompiledEnzyme.FIRST_RESIDUE; after <= CompiledEnzyme.LAST_RESIDUE; after++) {
+                pair[0] = PackedSequenceStore.decode(before);
+                pair[1] = PackedSequenceStore.decode(after);
+                this.sites[before * CompiledEnzyme.ALPHABET_SIZE + after] = this.matchesSite(CharBuffer.wrap(pair), 1);
+            }
+        }
+
+        char[] triple = new char[3];
+        for (int first = CompiledEnzyme.FIRST_RESIDUE; first <= CompiledEnzyme.LAST_RESIDUE; first++) {
+            for (int second = CompiledEnzyme.FIRST_RESIDUE; second <= CompiledEnzyme.LAST_RESIDUE; second++) {
+                for (int third = CompiledEnzyme.FIRST_RESIDUE; third <= CompiledEnzyme.LAST_RESIDUE; third++) {
+                    triple[0] = PackedSequenceStore.decode(first);
+                    triple[1] = PackedSequenceStore.decode(second);
+                    triple[2] = PackedSequenceStore.decode(third);
+                    CharBuffer text = CharBuffer.wrap(triple);
+                    if (this.matchesSite(text, 1) != this.sites[first * CompiledEnzyme.ALPHABET_SIZE + second]
+                            || this.matchesSite(text, 2) != this.sites[second * CompiledEnzyme.ALPHABET_SIZE + third]) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs the regular expression: a site is a match which is empty at the position or ends there after one residue.
+     * @param text  the sequence
+     * @param pos   the position of the site
+     * @return true, if the enzyme cleaves there
+     */
+    private boolean matchesSite(CharSequence text, int pos) {
+        Matcher matcher = this.pattern.matcher(text);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        if (matcher.region(pos, pos).matches()) {
+            return true;
+        }
+
+        return matcher.region(pos - 1, pos).matches();
+    }
+
+    /**
+     * Gets the regular expressions of the cleavage agents, reads them on the first call.
+     * @return map of the accessions to the regular expressions
+     */
+    private static synchronized Map<String, String> getRegexps() {
+        if (CompiledEnzyme.REGEXPS == null) {
+            Map<String, String> regexps = new HashMap<>();
+            try (InputStream is = CompiledEnzyme.class.getClassLoader().getResourceAsStream(CompiledEnzyme.STR_PSI_MS_OBO)) {
+                if (is != null) {
+                    BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                    String accession = null;
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.startsWith(CompiledEnzyme.STR_ID_LINE)) {
+                            accession = line.substring(CompiledEnzyme.STR_ID_LINE.length()).trim();
+                        }
+                        else if (accession != null && line.startsWith(CompiledEnzyme.STR_REGEXP_LINE)) {
+                            // the name of the regexp term is the regular expression: has_regexp MS:1001176 ! (?<=[KR])(?!P)
+                            int comment = line.indexOf(CompiledEnzyme.STR_COMMENT);
+                            if (comment > 0) {
+                                regexps.put(accession, line.substring(comment + 1).trim());
+                            }
+                        }
+                    }
+                }
+            }
+            catch (IOException exc) {
+                exc.printStackTrace(System.err);
+            }
+            CompiledEnzyme.REGEXPS = regexps;
+        }
+
+        return CompiledEnzyme.REGEXPS;
+    }
+}
@@ -0,0 +1,121 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The references between PeptideEvidence, Peptide and DBSequence elements, needed by the cross-reference rules.
+ * All ids share one {@link IdDictionary}; the relations are kept as primitive int arrays and bit sets over the
+ * dictionary ints instead of HashSets and HashMaps of Strings.
+ * Filled while the PeptideEvidence elements are checked, read afterwards (also by the parallel SII checks).
+ */
+public class CrossReferenceIndex {
+
+    /**
+     * Constants.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Members.
+     */
+    private final IdDictionary ids = new IdDictionary();
+    private final BitSet referencedPeptides = new BitSet();
+    private final BitSet referencedDBSequences = new BitSet();
+    private int[] peptideOfEvidence = CrossReferenceIndex.newRelation(CrossReferenceIndex.INITIAL_CAPACITY);
+
+    /**
+     * Adds the references of a PeptideEvidence element.
+     * @param peptideEvidenceId the id of the PeptideEvidence
+     * @param peptideRef        the peptide_ref attribute
+     * @param dbSequenceRef     the dBSequence_ref attribute
+     */
+    public void addPeptideEvidence(String peptideEvidenceId, String peptideRef, String dbSequenceRef) {
+        int pev = this.ids.add(peptideEvidenceId);
+        int peptide = this.ids.add(peptideRef);
+        int dbSeq = this.ids.add(dbSequenceRef);
+
+        if (peptide != IdDictionary.NOT_FOUND) {
+            this.referencedPeptides.set(peptide);
+        }
+        if (dbSeq != IdDictionary.NOT_FOUND) {
+            this.referencedDBSequences.set(dbSeq);
+        }
+        if (pev != IdDictionary.NOT_FOUND) {
+            if (pev >= this.peptideOfEvidence.length) {
+                int oldLength = this.peptideOfEvidence.length;
+                this.peptideOfEvidence = Arrays.copyOf(this.peptideOfEvidence, Math.max(oldLength * 2, pev + 1));
+                Arrays.fill(this.peptideOfEvidence, oldLength, this.peptideOfEvidence.length, IdDictionary.NOT_FOUND);
+            }
+            this.peptideOfEvidence[pev] = peptide;
+        }
+    }
+
+    /**
+     * Checks, if a Peptide is referenced by any PeptideEvidence.
+     * @param peptideId the id of the Peptide
+     * @return true, if the Peptide is referenced
+     */
+    public boolean isPeptideReferenced(String peptideId) {
+        int peptide = this.ids.get(peptideId);
+
+        return peptide != IdDictionary.NOT_FOUND && this.referencedPeptides.get(peptide);
+    }
+
+    /**
+     * Checks, if a DBSequence is referenced by any PeptideEvidence.
+     * @param dbSequenceId the id of the DBSequence
+     * @return true, if the DBSequence is referenced
+     */
+    public boolean isDBSequenceReferenced(String dbSequenceId) {
+        int dbSeq = this.ids.get(dbSequenceId);
+
+        return dbSeq != IdDictionary.NOT_FOUND && this.referencedDBSequences.get(dbSeq);
+    }
+
+    /**
+     * Checks, if a PeptideEvidence references the given Peptide.
+     * @param peptideEvidenceId the id of the PeptideEvidence
+     * @param peptideRef        the id of the Peptide
+     * @return true, if the PeptideEvidence exists and its peptide_ref is peptideRef
+     */
+    public boolean isEvidenceOfPeptide(String peptideEvidenceId, String peptideRef) {
+        int pev = this.ids.get(peptideEvidenceId);
+        if (pev == IdDictionary.NOT_FOUND || pev >= this.peptideOfEvidence.length) {
+            return false;
+        }
+        int peptide = this.peptideOfEvidence[pev];
+
+        return peptide != IdDictionary.NOT_FOUND && peptide == this.ids.get(peptideRef);
+    }
+
+    /**
+     * Gets the number of distinct ids.
+     * @return the number of ids
+     */
+    public int getNumberOfIds() {
+        return this.ids.size();
+    }
+
+    /**
+     * Removes all references.
+     */
+    public void clear() {
+        this.ids.clear();
+        this.referencedPeptides.clear();
+        this.referencedDBSequences.clear();
+        this.peptideOfEvidence = CrossReferenceIndex.newRelation(CrossReferenceIndex.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty relation.
+     * @param capacity the initial capacity
+     * @return int array filled with NOT_FOUND
+     */
+    private static int[] newRelation(int capacity) {
+        int[] relation = new int[capacity];
+        Arrays.fill(relation, IdDictionary.NOT_FOUND);
+
+        return relation;
+    }
+}
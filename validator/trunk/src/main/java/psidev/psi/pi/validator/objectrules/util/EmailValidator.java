@@ -1,35 +1,28 @@
 package psidev.psi.pi.validator.objectrules.util;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Class for validating email addresses.
+ * The pattern is compiled once, the validation is thread safe and the results of repeated addresses are cached.
  * @author Salva
  */
 public class EmailValidator {
 
-    private static Pattern pattern;
-    private static Matcher matcher;
-
-    private static final String EMAIL_PATTERN1 = "^[_A-Za-z0-9-]+(\\.[_A-Za-z0-9-]+)*@[A-Za-z0-9]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
-    private static final String EMAIL_PATTERN2 = "^[_A-Za-z0-9-]+(\\.[_A-Za-z0-9-]+)*_AT_[A-Za-z0-9]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
+    /**
+     * Constants.
+     */
+    // accepts 'name@domain.org' and the obfuscated form 'name_AT_domain.org'
+    private static final String EMAIL_PATTERN = "^[_A-Za-z0-9-]+(\\.[_A-Za-z0-9-]+)*(@|_AT_)[A-Za-z0-9]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
+    private static final PrecompiledRegExp REGEXP_EMAIL = new PrecompiledRegExp(EmailValidator.EMAIL_PATTERN);
+    private static final int MAX_CACHED_ADDRESSES = 1024;
+    private static final ValidationResultCache RESULTS = new ValidationResultCache(EmailValidator.REGEXP_EMAIL::matches, EmailValidator.MAX_CACHED_ADDRESSES);
 
     /**
-     * Validate hex with regular expression.
-     * 
-     * @param hex   hex for validation
-     * @return true valid hex, false invalid hex
+     * Validates an email address with the regular expression.
+     *
+     * @param hex   email address for validation
+     * @return true valid email address, false invalid email address
      */
     public static boolean validate(final String hex) {
-        pattern = Pattern.compile(EMAIL_PATTERN1);
-        matcher = pattern.matcher(hex);
-        boolean bRet1 = matcher.matches();
-        
-        pattern = Pattern.compile(EMAIL_PATTERN2);
-        matcher = pattern.matcher(hex);
-        boolean bRet2 = matcher.matches();
-        
-        return bRet1 || bRet2;
+        return EmailValidator.RESULTS.isValid(hex);
     }
 }
@@ -0,0 +1,16 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+/**
+ * Facts collected by an aggregating object rule from a part of the elements of a file.
+ * The accumulators filled by different threads are merged before the rule checks the facts of the whole file.
+ * @param <A> type of the accumulator
+ */
+public interface FactAccumulator<A extends FactAccumulator<A>> {
+
+    /**
+     * Merges the facts of another accumulator into this accumulator.
+     * The order of the merged accumulators follows the creation of the threads, not the order of the elements in the file.
+     * @param other the other accumulator
+     */
+    void merge(A other);
+}
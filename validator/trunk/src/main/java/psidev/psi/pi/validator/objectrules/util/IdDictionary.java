@@ -0,0 +1,245 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps XML ids to consecutive ints (0, 1, 2, ...).
+ * The ids are stored UTF-8 encoded in one byte pool and looked up by an open addressing hash table of ints,
+ * so there is no String, no boxed Integer and no map entry per id. For the 10M+ PeptideEvidence ids of
+ * proteogenomics files this needs roughly (id length + 16) bytes per id instead of several hundred.
+ * Not thread-safe for writing; concurrent lookups are fine once all ids have been added.
+ */
+public class IdDictionary {
+
+    /**
+     * Constants.
+     */
+    public static final int NOT_FOUND = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY_SLOT = 0;
+
+    /**
+     * Members.
+     */
+    private byte[] pool;
+    private int poolSize;
+    private int[] offsets;  // id i occupies pool[offsets[i] .. offsets[i + 1])
+    private int[] hashes;
+    private int[] table;    // slot -> id + 1, EMPTY_SLOT if unused
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    public IdDictionary() {
+        this.clear();
+    }
+
+    /**
+     * Removes all ids and releases the memory.
+     */
+    public final void clear() {
+        this.pool = new byte[IdDictionary.INITIAL_CAPACITY * 16];
+        this.poolSize = 0;
+        this.offsets = new int[IdDictionary.INITIAL_CAPACITY + 1];
+        this.hashes = new int[IdDictionary.INITIAL_CAPACITY];
+        this.table = new int[IdDictionary.INITIAL_CAPACITY * 2];
+        this.size = 0;
+    }
+
+    /**
+     * Gets the number of ids.
+     * @return the number of ids
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the int of an id, adding the id if it's new.
+     * @param id the XML id
+     * @return the int of the id, or NOT_FOUND for null
+     */
+    public int add(String id) {
+        if (id == null) {
+            return IdDictionary.NOT_FOUND;
+        }
+
+        int hash = IdDictionary.spread(id.hashCode());
+        int mask = this.table.length - 1;
+        int slot = hash & mask;
+        while (this.table[slot] != IdDictionary.EMPTY_SLOT) {
+            int idx = this.table[slot] - 1;
+            if (this.hashes[idx] == hash && this.equalsAt(idx, id)) {
+                return idx;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int idx = this.size++;
+        this.ensureCapacity(id.length() * 3);
+        this.hashes[idx] = hash;
+        this.encode(id);
+        this.offsets[idx + 1] = this.poolSize;
+        this.table[slot] = idx + 1;
+
+        if (this.size * 2 > this.table.length) {
+            this.rehash();
+        }
+
+        return idx;
+    }
+
+    /**
+     * Gets the int of an id without adding it.
+     * @param id the XML id
+     * @return the int of the id, or NOT_FOUND if the id is unknown or null
+     */
+    public int get(String id) {
+        if (id == null) {
+            return IdDictionary.NOT_FOUND;
+        }
+
+        int hash = IdDictionary.spread(id.hashCode());
+        int mask = this.table.length - 1;
+        int slot = hash & mask;
+        while (this.table[slot] != IdDictionary.EMPTY_SLOT) {
+            int idx = this.table[slot] - 1;
+            if (this.hashes[idx] == hash && this.equalsAt(idx, id)) {
+                return idx;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return IdDictionary.NOT_FOUND;
+    }
+
+    /**
+     * Checks, if an id is known.
+     * @param id the XML id
+     * @return true, if the id was added
+     */
+    public boolean contains(String id) {
+        return this.get(id) != IdDictionary.NOT_FOUND;
+    }
+
+    /**
+     * Gets the id for an int, e.g. for messages.
+     * @param idx the int of the id
+     * @return the XML id
+     */
+    public String getId(int idx) {
+        StringBuilder sb = new StringBuilder(this.offsets[idx + 1] - this.offsets[idx]);
+        int pos = this.offsets[idx];
+        int end = this.offsets[idx + 1];
+        while (pos < end) {
+            int b = this.pool[pos++] & 0xff;
+            if (b < 0x80) {
+                sb.append((char) b);
+            }
+            else if (b < 0xe0) {
+                sb.append((char) (((b & 0x1f) << 6) | (this.pool[pos++] & 0x3f)));
+            }
+            else {
+                sb.append((char) (((b & 0x0f) << 12) | ((this.pool[pos++] & 0x3f) << 6) | (this.pool[pos++] & 0x3f)));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Compares the stored id with a string without decoding it.
+     * @param idx   the int of the stored id
+     * @param id    the string to compare with
+     * @return true, if both are equal
+     */
+    private boolean equalsAt(int idx, String id) {
+        int pos = this.offsets[idx];
+        int end = this.offsets[idx + 1];
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < 0x80) {
+                if (pos >= end || this.pool[pos++] != (byte) c) {
+                    return false;
+                }
+            }
+            else if (c < 0x800) {
+                if (pos + 2 > end || this.pool[pos++] != (byte) (0xc0 | (c >> 6)) || this.pool[pos++] != (byte) (0x80 | (c & 0x3f))) {
+                    return false;
+                }
+            }
+            else {
+                if (pos + 3 > end || this.pool[pos++] != (byte) (0xe0 | (c >> 12)) || this.pool[pos++] != (byte) (0x80 | ((c >> 6) & 0x3f))
+                        || this.pool[pos++] != (byte) (0x80 | (c & 0x3f))) {
+                    return false;
+                }
+            }
+        }
+
+        return pos == end;
+    }
+
+    /**
+     * Appends an id to the pool. Every char is encoded on its own (like Java's modified UTF-8),
+     * so surrogate pairs need no special handling.
+     * @param id the XML id
+     */
+    private void encode(String id) {
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < 0x80) {
+                this.pool[this.poolSize++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                this.pool[this.poolSize++] = (byte) (0xc0 | (c >> 6));
+                this.pool[this.poolSize++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else {
+                this.pool[this.poolSize++] = (byte) (0xe0 | (c >> 12));
+                this.pool[this.poolSize++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                this.pool[this.poolSize++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Makes room for one more id.
+     * @param maxBytes maximum number of bytes of the encoded id
+     */
+    private void ensureCapacity(int maxBytes) {
+        if (this.poolSize + maxBytes > this.pool.length) {
+            this.pool = Arrays.copyOf(this.pool, Math.max(this.pool.length * 2, this.poolSize + maxBytes));
+        }
+        if (this.size + 1 > this.hashes.length) {
+            this.hashes = Arrays.copyOf(this.hashes, this.hashes.length * 2);
+            this.offsets = Arrays.copyOf(this.offsets, this.hashes.length + 1);
+        }
+    }
+
+    /**
+     * Doubles the hash table.
+     */
+    private void rehash() {
+        int[] newTable = new int[this.table.length * 2];
+        int mask = newTable.length - 1;
+        for (int idx = 0; idx < this.size; idx++) {
+            int slot = this.hashes[idx] & mask;
+            while (newTable[slot] != IdDictionary.EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = idx + 1;
+        }
+        this.table = newTable;
+    }
+
+    /**
+     * Spreads the bits of a String hash code, since linear probing uses the low bits.
+     * @param h the hash code
+     * @return the spread hash code
+     */
+    private static int spread(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
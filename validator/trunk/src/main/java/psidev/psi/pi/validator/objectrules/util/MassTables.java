@@ -0,0 +1,119 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Monoisotopic masses to compute the theoretical m/z of peptides: the residues (indexed by the one letter code)
+ * and the modifications of the unimod.obo and PSI-MOD.obo resources (indexed by the accession).
+ * The modification masses are read once, when they are needed the first time.
+ */
+public class MassTables {
+
+    /**
+     * Constants.
+     */
+    public static final double PROTON           = 1.007276467;
+    public static final double WATER            = 18.010564684;
+    private static final String STR_UNIMOD_OBO  = "unimod.obo";
+    private static final String STR_PSI_MOD_OBO = "PSI-MOD.obo";
+    private static final String STR_ID_LINE     = "id: ";
+    private static final String STR_UNIMOD_MASS = "xref: delta_mono_mass \"";
+    private static final String STR_PSI_MOD_MASS= "xref: DiffMono: \"";
+    private static final String[] STANDARD_RESIDUES = {
+        "A", "71.037114", "C", "103.009185", "D", "115.026943", "E", "129.042593", "F", "147.068414",
+        "G", "57.021464", "H", "137.058912", "I", "113.084064", "K", "128.094963", "L", "113.084064",
+        "M", "131.040485", "N", "114.042927", "O", "237.147727", "P", "97.052764", "Q", "128.058578",
+        "R", "156.101111", "S", "87.032028", "T", "101.047679", "U", "150.953636", "V", "99.068414",
+        "W", "186.079313", "Y", "163.063329"};
+
+    /**
+     * Members.
+     */
+    private static Map<String, Double> MODIFICATION_MASSES = null;     // accession -> monoisotopic mass delta
+
+    /**
+     * Constructor, only static methods.
+     */
+    private MassTables() {
+    }
+
+    /**
+     * Creates the table of the standard monoisotopic residue masses.
+     * @return the masses indexed by the code of {@link PackedSequenceStore}, NaN for B, J, X, Z and unknown residues
+     */
+    public static double[] createStandardResidueMasses() {
+        double[] masses = new double[32];
+        Arrays.fill(masses, Double.NaN);
+        for (int i = 0; i < MassTables.STANDARD_RESIDUES.length; i += 2) {
+            masses[PackedSequenceStore.encode(MassTables.STANDARD_RESIDUES[i].charAt(0))] = Double.parseDouble(MassTables.STANDARD_RESIDUES[i + 1]);
+        }
+
+        return masses;
+    }
+
+    /**
+     * Gets the monoisotopic mass delta of a modification.
+     * @param accession the accession of the modification, e.g. UNIMOD:35 or MOD:00719
+     * @return the mass delta, NaN if the accession is unknown or has no mass
+     */
+    public static double getModificationMass(String accession) {
+        Double mass = MassTables.getModificationMasses().get(accession);
+        return (mass == null) ? Double.NaN : mass;
+    }
+
+    /**
+     * Gets the modification masses, reads them on the first call.
+     * @return map of the accessions to the monoisotopic mass deltas
+     */
+    private static synchronized Map<String, Double> getModificationMasses() {
+        if (MassTables.MODIFICATION_MASSES == null) {
+            Map<String, Double> masses = new HashMap<>();
+            MassTables.readOboMasses(MassTables.STR_UNIMOD_OBO, MassTables.STR_UNIMOD_MASS, masses);
+            MassTables.readOboMasses(MassTables.STR_PSI_MOD_OBO, MassTables.STR_PSI_MOD_MASS, masses);
+            MassTables.MODIFICATION_MASSES = masses;
+        }
+
+        return MassTables.MODIFICATION_MASSES;
+    }
+
+    /**
+     * Reads the mass deltas of the terms of an .obo resource.
+     * @param resource      the name of the .obo file
+     * @param massPrefix    the start of the xref line with the monoisotopic mass delta
+     * @param masses        map to add the masses to
+     */
+    private static void readOboMasses(String resource, String massPrefix, Map<String, Double> masses) {
+        try (InputStream is = MassTables.class.getClassLoader().getResourceAsStream(resource)) {
+            if (is == null) {
+                return;
+            }
+            BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String accession = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith(MassTables.STR_ID_LINE)) {
+                    accession = line.substring(MassTables.STR_ID_LINE.length()).trim();
+                }
+                else if (accession != null && line.startsWith(massPrefix)) {
+                    int end = line.indexOf('"', massPrefix.length());
+                    try {
+                        masses.put(accession, Double.parseDouble(line.substring(massPrefix.length(), end).trim()));
+                    }
+                    catch (NumberFormatException | StringIndexOutOfBoundsException exc) {
+                        // no mass, e.g. "none"
+                    }
+                }
+            }
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);
+        }
+    }
+}
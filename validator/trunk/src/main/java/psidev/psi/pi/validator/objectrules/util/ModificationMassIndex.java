@@ -0,0 +1,175 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of (residue, mass bucket) keys, to find a modification with a mass delta within a tolerance
+ * on a residue in O(1), independent of the number of modifications added.
+ * The buckets are as wide as the tolerance, so a lookup probes the bucket of the mass and its two neighbours and compares the exact masses.
+ * A modification of any residue (e.g. '.' for a terminal modification) is found for every residue.
+ */
+public class ModificationMassIndex {
+
+    /**
+     * Constants.
+     */
+    public static final char ANY_RESIDUE    = '.';
+    private static final int ANY_CODE       = 0;
+    private static final int CODE_BITS      = 5;
+    private static final long EMPTY         = Long.MIN_VALUE;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Members.
+     */
+    private final double tolerance;
+    private long[] keys = new long[ModificationMassIndex.INITIAL_CAPACITY];
+    private double[] masses = new double[ModificationMassIndex.INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Constructor.
+     * @param tolerance the maximum difference of the masses in Dalton
+     */
+    public ModificationMassIndex(double tolerance) {
+        this.tolerance = tolerance;
+        Arrays.fill(this.keys, ModificationMassIndex.EMPTY);
+    }
+
+    /**
+     * Adds a modification.
+     * @param residue   the one letter code of the residue, ANY_RESIDUE for any residue
+     * @param mass      the mass delta
+     */
+    public void add(char residue, double mass) {
+        if (2 * (this.size + 1) > this.keys.length) {
+            this.resize(this.keys.length * 2);
+        }
+        this.insert(this.getKey(ModificationMassIndex.getCode(residue), this.getBucket(mass)), mass);
+        this.size++;
+    }
+
+    /**
+     * Checks, if there is a modification of the residue or of any residue with the mass within the tolerance.
+     * @param residue   the one letter code of the residue
+     * @param mass      the mass delta
+     * @return true, if a matching modification was added
+     */
+    public boolean contains(char residue, double mass) {
+        long bucket = this.getBucket(mass);
+        int code = ModificationMassIndex.getCode(residue);
+        for (long b = bucket - 1; b <= bucket + 1; b++) {
+            if (this.containsKey(this.getKey(code, b), mass)
+                    || (code != ModificationMassIndex.ANY_CODE && this.containsKey(this.getKey(ModificationMassIndex.ANY_CODE, b), mass))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the number of modifications.
+     * @return the number of added modifications
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all modifications.
+     */
+    public void clear() {
+        this.keys = new long[ModificationMassIndex.INITIAL_CAPACITY];
+        this.masses = new double[ModificationMassIndex.INITIAL_CAPACITY];
+        Arrays.fill(this.keys, ModificationMassIndex.EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Checks the probe sequence of a key for a mass within the tolerance.
+     * @param key   the key
+     * @param mass  the mass delta
+     * @return true, if found
+     */
+    private boolean containsKey(long key, double mass) {
+        int mask = this.keys.length - 1;
+        for (int slot = ModificationMassIndex.hash(key) & mask; this.keys[slot] != ModificationMassIndex.EMPTY; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key && Math.abs(this.masses[slot] - mass) <= this.tolerance) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Inserts a key into the next free slot of its probe sequence, a key may be inserted several times with different masses.
+     * @param key   the key
+     * @param mass  the mass delta
+     */
+    private void insert(long key, double mass) {
+        int mask = this.keys.length - 1;
+        int slot = ModificationMassIndex.hash(key) & mask;
+        while (this.keys[slot] != ModificationMassIndex.EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.masses[slot] = mass;
+    }
+
+    /**
+     * Rehashes the entries into larger arrays.
+     * @param capacity the new capacity, a power of 2
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        double[] oldMasses = this.masses;
+        this.keys = new long[capacity];
+        this.masses = new double[capacity];
+        Arrays.fill(this.keys, ModificationMassIndex.EMPTY);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != ModificationMassIndex.EMPTY) {
+                this.insert(oldKeys[slot], oldMasses[slot]);
+            }
+        }
+    }
+
+    /**
+     * Gets the bucket of a mass.
+     * @param mass the mass delta
+     * @return the bucket
+     */
+    private long getBucket(double mass) {
+        return (long) Math.floor(mass / this.tolerance);
+    }
+
+    /**
+     * Combines the residue and the bucket to a key.
+     * @param code      the residue code
+     * @param bucket    the bucket
+     * @return the key
+     */
+    private long getKey(int code, long bucket) {
+        return (bucket << ModificationMassIndex.CODE_BITS) | code;
+    }
+
+    /**
+     * Gets the code of a residue.
+     * @param residue the one letter code, ANY_RESIDUE for any residue
+     * @return the code of {@link PackedSequenceStore}, ANY_CODE for any residue
+     */
+    private static int getCode(char residue) {
+        return (residue == ModificationMassIndex.ANY_RESIDUE) ? ModificationMassIndex.ANY_CODE : PackedSequenceStore.encode(residue);
+    }
+
+    /**
+     * Spreads the bits of a key.
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(long key) {
+        return (int) ((key * ModificationMassIndex.HASH_MULTIPLIER) >>> 32);
+    }
+}
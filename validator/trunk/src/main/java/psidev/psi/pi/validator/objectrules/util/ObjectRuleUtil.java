@@ -1,12 +1,28 @@
 package psidev.psi.pi.validator.objectrules.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import uk.ac.ebi.jmzidml.model.mzidml.CvParam;
 
 public class ObjectRuleUtil {
+
+    private static final String STR_FILE_PROTOCOL = "file:";
+    private static final int DECLARATION_LENGTH = 256;
+    private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
     /**
      * Checks, if one of the accessions occurs in the list of cvParams.
      * 
@@ -43,4 +59,83 @@ public class ObjectRuleUtil {
         
         return null;
     }
+
+    /**
+     * Finds the local file of a location attribute (SpectraData, SearchDatabase). The location is tried as given,
+     * relative to the directory of the mzIdentML file and by its name in that directory, as the files are often moved together.
+     * 
+     * @param location  the location attribute
+     * @param dir       the directory of the mzIdentML file
+     * @return the file, null if it doesn't exist
+     */
+    public static File findLocalFile(String location, File dir) {
+        if (location == null || location.isEmpty()) {
+            return null;
+        }
+        String path = location;
+        if (path.startsWith(ObjectRuleUtil.STR_FILE_PROTOCOL)) {
+            path = path.substring(ObjectRuleUtil.STR_FILE_PROTOCOL.length());
+            while (path.startsWith("//")) {
+                path = path.substring(1);
+            }
+        }
+
+        File file = new File(path);
+        if (file.isFile()) {
+            return file;
+        }
+        file = new File(dir, path);
+        if (file.isFile()) {
+            return file;
+        }
+        file = new File(dir, path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1));
+        if (file.isFile()) {
+            return file;
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates the StAX reader of the streaming checks of a whole file: no DTDs, no external entities, not coalescing.
+     * The file is decoded with its declared charset here, the parser does not know Java charset names like "Cp1252" used by some exporters.
+     * 
+     * @param is the stream of the file, it must support mark and reset
+     * @return the reader, the caller closes it
+     * @throws IOException if the stream can not be read
+     * @throws XMLStreamException if the reader can not be created
+     */
+    public static XMLStreamReader createXMLStreamReader(InputStream is) throws IOException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+        return factory.createXMLStreamReader(new InputStreamReader(is, ObjectRuleUtil.getDeclaredCharset(is)));
+    }
+
+    /**
+     * Gets the charset declared in the XML declaration of a file, UTF-8 if none or an unknown one is declared.
+     * 
+     * @param is the stream of the file, it must support mark and reset
+     * @return the charset
+     * @throws IOException if the stream can not be read
+     */
+    public static Charset getDeclaredCharset(InputStream is) throws IOException {
+        byte[] declaration = new byte[ObjectRuleUtil.DECLARATION_LENGTH];
+        is.mark(declaration.length);
+        int length = 0;
+        int read;
+        while (length < declaration.length && (read = is.read(declaration, length, declaration.length - length)) > 0) {
+            length += read;
+        }
+        is.reset();
+
+        Matcher matcher = ObjectRuleUtil.ENCODING_PATTERN.matcher(new String(declaration, 0, length, StandardCharsets.ISO_8859_1));
+        if (matcher.find() && Charset.isSupported(matcher.group(1))) {
+            return Charset.forName(matcher.group(1));
+        }
+
+        return StandardCharsets.UTF_8;
+    }
 }
@@ -0,0 +1,204 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.Arrays;
+
+/**
+ * Stores amino acid sequences with 5 bits per residue, 12 residues per long, in one growing array.
+ * The sequences are looked up by their XML id (see {@link IdDictionary}) and their residues are read by position in O(1),
+ * so sequences can be compared without creating a String per comparison.
+ * Residues are stored upper case, A to Z and * have their own code, any other character is stored as unknown.
+ * Not thread-safe for writing; concurrent reads are fine once all sequences have been added.
+ */
+public class PackedSequenceStore {
+
+    /**
+     * Constants.
+     */
+    public static final int NOT_FOUND               = IdDictionary.NOT_FOUND;
+    private static final int BITS_PER_RESIDUE       = 5;
+    private static final int RESIDUES_PER_WORD      = 12;
+    private static final long RESIDUE_MASK          = (1L << PackedSequenceStore.BITS_PER_RESIDUE) - 1;
+    private static final int STOP_CODE              = 27;
+    private static final int UNKNOWN_CODE           = 31;
+    private static final int INITIAL_CAPACITY       = 1024;
+
+    /**
+     * Members.
+     */
+    private final IdDictionary ids = new IdDictionary();
+    private long[] words = new long[PackedSequenceStore.INITIAL_CAPACITY];
+    private long[] offsets = new long[PackedSequenceStore.INITIAL_CAPACITY];   // id -> position of the first residue
+    private int[] lengths = new int[PackedSequenceStore.INITIAL_CAPACITY];     // id -> number of residues
+    private long size = 0L;
+    private int current = PackedSequenceStore.NOT_FOUND;
+
+    /**
+     * Starts a new sequence, the residues are added by {@link #append(char[], int, int)}.
+     * If the id was added before, the new sequence replaces the old one.
+     * @param id the id of the sequence
+     * @return the int of the id
+     */
+    public int startSequence(String id) {
+        this.current = this.ids.add(id);
+        if (this.current >= this.offsets.length) {
+            int newLength = Math.max(this.current + 1, this.offsets.length * 2);
+            this.offsets = Arrays.copyOf(this.offsets, newLength);
+            this.lengths = Arrays.copyOf(this.lengths, newLength);
+        }
+        this.offsets[this.current] = this.size;
+        this.lengths[this.current] = 0;
+
+        return this.current;
+    }
+
+    /**
+     * Appends residues to the current sequence, whitespace (line breaks of the XML text) is skipped.
+     * @param text      the characters
+     * @param start     the index of the first character
+     * @param length    the number of characters
+     */
+    public void append(char[] text, int start, int length) {
+        if (this.current == PackedSequenceStore.NOT_FOUND) {
+            return;
+        }
+        for (int i = start; i < start + length; i++) {
+            char c = text[i];
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            int word = (int) (this.size / PackedSequenceStore.RESIDUES_PER_WORD);
+            if (word >= this.words.length) {
+                this.words = Arrays.copyOf(this.words, this.words.length * 2);
+            }
+            int shift = (int) (this.size % PackedSequenceStore.RESIDUES_PER_WORD) * PackedSequenceStore.BITS_PER_RESIDUE;
+            this.words[word] |= ((long) PackedSequenceStore.encode(c)) << shift;
+            this.size++;
+            this.lengths[this.current]++;
+        }
+    }
+
+    /**
+     * Appends residues to the current sequence.
+     * @param sequence the residues
+     */
+    public void append(String sequence) {
+        this.append(sequence.toCharArray(), 0, sequence.length());
+    }
+
+    /**
+     * Gets the int of a sequence id.
+     * @param id the id
+     * @return the int, NOT_FOUND if there is no sequence with this id
+     */
+    public int get(String id) {
+        return this.ids.get(id);
+    }
+
+    /**
+     * Gets the length of a sequence.
+     * @param idx the int of the id
+     * @return the number of residues
+     */
+    public int getLength(int idx) {
+        return this.lengths[idx];
+    }
+
+    /**
+     * Gets the code of a residue.
+     * @param idx the int of the id
+     * @param pos the 0-based position in the sequence
+     * @return the code of the residue
+     */
+    public int getCode(int idx, int pos) {
+        long residue = this.offsets[idx] + pos;
+        int shift = (int) (residue % PackedSequenceStore.RESIDUES_PER_WORD) * PackedSequenceStore.BITS_PER_RESIDUE;
+        return (int) ((this.words[(int) (residue / PackedSequenceStore.RESIDUES_PER_WORD)] >>> shift) & PackedSequenceStore.RESIDUE_MASK);
+    }
+
+    /**
+     * Gets a residue.
+     * @param idx the int of the id
+     * @param pos the 0-based position in the sequence
+     * @return the upper case residue, '?' for an unknown character
+     */
+    public char getResidue(int idx, int pos) {
+        return PackedSequenceStore.decode(this.getCode(idx, pos));
+    }
+
+    /**
+     * Checks, if a whole sequence of another store occurs at a position of a sequence of this store.
+     * @param idx       the int of the id in this store
+     * @param pos       the 0-based position in the sequence of this store
+     * @param other     the other store
+     * @param otherIdx  the int of the id in the other store
+     * @return true, if all residues match
+     */
+    public boolean regionMatches(int idx, int pos, PackedSequenceStore other, int otherIdx) {
+        int length = other.getLength(otherIdx);
+        if (pos < 0 || pos + length > this.lengths[idx]) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.getCode(idx, pos + i) != other.getCode(otherIdx, i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the number of sequences.
+     * @return the number of ids
+     */
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Gets the number of stored residues.
+     * @return the number of residues of all sequences
+     */
+    public long getResidueCount() {
+        return this.size;
+    }
+
+    /**
+     * Encodes a residue.
+     * @param residue the residue
+     * @return the 5 bit code
+     */
+    public static int encode(char residue) {
+        char upper = Character.toUpperCase(residue);
+        if (upper >= 'A' && upper <= 'Z') {
+            return upper - 'A' + 1;
+        }
+
+        return (upper == '*') ? PackedSequenceStore.STOP_CODE : PackedSequenceStore.UNKNOWN_CODE;
+    }
+
+    /**
+     * Decodes a residue.
+     * @param code the 5 bit code
+     * @return the residue, '?' for an unknown character
+     */
+    public static char decode(int code) {
+        if (code >= 1 && code <= 26) {
+            return (char) ('A' + code - 1);
+        }
+
+        return (code == PackedSequenceStore.STOP_CODE) ? '*' : '?';
+    }
+
+    /**
+     * Releases all sequences.
+     */
+    public void clear() {
+        this.ids.clear();
+        this.words = new long[PackedSequenceStore.INITIAL_CAPACITY];
+        this.offsets = new long[PackedSequenceStore.INITIAL_CAPACITY];
+        this.lengths = new int[PackedSequenceStore.INITIAL_CAPACITY];
+        this.size = 0L;
+        this.current = PackedSequenceStore.NOT_FOUND;
+    }
+}
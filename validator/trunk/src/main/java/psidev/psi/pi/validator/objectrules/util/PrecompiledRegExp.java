@@ -0,0 +1,58 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression which is compiled once and matched without allocations.
+ * String.matches() compiles the pattern and creates a new Matcher on every call, which adds up for rules
+ * checking every SpectrumIdentificationItem or ProteinDetectionHypothesis.
+ * Each thread reuses its own Matcher, so a rule instance can be shared by the parallel SII validation threads.
+ */
+public class PrecompiledRegExp {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_EMPTY = "";
+
+    /**
+     * Members.
+     */
+    private final Pattern pattern;
+    private final ThreadLocal<Matcher> matcher;
+
+    /**
+     * Constructor.
+     * @param regExp the regular expression
+     */
+    public PrecompiledRegExp(String regExp) {
+        this.pattern = Pattern.compile(regExp);
+        this.matcher = ThreadLocal.withInitial(() -> this.pattern.matcher(PrecompiledRegExp.STR_EMPTY));
+    }
+
+    /**
+     * Checks, if the whole input matches the regular expression.
+     * @param input the input to check, null never matches
+     * @return true, if the input matches
+     */
+    public boolean matches(CharSequence input) {
+        if (input == null) {
+            return false;
+        }
+
+        Matcher m = this.matcher.get();
+        boolean bMatches = m.reset(input).matches();
+        m.reset(PrecompiledRegExp.STR_EMPTY);   // don't keep a reference to the input
+
+        return bMatches;
+    }
+
+    /**
+     * Gets the regular expression.
+     * @return the regular expression
+     */
+    public String getRegExp() {
+        return this.pattern.pattern();
+    }
+}
@@ -0,0 +1,15 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+/**
+ * Facts about the validated file which object rules collect while checking the elements of one type and which
+ * other object rules read while checking the elements of another type.
+ * Rules declare the facts they produce and consume, so that the {@link RuleScheduler} can order the element passes.
+ */
+public enum RuleFact {
+
+    SEARCH_TYPE,                    // SearchTypeObjectRule.bIs* flags
+    ADDITIONAL_SEARCH_PARAMS,       // AdditionalSearchParamsObjectRule.bIs* flags
+    PEPTIDE_EVIDENCE_REFERENCES,    // PeptideEvidenceObjectRule.CROSS_REFERENCES
+    XL_INTERACTION_SCORES,          // ProteinAmbiguityGroupObjectRule.XL_ID_SCORE_PAIR_TO_PAGID2PDHID
+    FINAL_PSM_LIST                  // SIRUniqueSpectrumIDSpectrumRefCombinationRule.bIsFinalPSMList
+}
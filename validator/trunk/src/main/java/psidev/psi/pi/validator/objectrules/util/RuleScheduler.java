@@ -0,0 +1,162 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import psidev.psi.pi.validator.objectrules.AAggregatingObjectRule;
+import psidev.psi.pi.validator.objectrules.AObjectRule;
+import psidev.psi.tools.validator.rules.codedrule.ObjectRule;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+
+/**
+ * Orders the object rule passes over the elements of a file by the facts their rules produce and consume.
+ * A pass depends on every other pass producing a fact it consumes. The passes are grouped into waves:
+ * the passes of a wave only depend on passes of earlier waves and can be run concurrently.
+ * Within a wave the passes keep the given order. Facts without a producing pass create no dependency.
+ */
+public class RuleScheduler {
+
+    /**
+     * Members.
+     */
+    private final Collection<? extends ObjectRule<?>> rules;
+
+    /**
+     * Constructor.
+     * @param rules the object rules
+     */
+    public RuleScheduler(Collection<? extends ObjectRule<?>> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Gets the facts produced by the rules checking the elements of a pass.
+     * @param element the element of the pass
+     * @return the produced facts
+     */
+    public Set<RuleFact> getProducedFacts(MzIdentMLElement element) {
+        Set<RuleFact> facts = EnumSet.noneOf(RuleFact.class);
+        this.getRules(element).forEach((rule) -> facts.addAll(rule.getProducedFacts()));
+
+        return facts;
+    }
+
+    /**
+     * Gets the facts consumed by the rules checking the elements of a pass.
+     * @param element the element of the pass
+     * @return the consumed facts
+     */
+    public Set<RuleFact> getConsumedFacts(MzIdentMLElement element) {
+        Set<RuleFact> facts = EnumSet.noneOf(RuleFact.class);
+        this.getRules(element).forEach((rule) -> facts.addAll(rule.getConsumedFacts()));
+
+        return facts;
+    }
+
+    /**
+     * Groups the passes into waves of independent passes.
+     * Passes with cyclic dependencies are appended one per wave in the given order.
+     * @param passes the elements to check, in their default order
+     * @return the waves
+     */
+    public List<List<MzIdentMLElement>> schedule(List<MzIdentMLElement> passes) {
+        Map<MzIdentMLElement, Set<MzIdentMLElement>> dependencies = new LinkedHashMap<>();
+        for (MzIdentMLElement consumer : passes) {
+            Set<RuleFact> consumed = this.getConsumedFacts(consumer);
+            Set<MzIdentMLElement> producers = EnumSet.noneOf(MzIdentMLElement.class);
+            for (MzIdentMLElement producer : passes) {
+                if (producer != consumer) {
+                    Set<RuleFact> produced = this.getProducedFacts(producer);
+                    produced.retainAll(consumed);
+                    if (!produced.isEmpty()) {
+                        producers.add(producer);
+                    }
+                }
+            }
+            dependencies.put(consumer, producers);
+        }
+
+        List<List<MzIdentMLElement>> waves = new ArrayList<>();
+        Set<MzIdentMLElement> done = EnumSet.noneOf(MzIdentMLElement.class);
+        while (done.size() < dependencies.size()) {
+            List<MzIdentMLElement> wave = new ArrayList<>();
+            for (Map.Entry<MzIdentMLElement, Set<MzIdentMLElement>> entry : dependencies.entrySet()) {
+                if (!done.contains(entry.getKey()) && done.containsAll(entry.getValue())) {
+                    wave.add(entry.getKey());
+                }
+            }
+            if (wave.isEmpty()) {
+                // cycle: fall back to the given order for the remaining passes
+                for (MzIdentMLElement element : dependencies.keySet()) {
+                    if (!done.contains(element)) {
+                        wave.add(element);
+                        break;
+                    }
+                }
+            }
+            done.addAll(wave);
+            waves.add(wave);
+        }
+
+        return waves;
+    }
+
+    /**
+     * Checks, if the elements of a pass can be checked on several threads at the same time,
+     * i.e. if all rules, which may check the elements, are thread safe.
+     * @param element the element of the pass
+     * @return true, if the pass can be run in parallel
+     */
+    public boolean isThreadSafe(MzIdentMLElement element) {
+        for (ObjectRule<?> rule : this.rules) {
+            if (!(rule instanceof AObjectRule)) {
+                return false;
+            }
+            Class<?> checkedClass = ((AObjectRule<?>) rule).getCheckedClass();
+            if (checkedClass.isAssignableFrom(element.getClazz()) && !((AObjectRule<?>) rule).isThreadSafe()) {
+                return false;
+            }
+        }
+
+        return !this.getRules(element).isEmpty();
+    }
+
+    /**
+     * Gets the rules checking the consistency of all elements of a pass, which have to be notified at the begin and the end of the pass.
+     * @param element the element of the pass
+     * @return the aggregating rules
+     */
+    public List<AAggregatingObjectRule<?, ?>> getAggregatingRules(MzIdentMLElement element) {
+        List<AAggregatingObjectRule<?, ?>> aggregatingRules = new ArrayList<>();
+        for (AObjectRule<?> rule : this.getRules(element)) {
+            if (rule instanceof AAggregatingObjectRule) {
+                aggregatingRules.add((AAggregatingObjectRule<?, ?>) rule);
+            }
+        }
+
+        return aggregatingRules;
+    }
+
+    /**
+     * Gets the rules checking the elements of a pass.
+     * @param element the element of the pass
+     * @return the rules
+     */
+    private List<AObjectRule<?>> getRules(MzIdentMLElement element) {
+        List<AObjectRule<?>> passRules = new ArrayList<>();
+        for (ObjectRule<?> rule : this.rules) {
+            if (rule instanceof AObjectRule) {
+                Class<?> checkedClass = ((AObjectRule<?>) rule).getCheckedClass();
+                if (checkedClass != Object.class && checkedClass.isAssignableFrom(element.getClazz())) {
+                    passRules.add((AObjectRule<?>) rule);
+                }
+            }
+        }
+
+        return passRules;
+    }
+}
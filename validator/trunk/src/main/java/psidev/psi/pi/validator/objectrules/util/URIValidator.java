@@ -2,25 +2,23 @@ package psidev.psi.pi.validator.objectrules.util;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Class for validating URI's (Uniform Resource Identifier).
+ * The validation is thread safe and the results of repeated URI's are cached.
  * @author Gerhard Mayer, MPC, Bochum
  */
 public class URIValidator {
     /**
      * Constants.
      */
-    private final static Set<String> PROTOCOLS          = new HashSet<String>(Arrays.asList(new String[] {"mailto", "news", "urn"}));
-    private final static Set<String> PROTOCOLS_WITH_HOST= new HashSet<String>(Arrays.asList(new String[] {"file", "ftp", "http", "https"}));
-    static {
-        PROTOCOLS.addAll(PROTOCOLS_WITH_HOST);
-    }
+    private static final String[] PROTOCOLS             = {"mailto", "news", "urn"};
+    private static final String[] PROTOCOLS_WITH_HOST   = {"file", "ftp", "http", "https"};
+    private static final String INVALID_PATH_CHARS      = "?<>:|\"";
     private static final char CHR_COLON = ':';
     private static final int NOT_FOUND  = -1;
+    private static final int MAX_CACHED_URIS = 1024;
+    private static final ValidationResultCache RESULTS = new ValidationResultCache(URIValidator::checkURI, URIValidator.MAX_CACHED_URIS);
 
 
     /**
@@ -29,20 +27,29 @@ public class URIValidator {
      * @return true, if <code>str</code> is a valid URI; else false
      */
     public static boolean isURI(String uriStr) {
+        return URIValidator.RESULTS.isValid(uriStr);
+    }
+
+    /**
+     * Tests, if a string is a valid URI, without the cache.
+     * @param uriStr    the strring to test
+     * @return true, if <code>str</code> is a valid URI; else false
+     */
+    private static boolean checkURI(String uriStr) {
         int colonPos = uriStr.indexOf(URIValidator.CHR_COLON);
         if (colonPos < 3) {
             return false;
         }
 
-        String proto = uriStr.substring(0, colonPos).toLowerCase();
-        if (!URIValidator.PROTOCOLS.contains(proto)) {
+        boolean bWithHost = URIValidator.isProtocol(uriStr, colonPos, URIValidator.PROTOCOLS_WITH_HOST);
+        if (!bWithHost && !URIValidator.isProtocol(uriStr, colonPos, URIValidator.PROTOCOLS)) {
             return false;
         }
 
         try {
             URI uri = new URI(uriStr);
-            
-            if (URIValidator.PROTOCOLS_WITH_HOST.contains(proto)) {
+
+            if (bWithHost) {
                 if (uri.getHost() == null) {
                     return false;
                 }
@@ -50,7 +57,7 @@ public class URIValidator {
                 String path = uri.getPath();
                 if (path != null) {
                     for (int i=path.length()-1; i >= 0; i--) {
-                        if ("?<>:|\"".indexOf(path.charAt(i)) > URIValidator.NOT_FOUND) {
+                        if (URIValidator.INVALID_PATH_CHARS.indexOf(path.charAt(i)) > URIValidator.NOT_FOUND) {
                             return false;
                         }
                     }
@@ -65,4 +72,21 @@ public class URIValidator {
 
         return false;
     }
+
+    /**
+     * Tests, if the scheme of a URI is one of the protocols, ignoring the case.
+     * @param uriStr    the URI
+     * @param colonPos  the position of the colon after the scheme
+     * @param protocols the protocols
+     * @return true, if the scheme is one of the protocols
+     */
+    private static boolean isProtocol(String uriStr, int colonPos, String[] protocols) {
+        for (String proto : protocols) {
+            if (proto.length() == colonPos && uriStr.regionMatches(true, 0, proto, 0, colonPos)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
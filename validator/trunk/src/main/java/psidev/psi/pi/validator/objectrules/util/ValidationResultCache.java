@@ -0,0 +1,58 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe cache of the results of a validation of string values, e.g. email addresses or URI's.
+ * The same values are repeated in many elements of a file, so each distinct value is only validated once.
+ * The cache is bounded: when it is full, it's cleared and filled again.
+ */
+public class ValidationResultCache {
+
+    /**
+     * Members.
+     */
+    private final ConcurrentHashMap<String, Boolean> results = new ConcurrentHashMap<>();
+    private final Predicate<String> validation;
+    private final int capacity;
+
+    /**
+     * Constructor.
+     * @param validation    the validation of a value, must not have side effects
+     * @param capacity      max. number of cached values
+     */
+    public ValidationResultCache(Predicate<String> validation, int capacity) {
+        this.validation = validation;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Validates a value or gets the cached result.
+     * @param value the value, null is never valid
+     * @return true, if the value is valid
+     */
+    public boolean isValid(String value) {
+        if (value == null) {
+            return false;
+        }
+
+        Boolean bValid = this.results.get(value);
+        if (bValid == null) {
+            bValid = this.validation.test(value);
+            if (this.results.size() >= this.capacity) {
+                this.results.clear();
+            }
+            this.results.put(value, bValid);
+        }
+
+        return bValid;
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clear() {
+        this.results.clear();
+    }
+}
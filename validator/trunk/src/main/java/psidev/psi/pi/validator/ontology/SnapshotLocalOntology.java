@@ -0,0 +1,284 @@
+package psidev.psi.pi.validator.ontology;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import psidev.psi.tools.ontology_manager.impl.OntologyTermImpl;
+import psidev.psi.tools.ontology_manager.impl.local.LocalOntology;
+import psidev.psi.tools.ontology_manager.impl.local.Ontology;
+import psidev.psi.tools.ontology_manager.impl.local.OntologyImpl;
+import psidev.psi.tools.ontology_manager.impl.local.OntologyLoaderException;
+import psidev.psi.tools.ontology_manager.interfaces.OntologyTermI;
+
+/**
+ * LocalOntology which keeps a binary snapshot of the parsed .obo file.
+ * Parsing the .obo files with the OLS parser takes several seconds per validator start, most of the runtime of
+ * a short validation. The terms (accession, name, synonyms, obsolete flag) and the is_a/part_of links of a parsed
+ * ontology are written to a snapshot, and the following starts rebuild the ontology from the snapshot. The ontology
+ * is rebuilt with the same calls as by the OBO loader, so the valid terms, parents and children are exactly the same.
+ * <p>
+ * The snapshot is named after the ontology and the MD5 signature of the .obo file, so it is only used for
+ * the same file. Only local files (file: and jar: URI's, e.g. the bundled ontologies) are snapshotted.
+ * The snapshots are kept in the per-user directory ~/.mzidentml/ontologies, resp. in the directory of the system property
+ * {@value #STR_SNAPSHOT_DIR_PROPERTY}. On POSIX file systems a snapshot is only loaded, if it and its directory are
+ * owned by the current user and not writable by others, the MD5 signature inside the snapshot doesn't protect it.
+ * <p>
+ * Layout (big endian, strings in modified UTF-8):
+ * <pre>
+ * int magic, int format version, string MD5 signature,
+ * int #terms, per term: string accession, boolean has name, [string name], boolean obsolete, int #synonyms, #synonyms * string,
+ * int #terms with parents, per term: string accession, int #parents, #parents * string accession
+ * </pre>
+ */
+public class SnapshotLocalOntology extends LocalOntology {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(SnapshotLocalOntology.class);
+    public static final String STR_SNAPSHOT_DIR_PROPERTY = "mzidentml.ontology.snapshot.dir";
+    private static final String STR_USER_DIR = ".mzidentml";
+    private static final String STR_ONTOLOGY_DIR = "ontologies";
+    private static final String STR_OWNER_ONLY = "rwx------";
+    private static final String STR_SNAPSHOT_EXT = ".snapshot";
+    private static final String STR_TMP_EXT = ".tmp";
+    private static final String STR_FILE = "file";
+    private static final String STR_JAR = "jar";
+    private static final int MAGIC = 0x4F424F53;    // "OBOS"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Loads the ontology from its snapshot, or parses the .obo file and writes the snapshot.
+     * @param ontologyID    the identifier of the ontology
+     * @param name          the name of the ontology
+     * @param version       the version of the ontology
+     * @param format        the format of the ontology
+     * @param uri           the URI of the .obo file
+     * @throws OntologyLoaderException if the ontology can't be loaded
+     */
+    @Override
+    public void loadOntology(String ontologyID, String name, String version, String format, URI uri) throws OntologyLoaderException {
+        URL url = SnapshotLocalOntology.getLocalUrl(uri);
+        if (url == null) {
+            super.loadOntology(ontologyID, name, version, format, uri);
+            return;
+        }
+
+        String md5 = this.computeMD5SignatureFor(url);
+        File snapshot = SnapshotLocalOntology.getSnapshotFile(ontologyID, md5);
+        Ontology fromSnapshot = SnapshotLocalOntology.load(snapshot, md5);
+        if (fromSnapshot == null) {
+            long start = System.currentTimeMillis();
+            super.loadOntology(ontologyID, name, version, format, uri);
+            SnapshotLocalOntology.LOGGER.info("Parsed ontology " + ontologyID + " in " + (System.currentTimeMillis() - start) + "ms.");
+            SnapshotLocalOntology.save(this.ontology, md5, snapshot);
+            return;
+        }
+
+        // the members set by LocalOntology.loadOntology()
+        this.ontologyID = ontologyID;
+        this.ontology = fromSnapshot;
+        this.md5Signature = md5;
+        this.contentSize = this.getSizeOfFile(url);
+        this.fileUrl = url;
+        SnapshotLocalOntology.LOGGER.info("Loaded ontology " + ontologyID + " from snapshot " + snapshot.getAbsolutePath());
+    }
+
+    /**
+     * Gets the URL of a local .obo file.
+     * @param uri the URI of the .obo file
+     * @return the URL or null, if the file is not local
+     */
+    private static URL getLocalUrl(URI uri) {
+        if (uri == null || !(SnapshotLocalOntology.STR_FILE.equalsIgnoreCase(uri.getScheme()) || SnapshotLocalOntology.STR_JAR.equalsIgnoreCase(uri.getScheme()))) {
+            return null;
+        }
+        try {
+            return uri.toURL();
+        }
+        catch (MalformedURLException | IllegalArgumentException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the snapshot file of an ontology.
+     * @param ontologyID    the identifier of the ontology
+     * @param md5           the MD5 signature of the .obo file
+     * @return the snapshot file
+     */
+    static File getSnapshotFile(String ontologyID, String md5) {
+        String dir = System.getProperty(SnapshotLocalOntology.STR_SNAPSHOT_DIR_PROPERTY);
+        File snapshotDir = (dir != null) ? new File(dir) : new File(new File(System.getProperty("user.home"), SnapshotLocalOntology.STR_USER_DIR), SnapshotLocalOntology.STR_ONTOLOGY_DIR);
+
+        return new File(snapshotDir, ontologyID.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + md5 + SnapshotLocalOntology.STR_SNAPSHOT_EXT);
+    }
+
+    /**
+     * Reads a snapshot.
+     * @param snapshot  the snapshot file
+     * @param md5       the MD5 signature of the .obo file
+     * @return the ontology or null, if the snapshot doesn't exist, is not readable or of another .obo file
+     */
+    private static Ontology load(File snapshot, String md5) {
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        if (!SnapshotLocalOntology.isTrusted(snapshot.toPath()) || !SnapshotLocalOntology.isTrusted(snapshot.getAbsoluteFile().getParentFile().toPath())) {
+            SnapshotLocalOntology.LOGGER.warn("Ontology snapshot " + snapshot.getAbsolutePath() + " is not owned by the current user or writable by others, it is not used.");
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot.toPath())))) {
+            if (in.readInt() != SnapshotLocalOntology.MAGIC || in.readInt() != SnapshotLocalOntology.FORMAT_VERSION || !in.readUTF().equals(md5)) {
+                SnapshotLocalOntology.LOGGER.info("Ontology snapshot " + snapshot.getAbsolutePath() + " is outdated.");
+                return null;
+            }
+
+            Ontology ontology = new OntologyImpl();
+            int numTerms = in.readInt();
+            for (int i = 0; i < numTerms; i++) {
+                String accession = in.readUTF();
+                OntologyTermI term = new OntologyTermImpl(accession, in.readBoolean() ? in.readUTF() : null);
+                boolean bObsolete = in.readBoolean();
+                int numSynonyms = in.readInt();
+                for (int j = 0; j < numSynonyms; j++) {
+                    term.getNameSynonyms().add(in.readUTF());
+                }
+                ontology.addTerm(term);
+                if (bObsolete) {
+                    ontology.addObsoleteTerm(term);
+                }
+            }
+
+            int numChildren = in.readInt();
+            for (int i = 0; i < numChildren; i++) {
+                String child = in.readUTF();
+                int numParents = in.readInt();
+                for (int j = 0; j < numParents; j++) {
+                    ontology.addLink(in.readUTF(), child);
+                }
+            }
+
+            return ontology;
+        }
+        catch (IOException | RuntimeException exc) {
+            SnapshotLocalOntology.LOGGER.warn("Could not read ontology snapshot " + snapshot.getAbsolutePath() + ": " + exc.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a snapshot. A failure is only logged, the ontology is parsed again on the next start then.
+     * @param ontology  the parsed ontology
+     * @param md5       the MD5 signature of the .obo file
+     * @param snapshot  the snapshot file
+     */
+    private static void save(Ontology ontology, String md5, File snapshot) {
+        File tmpFile = new File(snapshot.getPath() + SnapshotLocalOntology.STR_TMP_EXT);
+        try {
+            File dir = snapshot.getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                if (SnapshotLocalOntology.isPosix()) {
+                    Files.createDirectories(dir.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(SnapshotLocalOntology.STR_OWNER_ONLY)));
+                }
+                else {
+                    Files.createDirectories(dir.toPath());
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+                out.writeInt(SnapshotLocalOntology.MAGIC);
+                out.writeInt(SnapshotLocalOntology.FORMAT_VERSION);
+                out.writeUTF(md5);
+
+                Collection<OntologyTermI> terms = ontology.getOntologyTerms();
+                out.writeInt(terms.size());
+                for (OntologyTermI term : terms) {
+                    out.writeUTF(term.getTermAccession());
+                    out.writeBoolean(term.getPreferredName() != null);
+                    if (term.getPreferredName() != null) {
+                        out.writeUTF(term.getPreferredName());
+                    }
+                    out.writeBoolean(ontology.isObsoleteTerm(term));
+                    Collection<String> synonyms = term.getNameSynonyms() != null ? term.getNameSynonyms() : new ArrayList<>();
+                    out.writeInt(synonyms.size());
+                    for (String synonym : synonyms) {
+                        out.writeUTF(synonym);
+                    }
+                }
+
+                List<OntologyTermI> children = new ArrayList<>();
+                for (OntologyTermI term : terms) {
+                    Set<OntologyTermI> parents = ontology.getDirectParents(term);
+                    if (parents != null && !parents.isEmpty()) {
+                        children.add(term);
+                    }
+                }
+                out.writeInt(children.size());
+                for (OntologyTermI child : children) {
+                    Set<OntologyTermI> parents = ontology.getDirectParents(child);
+                    out.writeUTF(child.getTermAccession());
+                    out.writeInt(parents.size());
+                    for (OntologyTermI parent : parents) {
+                        out.writeUTF(parent.getTermAccession());
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException exc) {
+            SnapshotLocalOntology.LOGGER.warn("Could not write ontology snapshot " + snapshot.getAbsolutePath() + ": " + exc.getMessage());
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Checks, if a snapshot file or directory can be trusted: on POSIX file systems it must be owned by the current user
+     * and must not be writable by the group or others.
+     * @param path the snapshot file or its directory
+     * @return true, if it can be trusted
+     */
+    static boolean isTrusted(Path path) {
+        if (!SnapshotLocalOntology.isPosix()) {
+            return true;
+        }
+        try {
+            PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            Set<PosixFilePermission> permissions = attributes.permissions();
+
+            return attributes.owner().getName().equals(System.getProperty("user.name"))
+                    && !permissions.contains(PosixFilePermission.GROUP_WRITE) && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        }
+        catch (IOException | UnsupportedOperationException exc) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks, if the default file system supports POSIX permissions.
+     * @return true, if it does
+     */
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+}
@@ -0,0 +1,45 @@
+package psidev.psi.pi.validator.ontology;
+
+import java.io.InputStream;
+import psidev.psi.tools.ontology_manager.OntologyManager;
+import psidev.psi.tools.ontology_manager.impl.local.LocalOntology;
+import psidev.psi.tools.ontology_manager.impl.local.OntologyLoaderException;
+import psidev.psi.tools.ontology_manager.interfaces.OntologyAccess;
+
+/**
+ * OntologyManager which loads the local .obo files of the ontology configuration from their snapshots,
+ * see {@link SnapshotLocalOntology}. All other ontology sources (e.g. OLS) are loaded as configured.
+ */
+public class SnapshotOntologyManager extends OntologyManager {
+
+    /**
+     * Constructor.
+     * @param ontoConfig the ontology configuration
+     * @throws OntologyLoaderException if an ontology can't be loaded
+     */
+    public SnapshotOntologyManager(InputStream ontoConfig) throws OntologyLoaderException {
+        super(ontoConfig);
+    }
+
+    /**
+     * Creates the access to a configured ontology, a {@link SnapshotLocalOntology} instead of a {@link LocalOntology}.
+     * Called by the constructor of the super class, so this must not depend on members of this class.
+     * @param uri           the URI of the ontology
+     * @param id            the identifier of the ontology
+     * @param name          the name of the ontology
+     * @param version       the version of the ontology
+     * @param format        the format of the ontology
+     * @param source        the class resp. keyword of the ontology source
+     * @return the ontology access
+     * @throws ClassNotFoundException if the source class is not found
+     */
+    @Override
+    protected OntologyAccess findOntologyAccess(String uri, String id, String name, String version, String format, String source) throws ClassNotFoundException {
+        OntologyAccess access = super.findOntologyAccess(uri, id, name, version, format, source);
+        if (access != null && access.getClass() == LocalOntology.class) {
+            return new SnapshotLocalOntology();
+        }
+
+        return access;
+    }
+}
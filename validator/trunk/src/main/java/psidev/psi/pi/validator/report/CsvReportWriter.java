@@ -0,0 +1,121 @@
+package psidev.psi.pi.validator.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Writes validator messages as CSV (RFC 4180) with a header line.
+ * Several XPaths or element ids of one message are separated by semicolons.
+ */
+public class CsvReportWriter extends ValidationReportWriter {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_HEADER = "ruleId,level,xpath,elementIds,occurrences,message";
+    private static final String STR_LINE_END = "\r\n";
+    private static final char SEPARATOR = ',';
+    private static final char LIST_SEPARATOR = ';';
+    private static final char QUOTE = '"';
+
+    /**
+     * Members.
+     */
+    private boolean bHeaderWritten = false;
+
+    /**
+     * Constructor.
+     * @param writer the target of the report, should be buffered
+     */
+    public CsvReportWriter(Writer writer) {
+        super(writer);
+    }
+
+    /**
+     * Writes the CSV line of one message, preceded by the header line for the first message.
+     * @param message the validator message
+     * @throws IOException
+     */
+    @Override
+    protected void writeRecord(ValidatorMessage message) throws IOException {
+        this.writeHeader();
+
+        this.writeField(ValidationReportWriter.getRuleId(message));
+        this.writer.write(CsvReportWriter.SEPARATOR);
+        this.writeField(ValidationReportWriter.getLevel(message));
+        this.writer.write(CsvReportWriter.SEPARATOR);
+        this.writeField(CsvReportWriter.join(ValidationReportWriter.getXPaths(message)));
+        this.writer.write(CsvReportWriter.SEPARATOR);
+        this.writeField(CsvReportWriter.join(ValidationReportWriter.getElementIds(message)));
+        this.writer.write(CsvReportWriter.SEPARATOR);
+        this.writer.write(String.valueOf(ValidationReportWriter.getOccurrences(message)));
+        this.writer.write(CsvReportWriter.SEPARATOR);
+        this.writeField(message.getMessage());
+        this.writer.write(CsvReportWriter.STR_LINE_END);
+    }
+
+    /**
+     * Writes the header line, if not done yet. Also called on close, so an empty report still has a header.
+     * @throws IOException
+     */
+    private void writeHeader() throws IOException {
+        if (!this.bHeaderWritten) {
+            this.writer.write(CsvReportWriter.STR_HEADER);
+            this.writer.write(CsvReportWriter.STR_LINE_END);
+            this.bHeaderWritten = true;
+        }
+    }
+
+    /**
+     * Writes the header, if no message was written, and closes the underlying writer.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.writeHeader();
+        super.close();
+    }
+
+    /**
+     * Writes a field, quoting it if it contains separators, quotes or line breaks.
+     * @param value the field value, null is written as empty field
+     * @throws IOException
+     */
+    private void writeField(String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+
+        boolean bQuote = false;
+        for (int i = 0; i < value.length() && !bQuote; i++) {
+            char c = value.charAt(i);
+            bQuote = c == CsvReportWriter.SEPARATOR || c == CsvReportWriter.QUOTE || c == '\n' || c == '\r';
+        }
+
+        if (bQuote) {
+            this.writer.write(CsvReportWriter.QUOTE);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == CsvReportWriter.QUOTE) {
+                    this.writer.write(CsvReportWriter.QUOTE);
+                }
+                this.writer.write(c);
+            }
+            this.writer.write(CsvReportWriter.QUOTE);
+        }
+        else {
+            this.writer.write(value);
+        }
+    }
+
+    /**
+     * Joins several values of one field.
+     * @param values the values
+     * @return the joined values
+     */
+    private static String join(Collection<String> values) {
+        return String.join(String.valueOf(CsvReportWriter.LIST_SEPARATOR), values);
+    }
+}
@@ -0,0 +1,139 @@
+package psidev.psi.pi.validator.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Writes validator messages as JSON Lines, one JSON object per line:
+ * {"ruleId":..,"level":..,"xpath":[..],"elementIds":[..],"occurrences":..,"message":..}
+ */
+public class JsonLinesReportWriter extends ValidationReportWriter {
+
+    /**
+     * Constants.
+     */
+    private static final String STR_NULL = "null";
+    private static final char NEW_LINE = '\n';
+
+    /**
+     * Constructor.
+     * @param writer the target of the report, should be buffered
+     */
+    public JsonLinesReportWriter(Writer writer) {
+        super(writer);
+    }
+
+    /**
+     * Writes the JSON object of one message followed by a line break.
+     * @param message the validator message
+     * @throws IOException
+     */
+    @Override
+    protected void writeRecord(ValidatorMessage message) throws IOException {
+        JsonLinesReportWriter.appendJson(this.writer, message);
+        this.writer.write(JsonLinesReportWriter.NEW_LINE);
+    }
+
+    /**
+     * Appends the JSON object of one message.
+     * @param out       the target
+     * @param message   the validator message
+     * @throws IOException
+     */
+    public static void appendJson(Appendable out, ValidatorMessage message) throws IOException {
+        out.append("{\"ruleId\":");
+        JsonLinesReportWriter.appendQuoted(out, ValidationReportWriter.getRuleId(message));
+        out.append(",\"level\":");
+        JsonLinesReportWriter.appendQuoted(out, ValidationReportWriter.getLevel(message));
+        out.append(",\"xpath\":");
+        JsonLinesReportWriter.appendArray(out, ValidationReportWriter.getXPaths(message));
+        out.append(",\"elementIds\":");
+        JsonLinesReportWriter.appendArray(out, ValidationReportWriter.getElementIds(message));
+        out.append(",\"occurrences\":").append(String.valueOf(ValidationReportWriter.getOccurrences(message)));
+        out.append(",\"message\":");
+        JsonLinesReportWriter.appendQuoted(out, message.getMessage());
+        out.append('}');
+    }
+
+    /**
+     * Quotes and escapes a string value.
+     * @param value the string value, may be null
+     * @return JSON string or null literal
+     */
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value == null ? 4 : value.length() + 2);
+        try {
+            JsonLinesReportWriter.appendQuoted(sb, value);
+        }
+        catch (IOException exc) {
+            // can't happen with a StringBuilder
+            exc.printStackTrace(System.err);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends a JSON array of strings.
+     * @param out       the target
+     * @param values    the string values
+     * @throws IOException
+     */
+    private static void appendArray(Appendable out, Collection<String> values) throws IOException {
+        out.append('[');
+        boolean bFirst = true;
+        for (String value : values) {
+            if (!bFirst) {
+                out.append(',');
+            }
+            bFirst = false;
+            JsonLinesReportWriter.appendQuoted(out, value);
+        }
+        out.append(']');
+    }
+
+    /**
+     * Appends a quoted and escaped string value.
+     * @param out   the target
+     * @param value the string value, may be null
+     * @throws IOException
+     */
+    private static void appendQuoted(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append(JsonLinesReportWriter.STR_NULL);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,76 @@
+package psidev.psi.pi.validator.report;
+
+import java.io.Writer;
+
+/**
+ * The machine-readable formats of a validation report.
+ */
+public enum ReportFormat {
+    JSONL(".jsonl"),
+    CSV(".csv");
+
+    /**
+     * Members.
+     */
+    private final String fileExtension;
+
+    /**
+     * Constructor.
+     * @param fileExtension the file extension of the format
+     */
+    private ReportFormat(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Gets the file extension of the format.
+     * @return the file extension
+     */
+    public String getFileExtension() {
+        return this.fileExtension;
+    }
+
+    /**
+     * Creates a report writer for this format.
+     * @param writer the target of the report
+     * @return the report writer
+     */
+    public ValidationReportWriter createWriter(Writer writer) {
+        switch (this) {
+            case CSV:
+                return new CsvReportWriter(writer);
+            default:
+                return new JsonLinesReportWriter(writer);
+        }
+    }
+
+    /**
+     * Gets the format by its name (jsonl, csv), case insensitive.
+     * @param name the name of the format
+     * @return the format or null, if the name is unknown
+     */
+    public static ReportFormat forName(String name) {
+        for (ReportFormat format : ReportFormat.values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the format by the extension of a file name.
+     * @param fileName the name of the report file
+     * @return the format or null, if the extension is unknown
+     */
+    public static ReportFormat forFileName(String fileName) {
+        for (ReportFormat format : ReportFormat.values()) {
+            if (fileName.toLowerCase().endsWith(format.getFileExtension())) {
+                return format;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,166 @@
+package psidev.psi.pi.validator.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import psidev.psi.pi.validator.ClusteredContext;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Streaming sink for validator messages.
+ * Every message is written as one record as soon as it's passed in, so no report string is built in memory.
+ * The validator passes in the final messages after the validation, as the rule filter and the clustering need all messages of a rule;
+ * the messages of a running validation are delivered unclustered to the listener of {@link psidev.psi.pi.validator.MzIdentMLValidator#setMessageListener}.
+ * A record holds the rule id, the message level, the XPaths of the context(s), the ids of the elements
+ * mentioned in the message, the number of occurrences (for clustered messages) and the message text.
+ */
+public abstract class ValidationReportWriter implements Closeable {
+
+    /**
+     * Constants.
+     */
+    private static final Pattern PATTERN_ELEMENT_ID = Pattern.compile("\\bid\\s*=\\s*'([^']*)'", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Members.
+     */
+    protected final Writer writer;
+    private long recordCount = 0;
+
+    /**
+     * Constructor.
+     * @param writer the target of the report, should be buffered
+     */
+    protected ValidationReportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes one message.
+     * @param message the validator message
+     * @throws IOException
+     */
+    public void write(ValidatorMessage message) throws IOException {
+        this.writeRecord(message);
+        this.recordCount++;
+    }
+
+    /**
+     * Writes all messages.
+     * @param messages collection of validator messages
+     * @throws IOException
+     */
+    public void writeAll(Collection<ValidatorMessage> messages) throws IOException {
+        for (ValidatorMessage message : messages) {
+            this.write(message);
+        }
+    }
+
+    /**
+     * Gets the number of written messages.
+     * @return number of written messages
+     */
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Flushes the underlying writer.
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+
+    /**
+     * Closes the underlying writer.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     * Writes the record of one message.
+     * @param message the validator message
+     * @throws IOException
+     */
+    protected abstract void writeRecord(ValidatorMessage message) throws IOException;
+
+    /**
+     * Gets the rule id of a message.
+     * @param message the validator message
+     * @return the rule id or null, if the message has no rule (e.g. schema validation messages)
+     */
+    protected static String getRuleId(ValidatorMessage message) {
+        return message.getRule() == null ? null : message.getRule().getId();
+    }
+
+    /**
+     * Gets the message level as string.
+     * @param message the validator message
+     * @return the message level or null
+     */
+    protected static String getLevel(ValidatorMessage message) {
+        return message.getLevel() == null ? null : message.getLevel().toString();
+    }
+
+    /**
+     * Gets the distinct XPaths of the message context. Clustered contexts can have several.
+     * @param message the validator message
+     * @return set of XPaths
+     */
+    protected static Set<String> getXPaths(ValidatorMessage message) {
+        Set<String> xpaths = new LinkedHashSet<>();
+        Context context = message.getContext();
+        if (context instanceof ClusteredContext) {
+            for (Context ctx : ((ClusteredContext) context).getContexts()) {
+                if (ctx != null && ctx.getContext() != null) {
+                    xpaths.add(ctx.getContext());
+                }
+            }
+        }
+        else if (context != null && context.getContext() != null) {
+            xpaths.add(context.getContext());
+        }
+
+        return xpaths;
+    }
+
+    /**
+     * Gets the number of occurrences of a message.
+     * @param message the validator message
+     * @return the number of clustered contexts or 1
+     */
+    protected static int getOccurrences(ValidatorMessage message) {
+        if (message.getContext() instanceof ClusteredContext) {
+            return Math.max(1, ((ClusteredContext) message.getContext()).getNumberOfContexts());
+        }
+
+        return 1;
+    }
+
+    /**
+     * Gets the ids of the elements mentioned in the message text, e.g. "SpectrumIdentificationItem (id='SII_1')".
+     * @param message the validator message
+     * @return set of element ids
+     */
+    protected static Set<String> getElementIds(ValidatorMessage message) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (message.getMessage() != null) {
+            Matcher matcher = ValidationReportWriter.PATTERN_ELEMENT_ID.matcher(message.getMessage());
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+        }
+
+        return ids;
+    }
+}
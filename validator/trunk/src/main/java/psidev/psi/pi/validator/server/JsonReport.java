@@ -0,0 +1,85 @@
+package psidev.psi.pi.validator.server;
+
+import java.io.IOException;
+import java.util.Collection;
+import psidev.psi.pi.validator.report.JsonLinesReportWriter;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Minimal JSON serialization of validation results for the validation server.
+ */
+class JsonReport {
+
+    /**
+     * Serializes the result of a validation run.
+     * @param fileName      the name of the uploaded file
+     * @param version       the mzIdentML version of the file, may be null
+     * @param messages      the validator messages
+     * @param elapsedMillis duration of the validation in milliseconds
+     * @return JSON object
+     */
+    static String result(String fileName, String version, Collection<ValidatorMessage> messages, long elapsedMillis) {
+        boolean bValid = true;
+        for (ValidatorMessage msg : messages) {
+            if (msg.getLevel().isSame(MessageLevel.ERROR) || msg.getLevel().isHigher(MessageLevel.ERROR)) {
+                bValid = false;
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(256 + messages.size() * 128);
+        sb.append("{\"file\":").append(JsonReport.quote(fileName));
+        sb.append(",\"version\":").append(JsonReport.quote(version));
+        sb.append(",\"valid\":").append(bValid);
+        sb.append(",\"messageCount\":").append(messages.size());
+        sb.append(",\"elapsedMillis\":").append(elapsedMillis);
+        sb.append(",\"messages\":[");
+        boolean bFirst = true;
+        for (ValidatorMessage msg : messages) {
+            if (!bFirst) {
+                sb.append(',');
+            }
+            bFirst = false;
+            try {
+                JsonLinesReportWriter.appendJson(sb, msg);
+            }
+            catch (IOException exc) {
+                // can't happen with a StringBuilder
+                exc.printStackTrace(System.err);
+            }
+        }
+        sb.append("]}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Serializes an error response.
+     * @param error the error message
+     * @return JSON object
+     */
+    static String error(String error) {
+        return "{\"error\":" + JsonReport.quote(error) + "}";
+    }
+
+    /**
+     * Serializes the state of the validation server.
+     * @param active        number of running validation requests
+     * @param queued        number of waiting validation requests
+     * @param queueLimit    maximum number of waiting validation requests
+     * @return JSON object
+     */
+    static String health(int active, int queued, int queueLimit) {
+        return "{\"status\":\"UP\",\"active\":" + active + ",\"queued\":" + queued + ",\"queueLimit\":" + queueLimit + "}";
+    }
+
+    /**
+     * Quotes and escapes a string value.
+     * @param value the string value, may be null
+     * @return JSON string or null literal
+     */
+    static String quote(String value) {
+        return JsonLinesReportWriter.quote(value);
+    }
+}
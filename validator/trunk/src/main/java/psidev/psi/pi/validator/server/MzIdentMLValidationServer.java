@@ -0,0 +1,410 @@
+package psidev.psi.pi.validator.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import javax.xml.bind.JAXBException;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import psidev.psi.pi.rulefilter.RuleFilterManager;
+import psidev.psi.pi.validator.MzIdentMLHeader;
+import psidev.psi.pi.validator.MzIdentMLValidator;
+import psidev.psi.pi.validator.ValidationType;
+import psidev.psi.pi.validator.report.ReportFormat;
+import psidev.psi.pi.validator.report.ValidationReportWriter;
+import psidev.psi.tools.cvrReader.CvRuleReaderException;
+import psidev.psi.tools.ontology_manager.impl.local.OntologyLoaderException;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Embeddable HTTP server validating uploaded mzIdentML files.
+ *
+ * <ul>
+ * <li>POST /validate - validates the request body (plain or gzip compressed .mzid) and returns a JSON report.
+ *     Optional query parameters: level (DEBUG, INFO, WARN, ERROR, FATAL), type (semantic, miape) and
+ *     format (jsonl, csv) to stream the messages as JSON Lines or CSV instead of one JSON object.</li>
+ * <li>GET /health - returns the number of running and waiting validation requests.</li>
+ * </ul>
+ *
+ * The ontologies and rules are loaded once at startup from the bundled resources, no network access is needed.
+ * Requests are handled by a bounded worker pool; if its queue is full, the server answers with 429 (Too Many Requests).
+ * The object rules keep state in static members, therefore the validation itself is done by one validator at a time,
+ * while uploading, decompressing and reporting run in parallel.
+ */
+public class MzIdentMLValidationServer {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(MzIdentMLValidationServer.class);
+    private static final int DEFAULT_PORT           = 8080;
+    private static final int DEFAULT_WORKERS        = 2;
+    private static final int DEFAULT_QUEUE_LIMIT    = 8;
+    private static final int HTTP_OK                = 200;
+    private static final int HTTP_BAD_REQUEST       = 400;
+    private static final int HTTP_BAD_METHOD        = 405;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR      = 500;
+    private static final int GZIP_MAGIC_1           = 0x1f;
+    private static final int GZIP_MAGIC_2           = 0x8b;
+    private static final String STR_GET             = "GET";
+    private static final String STR_POST            = "POST";
+    private static final String STR_GZIP            = "gzip";
+    private static final String STR_MIAPE           = "miape";
+    private static final String STR_PARAM_LEVEL     = "level";
+    private static final String STR_PARAM_TYPE      = "type";
+    private static final String STR_PARAM_NAME      = "name";
+    private static final String STR_PARAM_FORMAT    = "format";
+    private static final String STR_UPLOAD          = "upload.mzid";
+    private static final String STR_RULE_FILTER     = "ruleFilter_semantic.xml";
+    private static final String STR_CONTENT_TYPE    = "application/json; charset=UTF-8";
+    private static final String STR_CONTENT_TYPE_JSONL = "application/x-ndjson; charset=UTF-8";
+    private static final String STR_CONTENT_TYPE_CSV   = "text/csv; charset=UTF-8";
+    private static final String STR_RETRY_AFTER     = "5";
+
+    /**
+     * Members.
+     */
+    private final MzIdentMLValidator validator;
+    private final ReentrantLock validatorLock = new ReentrantLock();
+    private final ThreadPoolExecutor workers;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final int queueLimit;
+    private HttpServer httpServer;
+
+    /**
+     * Constructor. Loads the ontologies and the rules.
+     * @param numberOfWorkers   number of worker threads
+     * @param queueLimit        maximum number of requests waiting for a worker
+     * @throws IOException if the bundled ontologies can not be prepared for offline use
+     * @throws OntologyLoaderException if the ontologies can not be loaded
+     * @throws ValidatorException if the validator can not be created
+     * @throws CvRuleReaderException if the CV mapping rules can not be read
+     */
+    public MzIdentMLValidationServer(int numberOfWorkers, int queueLimit) throws IOException, OntologyLoaderException, ValidatorException, CvRuleReaderException {
+        this.queueLimit = queueLimit;
+        this.validator = new MzIdentMLValidator(OfflineOntologyConfig.create(), null);
+        this.validator.setExitOnInvalidSchema(false);
+        // the uploads are temp files validated once, a sidecar index would only be left behind in the temp directory
+        this.validator.setPersistentIndex(false);
+        // the paths of the peak list and FASTA files are taken from the upload, the server must not open local files named by a client
+        this.validator.setSpectrumSourceCheck(false);
+        this.validator.setFastaResolution(false);
+        this.workers = new ThreadPoolExecutor(numberOfWorkers, numberOfWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts the HTTP server.
+     * @param port the port to listen on
+     * @throws IOException if the port can not be bound
+     */
+    public void start(int port) throws IOException {
+        this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        this.httpServer.createContext("/validate", this::handleValidate);
+        this.httpServer.createContext("/health", this::handleHealth);
+        this.httpServer.start();
+        MzIdentMLValidationServer.LOGGER.info("Validation server listening on port " + this.httpServer.getAddress().getPort());
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return the port
+     */
+    public int getPort() {
+        return this.httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Gets the validator, for the tests.
+     * @return the validator
+     */
+    MzIdentMLValidator getValidator() {
+        return this.validator;
+    }
+
+    /**
+     * Stops the HTTP server and the worker pool.
+     */
+    public void stop() {
+        if (this.httpServer != null) {
+            this.httpServer.stop(0);
+        }
+        this.workers.shutdownNow();
+    }
+
+    /**
+     * Handles the validation requests by passing them to the worker pool.
+     * @param exchange the HTTP exchange
+     * @throws IOException
+     */
+    private void handleValidate(HttpExchange exchange) throws IOException {
+        if (!MzIdentMLValidationServer.STR_POST.equals(exchange.getRequestMethod())) {
+            this.sendJson(exchange, MzIdentMLValidationServer.HTTP_BAD_METHOD, JsonReport.error("Use POST to upload an mzIdentML file."));
+            return;
+        }
+
+        try {
+            this.workers.execute(() -> this.validateUpload(exchange));
+        }
+        catch (RejectedExecutionException exc) {
+            exchange.getResponseHeaders().set("Retry-After", MzIdentMLValidationServer.STR_RETRY_AFTER);
+            this.sendJson(exchange, MzIdentMLValidationServer.HTTP_TOO_MANY_REQUESTS,
+                    JsonReport.error("Too many validation requests, " + this.queueLimit + " are already waiting."));
+        }
+    }
+
+    /**
+     * Handles the health requests.
+     * @param exchange the HTTP exchange
+     * @throws IOException
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (!MzIdentMLValidationServer.STR_GET.equals(exchange.getRequestMethod())) {
+            this.sendJson(exchange, MzIdentMLValidationServer.HTTP_BAD_METHOD, JsonReport.error("Use GET."));
+            return;
+        }
+        this.sendJson(exchange, MzIdentMLValidationServer.HTTP_OK,
+                JsonReport.health(this.activeRequests.get(), this.workers.getQueue().size(), this.queueLimit));
+    }
+
+    /**
+     * Stores the uploaded file, validates it and sends the report. Runs in a worker thread.
+     * @param exchange the HTTP exchange
+     */
+    private void validateUpload(HttpExchange exchange) {
+        this.activeRequests.incrementAndGet();
+        File tmpFile = null;
+        try {
+            Map<String, String> params = MzIdentMLValidationServer.parseQuery(exchange.getRequestURI().getRawQuery());
+
+            MessageLevel level = MessageLevel.INFO;
+            if (params.containsKey(MzIdentMLValidationServer.STR_PARAM_LEVEL)) {
+                level = MessageLevel.forName(params.get(MzIdentMLValidationServer.STR_PARAM_LEVEL).toUpperCase());
+                if (level == null) {
+                    this.sendJson(exchange, MzIdentMLValidationServer.HTTP_BAD_REQUEST,
+                            JsonReport.error("Unknown message level: " + params.get(MzIdentMLValidationServer.STR_PARAM_LEVEL)));
+                    return;
+                }
+            }
+            ValidationType type = MzIdentMLValidationServer.STR_MIAPE.equalsIgnoreCase(params.get(MzIdentMLValidationServer.STR_PARAM_TYPE))
+                    ? ValidationType.MIAPE_VALIDATION : ValidationType.SEMANTIC_VALIDATION;
+            String fileName = params.getOrDefault(MzIdentMLValidationServer.STR_PARAM_NAME, MzIdentMLValidationServer.STR_UPLOAD);
+            ReportFormat format = null;
+            if (params.containsKey(MzIdentMLValidationServer.STR_PARAM_FORMAT)) {
+                format = ReportFormat.forName(params.get(MzIdentMLValidationServer.STR_PARAM_FORMAT));
+                if (format == null) {
+                    this.sendJson(exchange, MzIdentMLValidationServer.HTTP_BAD_REQUEST,
+                            JsonReport.error("Unknown report format: " + params.get(MzIdentMLValidationServer.STR_PARAM_FORMAT)));
+                    return;
+                }
+            }
+
+            tmpFile = File.createTempFile("mzid-upload-", ".mzid");
+            try (InputStream is = new BufferedInputStream(this.getUploadStream(exchange))) {
+                // reject uploads that can't be validated by their header, before storing them and waiting for the validator
+                String rejectionReason = MzIdentMLHeader.read(is).getRejectionReason();
+                if (rejectionReason != null) {
+                    this.sendJson(exchange, MzIdentMLValidationServer.HTTP_BAD_REQUEST, JsonReport.error("The upload" + rejectionReason));
+                    return;
+                }
+                Files.copy(is, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            long start = System.currentTimeMillis();
+            Collection<ValidatorMessage> messages;
+            String version;
+            this.validatorLock.lock();
+            try {
+                messages = this.runValidation(tmpFile, level, type);
+                version = MzIdentMLValidator.currentFileVersion == null
+                        ? null : MzIdentMLValidator.currentFileVersion.name().substring(1).replace('_', '.');
+            }
+            finally {
+                this.validatorLock.unlock();
+            }
+
+            if (format == null) {
+                this.sendJson(exchange, MzIdentMLValidationServer.HTTP_OK,
+                        JsonReport.result(fileName, version, messages, System.currentTimeMillis() - start));
+            }
+            else {
+                this.sendReport(exchange, format, messages);
+            }
+        }
+        catch (IOException exc) {
+            MzIdentMLValidationServer.LOGGER.error("Could not process the upload.", exc);
+            this.sendError(exchange, MzIdentMLValidationServer.HTTP_BAD_REQUEST, "Could not read the upload: " + exc.getMessage());
+        }
+        catch (JAXBException | RuntimeException | LinkageError exc) {
+            MzIdentMLValidationServer.LOGGER.error("Validation failed.", exc);
+            this.sendError(exchange, MzIdentMLValidationServer.HTTP_SERVER_ERROR, "Validation failed: " + exc);
+        }
+        finally {
+            if (tmpFile != null && !tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+            this.activeRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * Validates a file with the shared validator. The caller must hold the validator lock.
+     * @param xmlFile   the mzIdentML file
+     * @param level     the message level to report
+     * @param type      the type of validation
+     * @return the validator messages
+     * @throws JAXBException if the rule filter can not be read
+     */
+    private Collection<ValidatorMessage> runValidation(File xmlFile, MessageLevel level, ValidationType type) throws JAXBException {
+        this.validator.resetValidationState();
+        this.validator.setMessageReportLevel(level);
+        this.validator.setValidationType(type);
+        try (InputStream is = MzIdentMLValidationServer.class.getClassLoader().getResourceAsStream(MzIdentMLValidationServer.STR_RULE_FILTER)) {
+            if (is != null) {
+                this.validator.setRuleFilterManager(new RuleFilterManager(is));
+            }
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);
+        }
+
+        Collection<ValidatorMessage> messages = this.validator.startValidation(xmlFile);
+
+        return messages == null ? new ArrayList<>() : this.validator.clearMultipleMessages(messages);
+    }
+
+    /**
+     * Gets the request body, decompressing it if it's gzip compressed.
+     * Compression is detected by the Content-Encoding header or by the gzip magic number.
+     * @param exchange the HTTP exchange
+     * @return InputStream of the uncompressed upload
+     * @throws IOException
+     */
+    private InputStream getUploadStream(HttpExchange exchange) throws IOException {
+        InputStream is = new BufferedInputStream(exchange.getRequestBody());
+        is.mark(2);
+        int b1 = is.read();
+        int b2 = is.read();
+        is.reset();
+
+        boolean bGzip = MzIdentMLValidationServer.STR_GZIP.equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                || (b1 == MzIdentMLValidationServer.GZIP_MAGIC_1 && b2 == MzIdentMLValidationServer.GZIP_MAGIC_2);
+
+        return bGzip ? new GZIPInputStream(is) : is;
+    }
+
+    /**
+     * Sends an error response, ignoring failures of the connection.
+     * @param exchange  the HTTP exchange
+     * @param status    the HTTP status
+     * @param error     the error message
+     */
+    private void sendError(HttpExchange exchange, int status, String error) {
+        try {
+            this.sendJson(exchange, status, JsonReport.error(error));
+        }
+        catch (IOException exc) {
+            exc.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Streams the messages in a machine-readable report format and closes the exchange.
+     * The response is sent chunked, so no report string is built in memory.
+     * @param exchange  the HTTP exchange
+     * @param format    the report format
+     * @param messages  the validator messages
+     * @throws IOException
+     */
+    private void sendReport(HttpExchange exchange, ReportFormat format, Collection<ValidatorMessage> messages) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", format == ReportFormat.CSV
+                ? MzIdentMLValidationServer.STR_CONTENT_TYPE_CSV : MzIdentMLValidationServer.STR_CONTENT_TYPE_JSONL);
+        exchange.sendResponseHeaders(MzIdentMLValidationServer.HTTP_OK, 0);
+        try (ValidationReportWriter reportWriter = format.createWriter(
+                new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)))) {
+            reportWriter.writeAll(messages);
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange.
+     * @param exchange  the HTTP exchange
+     * @param status    the HTTP status
+     * @param json      the JSON response body
+     * @throws IOException
+     */
+    private void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", MzIdentMLValidationServer.STR_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Parses the query string of a request.
+     * @param rawQuery the raw query string, may be null
+     * @return map of parameter names to values
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int idx = pair.indexOf('=');
+                if (idx > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        return params;
+    }
+
+    /**
+     * Starts the validation server.
+     * @param args [port [numberOfWorkers [queueLimit]]]
+     * @throws Exception if the server can not be started
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : MzIdentMLValidationServer.DEFAULT_PORT;
+        int numberOfWorkers = args.length > 1 ? Integer.parseInt(args[1]) : MzIdentMLValidationServer.DEFAULT_WORKERS;
+        int queueLimit = args.length > 2 ? Integer.parseInt(args[2]) : MzIdentMLValidationServer.DEFAULT_QUEUE_LIMIT;
+
+        MzIdentMLValidationServer server = new MzIdentMLValidationServer(numberOfWorkers, queueLimit);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start(port);
+    }
+}
@@ -0,0 +1,136 @@
+package psidev.psi.pi.validator.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Builds an ontology configuration which works without network access.
+ * It is derived from the bundled ontologies_local.xml: ontologies whose .obo file is not bundled are dropped,
+ * and .obo files with 'import:' header lines (psi-ms.obo imports PATO and UO from the web, both are bundled anyway)
+ * are copied to a temporary file without these lines.
+ */
+public class OfflineOntologyConfig {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(OfflineOntologyConfig.class);
+    private static final String STR_LOCAL_ONTOLOGIES = "ontologies_local.xml";
+    private static final String STR_CV_SOURCE   = "cvSource";
+    private static final String STR_URI         = "uri";
+    private static final String STR_CLASSPATH   = "classpath:";
+    private static final String STR_IMPORT      = "import:";
+    private static final String STR_TERM_START  = "[";
+
+    /**
+     * Creates the offline ontology configuration.
+     * @return InputStream for the ontology configuration
+     * @throws IOException if the bundled configuration can not be read or rewritten
+     */
+    public static InputStream create() throws IOException {
+        ClassLoader cl = OfflineOntologyConfig.class.getClassLoader();
+
+        try (InputStream is = cl.getResourceAsStream(OfflineOntologyConfig.STR_LOCAL_ONTOLOGIES)) {
+            if (is == null) {
+                throw new IOException(OfflineOntologyConfig.STR_LOCAL_ONTOLOGIES + " not found in the classpath");
+            }
+
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(is);
+            NodeList cvSources = doc.getElementsByTagName(OfflineOntologyConfig.STR_CV_SOURCE);
+            List<Element> toRemove = new ArrayList<>();
+            for (int i = 0; i < cvSources.getLength(); i++) {
+                Element cvSource = (Element) cvSources.item(i);
+                String uri = cvSource.getAttribute(OfflineOntologyConfig.STR_URI);
+                if (!uri.startsWith(OfflineOntologyConfig.STR_CLASSPATH)) {
+                    continue;
+                }
+
+                String resource = uri.substring(OfflineOntologyConfig.STR_CLASSPATH.length());
+                if (cl.getResource(resource) == null) {
+                    OfflineOntologyConfig.LOGGER.warn("Ontology file " + resource + " is not bundled, skipping it for offline validation.");
+                    toRemove.add(cvSource);
+                }
+                else {
+                    File withoutImports = OfflineOntologyConfig.stripImports(cl, resource);
+                    if (withoutImports != null) {
+                        cvSource.setAttribute(OfflineOntologyConfig.STR_URI, withoutImports.toURI().toString());
+                    }
+                }
+            }
+            toRemove.forEach((cvSource) -> cvSource.getParentNode().removeChild(cvSource));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(out));
+
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+        catch (ParserConfigurationException | SAXException | TransformerException exc) {
+            throw new IOException("Could not create the offline ontology configuration", exc);
+        }
+    }
+
+    /**
+     * Copies an .obo file without its 'import:' header lines to a temporary file.
+     * @param cl        the class loader to read the .obo file from
+     * @param resource  the name of the .obo file
+     * @return the temporary file or null, if the .obo file has no imports
+     * @throws IOException
+     */
+    private static File stripImports(ClassLoader cl, String resource) throws IOException {
+        boolean bHasImports = false;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(cl.getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null && !line.startsWith(OfflineOntologyConfig.STR_TERM_START)) {
+                if (line.startsWith(OfflineOntologyConfig.STR_IMPORT)) {
+                    bHasImports = true;
+                    break;
+                }
+            }
+        }
+        if (!bHasImports) {
+            return null;
+        }
+
+        File tmpFile = File.createTempFile("offline-", "-" + resource);
+        tmpFile.deleteOnExit();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(cl.getResourceAsStream(resource), StandardCharsets.UTF_8));
+             BufferedWriter bw = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+            boolean bInHeader = true;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (bInHeader && line.startsWith(OfflineOntologyConfig.STR_TERM_START)) {
+                    bInHeader = false;
+                }
+                if (!bInHeader || !line.startsWith(OfflineOntologyConfig.STR_IMPORT)) {
+                    bw.write(line);
+                    bw.newLine();
+                }
+            }
+        }
+        OfflineOntologyConfig.LOGGER.info("Removed the import statements of " + resource + " for offline validation.");
+
+        return tmpFile;
+    }
+}
@@ -0,0 +1,87 @@
+package psidev.psi.pi.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Startup benchmark of the command line validator with and without the application class-data sharing archive.
+ * Starts the validator repeatedly in a new JVM, without class-data sharing, with the CDS archive of the JDK
+ * and with the application CDS archive of the build, and reports the min. and median wall time per start.
+ * Validating a small file, the wall time is dominated by starting the JVM and loading the classes.
+ * Run with: java -cp ... psidev.psi.pi.validator.CdsStartupBenchmark &lt;runs&gt; &lt;validator jar&gt; &lt;CDS archive&gt; &lt;validator arguments&gt;...
+ */
+public class CdsStartupBenchmark {
+
+    /**
+     * Constants.
+     */
+    private static final String[][] CONFIGURATIONS = {
+        {"no CDS", "-Xshare:off"},
+        {"JDK CDS", "-Xshare:auto"},
+        {"application CDS", "-Xshare:auto", "-XX:SharedArchiveFile="}
+    };
+    private static final int NUMBER_OF_FIXED_ARGS = 3;
+
+    /**
+     * Starts the validator once.
+     * @param jvmOptions    the JVM options
+     * @param jar           the validator jar
+     * @param validatorArgs the arguments of the validator
+     * @return the wall time in ms
+     * @throws IOException if the JVM can't be started
+     * @throws InterruptedException if interrupted while waiting for the JVM
+     */
+    private static long start(List<String> jvmOptions, String jar, List<String> validatorArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-jar");
+        command.add(jar);
+        command.addAll(validatorArgs);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        int exitCode = process.waitFor();
+        long elapsed = (System.nanoTime() - start) / 1_000_000L;
+        if (exitCode != 0) {
+            throw new IllegalStateException("Validator exited with " + exitCode + ": " + command);
+        }
+
+        return elapsed;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args &lt;runs&gt; &lt;validator jar&gt; &lt;CDS archive&gt; &lt;validator arguments&gt;...
+     * @throws Exception if the validator can't be started
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length <= CdsStartupBenchmark.NUMBER_OF_FIXED_ARGS) {
+            System.err.println("Usage: CdsStartupBenchmark <runs> <validator jar> <CDS archive> <validator arguments>...");
+            System.exit(-1);
+        }
+        int runs = Integer.parseInt(args[0]);
+        String jar = args[1];
+        String archive = args[2];
+        List<String> validatorArgs = Arrays.asList(args).subList(CdsStartupBenchmark.NUMBER_OF_FIXED_ARGS, args.length);
+
+        for (String[] config : CdsStartupBenchmark.CONFIGURATIONS) {
+            List<String> jvmOptions = new ArrayList<>();
+            for (int i = 1; i < config.length; i++) {
+                jvmOptions.add(config[i].endsWith("=") ? config[i] + archive : config[i]);
+            }
+
+            CdsStartupBenchmark.start(jvmOptions, jar, validatorArgs);     // warm up the file system cache
+            long[] times = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                times[i] = CdsStartupBenchmark.start(jvmOptions, jar, validatorArgs);
+            }
+            Arrays.sort(times);
+
+            System.out.println(String.format("%-20s min %6d ms  median %6d ms  (%d runs)", config[0], times[0], times[runs / 2], runs));
+        }
+    }
+}
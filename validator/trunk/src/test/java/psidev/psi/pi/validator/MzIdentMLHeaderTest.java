@@ -0,0 +1,159 @@
+package psidev.psi.pi.validator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.pi.validator.MzIdentMLValidator.MzIdVersion;
+
+/**
+ * Test for reading the header of mzIdentML files in different encodings, with and without XML declaration.
+ */
+public class MzIdentMLHeaderTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(MzIdentMLHeaderTest.class.getName());
+    private static final String STR_ROOT = "<MzIdentML xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.2\" id=\"\u00e9\" version=\"1.2.0\">"
+            + "<cvList><cv id=\"PSI-MS\" uri=\"https://psidev.info/ms.obo\"/><cv id=\"UNIMOD\" uri=\"https://unimod.org/obo\"/></cvList>"
+            + "<AnalysisSoftwareList/></MzIdentML>";
+
+    /**
+     * Reads the header of an encoded document.
+     * @param bytes the document
+     * @return the header
+     * @throws IOException
+     */
+    private static MzIdentMLHeader read(byte[] bytes) throws IOException {
+        return MzIdentMLHeader.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Checks the header of the test document.
+     * @param header the header
+     */
+    private static void assertHeader(MzIdentMLHeader header) {
+        assertNull(header.getRejectionReason());
+        assertEquals(MzIdVersion._1_2, header.getMzIdVersion());
+        assertEquals(2, header.getCvs().size());
+        assertEquals("https://unimod.org/obo", header.getCvs().get("UNIMOD"));
+    }
+
+    /**
+     * Test for a file without XML declaration.
+     * @throws IOException
+     */
+    @Test
+    public void testNoXmlDeclaration() throws IOException {
+        MzIdentMLHeader header = MzIdentMLHeaderTest.read(MzIdentMLHeaderTest.STR_ROOT.getBytes(StandardCharsets.UTF_8));
+
+        MzIdentMLHeaderTest.assertHeader(header);
+        assertFalse(header.isTranscodingNeeded());
+    }
+
+    /**
+     * Test for UTF-16 files with byte order mark, with and without XML declaration.
+     * @throws IOException
+     */
+    @Test
+    public void testUtf16() throws IOException {
+        String declaration = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n";
+        for (String document : new String[] { declaration + MzIdentMLHeaderTest.STR_ROOT, MzIdentMLHeaderTest.STR_ROOT }) {
+            MzIdentMLHeader header = MzIdentMLHeaderTest.read(document.getBytes(StandardCharsets.UTF_16));
+
+            MzIdentMLHeaderTest.assertHeader(header);
+            assertTrue(header.isTranscodingNeeded());
+        }
+    }
+
+    /**
+     * Test for the Java charset name "Cp1252", which the parser does not know.
+     * @throws IOException
+     */
+    @Test
+    public void testJavaCharsetName() throws IOException {
+        String document = "<?xml version=\"1.0\" encoding=\"Cp1252\"?>\n" + MzIdentMLHeaderTest.STR_ROOT;
+        MzIdentMLHeader header = MzIdentMLHeaderTest.read(document.getBytes(Charset.forName("Cp1252")));
+
+        MzIdentMLHeaderTest.assertHeader(header);
+        assertFalse(header.isTranscodingNeeded());
+    }
+
+    /**
+     * Test for the rejection of empty files, other XML files and other namespaces.
+     * @throws IOException
+     */
+    @Test
+    public void testRejection() throws IOException {
+        assertEquals(" is empty.", MzIdentMLHeaderTest.read(new byte[0]).getRejectionReason());
+        assertEquals(" is not a XML file or seems to be uncomplete or errorneous.", MzIdentMLHeaderTest.read("no XML".getBytes(StandardCharsets.UTF_8)).getRejectionReason());
+        assertEquals(" is not a mzIdentML file.", MzIdentMLHeaderTest.read("<?xml version=\"1.0\"?><mzML xmlns=\"http://psi.hupo.org/ms/mzml\"/>".getBytes(StandardCharsets.UTF_8)).getRejectionReason());
+        assertEquals(" is not a mzIdentML file.", MzIdentMLHeaderTest.read("<MzIdentML version=\"1.2.0\"/>".getBytes(StandardCharsets.UTF_16)).getRejectionReason());
+    }
+
+    /**
+     * Test for the UTF-8 copy of a UTF-16 file.
+     * @throws IOException
+     */
+    @Test
+    public void testTranscode() throws IOException {
+        String document = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n" + MzIdentMLHeaderTest.STR_ROOT;
+        File xmlFile = File.createTempFile("header-", ".mzid");
+        File utf8File = File.createTempFile("header-utf8-", ".mzid");
+        try {
+            // little endian with byte order mark, as written by .NET exporters
+            Files.write(xmlFile.toPath(), ("\uFEFF" + document).getBytes(StandardCharsets.UTF_16LE));
+            MzIdentMLHeader header = MzIdentMLHeader.read(xmlFile);
+            assertTrue(header.isTranscodingNeeded());
+
+            header.transcode(xmlFile, utf8File);
+            byte[] utf8 = Files.readAllBytes(utf8File.toPath());
+            assertEquals(document.replace("UTF-16", "UTF-8"), new String(utf8, StandardCharsets.UTF_8));
+
+            MzIdentMLHeader utf8Header = MzIdentMLHeader.read(utf8File);
+            MzIdentMLHeaderTest.assertHeader(utf8Header);
+            assertFalse(utf8Header.isTranscodingNeeded());
+        }
+        finally {
+            xmlFile.delete();
+            utf8File.delete();
+        }
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(MzIdentMLHeaderTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        MzIdentMLHeaderTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> MzIdentMLHeaderTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
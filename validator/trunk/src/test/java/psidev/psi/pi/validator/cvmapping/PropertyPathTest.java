@@ -0,0 +1,272 @@
+package psidev.psi.pi.validator.cvmapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.tools.cvrReader.CvRuleReader;
+import psidev.psi.tools.cvrReader.CvRuleReaderException;
+import psidev.psi.tools.cvrReader.mapping.jaxb.CvMappingRule;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.xpath.XPathHelper;
+import psidev.psi.tools.validator.xpath.XPathResult;
+import uk.ac.ebi.jmzidml.MzIdentMLElement;
+import uk.ac.ebi.jmzidml.model.MzIdentMLObject;
+import uk.ac.ebi.jmzidml.model.mzidml.CvParam;
+import uk.ac.ebi.jmzidml.model.mzidml.Enzyme;
+import uk.ac.ebi.jmzidml.model.mzidml.ParamList;
+import uk.ac.ebi.jmzidml.xml.io.MzIdentMLUnmarshaller;
+
+/**
+ * Test, that the compiled paths of the shipped cvMapping rules select the same nodes as the JXPath evaluation of CvRuleImpl
+ * on the objects of the example files.
+ */
+public class PropertyPathTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PropertyPathTest.class.getName());
+    private static final String STR_SELF = ".";
+    private static final String STR_EXAMPLES_DIR = "../../examples/";
+    private static final String[] MAPPING_FILES_1_1 = { "/mzIdentML-mapping_1.1.0.xml", "/miape-msi-rules.1.1.0.xml" };
+    private static final String[] MAPPING_FILES_1_2 = { "/mzIdentML-mapping_1.2.0.xml", "/miape-msi-rules.1.2.0.xml" };
+    private static final int MAX_OBJECTS = 50;
+
+    /**
+     * Members.
+     */
+    private int comparedPaths = 0;
+    private int comparedObjects = 0;
+
+    /**
+     * Reads the rules of mapping files.
+     * @param mappingFiles the resource names of the mapping files
+     * @return the rules
+     * @throws IOException
+     * @throws CvRuleReaderException
+     */
+    private static List<CvMappingRule> readRules(String[] mappingFiles) throws IOException, CvRuleReaderException {
+        List<CvMappingRule> rules = new ArrayList<>();
+        for (String mappingFile : mappingFiles) {
+            try (InputStream is = PropertyPathTest.class.getResourceAsStream(mappingFile)) {
+                assertNotNull(is, mappingFile);
+                rules.addAll(new CvRuleReader().read(is).getCvMappingRuleList().getCvMappingRule());
+            }
+        }
+
+        return rules;
+    }
+
+    /**
+     * Gets the indexed element, whose xpath is the longest prefix of a path.
+     * @param path the path
+     * @return the element, null if none
+     */
+    private static MzIdentMLElement getIndexedPrefix(String path) {
+        MzIdentMLElement prefix = null;
+        for (MzIdentMLElement element : MzIdentMLElement.values()) {
+            String xpath = element.getXpath();
+            if (element.isIndexed() && xpath != null && path.startsWith(xpath)
+                    && (path.length() == xpath.length() || path.charAt(xpath.length()) == '/')
+                    && (prefix == null || xpath.length() > prefix.getXpath().length())) {
+                prefix = element;
+            }
+        }
+
+        return prefix;
+    }
+
+    /**
+     * Gets a path relative to a prefix, like CvRuleImpl does.
+     * @param path      the path
+     * @param prefix    the prefix
+     * @return the relative path
+     */
+    private static String getRelativePath(String path, String prefix) {
+        String relative = path.substring(prefix.length());
+        return relative.isEmpty() ? PropertyPathTest.STR_SELF : relative;
+    }
+
+    /**
+     * Compares the nodes selected by a compiled path with the nodes selected by JXPath.
+     * @param path      the relative path
+     * @param object    the context object
+     * @param rule      the rule, for the assertion messages
+     * @return the nodes selected by JXPath
+     * @throws ValidatorException
+     */
+    private List<Object> compare(String path, Object object, CvMappingRule rule) throws ValidatorException {
+        List<Object> expected = new ArrayList<>();
+        for (XPathResult result : XPathHelper.evaluateXPath(path, object)) {
+            expected.add(result.getResult());
+        }
+
+        PropertyPath compiled = PropertyPath.compile(path);
+        List<Object> actual = new ArrayList<>();
+        if (compiled != null && compiled.select(object, actual)) {
+            // the values are the same objects resp. strings, JAXB objects don't override equals
+            assertEquals(expected, actual, rule.getId() + ": " + path + " on " + object.getClass().getSimpleName());
+            this.comparedPaths++;
+        }
+
+        return expected;
+    }
+
+    /**
+     * Compares the scope and element paths of the rules on the objects of a file.
+     * @param mappingFiles  the mapping files
+     * @param fileName      the example file
+     * @throws IOException
+     * @throws CvRuleReaderException
+     * @throws ValidatorException
+     */
+    private void compareRules(String[] mappingFiles, String fileName) throws IOException, CvRuleReaderException, ValidatorException {
+        File xmlFile = new File(PropertyPathTest.STR_EXAMPLES_DIR + fileName);
+        assertTrue(xmlFile.isFile(), xmlFile.getAbsolutePath());
+        MzIdentMLUnmarshaller unmarshaller = new MzIdentMLUnmarshaller(xmlFile);
+
+        for (CvMappingRule rule : PropertyPathTest.readRules(mappingFiles)) {
+            String scopePath = rule.getScopePath();
+            MzIdentMLElement element = PropertyPathTest.getIndexedPrefix(scopePath);
+            if (element == null || !rule.getCvElementPath().startsWith(scopePath)) {
+                continue;
+            }
+            String scopeRelative = PropertyPathTest.getRelativePath(scopePath, element.getXpath());
+            String elementRelative = PropertyPathTest.getRelativePath(rule.getCvElementPath(), scopePath);
+
+            Iterator<MzIdentMLObject> iterator = unmarshaller.unmarshalCollectionFromXpath(element);
+            for (int i = 0; i < PropertyPathTest.MAX_OBJECTS && iterator.hasNext(); i++) {
+                Object object = iterator.next();
+                for (Object scope : this.compare(scopeRelative, object, rule)) {
+                    if (scope != null) {
+                        this.compare(elementRelative, scope, rule);
+                    }
+                }
+                this.comparedObjects++;
+            }
+        }
+    }
+
+    /**
+     * Test for the rules of mzIdentML 1.1.
+     * @throws IOException
+     * @throws CvRuleReaderException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testMappingRules11() throws IOException, CvRuleReaderException, ValidatorException {
+        this.compareRules(PropertyPathTest.MAPPING_FILES_1_1, "1_1examples/Mascot_MSMS_example.mzid");
+        this.compareRules(PropertyPathTest.MAPPING_FILES_1_1, "1_1examples/MPC_example_Multiple_search_engines.mzid");
+
+        PropertyPathTest.LOGGER.info(this.comparedPaths + " paths compared on " + this.comparedObjects + " objects");
+        assertTrue(this.comparedPaths > 1000, "only " + this.comparedPaths + " paths compared");
+    }
+
+    /**
+     * Test for the rules of mzIdentML 1.2.
+     * @throws IOException
+     * @throws CvRuleReaderException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testMappingRules12() throws IOException, CvRuleReaderException, ValidatorException {
+        this.compareRules(PropertyPathTest.MAPPING_FILES_1_2, "1_2examples/crosslinking/SIM-XL_example.mzid");
+        this.compareRules(PropertyPathTest.MAPPING_FILES_1_2, "1_2examples/crosslinking/OpenxQuest_example_added_annotations.mzid");
+
+        PropertyPathTest.LOGGER.info(this.comparedPaths + " paths compared on " + this.comparedObjects + " objects");
+        assertTrue(this.comparedPaths > 1000, "only " + this.comparedPaths + " paths compared");
+    }
+
+    /**
+     * Test for null values: JXPath points to a null atomic value of the last step, but skips a missing element.
+     * @throws ValidatorException
+     */
+    @Test
+    public void testNullValues() throws ValidatorException {
+        Enzyme enzyme = new Enzyme();
+        List<Object> nodes = new ArrayList<>();
+
+        assertTrue(PropertyPath.compile("/@name").select(enzyme, nodes));
+        assertEquals(1, nodes.size());
+        assertNull(nodes.get(0));
+        assertEquals(1, XPathHelper.evaluateXPath("/@name", enzyme).size());
+
+        nodes.clear();
+        assertTrue(PropertyPath.compile("/enzymeName/cvParam/@accession").select(enzyme, nodes));
+        assertEquals(0, nodes.size());
+        assertEquals(0, XPathHelper.evaluateXPath("/enzymeName/cvParam/@accession", enzyme).size());
+
+        nodes.clear();
+        assertTrue(PropertyPath.compile("/enzymeName").select(enzyme, nodes));
+        assertEquals(0, nodes.size());
+        assertEquals(0, XPathHelper.evaluateXPath("/enzymeName", enzyme).size());
+    }
+
+    /**
+     * Test for the expansion of a collection to its elements.
+     * @throws ValidatorException
+     */
+    @Test
+    public void testCollectionExpansion() throws ValidatorException {
+        Enzyme enzyme = new Enzyme();
+        ParamList enzymeName = new ParamList();
+        CvParam trypsin = new CvParam();
+        trypsin.setAccession("MS:1001251");
+        CvParam lysC = new CvParam();
+        lysC.setAccession("MS:1001309");
+        enzymeName.getCvParam().add(trypsin);
+        enzymeName.getCvParam().add(lysC);
+        enzyme.setEnzymeName(enzymeName);
+
+        List<Object> nodes = new ArrayList<>();
+        assertTrue(PropertyPath.compile("/enzymeName/cvParam").select(enzyme, nodes));
+        assertEquals(2, nodes.size());
+        assertSame(trypsin, nodes.get(0));
+        assertSame(lysC, nodes.get(1));
+
+        List<Object> expected = new ArrayList<>();
+        for (XPathResult result : XPathHelper.evaluateXPath("/enzymeName/cvParam/@accession", enzyme)) {
+            expected.add(result.getResult());
+        }
+        nodes.clear();
+        assertTrue(PropertyPath.compile("/enzymeName/cvParam/@accession").select(enzyme, nodes));
+        assertEquals(expected, nodes);
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(PropertyPathTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        PropertyPathTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> PropertyPathTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
@@ -0,0 +1,163 @@
+package psidev.psi.pi.validator.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.tools.xxindex.index.IndexElement;
+
+/**
+ * Test for the parallel indexing of a file against the sequential scan of the whole file.
+ */
+public class ParallelElementIndexerTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ParallelElementIndexerTest.class.getName());
+    private static final String XPATH_ROOT = "/MzIdentML";
+    private static final String XPATH_SEQUENCE_COLLECTION = "/MzIdentML/SequenceCollection";
+    private static final String XPATH_PEPTIDE = "/MzIdentML/SequenceCollection/Peptide";
+    private static final String XPATH_PEPTIDE_EVIDENCE = "/MzIdentML/SequenceCollection/PeptideEvidence";
+    private static final Set<String> XPATHS = new LinkedHashSet<>(Arrays.asList(ParallelElementIndexerTest.XPATH_ROOT,
+            ParallelElementIndexerTest.XPATH_SEQUENCE_COLLECTION, ParallelElementIndexerTest.XPATH_PEPTIDE, ParallelElementIndexerTest.XPATH_PEPTIDE_EVIDENCE));
+    private static final int NUMBER_OF_THREADS = 4;
+    private static final long MIN_CHUNK_SIZE = 256L;
+
+    /**
+     * Creates a file with Peptides and PeptideEvidences.
+     * @param count     the number of Peptides and PeptideEvidences
+     * @param comment   the comment inserted before the PeptideEvidences
+     * @return the file
+     * @throws IOException
+     */
+    private static File createFile(int count, String comment) throws IOException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<MzIdentML id=\"\" version=\"1.1.0\">\n<SequenceCollection>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("<Peptide id=\"PEP_").append(i).append("\">\n  <PeptideSequence>PEPTIDE</PeptideSequence>\n</Peptide>\n");
+        }
+        sb.append(comment);
+        for (int i = 0; i < count; i++) {
+            sb.append("<PeptideEvidence id=\"PE_").append(i).append("\" peptide_ref=\"PEP_").append(i).append("\" dBSequence_ref=\"DBSEQ_1\"/>\n");
+        }
+        sb.append("</SequenceCollection>\n</MzIdentML>\n");
+
+        File xmlFile = File.createTempFile("parallel-indexer-", ".mzid");
+        Files.write(xmlFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        return xmlFile;
+    }
+
+    /**
+     * Creates the indexer scanning the file in byte ranges of at least MIN_CHUNK_SIZE.
+     * @return the indexer
+     */
+    private static ParallelElementIndexer createParallelIndexer() {
+        return new ParallelElementIndexer(ParallelElementIndexerTest.XPATHS, ParallelElementIndexerTest.NUMBER_OF_THREADS, ParallelElementIndexerTest.MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Compares the elements of the indexed xpaths.
+     * @param expected  the index of the sequential scan
+     * @param actual    the index of the parallel scan
+     */
+    private static void assertSameElements(ElementIndex expected, ElementIndex actual) {
+        for (String xpath : ParallelElementIndexerTest.XPATHS) {
+            List<IndexElement> expectedElements = expected.getElements(xpath);
+            List<IndexElement> actualElements = actual.getElements(xpath);
+            assertEquals(expectedElements.size(), actualElements.size(), xpath);
+            for (int i = 0; i < expectedElements.size(); i++) {
+                assertEquals(expectedElements.get(i).getStart(), actualElements.get(i).getStart(), xpath + " " + i);
+                assertEquals(expectedElements.get(i).getStop(), actualElements.get(i).getStop(), xpath + " " + i);
+                assertEquals(expectedElements.get(i).getLineNumber(), actualElements.get(i).getLineNumber(), xpath + " " + i);
+            }
+        }
+    }
+
+    /**
+     * Test for a file split at the start tags of Peptides and PeptideEvidences.
+     * @throws IOException
+     */
+    @Test
+    public void testParallelEqualsSequential() throws IOException {
+        File xmlFile = ParallelElementIndexerTest.createFile(100, "");
+        try {
+            ElementIndexBuilder sequential = new ElementIndexBuilder();
+            ElementIndexBuilder parallel = new ElementIndexBuilder();
+            assertEquals(1, new ParallelElementIndexer(ParallelElementIndexerTest.XPATHS, 1).index(xmlFile, sequential));
+            int numChunks = ParallelElementIndexerTest.createParallelIndexer().index(xmlFile, parallel);
+
+            assertTrue(numChunks > 1, "scanned in " + numChunks + " byte range(s)");
+            assertEquals(1, sequential.getCount(ParallelElementIndexerTest.XPATH_ROOT));
+            assertEquals(100, sequential.getCount(ParallelElementIndexerTest.XPATH_PEPTIDE));
+            assertEquals(100, sequential.getCount(ParallelElementIndexerTest.XPATH_PEPTIDE_EVIDENCE));
+            ParallelElementIndexerTest.assertSameElements(sequential.build(), parallel.build());
+        }
+        finally {
+            xmlFile.delete();
+        }
+    }
+
+    /**
+     * Test for a file with a commented-out block of PeptideEvidences, where the split finds a start tag inside the comment,
+     * the file must then be scanned sequentially.
+     * @throws IOException
+     */
+    @Test
+    public void testResyncInsideComment() throws IOException {
+        StringBuilder comment = new StringBuilder("<!--\n");
+        for (int i = 0; i < 200; i++) {
+            comment.append("<PeptideEvidence id=\"COMMENTED_").append(i).append("\" peptide_ref=\"PEP_0\">\n");
+        }
+        comment.append("-->\n");
+        File xmlFile = ParallelElementIndexerTest.createFile(2, comment.toString());
+        try {
+            ElementIndexBuilder sequential = new ElementIndexBuilder();
+            ElementIndexBuilder parallel = new ElementIndexBuilder();
+            new ParallelElementIndexer(ParallelElementIndexerTest.XPATHS, 1).index(xmlFile, sequential);
+            int numChunks = ParallelElementIndexerTest.createParallelIndexer().index(xmlFile, parallel);
+
+            assertEquals(1, numChunks);
+            assertEquals(2, sequential.getCount(ParallelElementIndexerTest.XPATH_PEPTIDE_EVIDENCE));
+            ParallelElementIndexerTest.assertSameElements(sequential.build(), parallel.build());
+        }
+        finally {
+            xmlFile.delete();
+        }
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(ParallelElementIndexerTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        ParallelElementIndexerTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> ParallelElementIndexerTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
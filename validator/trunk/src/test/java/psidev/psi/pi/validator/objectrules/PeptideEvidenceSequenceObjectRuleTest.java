@@ -0,0 +1,155 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Test for the check of start, end, pre and post of the PeptideEvidences against the DBSequences.
+ */
+public class PeptideEvidenceSequenceObjectRuleTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PeptideEvidenceSequenceObjectRuleTest.class.getName());
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<MzIdentML id=\"\" version=\"1.1.0\" xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\">\n"
+            + "<SequenceCollection>\n"
+            + "<DBSequence id=\"DBSEQ_1\" accession=\"P1\" searchDatabase_ref=\"SDB_1\" length=\"14\"><Seq>MAAKPEPTIDERGG</Seq></DBSequence>\n"
+            + "<Peptide id=\"PEP_1\"><PeptideSequence>PEPTIDER</PeptideSequence></Peptide>\n"
+            + "<Peptide id=\"PEP_2\"><PeptideSequence>MAAK</PeptideSequence></Peptide>\n";
+    private static final String FOOTER = "</SequenceCollection>\n"
+            + "</MzIdentML>\n";
+
+    /**
+     * Checks a file.
+     * @param peptideEvidences the PeptideEvidence elements
+     * @return the messages of the rule
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    private static List<ValidatorMessage> check(String peptideEvidences) throws IOException, ValidatorException {
+        File xmlFile = File.createTempFile("peptide-evidence-sequence-", ".mzid");
+        try {
+            String xml = PeptideEvidenceSequenceObjectRuleTest.HEADER + peptideEvidences + PeptideEvidenceSequenceObjectRuleTest.FOOTER;
+            Files.write(xmlFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+            return new ArrayList<>(new PeptideEvidenceSequenceObjectRule(null).check(xmlFile));
+        }
+        finally {
+            xmlFile.delete();
+        }
+    }
+
+    /**
+     * Test for PeptideEvidences matching their DBSequence, including one at the N-terminus.
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testConsistent() throws IOException, ValidatorException {
+        List<ValidatorMessage> messages = PeptideEvidenceSequenceObjectRuleTest.check(
+                "<PeptideEvidence id=\"PE_1\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_1\" start=\"5\" end=\"12\" pre=\"K\" post=\"G\"/>\n"
+                + "<PeptideEvidence id=\"PE_2\" peptide_ref=\"PEP_2\" dBSequence_ref=\"DBSEQ_1\" start=\"1\" end=\"4\" pre=\"-\" post=\"P\"/>\n");
+
+        assertEquals(0, messages.size(), messages.toString());
+    }
+
+    /**
+     * Test for an end beyond the DBSequence, wrong start and end, and wrong pre and post.
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testMismatches() throws IOException, ValidatorException {
+        List<ValidatorMessage> messages = PeptideEvidenceSequenceObjectRuleTest.check(
+                "<PeptideEvidence id=\"PE_RANGE\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_1\" start=\"10\" end=\"17\" pre=\"I\" post=\"-\"/>\n"
+                + "<PeptideEvidence id=\"PE_SHIFTED\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_1\" start=\"4\" end=\"11\" pre=\"A\" post=\"R\"/>\n"
+                + "<PeptideEvidence id=\"PE_PRE\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_1\" start=\"5\" end=\"12\" pre=\"A\" post=\"G\"/>\n"
+                + "<PeptideEvidence id=\"PE_POST\" peptide_ref=\"PEP_2\" dBSequence_ref=\"DBSEQ_1\" start=\"1\" end=\"4\" pre=\"-\" post=\"-\"/>\n"
+                + "<PeptideEvidence id=\"PE_DECOY\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_1\" start=\"1\" end=\"8\" isDecoy=\"true\"/>\n");
+
+        assertEquals(3, messages.size(), messages.toString());
+        for (ValidatorMessage message : messages) {
+            assertEquals(MessageLevel.ERROR, message.getLevel());
+        }
+        assertTrue(messages.get(0).getMessage().startsWith("1 PeptideEvidence element(s)"), messages.get(0).getMessage());
+        assertTrue(messages.get(0).getMessage().endsWith("have an end beyond the length of the DBSequence, e.g. [PE_RANGE]"), messages.get(0).getMessage());
+        assertTrue(messages.get(1).getMessage().endsWith("don't locate the PeptideSequence in the DBSequence, e.g. [PE_SHIFTED]"), messages.get(1).getMessage());
+        assertTrue(messages.get(2).getMessage().startsWith("2 PeptideEvidence element(s)"), messages.get(2).getMessage());
+        assertTrue(messages.get(2).getMessage().endsWith("are not the flanking residues in the DBSequence, e.g. [PE_PRE, PE_POST]"), messages.get(2).getMessage());
+    }
+
+    /**
+     * Test for a DBSequence without Seq, whose sequence is read from the FASTA file of its SearchDatabase.
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testFastaResolution() throws IOException, ValidatorException {
+        File dir = Files.createTempDirectory("peptide-evidence-fasta-").toFile();
+        File fastaFile = new File(dir, "proteins.fasta");
+        File xmlFile = new File(dir, "fasta-resolution.mzid");
+        try {
+            Files.write(fastaFile.toPath(), ">P2 protein without Seq\nGGKPEPTIDERAA\n".getBytes(StandardCharsets.UTF_8));
+            String xml = PeptideEvidenceSequenceObjectRuleTest.HEADER
+                    + "<DBSequence id=\"DBSEQ_2\" accession=\"P2\" searchDatabase_ref=\"SDB_2\" length=\"13\"/>\n"
+                    + "<PeptideEvidence id=\"PE_FASTA\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_2\" start=\"4\" end=\"11\" pre=\"K\" post=\"A\"/>\n"
+                    + "<PeptideEvidence id=\"PE_FASTA_PRE\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_2\" start=\"4\" end=\"11\" pre=\"G\" post=\"A\"/>\n"
+                    + PeptideEvidenceSequenceObjectRuleTest.FOOTER;
+            Files.write(xmlFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+            PeptideEvidenceSequenceObjectRule rule = new PeptideEvidenceSequenceObjectRule(null);
+            rule.setFastaResolution(true);
+            rule.setSearchDatabaseLocations(Collections.singletonMap("SDB_2", "file:///somewhere/else/proteins.fasta"));
+            List<ValidatorMessage> messages = new ArrayList<>(rule.check(xmlFile));
+
+            assertEquals(1, messages.size(), messages.toString());
+            assertTrue(messages.get(0).getMessage().endsWith("are not the flanking residues in the DBSequence, e.g. [PE_FASTA_PRE]"), messages.get(0).getMessage());
+        }
+        finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(PeptideEvidenceSequenceObjectRuleTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        PeptideEvidenceSequenceObjectRuleTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> PeptideEvidenceSequenceObjectRuleTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
@@ -0,0 +1,165 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+
+/**
+ * Test for the resolution of the ids and references per element type.
+ */
+public class ReferentialIntegrityObjectRuleTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ReferentialIntegrityObjectRuleTest.class.getName());
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<MzIdentML id=\"\" version=\"1.1.0\" xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\">\n"
+            + "<cvList><cv id=\"PSI-MS\" fullName=\"PSI-MS\" uri=\"psi-ms.obo\"/></cvList>\n"
+            + "<AuditCollection><Person id=\"\"/><Organization id=\"ORG_1\"/></AuditCollection>\n";
+    private static final String FOOTER = "<DataCollection><Inputs><SearchDatabase id=\"SDB_1\" location=\"db.fasta\"/></Inputs></DataCollection>\n"
+            + "</MzIdentML>\n";
+
+    /**
+     * Checks a file.
+     * @param body the elements between the AuditCollection and the DataCollection
+     * @return the messages of the rule
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    private static List<ValidatorMessage> check(String body) throws IOException, ValidatorException {
+        File xmlFile = File.createTempFile("referential-integrity-", ".mzid");
+        try {
+            Files.write(xmlFile.toPath(), (ReferentialIntegrityObjectRuleTest.HEADER + body + ReferentialIntegrityObjectRuleTest.FOOTER).getBytes(StandardCharsets.UTF_8));
+            return new ArrayList<>(new ReferentialIntegrityObjectRule(null).check(xmlFile));
+        }
+        finally {
+            xmlFile.delete();
+        }
+    }
+
+    /**
+     * Gets the messages of a level.
+     * @param messages  the messages
+     * @param level     the message level
+     * @return the messages of the level
+     */
+    private static List<ValidatorMessage> getMessages(List<ValidatorMessage> messages, MessageLevel level) {
+        List<ValidatorMessage> ret = new ArrayList<>();
+        for (ValidatorMessage message : messages) {
+            if (message.getLevel() == level) {
+                ret.add(message);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Test for ids, which are equal for elements of different types, and for unreferenced elements.
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testIdsPerElementType() throws IOException, ValidatorException {
+        List<ValidatorMessage> messages = ReferentialIntegrityObjectRuleTest.check(
+                "<Provider id=\"ORG_1\"><ContactRole contact_ref=\"ORG_1\"><Role><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001271\" name=\"researcher\"/></Role></ContactRole></Provider>\n"
+                + "<SequenceCollection>\n"
+                + "<DBSequence id=\"DBSEQ_1\" accession=\"P1\" searchDatabase_ref=\"SDB_1\"/>\n"
+                + "<DBSequence id=\"DBSEQ_UNUSED\" accession=\"P2\" searchDatabase_ref=\"SDB_1\"/>\n"
+                + "<Peptide id=\"PEP_1\"><PeptideSequence>PEPTIDE</PeptideSequence></Peptide>\n"
+                + "<PeptideEvidence id=\"PEP_1\" peptide_ref=\"PEP_1\" dBSequence_ref=\"DBSEQ_1\"/>\n"
+                + "</SequenceCollection>\n");
+
+        assertEquals(2, messages.size(), messages.toString());
+        for (ValidatorMessage message : messages) {
+            assertEquals(MessageLevel.WARN, message.getLevel());
+        }
+        // the Peptide PEP_1 is referenced, the PeptideEvidence PEP_1 is not
+        assertEquals("1 DBSequence element(s) are not referenced anywhere in the file, e.g. [DBSEQ_UNUSED]", messages.get(0).getMessage());
+        assertEquals("1 PeptideEvidence element(s) are not referenced anywhere in the file, e.g. [PEP_1]", messages.get(1).getMessage());
+    }
+
+    /**
+     * Test for references to ids of elements of another type and for duplicate ids.
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testReferenceToWrongType() throws IOException, ValidatorException {
+        List<ValidatorMessage> messages = ReferentialIntegrityObjectRuleTest.check(
+                "<SequenceCollection>\n"
+                + "<DBSequence id=\"DBSEQ_1\" accession=\"P1\" searchDatabase_ref=\"SDB_1\"/>\n"
+                + "<Peptide id=\"PEP_1\"><PeptideSequence>PEPTIDE</PeptideSequence></Peptide>\n"
+                + "<Peptide id=\"PEP_1\"><PeptideSequence>PEPTIDER</PeptideSequence></Peptide>\n"
+                + "<PeptideEvidence id=\"PE_1\" peptide_ref=\"DBSEQ_1\" dBSequence_ref=\"DBSEQ_1\"/>\n"
+                + "</SequenceCollection>\n");
+        List<ValidatorMessage> errors = ReferentialIntegrityObjectRuleTest.getMessages(messages, MessageLevel.ERROR);
+
+        assertEquals(2, errors.size(), messages.toString());
+        ValidatorMessage dangling = errors.get(0);
+        assertEquals(MessageLevel.ERROR, dangling.getLevel());
+        assertTrue(dangling.getMessage().startsWith("1 reference(s) in PeptideEvidence/@peptide_ref point to ids of no Peptide element"), dangling.getMessage());
+        assertTrue(dangling.getMessage().contains("[DBSEQ_1]"), dangling.getMessage());
+        ValidatorMessage duplicate = errors.get(1);
+        assertEquals(MessageLevel.ERROR, duplicate.getLevel());
+        assertTrue(duplicate.getMessage().startsWith("1 Peptide element(s) have an id which is already used"), duplicate.getMessage());
+        assertTrue(messages.stream().anyMatch((message) -> message.getLevel() == MessageLevel.WARN && message.getMessage().startsWith("1 Peptide element(s) are not referenced")),
+                messages.toString());
+    }
+
+    /**
+     * Test for the contact_ref, which may point to a Person or an Organization, and for cvRef.
+     * @throws IOException
+     * @throws ValidatorException
+     */
+    @Test
+    public void testContactAndCvReferences() throws IOException, ValidatorException {
+        List<ValidatorMessage> messages = ReferentialIntegrityObjectRuleTest.check(
+                "<Provider id=\"PROVIDER\"><ContactRole contact_ref=\"\"><Role><cvParam cvRef=\"PSI-MS\" accession=\"MS:1001271\" name=\"researcher\"/></Role></ContactRole></Provider>\n"
+                + "<AnalysisSampleCollection><Sample id=\"SAMPLE_1\"><ContactRole contact_ref=\"SDB_1\"><Role><cvParam cvRef=\"UNKNOWN\" accession=\"MS:1001271\" name=\"researcher\"/></Role></ContactRole></Sample></AnalysisSampleCollection>\n");
+
+        List<ValidatorMessage> errors = ReferentialIntegrityObjectRuleTest.getMessages(messages, MessageLevel.ERROR);
+
+        assertEquals(2, errors.size(), messages.toString());
+        assertTrue(errors.get(0).getMessage().startsWith("1 reference(s) in ContactRole/@contact_ref point to ids of no Person or Organization element"), errors.get(0).getMessage());
+        assertTrue(errors.get(1).getMessage().startsWith("1 reference(s) in cvParam/@cvRef point to ids of no cv element"), errors.get(1).getMessage());
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(ReferentialIntegrityObjectRuleTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        ReferentialIntegrityObjectRuleTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> ReferentialIntegrityObjectRuleTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
@@ -0,0 +1,118 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.tools.validator.ValidatorException;
+import psidev.psi.tools.validator.ValidatorMessage;
+import uk.ac.ebi.jmzidml.model.mzidml.SpectraData;
+import uk.ac.ebi.jmzidml.model.mzidml.SpectrumIdentificationResult;
+
+/**
+ * Test for the unique combination of spectrumID and spectrumRef, checked on several threads.
+ */
+public class SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.class.getName());
+
+    /**
+     * Creates a SpectrumIdentificationResult.
+     * @param id            the id
+     * @param spectrumID    the spectrumID
+     * @return the SpectrumIdentificationResult
+     */
+    private static SpectrumIdentificationResult createSir(String id, String spectrumID) {
+        SpectrumIdentificationResult sir = new SpectrumIdentificationResult();
+        sir.setId(id);
+        sir.setSpectrumID(spectrumID);
+        SpectraData spectraData = new SpectraData();
+        spectraData.setId("SD_1");
+        sir.setSpectraData(spectraData);
+
+        return sir;
+    }
+
+    /**
+     * Checks SpectrumIdentificationResults with their position in the file on a new thread.
+     * @param rule      the rule
+     * @param sirs      the SpectrumIdentificationResults
+     * @param ordinals  their positions in the file
+     * @throws InterruptedException
+     */
+    private static void checkOnThread(SIRUniqueSpectrumIDSpectrumRefCombinationRule rule, SpectrumIdentificationResult[] sirs, int[] ordinals) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                for (int i = 0; i < sirs.length; i++) {
+                    AAggregatingObjectRule.setElementOrdinal(ordinals[i]);
+                    rule.check(sirs[i]);
+                }
+            }
+            catch (ValidatorException exc) {
+                exc.printStackTrace(System.err);
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+
+    /**
+     * Test, that the later SpectrumIdentificationResults of a combination are reported in the order of the file,
+     * although the accumulator of the first thread holds the later elements.
+     * @throws InterruptedException
+     */
+    @Test
+    public void testDuplicatesInFileOrder() throws InterruptedException {
+        SIRUniqueSpectrumIDSpectrumRefCombinationRule rule = new SIRUniqueSpectrumIDSpectrumRefCombinationRule();
+        SIRUniqueSpectrumIDSpectrumRefCombinationRule.bIsFinalPSMList = true;
+        try {
+            rule.beginPass();
+            SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.checkOnThread(rule, new SpectrumIdentificationResult[] {
+                SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.createSir("SIR_3", "index=1"),
+                SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.createSir("SIR_2", "index=2") }, new int[] { 3, 2 });
+            SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.checkOnThread(rule, new SpectrumIdentificationResult[] {
+                SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.createSir("SIR_0", "index=1"),
+                SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.createSir("SIR_1", "index=2") }, new int[] { 0, 1 });
+            List<ValidatorMessage> messages = new ArrayList<>(rule.endPass());
+
+            assertEquals(2, messages.size(), messages.toString());
+            assertTrue(messages.get(0).getMessage().contains("(id='SIR_2')"), messages.get(0).getMessage());
+            assertTrue(messages.get(1).getMessage().contains("(id='SIR_3')"), messages.get(1).getMessage());
+        }
+        finally {
+            SIRUniqueSpectrumIDSpectrumRefCombinationRule.bIsFinalPSMList = false;
+        }
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> SIRUniqueSpectrumIDSpectrumRefCombinationRuleTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
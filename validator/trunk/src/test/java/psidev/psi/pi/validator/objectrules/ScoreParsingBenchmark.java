@@ -0,0 +1,104 @@
+package psidev.psi.pi.validator.objectrules;
+
+import java.lang.management.ManagementFactory;
+import java.util.regex.Pattern;
+import psidev.psi.pi.validator.objectrules.util.PrecompiledRegExp;
+
+/**
+ * Micro benchmark for the validation of modification localization scores (SIIModLocalizationScoringRule)
+ * and cross-linking interaction scores (ProteinAmbiguityGroupObjectRule).
+ * Compares String.matches() with the precompiled regular expression resp. the single-pass parser
+ * and reports the time and the allocated bytes per value.
+ * Run with: java -cp ... psidev.psi.pi.validator.objectrules.ScoreParsingBenchmark [iterations]
+ */
+public class ScoreParsingBenchmark {
+
+    /**
+     * Constants.
+     */
+    private static final String REGEXP_MOD_LOCALIZATION = "(\\d+:\\d+.\\d+[Ee]{0,1}[+-]{0,1}\\d*:\\d+[|]*\\d*:(true|false){1})";
+    private static final String REGEXP_XL_INTERACTION_SCORE = "(\\d+[.][a|b]:(\\d+|null):\\d+[.]\\d+([Ee][+-][0-9]+)*:(true|false))";
+    private static final String[] MOD_LOCALIZATION_VALUES = {
+        "1:0.03:2|3:true", "1:0.97:8|9:false", "2:1.5E-3:12:true", "1:0.5:4:maybe", "1:99.99:17|18:true"
+    };
+    private static final String[] XL_INTERACTION_SCORE_VALUES = {
+        "1.a:12:0.005:true", "1.b:null:0.123:false", "42.a:3:1.0E-5:true", "7.c:1:0.5:true", "123.b:45:0.99E+2E-1:true"
+    };
+    private static final int DEFAULT_ITERATIONS = 2_000_000;
+
+    /**
+     * Checks, that the old and the new implementation give the same results.
+     */
+    private static void checkEquivalence() {
+        PrecompiledRegExp modLocalization = new PrecompiledRegExp(ScoreParsingBenchmark.REGEXP_MOD_LOCALIZATION);
+        for (String value : ScoreParsingBenchmark.MOD_LOCALIZATION_VALUES) {
+            if (value.matches(ScoreParsingBenchmark.REGEXP_MOD_LOCALIZATION) != modLocalization.matches(value)) {
+                throw new IllegalStateException("Different result for " + value);
+            }
+        }
+        Pattern xlPattern = Pattern.compile(ScoreParsingBenchmark.REGEXP_XL_INTERACTION_SCORE);
+        for (String value : ScoreParsingBenchmark.XL_INTERACTION_SCORE_VALUES) {
+            if (xlPattern.matcher(value).matches() != (ProteinAmbiguityGroupObjectRule.parseXLInteractionScore(value) >= 0)) {
+                throw new IllegalStateException("Different result for " + value);
+            }
+        }
+    }
+
+    /**
+     * A benchmarked operation.
+     */
+    private interface Operation {
+        int run(String value);
+    }
+
+    /**
+     * Runs an operation on all values for a number of iterations and logs time and allocation per value.
+     * @param name          name of the operation
+     * @param values        the input values
+     * @param iterations    number of iterations
+     * @param op            the operation
+     */
+    private static void measure(String name, String[] values, int iterations, Operation op) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int sink = 0;
+
+        // warm up
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += op.run(values[i % values.length]);
+        }
+
+        long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += op.run(values[i % values.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.println(String.format("%-45s %8.1f ns/value %8.1f bytes/value (%d)",
+                name, (double) elapsed / iterations, (double) bytes / iterations, sink));
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [iterations]
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ScoreParsingBenchmark.DEFAULT_ITERATIONS;
+
+        ScoreParsingBenchmark.checkEquivalence();
+
+        PrecompiledRegExp modLocalization = new PrecompiledRegExp(ScoreParsingBenchmark.REGEXP_MOD_LOCALIZATION);
+        for (int round = 0; round < 2; round++) {
+            ScoreParsingBenchmark.measure("mod localization: String.matches()", ScoreParsingBenchmark.MOD_LOCALIZATION_VALUES, iterations,
+                    (value) -> value.matches(ScoreParsingBenchmark.REGEXP_MOD_LOCALIZATION) ? 1 : 0);
+            ScoreParsingBenchmark.measure("mod localization: PrecompiledRegExp", ScoreParsingBenchmark.MOD_LOCALIZATION_VALUES, iterations,
+                    (value) -> modLocalization.matches(value) ? 1 : 0);
+            ScoreParsingBenchmark.measure("XL interaction score: String.matches()", ScoreParsingBenchmark.XL_INTERACTION_SCORE_VALUES, iterations,
+                    (value) -> value.matches(ScoreParsingBenchmark.REGEXP_XL_INTERACTION_SCORE) ? 1 : 0);
+            ScoreParsingBenchmark.measure("XL interaction score: parseXLInteractionScore", ScoreParsingBenchmark.XL_INTERACTION_SCORE_VALUES, iterations,
+                    (value) -> ProteinAmbiguityGroupObjectRule.parseXLInteractionScore(value));
+        }
+    }
+}
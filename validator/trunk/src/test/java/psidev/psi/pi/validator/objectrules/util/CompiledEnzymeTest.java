@@ -0,0 +1,124 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+
+/**
+ * Test for the cleavage sites of compiled enzymes, looked up in the site table resp. by the regular expression.
+ */
+public class CompiledEnzymeTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CompiledEnzymeTest.class.getName());
+    private static final String TRYPSIN = "(?<=[KR])(?!P)";
+    private static final String TRYPSIN_ACCESSION = "MS:1001251";
+
+    /**
+     * Gets the positions of the sites of an enzyme in a sequence.
+     * @param enzyme    the enzyme
+     * @param sequence  the sequence
+     * @return the sites, as index of the residue after the site
+     */
+    private static String getSites(CompiledEnzyme enzyme, String sequence) {
+        char[] residues = sequence.toCharArray();
+        StringBuilder sb = new StringBuilder();
+        for (int pos = 1; pos < residues.length; pos++) {
+            if (enzyme.isCleavageSite(residues, pos)) {
+                sb.append(pos).append(' ');
+            }
+        }
+
+        return sb.toString().trim();
+    }
+
+    /**
+     * Test for a SiteRegexp depending only on the residues before and after the site, looked up in the table.
+     */
+    @Test
+    public void testLocalSites() {
+        CompiledEnzyme trypsin = CompiledEnzyme.compile(CompiledEnzymeTest.TRYPSIN, false, 2);
+        assertTrue(trypsin.isLocal());
+        assertFalse(trypsin.isSemiSpecific());
+        assertEquals(2, trypsin.getMissedCleavages());
+        assertEquals("2 4 8", CompiledEnzymeTest.getSites(trypsin, "AKAKRPARA"));
+
+        // the site is the end of the match
+        CompiledEnzyme consuming = CompiledEnzyme.compile("[KR](?!P)", false, CompiledEnzyme.UNLIMITED);
+        assertTrue(consuming.isLocal());
+        assertEquals(CompiledEnzymeTest.getSites(trypsin, "AKAKRPARA"), CompiledEnzymeTest.getSites(consuming, "AKAKRPARA"));
+    }
+
+    /**
+     * Test for a SiteRegexp looking further than one residue, evaluated as regular expression.
+     */
+    @Test
+    public void testRegexpFallback() {
+        CompiledEnzyme enzyme = CompiledEnzyme.compile("(?<=KK)", false, CompiledEnzyme.UNLIMITED);
+        assertFalse(enzyme.isLocal());
+        assertEquals("3 6", CompiledEnzymeTest.getSites(enzyme, "AKKAKKAK"));
+
+        CompiledEnzyme proline = CompiledEnzyme.compile("(?<=[KR])(?!PP)", false, CompiledEnzyme.UNLIMITED);
+        assertFalse(proline.isLocal());
+        assertEquals("2 9", CompiledEnzymeTest.getSites(proline, "AKPAKPPARA"));
+    }
+
+    /**
+     * Test for the combination of dependent enzymes.
+     */
+    @Test
+    public void testCombine() {
+        CompiledEnzyme trypsin = CompiledEnzyme.compile(CompiledEnzymeTest.TRYPSIN, false, 1);
+        CompiledEnzyme aspN = CompiledEnzyme.compile("(?=[BD])", true, 2);
+        CompiledEnzyme combined = CompiledEnzyme.combine(Arrays.asList(trypsin, aspN));
+
+        assertTrue(combined.isLocal());
+        assertTrue(combined.isSemiSpecific());
+        assertEquals(2, combined.getMissedCleavages());
+        assertEquals("2 3 6", CompiledEnzymeTest.getSites(combined, "AKADAKA"));
+    }
+
+    /**
+     * Test for the regular expressions of the cleavage agents of psi-ms.obo.
+     */
+    @Test
+    public void testRegexpOfCleavageAgent() {
+        String regexp = CompiledEnzyme.getRegexp(CompiledEnzymeTest.TRYPSIN_ACCESSION);
+        assertNotNull(regexp);
+        assertEquals("2 4 8", CompiledEnzymeTest.getSites(CompiledEnzyme.compile(regexp, false, 0), "AKAKRPARA"));
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(CompiledEnzymeTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        CompiledEnzymeTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> CompiledEnzymeTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
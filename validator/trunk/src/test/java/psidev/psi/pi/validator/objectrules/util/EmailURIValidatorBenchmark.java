@@ -0,0 +1,153 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Micro benchmark for the validation of contact email addresses (ProviderObjectRule) and CV URI's (CvListObjectRule).
+ * Compares the former implementations, which compiled the patterns resp. parsed the URI on every call,
+ * with the precompiled and cached validators and reports the time and the allocated bytes per value.
+ * Run with: java -cp ... psidev.psi.pi.validator.objectrules.util.EmailURIValidatorBenchmark [iterations]
+ */
+public class EmailURIValidatorBenchmark {
+
+    /**
+     * Constants.
+     */
+    private static final String EMAIL_PATTERN1 = "^[_A-Za-z0-9-]+(\\.[_A-Za-z0-9-]+)*@[A-Za-z0-9]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
+    private static final String EMAIL_PATTERN2 = "^[_A-Za-z0-9-]+(\\.[_A-Za-z0-9-]+)*_AT_[A-Za-z0-9]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
+    private static final Set<String> PROTOCOLS          = new HashSet<>(Arrays.asList("mailto", "news", "urn", "file", "ftp", "http", "https"));
+    private static final Set<String> PROTOCOLS_WITH_HOST= new HashSet<>(Arrays.asList("file", "ftp", "http", "https"));
+    private static final String[] EMAIL_VALUES = {
+        "john.doe@example.org", "jane_doe_AT_uni-bochum.de", "no-at-sign.example.org", "a@b.c", "first.last@sub.domain.co.uk", "x@y"
+    };
+    private static final String[] URI_VALUES = {
+        "https://raw.githubusercontent.com/HUPO-PSI/psi-ms-CV/master/psi-ms.obo", "http://www.unimod.org/obo/unimod.obo",
+        "HTTP://purl.obolibrary.org/obo/uo.obo", "urn:lsid:psidev.info", "ftp://", "www.example.org", "http://host/a|b"
+    };
+    private static final int DEFAULT_ITERATIONS = 1_000_000;
+
+    /**
+     * The former email validation.
+     * @param value the email address
+     * @return true, if valid
+     */
+    private static boolean validateEmailOld(String value) {
+        return Pattern.compile(EmailURIValidatorBenchmark.EMAIL_PATTERN1).matcher(value).matches()
+            || Pattern.compile(EmailURIValidatorBenchmark.EMAIL_PATTERN2).matcher(value).matches();
+    }
+
+    /**
+     * The former URI validation.
+     * @param uriStr the URI
+     * @return true, if valid
+     */
+    private static boolean isURIOld(String uriStr) {
+        int colonPos = uriStr.indexOf(':');
+        if (colonPos < 3) {
+            return false;
+        }
+        String proto = uriStr.substring(0, colonPos).toLowerCase();
+        if (!EmailURIValidatorBenchmark.PROTOCOLS.contains(proto)) {
+            return false;
+        }
+        try {
+            URI uri = new URI(uriStr);
+            if (EmailURIValidatorBenchmark.PROTOCOLS_WITH_HOST.contains(proto)) {
+                if (uri.getHost() == null) {
+                    return false;
+                }
+                String path = uri.getPath();
+                if (path != null) {
+                    for (int i = path.length() - 1; i >= 0; i--) {
+                        if ("?<>:|\"".indexOf(path.charAt(i)) > -1) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+        catch (URISyntaxException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks, that the old and the new implementation give the same results.
+     */
+    private static void checkEquivalence() {
+        for (String value : EmailURIValidatorBenchmark.EMAIL_VALUES) {
+            if (EmailURIValidatorBenchmark.validateEmailOld(value) != EmailValidator.validate(value)) {
+                throw new IllegalStateException("Different result for " + value);
+            }
+        }
+        for (String value : EmailURIValidatorBenchmark.URI_VALUES) {
+            if (EmailURIValidatorBenchmark.isURIOld(value) != URIValidator.isURI(value)) {
+                throw new IllegalStateException("Different result for " + value);
+            }
+        }
+    }
+
+    /**
+     * A benchmarked operation.
+     */
+    private interface Operation {
+        boolean run(String value);
+    }
+
+    /**
+     * Runs an operation on all values for a number of iterations and logs time and allocation per value.
+     * @param name          name of the operation
+     * @param values        the input values
+     * @param iterations    number of iterations
+     * @param op            the operation
+     */
+    private static void measure(String name, String[] values, int iterations, Operation op) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int sink = 0;
+
+        // warm up
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += op.run(values[i % values.length]) ? 1 : 0;
+        }
+
+        long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += op.run(values[i % values.length]) ? 1 : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.println(String.format("%-45s %8.1f ns/value %8.1f bytes/value (%d)",
+                name, (double) elapsed / iterations, (double) bytes / iterations, sink));
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [iterations]
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : EmailURIValidatorBenchmark.DEFAULT_ITERATIONS;
+
+        EmailURIValidatorBenchmark.checkEquivalence();
+
+        for (int round = 0; round < 2; round++) {
+            EmailURIValidatorBenchmark.measure("email: Pattern.compile() per call", EmailURIValidatorBenchmark.EMAIL_VALUES, iterations,
+                    EmailURIValidatorBenchmark::validateEmailOld);
+            EmailURIValidatorBenchmark.measure("email: EmailValidator", EmailURIValidatorBenchmark.EMAIL_VALUES, iterations,
+                    EmailValidator::validate);
+            EmailURIValidatorBenchmark.measure("URI: new URI() per call", EmailURIValidatorBenchmark.URI_VALUES, iterations,
+                    EmailURIValidatorBenchmark::isURIOld);
+            EmailURIValidatorBenchmark.measure("URI: URIValidator", EmailURIValidatorBenchmark.URI_VALUES, iterations,
+                    URIValidator::isURI);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package psidev.psi.pi.validator.objectrules.util;
+
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+
+/**
+ * Test for the lookup of modification masses within a tolerance.
+ */
+public class ModificationMassIndexTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ModificationMassIndexTest.class.getName());
+    private static final double TOLERANCE = 0.01;
+    private static final double OXIDATION = 15.994915;
+
+    /**
+     * Test for masses just within and just outside of the tolerance, i.e. in the neighbouring buckets.
+     */
+    @Test
+    public void testTolerance() {
+        ModificationMassIndex index = new ModificationMassIndex(ModificationMassIndexTest.TOLERANCE);
+        index.add('M', ModificationMassIndexTest.OXIDATION);
+
+        assertTrue(index.contains('M', ModificationMassIndexTest.OXIDATION));
+        assertTrue(index.contains('M', ModificationMassIndexTest.OXIDATION + 0.0099));
+        assertTrue(index.contains('M', ModificationMassIndexTest.OXIDATION - 0.0099));
+        assertFalse(index.contains('M', ModificationMassIndexTest.OXIDATION + 0.0101));
+        assertFalse(index.contains('M', ModificationMassIndexTest.OXIDATION - 0.0101));
+        assertFalse(index.contains('W', ModificationMassIndexTest.OXIDATION));
+    }
+
+    /**
+     * Test for masses on the edges of the buckets, including negative masses and 0.
+     */
+    @Test
+    public void testBucketEdges() {
+        ModificationMassIndex index = new ModificationMassIndex(ModificationMassIndexTest.TOLERANCE);
+        index.add('C', 0.02);
+        index.add('Q', -17.026549);
+        index.add('K', 0.0);
+
+        // bucket 1 resp. 3, next to the bucket 2 of the added mass
+        assertTrue(index.contains('C', 0.0101));
+        assertTrue(index.contains('C', 0.0299));
+        assertFalse(index.contains('C', 0.0099));
+        assertTrue(index.contains('Q', -17.03));
+        assertTrue(index.contains('Q', -17.02));
+        assertFalse(index.contains('Q', 17.026549));
+        assertTrue(index.contains('K', -0.005));
+        assertTrue(index.contains('K', 0.005));
+    }
+
+    /**
+     * Test for modifications of any residue, e.g. terminal modifications.
+     */
+    @Test
+    public void testAnyResidue() {
+        ModificationMassIndex index = new ModificationMassIndex(ModificationMassIndexTest.TOLERANCE);
+        index.add(ModificationMassIndex.ANY_RESIDUE, 42.010565);
+
+        assertTrue(index.contains('K', 42.010565));
+        assertTrue(index.contains('S', 42.0106));
+        assertFalse(index.contains('S', 42.03));
+    }
+
+    /**
+     * Test for growing the table and clearing it.
+     */
+    @Test
+    public void testResizeAndClear() {
+        ModificationMassIndex index = new ModificationMassIndex(ModificationMassIndexTest.TOLERANCE);
+        for (int i = 0; i < 1000; i++) {
+            index.add((i % 2 == 0) ? 'S' : 'T', i * 0.1);
+        }
+
+        assertEquals(1000, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.contains((i % 2 == 0) ? 'S' : 'T', i * 0.1));
+        }
+        assertFalse(index.contains('S', 0.1));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertFalse(index.contains('S', 0.0));
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(ModificationMassIndexTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        ModificationMassIndexTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> ModificationMassIndexTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
@@ -0,0 +1,128 @@
+package psidev.psi.pi.validator.report;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.pi.validator.ClusteredContext;
+import psidev.psi.tools.validator.Context;
+import psidev.psi.tools.validator.MessageLevel;
+import psidev.psi.tools.validator.ValidatorMessage;
+import psidev.psi.tools.validator.rules.Rule;
+
+/**
+ * Test for the JSON Lines and CSV report writers.
+ */
+public class ReportWriterTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ReportWriterTest.class.getName());
+    private static final String SII_XPATH = "/MzIdentML/DataCollection/AnalysisData/SpectrumIdentificationList/SpectrumIdentificationResult/SpectrumIdentificationItem";
+    private static final String MSG = "The SpectrumIdentificationItem (id='SII_1') has a \"wrong\", value";
+
+    /**
+     * Creates a clustered message occurring at two locations.
+     * @return the validator message
+     */
+    private static ValidatorMessage createMessage() {
+        ClusteredContext context = new ClusteredContext();
+        context.getContexts().add(new Context(ReportWriterTest.SII_XPATH));
+        context.getContexts().add(new Context(ReportWriterTest.SII_XPATH));
+
+        return new ValidatorMessage(ReportWriterTest.MSG, MessageLevel.ERROR, context, new TestRule());
+    }
+
+    /**
+     * Minimal rule, only the id is reported.
+     */
+    private static class TestRule implements Rule {
+
+        @Override
+        public String getId() {
+            return "TEST_RULE";
+        }
+
+        @Override
+        public String getName() {
+            return "Test rule";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Rule for testing the report writers";
+        }
+
+        @Override
+        public Collection<String> getHowToFixTips() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Test for writing JSON Lines.
+     * @throws IOException
+     */
+    @Test
+    public void testJsonLines() throws IOException {
+        StringWriter out = new StringWriter();
+        try (ValidationReportWriter writer = ReportFormat.JSONL.createWriter(out)) {
+            writer.write(ReportWriterTest.createMessage());
+            writer.write(new ValidatorMessage("Schema\nerror", MessageLevel.WARN));
+            assertEquals(2, writer.getRecordCount());
+        }
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"ruleId\":\"TEST_RULE\",\"level\":\"ERROR\",\"xpath\":[\"" + ReportWriterTest.SII_XPATH + "\"],\"elementIds\":[\"SII_1\"],"
+                + "\"occurrences\":2,\"message\":\"The SpectrumIdentificationItem (id='SII_1') has a \\\"wrong\\\", value\"}", lines[0]);
+        assertEquals("{\"ruleId\":null,\"level\":\"WARN\",\"xpath\":[],\"elementIds\":[],\"occurrences\":1,\"message\":\"Schema\\nerror\"}", lines[1]);
+    }
+
+    /**
+     * Test for writing CSV.
+     * @throws IOException
+     */
+    @Test
+    public void testCsv() throws IOException {
+        StringWriter out = new StringWriter();
+        try (ValidationReportWriter writer = ReportFormat.forFileName("report.CSV").createWriter(out)) {
+            writer.write(ReportWriterTest.createMessage());
+        }
+
+        assertEquals("ruleId,level,xpath,elementIds,occurrences,message\r\n"
+                + "TEST_RULE,ERROR," + ReportWriterTest.SII_XPATH + ",SII_1,2,\"The SpectrumIdentificationItem (id='SII_1') has a \"\"wrong\"\", value\"\r\n", out.toString());
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(ReportWriterTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        ReportWriterTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> ReportWriterTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
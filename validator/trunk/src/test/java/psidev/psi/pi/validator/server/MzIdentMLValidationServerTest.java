@@ -0,0 +1,71 @@
+package psidev.psi.pi.validator.server;
+
+import java.io.IOException;
+import java.util.List;
+import org.apache.log4j.Logger;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.junit.jupiter.api.Test;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.junit.platform.launcher.listeners.TestExecutionSummary.Failure;
+import psidev.psi.pi.validator.MzIdentMLValidator;
+import psidev.psi.tools.cvrReader.CvRuleReaderException;
+import psidev.psi.tools.ontology_manager.impl.local.OntologyLoaderException;
+import psidev.psi.tools.validator.ValidatorException;
+
+/**
+ * Test for the configuration of the validator of the validation server.
+ */
+public class MzIdentMLValidationServerTest {
+
+    /**
+     * Constants.
+     */
+    private static final Logger LOGGER = Logger.getLogger(MzIdentMLValidationServerTest.class.getName());
+
+    /**
+     * Test, that the server does not open the peak list and FASTA files named in the uploaded files,
+     * whatever validation.properties enables.
+     * @throws IOException
+     * @throws OntologyLoaderException
+     * @throws ValidatorException
+     * @throws CvRuleReaderException
+     */
+    @Test
+    public void testNoLocalFileChecks() throws IOException, OntologyLoaderException, ValidatorException, CvRuleReaderException {
+        MzIdentMLValidationServer server = new MzIdentMLValidationServer(1, 1);
+        try {
+            MzIdentMLValidator validator = server.getValidator();
+
+            assertFalse(validator.isSpectrumSourceCheck());
+            assertFalse(validator.isFastaResolution());
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Main class for unit testing.
+     * @param args
+     */
+    public static void main(String[] args) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request().selectors(selectClass(MzIdentMLValidationServerTest.class)).build();
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+
+        launcher.registerTestExecutionListeners(listener);
+        launcher.execute(request);
+
+        TestExecutionSummary summary = listener.getSummary();
+        MzIdentMLValidationServerTest.LOGGER.info(summary.getTestsFoundCount() + " Unit tests executed, " + summary.getTestsSucceededCount() + " of them were successful.");
+
+        List<Failure> failures = summary.getFailures();
+        failures.forEach(failure -> MzIdentMLValidationServerTest.LOGGER.error("failure - " + failure.getException().getMessage()));
+    }
+}
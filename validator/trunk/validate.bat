@@ -0,0 +1,31 @@
+@echo off
+REM Starts the command line mzIdentML validator:
+REM   validate.bat <ontology config> <cv mapping rules> <object rules> <rule filter> <mzIdentML file> <message level> [<report file>]
+REM
+REM The JVM maps the classes of the validator from an application class-data sharing (AppCDS) archive, which saves
+REM most of the time for loading the classes. The archive is created with the installed Java from the class list of
+REM the training run of the build (mzIdentMLValidator.classlist) on the first start. Delete mzIdentMLValidator.jsa
+REM after updating Java, it is created again then.
+setlocal
+
+set DIR=%~dp0
+if defined JAVA_HOME (
+    set JAVA="%JAVA_HOME%\bin\java.exe"
+) else (
+    set JAVA=java.exe
+)
+set JAR=%DIR%mzIdentMLValidator.jar
+set CLASS_LIST=%DIR%mzIdentMLValidator.classlist
+set ARCHIVE=%DIR%mzIdentMLValidator.jsa
+
+if not exist "%ARCHIVE%" if exist "%CLASS_LIST%" (
+    echo Creating the class-data sharing archive %ARCHIVE%...
+    %JAVA% -Xshare:dump "-XX:SharedClassListFile=%CLASS_LIST%" "-XX:SharedArchiveFile=%ARCHIVE%" -cp "%JAR%" > nul 2>&1 || del "%ARCHIVE%" > nul 2>&1
+)
+
+set CDS_OPTS=
+if exist "%ARCHIVE%" set CDS_OPTS=-Xshare:auto "-XX:SharedArchiveFile=%ARCHIVE%"
+
+%JAVA% %CDS_OPTS% %JAVA_OPTS% -cp "%JAR%" psidev.psi.pi.validator.MzIdentMLValidator %*
+
+endlocal
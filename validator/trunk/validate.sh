@@ -0,0 +1,29 @@
+#!/bin/bash
+# Starts the command line mzIdentML validator:
+#   validate.sh <ontology config> <cv mapping rules> <object rules> <rule filter> <mzIdentML file> <message level> [<report file>]
+#
+# The JVM maps the classes of the validator from an application class-data sharing (AppCDS) archive, which saves
+# most of the time for loading the classes. The archive is created with the installed Java from the class list of
+# the training run of the build (mzIdentMLValidator.classlist) on the first start. Delete mzIdentMLValidator.jsa
+# after updating Java, it is created again then.
+DIR="$(cd "$(dirname "$0")" && pwd)"
+if [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+else
+    JAVA=java
+fi
+JAR="$DIR/mzIdentMLValidator.jar"
+CLASS_LIST="$DIR/mzIdentMLValidator.classlist"
+ARCHIVE="$DIR/mzIdentMLValidator.jsa"
+
+if [ ! -f "$ARCHIVE" ] && [ -f "$CLASS_LIST" ]; then
+    echo "Creating the class-data sharing archive $ARCHIVE..."
+    "$JAVA" -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" > /dev/null 2>&1 || rm -f "$ARCHIVE"
+fi
+
+CDS_OPTS=()
+if [ -f "$ARCHIVE" ]; then
+    CDS_OPTS=(-Xshare:auto "-XX:SharedArchiveFile=$ARCHIVE")
+fi
+
+exec "$JAVA" "${CDS_OPTS[@]}" $JAVA_OPTS -cp "$JAR" psidev.psi.pi.validator.MzIdentMLValidator "$@"